@@ -0,0 +1,65 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import expression.SymbolTerminal;
+import instruction.Block;
+
+/**
+ * Measures reading and assigning variables through Block, both by name, as the view and input
+ * events do, and through a SymbolTerminal, as instructions do.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockBenchmark {
+
+	private Block block;
+	private SymbolTerminal symbol;
+	private int value;
+
+	@Setup
+	public void setup() {
+		block = new Block();
+		for (int i = 0 ; i < 32 ; i++)
+			block.assign("variable " + i, i);
+		block.assign("x", 1);
+		symbol = new SymbolTerminal("x");
+	}
+
+	@Benchmark
+	public double get() {
+		return block.get("x");
+	}
+
+	@Benchmark
+	public void assign() {
+		block.assign("x", value++);
+	}
+
+	@Benchmark
+	public double getSymbol() {
+		return block.get(symbol, null);
+	}
+
+	@Benchmark
+	public void assignSymbol() {
+		block.assign(symbol, value++);
+	}
+}
@@ -0,0 +1,87 @@
+package bench;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import compiler.Compiler;
+import expression.Terminal;
+import instruction.Block;
+import parser.Parser;
+
+/**
+ * Measures one frame of an arithmetic-heavy program when interpreted, and when compiled to
+ * bytecode.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CompilerBenchmark {
+
+	private static final String PROGRAM =
+			"set a to 1\n" +
+			"set b to 2\n" +
+			"set c to 3\n" +
+			"set d to 4\n" +
+			"set total to 0\n" +
+			"forever\n" +
+			"\tset a to a * 0.5 + b * 0.25 + 1\n" +
+			"\tset b to b * 0.75 - c / 8 + 2\n" +
+			"\tset c to a * b - c * d / 16 + 3\n" +
+			"\tset d to d * 0.5 + a - b + c / 4\n" +
+			"\tchange total by a + b + c + d\n" +
+			"\tset a to a * a / (a + 1) + b / 3\n" +
+			"\tset b to b * b / (b + 1) + c / 3\n" +
+			"\tset c to c * c / (c + 1) + d / 3\n" +
+			"\tset d to d * d / (d + 1) + a / 3\n" +
+			"\tchange total by a * b - c * d\n" +
+			"\tif total > 1000000\n" +
+			"\t\tset total to total - 1000000\n";
+
+	@Param({ "false", "true" })
+	private boolean compiled;
+
+	private Block block;
+	private Graphics graphics;
+
+	@Setup(Level.Trial)
+	public void parse() {
+		block = new Parser().parse(PROGRAM);
+		block.assign("width", new Terminal(600));
+		block.assign("height", new Terminal(550));
+		if (compiled)
+			new Compiler(block.getSymbolTable()).compile(block);
+		block.reset();
+		graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+	}
+
+	@TearDown(Level.Trial)
+	public void finish() {
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public Block frame() {
+		block.execute(graphics, block);
+		return block;
+	}
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parser.Lexer;
+import view.DocumentTokens;
+
+/**
+ * Measures what lexing costs for a key stroke in the middle of programs of growing length: the
+ * editor's document lexing only the changed line, against lexing the whole text again.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EditBenchmark {
+
+	@Param({ "1000", "10000", "30000" })
+	private int lines;
+
+	private String text;
+	private DefaultStyledDocument document;
+	private DocumentTokens tokens;
+	private int offset;
+
+	@Setup
+	public void setup() throws BadLocationException {
+		// Copies of an example, until the program has enough lines
+		String example = Examples.read("Flappy_Bird");
+		StringBuilder builder = new StringBuilder();
+		int count = 0;
+		while (count < lines) {
+			builder.append(example).append('\n');
+			count += example.split("\n", -1).length;
+		}
+		text = builder.toString();
+
+		document = new DefaultStyledDocument();
+		document.insertString(0, text, null);
+		tokens = new DocumentTokens(document);
+		offset = document.getDefaultRootElement().getElement(count / 2).getStartOffset() + 1;
+	}
+
+	@Benchmark
+	public int keystroke() throws BadLocationException {
+		// Type a character and delete it again
+		document.insertString(offset, "x", null);
+		document.remove(offset, 1);
+		return tokens.getTokens().getLineCount();
+	}
+
+	@Benchmark
+	public String[] relex() {
+		return new Lexer().lex(text);
+	}
+}
@@ -0,0 +1,25 @@
+package bench;
+
+import java.io.InputStream;
+import java.util.Scanner;
+
+/**
+ * Reads the example programs that come with Pseudocode, which the benchmarks use as input.
+ * 
+ * @license MIT
+ */
+class Examples {
+
+	/**
+	 * Returns the text of the example with the given name, such as "Bouncing_Ball".
+	 */
+	static String read(String name) {
+		InputStream stream = Examples.class.getResourceAsStream("/example/" + name + ".pseudo");
+		if (stream == null)
+			throw new IllegalArgumentException("No example named " + name);
+		Scanner scanner = new Scanner(stream).useDelimiter("\\A");
+		String text = scanner.hasNext() ? scanner.next() : "";
+		scanner.close();
+		return text;
+	}
+}
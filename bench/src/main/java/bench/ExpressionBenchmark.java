@@ -0,0 +1,89 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import expression.Expression;
+import expression.KeyTerminal;
+import expression.ListValue;
+import expression.Operator;
+import expression.StringValue;
+import expression.SymbolTerminal;
+import expression.Terminal;
+import instruction.Block;
+import instruction.SymbolTable;
+
+/**
+ * Measures Expression.evaluate for each kind of variable read, and for a small arithmetic
+ * expression that combines them.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+	private Block block;
+	private Expression variable;
+	private Expression listElement;
+	private Expression stringElement;
+	private Expression key;
+	private Expression arithmetic;
+
+	@Setup
+	public void setup() {
+		block = new Block();
+		SymbolTable table = block.getSymbolTable();
+		table.set(table.resolve("x"), new ListValue(1, 2, 3, 4));
+		table.set(table.resolve("s"), new StringValue("hello"));
+		table.set(table.resolve("y"), 5);
+		table.set(table.resolve("i"), 2);
+		block.assign("up pressed", 1);
+
+		variable = new SymbolTerminal("y");
+		listElement = new SymbolTerminal("x", new SymbolTerminal("i"));
+		stringElement = new SymbolTerminal("s", new Terminal(1));
+		key = new KeyTerminal("up");
+		arithmetic = new Expression(new SymbolTerminal("x", new SymbolTerminal("i")), Operator.Add,
+				new Expression(new SymbolTerminal("y"), Operator.Multiply, new Terminal(2)));
+	}
+
+	@Benchmark
+	public double variable() {
+		return variable.evaluate(block);
+	}
+
+	@Benchmark
+	public double listElement() {
+		return listElement.evaluate(block);
+	}
+
+	@Benchmark
+	public double stringElement() {
+		return stringElement.evaluate(block);
+	}
+
+	@Benchmark
+	public double key() {
+		return key.evaluate(block);
+	}
+
+	@Benchmark
+	public double arithmetic() {
+		return arithmetic.evaluate(block);
+	}
+}
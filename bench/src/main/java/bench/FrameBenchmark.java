@@ -0,0 +1,94 @@
+package bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import expression.Terminal;
+import instruction.ExecutionContext;
+import instruction.Program;
+import parser.Parser;
+
+/**
+ * Measures one frame of Block.execute for every example program, drawing into an offscreen
+ * image. Every iteration starts a new run of the program with the same window size, input,
+ * clock and random seed as the BatchRunner, so that each iteration runs the same frames.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FrameBenchmark {
+
+	private static final int WIDTH = 600;
+	private static final int HEIGHT = 600;
+	private static final int RATE = 50;
+	private static final long SEED = 0;
+
+	@Param({ "Bouncing_Ball", "Draw_Shapes", "Etch_A_Sketch", "Flappy_Bird", "Follower", "Key_Character",
+			"Mini_Golf", "Mouse_Coloring", "Paddle_Bounce", "Random_Colors", "Random_Shapes", "Simple_Branching" })
+	private String example;
+
+	private Program program;
+	private ExecutionContext block;
+	private BufferedImage image;
+	private Graphics2D graphics;
+	private long elapsed;
+
+	@Setup(Level.Trial)
+	public void parse() {
+		program = new Program(new Parser().parse(Examples.read(example)));
+		image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+	}
+
+	@Setup(Level.Iteration)
+	public void start() {
+		block = program.start();
+		block.assign("width", new Terminal(WIDTH));
+		block.assign("height", new Terminal(HEIGHT - 50));
+		block.assign("mousex", new Terminal(0));
+		block.assign("mousey", new Terminal(0));
+		block.assign("mouseclicked", new Terminal(0));
+		block.assign("deltatime", new Terminal(1.0 / RATE));
+		block.getRandom().setSeed(SEED);
+
+		graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, WIDTH, HEIGHT);
+		elapsed = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void finish() {
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public ExecutionContext frame() {
+		// The clock moves by one frame's time each frame, carrying the part of a millisecond over
+		elapsed += 1000000000L / RATE;
+		block.getTimers().advance(elapsed / 1000000);
+		elapsed %= 1000000;
+		block.execute(graphics, block);
+		return block;
+	}
+}
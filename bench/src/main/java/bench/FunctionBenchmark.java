@@ -0,0 +1,82 @@
+package bench;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import instruction.Block;
+import parser.Parser;
+
+/**
+ * Measures one frame of a program that makes a simple call with two arguments, and of one that
+ * makes 177 calls of a recursive function. Run with "-prof gc" to see the bytes each frame
+ * allocates, which should be none.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FunctionBenchmark {
+
+	// One call per frame
+	private static final String CALL =
+			"set total to 0\n" +
+			"to add with a and b\n" +
+			"\tchange total by a + b\n" +
+			"forever\n" +
+			"\tdo add with 1, 2\n";
+
+	// fibonacci(10) makes 177 calls per frame
+	private static final String RECURSION =
+			"set total to 0\n" +
+			"to fibonacci with n\n" +
+			"\tif n < 2\n" +
+			"\t\tchange total by n\n" +
+			"\telse\n" +
+			"\t\tdo fibonacci with n - 1\n" +
+			"\t\tdo fibonacci with n - 2\n" +
+			"forever\n" +
+			"\tdo fibonacci with 10\n";
+
+	@Param({ "call", "recursion" })
+	private String program;
+
+	private Block block;
+	private Graphics graphics;
+
+	@Setup(Level.Trial)
+	public void parse() {
+		block = new Parser().parse(program.equals("call") ? CALL : RECURSION);
+		block.reset();
+		graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+	}
+
+	@TearDown(Level.Trial)
+	public void finish() {
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public Block frame() {
+		block.execute(graphics, block);
+		return block;
+	}
+}
@@ -0,0 +1,70 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import batch.BatchRunner;
+import batch.GradingEngine;
+
+/**
+ * Measures how long a GradingEngine takes to grade many copies of the examples, on one thread
+ * and on one thread per core. TestGrading checks that both give the same results.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GradingBenchmark {
+
+	private static final int COPIES = 20;
+
+	// Random_Shapes is left out because it never finishes parsing
+	private static final String[] EXAMPLES = {
+		"Bouncing_Ball", "Draw_Shapes", "Etch_A_Sketch", "Flappy_Bird", "Follower", "Key_Character",
+		"Mini_Golf", "Mouse_Coloring", "Paddle_Bounce", "Random_Colors", "Simple_Branching"
+	};
+
+	// The number of threads, or 0 for one per core
+	@Param({ "1", "0" })
+	private int threads;
+
+	private List <String> names = new ArrayList <String> ();
+	private List <String> texts = new ArrayList <String> ();
+	private BatchRunner runner = new BatchRunner(300, 600, 600, 50, 60000000000L);
+
+	@Setup(Level.Trial)
+	public void read() {
+		for (int copy = 0 ; copy < COPIES ; copy++) {
+			for (String example : EXAMPLES) {
+				names.add(example);
+				texts.add(Examples.read(example));
+			}
+		}
+	}
+
+	@Benchmark
+	public List <BatchRunner.Result> grade() {
+		int threads = (this.threads > 0) ? this.threads : Runtime.getRuntime().availableProcessors();
+		try (GradingEngine engine = new GradingEngine(runner, threads)) {
+			return engine.run(names, texts);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import expression.Terminal;
+import instruction.ExecutionContext;
+import instruction.Program;
+import machine.Lowering;
+import machine.Machine;
+import parser.Parser;
+import profiler.HeatProfiler;
+
+/**
+ * Measures one frame of the lowered example programs, the way the Interpreter runs them, with
+ * and without every line profiled by a HeatProfiler. The profiled runs have the sampling thread
+ * running for the whole iteration, so the difference between the two is the whole overhead of
+ * profiling.
+ *
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HeatBenchmark {
+
+	private static final int WIDTH = 600;
+	private static final int HEIGHT = 600;
+	private static final int RATE = 50;
+	private static final long SEED = 0;
+
+	@Param({ "Bouncing_Ball", "Flappy_Bird", "Mini_Golf", "Paddle_Bounce", "Random_Shapes", "Simple_Branching" })
+	private String example;
+
+	@Param({ "false", "true" })
+	private boolean profiled;
+
+	private String text;
+	private Program program;
+	private Machine lowered;
+	private HeatProfiler profiler;
+	private ExecutionContext block;
+	private Machine machine;
+	private BufferedImage image;
+	private Graphics2D graphics;
+	private long elapsed;
+
+	@Setup(Level.Trial)
+	public void parse() {
+		text = Examples.read(example);
+		program = new Program(new Parser().parse(text));
+		lowered = Lowering.lower(program.getBlock(), profiled);
+		image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+	}
+
+	@Setup(Level.Iteration)
+	public void start() {
+		block = program.start();
+		block.assign("width", new Terminal(WIDTH));
+		block.assign("height", new Terminal(HEIGHT - 50));
+		block.assign("mousex", new Terminal(0));
+		block.assign("mousey", new Terminal(0));
+		block.assign("mouseclicked", new Terminal(0));
+		block.assign("deltatime", new Terminal(1.0 / RATE));
+		block.getRandom().setSeed(SEED);
+		if (profiled) {
+			profiler = new HeatProfiler(text);
+			profiler.profile(block);
+			profiler.start();
+		}
+		machine = lowered.start(block);
+
+		graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, WIDTH, HEIGHT);
+		elapsed = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void finish() {
+		if (profiler != null)
+			profiler.stop();
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public Machine frame() {
+		// The clock moves by one frame's time each frame, carrying the part of a millisecond over
+		elapsed += 1000000000L / RATE;
+		block.getTimers().advance(elapsed / 1000000);
+		elapsed %= 1000000;
+		machine.run(graphics);
+		return machine;
+	}
+}
@@ -0,0 +1,38 @@
+package bench;
+
+import instruction.Block;
+import parser.Optimizer;
+import parser.Parser;
+
+/**
+ * Prints how many instructions and expression nodes the Optimizer removes from each of the
+ * bundled example programs.
+ * 
+ * Run with the names of examples as arguments, or with no arguments for every example.
+ * 
+ * @license MIT
+ */
+public class OptimizerReport {
+
+	// Random_Shapes is left out because the parser does not finish parsing its polygon
+	private static final String[] EXAMPLES = { "Bouncing_Ball", "Draw_Shapes", "Etch_A_Sketch", "Flappy_Bird",
+		"Follower", "Key_Character", "Mini_Golf", "Mouse_Coloring", "Paddle_Bounce", "Random_Colors",
+		"Simple_Branching" };
+
+	public static void main(String[] args) {
+		String[] examples = (args.length > 0) ? args : EXAMPLES;
+		int totalBefore = 0, totalRemoved = 0;
+		for (String example : examples) {
+			Parser parser = new Parser();
+			parser.setOptimizing(false);
+			Block block = parser.parse(Examples.read(example));
+			int before = Optimizer.count(block);
+			int removed = new Optimizer().optimize(block);
+
+			System.out.printf("%-16s %5d nodes   %4d removed%n", example, before, removed);
+			totalBefore += before;
+			totalRemoved += removed;
+		}
+		System.out.printf("%-16s %5d nodes   %4d removed%n", "total", totalBefore, totalRemoved);
+	}
+}
@@ -0,0 +1,113 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import instruction.Block;
+import parser.Lexer;
+import parser.Parser;
+import parser.TokenStream;
+
+/**
+ * Measures lexing and parsing a long generated program, made of lines like the ones in the
+ * examples with random names, numbers and colors: lexing it into Strings, lexing it into a
+ * TokenStream, which is what the parser reads, and parsing it. The number of lines divided by
+ * the time is the throughput of the parser.
+ *
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseThroughputBenchmark {
+
+	private static final String[] COLORS = { "red", "light gray", "blue", "dark green", "orange", "black" };
+	private static final String[] SHAPES = { "circle", "square", "oval", "rectangle" };
+
+	@Param({ "10000" })
+	private int lines;
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		text = generate(lines, new Random(1));
+	}
+
+	/**
+	 * Returns a program of about the given number of lines.
+	 */
+	static String generate(int lines, Random random) {
+		StringBuilder builder = new StringBuilder();
+		int count = 0;
+		while (count < lines) {
+			String a = "v" + random.nextInt(50), b = "v" + random.nextInt(50);
+			int n = random.nextInt(500);
+			String color = COLORS[random.nextInt(COLORS.length)];
+			String shape = SHAPES[random.nextInt(SHAPES.length)];
+			switch (random.nextInt(5)) {
+			case 0:
+				builder.append("set ").append(a).append(" to ").append(n).append(" * 2 + ").append(b).append('\n');
+				count += 1;
+				break;
+			case 1:
+				builder.append("if ").append(a).append(" > ").append(n).append(" and ").append(b).append(" is less than 100\n");
+				builder.append("\tchange ").append(a).append(" by -").append(n % 7 + 1).append('\n');
+				builder.append("\tdraw a ").append(color).append(' ').append(shape).append(" at ").append(a).append(", ").append(b)
+					.append(" with size ").append(n % 40 + 1).append('\n');
+				builder.append("otherwise\n");
+				builder.append("\tincrement ").append(b).append('\n');
+				count += 5;
+				break;
+			case 2:
+				builder.append("repeat ").append(n % 5 + 1).append(" times\n");
+				builder.append("\tset the background to ").append(color).append('\n');
+				builder.append("\tprint \"").append(a).append(" is \" + ").append(a).append('\n');
+				count += 3;
+				break;
+			case 3:
+				builder.append("// move ").append(a).append(" towards the mouse\n");
+				builder.append("change ").append(a).append(" by (mouse x - ").append(a).append(") / 10\n");
+				count += 2;
+				break;
+			default:
+				builder.append("draw a ").append(color).append(" line from ").append(a).append(", ").append(b)
+					.append(" to ").append(n).append(", ").append(n / 2).append('\n');
+				builder.append('\n');
+				count += 2;
+				break;
+			}
+		}
+		return builder.toString();
+	}
+
+	@Benchmark
+	public String[] lex() {
+		return new Lexer().lex(text);
+	}
+
+	@Benchmark
+	public TokenStream stream() {
+		return new Lexer().stream(text);
+	}
+
+	@Benchmark
+	public Block parse() {
+		return new Parser().parse(text);
+	}
+}
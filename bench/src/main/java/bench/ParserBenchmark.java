@@ -0,0 +1,48 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import instruction.Block;
+import parser.Parser;
+
+/**
+ * Measures Parser.parse on every example program, including lexing the text.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({ "Bouncing_Ball", "Draw_Shapes", "Etch_A_Sketch", "Flappy_Bird", "Follower", "Key_Character",
+			"Mini_Golf", "Mouse_Coloring", "Paddle_Bounce", "Random_Colors", "Random_Shapes", "Simple_Branching" })
+	private String example;
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		text = Examples.read(example);
+	}
+
+	@Benchmark
+	public Block parse() {
+		return new Parser().parse(text);
+	}
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import expression.Terminal;
+import instruction.Block;
+import parser.Parser;
+import profiler.Profiler;
+
+/**
+ * Measures one frame of a program with a badly ordered condition, with its conditions in the
+ * order they were written and when profiled and reordered.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ProfilerBenchmark {
+
+	// The distance check is expensive and almost never decides the condition, while the cheap
+	// check of x after it decides it in every frame
+	private static final String PROGRAM =
+			"set x to 0\n" +
+			"set y to 5\n" +
+			"set total to 0\n" +
+			"forever\n" +
+			"\tchange x by 1\n" +
+			"\tif distance from x, y to 300, 400 > 10 and y > 0 and x < 0\n" +
+			"\t\tchange total by 1\n" +
+			"\tif x > 1000\n" +
+			"\t\tset x to 0\n";
+
+	@Param({ "false", "true" })
+	private boolean profiled;
+
+	private Block block;
+	private Graphics graphics;
+
+	@Setup(Level.Trial)
+	public void parse() {
+		block = new Parser().parse(PROGRAM);
+		block.assign("width", new Terminal(600));
+		block.assign("height", new Terminal(550));
+		if (profiled)
+			new Profiler().profile(block);
+		block.reset();
+		graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+	}
+
+	@TearDown(Level.Trial)
+	public void finish() {
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public Block frame() {
+		block.execute(graphics, block);
+		return block;
+	}
+}
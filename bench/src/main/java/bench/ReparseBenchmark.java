@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import instruction.Block;
+import parser.Parser;
+import parser.TokenStore;
+
+/**
+ * Measures what parsing costs for an edit of one line in the middle of programs of growing
+ * length: reparsing only the part of the program the line is in, against parsing every line.
+ *
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReparseBenchmark {
+
+	@Param({ "1000", "10000" })
+	private int lines;
+
+	private TokenStore store;
+	private Parser parser = new Parser();
+	private int line;
+	private String[] versions;
+	private int edits = 0;
+
+	@Setup
+	public void setup() {
+		// Copies of an example, until the program has enough lines
+		String example = Examples.read("Bouncing_Ball");
+		StringBuilder builder = new StringBuilder();
+		int count = 0;
+		while (count < lines) {
+			builder.append(example).append('\n');
+			count += example.split("\n", -1).length;
+		}
+		store = new TokenStore(builder.toString());
+
+		// A line in the loop of the copy in the middle, which is edited back and forth
+		line = count / 2;
+		while (! store.getLine(line).startsWith("\tchange x"))
+			line++;
+		versions = new String[] { store.getLine(line), store.getLine(line) + " + 1" };
+		parser.reparse(store);
+	}
+
+	@Benchmark
+	public Block reparse() {
+		store.replace(line, 1, versions[++edits & 1]);
+		return parser.reparse(store);
+	}
+
+	@Benchmark
+	public Block parse() {
+		store.replace(line, 1, versions[++edits & 1]);
+		return parser.parse(store);
+	}
+}
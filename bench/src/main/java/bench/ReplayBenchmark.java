@@ -0,0 +1,96 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import batch.BatchRunner;
+import instruction.Program;
+import parser.Parser;
+import replay.InputLog;
+import replay.InputRecorder;
+
+/**
+ * Measures replaying a recorded game of Flappy_Bird from start to end. By default the game is
+ * twelve seconds of scripted play, clicking every half second or so while the mouse wanders;
+ * a game recorded in the window with -Dpseudocode.record can be given with -p recording=file.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ReplayBenchmark {
+
+	private static final int FRAMES = 600;
+	private static final long FRAME_TIME = 20000000;
+
+	@Param({ "" })
+	private String recording;
+
+	private Program program;
+	private BatchRunner runner;
+
+	@Setup
+	public void setup() throws IOException {
+		program = new Program(new Parser().parse(Examples.read("Flappy_Bird")));
+		runner = new BatchRunner();
+		if (recording.isEmpty())
+			runner.setInput(play());
+		else {
+			try (InputStream stream = new FileInputStream(recording)) {
+				runner.setInput(InputLog.read(stream));
+			}
+		}
+	}
+
+	@Benchmark
+	public BatchRunner.Result replay() {
+		return runner.run("Flappy_Bird", program);
+	}
+
+	/**
+	 * Records a game played by a script, with the same input every time.
+	 */
+	private static InputLog play() throws IOException {
+		Random random = new Random(0);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		InputRecorder recorder = new InputRecorder(bytes, 0, 600, 600);
+		int x = 300, y = 300;
+		int click = 0;
+		for (int frame = 0 ; frame < FRAMES ; frame++) {
+			if (frame == click) {
+				recorder.input("mouseclicked", 1);
+				click = frame + 20 + random.nextInt(15);
+			}
+			else if (frame == click - 18)
+				recorder.input("mouseclicked", 0);
+			x = Math.max(0, Math.min(599, x + random.nextInt(11) - 5));
+			y = Math.max(0, Math.min(549, y + random.nextInt(11) - 5));
+			recorder.input("mousex", x);
+			recorder.input("mousey", y);
+			recorder.frame(FRAME_TIME + random.nextInt(2000000) - 1000000);
+		}
+		recorder.close();
+		return InputLog.read(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+}
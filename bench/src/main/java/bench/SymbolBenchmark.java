@@ -0,0 +1,89 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import expression.SymbolTerminal;
+import expression.Terminal;
+import instruction.Block;
+import parser.Lexer;
+import parser.Parser;
+
+/**
+ * Measures how quickly the variables of the example programs can be read and written, going
+ * through each distinct variable that the program refers to in turn.
+ * 
+ * @license MIT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolBenchmark {
+
+	private static final int WIDTH = 600;
+	private static final int HEIGHT = 600;
+
+	@Param({ "Bouncing_Ball", "Flappy_Bird" })
+	private String example;
+
+	private Block block;
+	private String[] names;
+	private SymbolTerminal[] symbols;
+	private Terminal value = new Terminal();
+	private int next;
+
+	@Setup(Level.Trial)
+	public void parse() {
+		String text = Examples.read(example);
+		block = new Parser().parse(text);
+		block.assign("width", new Terminal(WIDTH));
+		block.assign("height", new Terminal(HEIGHT - 50));
+		block.assign("mousex", new Terminal(WIDTH / 2));
+		block.assign("mousey", new Terminal(HEIGHT / 2));
+		block.assign("mouseclicked", new Terminal(0));
+
+		// Collect each distinct variable that the program refers to, giving every one a value
+		ArrayList <String> found = new ArrayList <String> ();
+		for (String token : new Lexer().lex(text)) {
+			if (block.getSymbolTable().find(token) >= 0 && ! found.contains(token)) {
+				found.add(token);
+				if (! block.hasSymbol(token))
+					block.assign(token, new Terminal(0));
+			}
+		}
+		names = found.toArray(new String[found.size()]);
+		symbols = new SymbolTerminal[names.length];
+		for (int i = 0 ; i < symbols.length ; i++)
+			symbols[i] = new SymbolTerminal(names[i]);
+	}
+
+	@Benchmark
+	public double read() {
+		next = (next + 1 == symbols.length) ? 0 : next + 1;
+		return symbols[next].evaluate(block);
+	}
+
+	@Benchmark
+	public Block write() {
+		next = (next + 1 == names.length) ? 0 : next + 1;
+		value.setValue(next);
+		block.assign(names[next], value);
+		return block;
+	}
+}
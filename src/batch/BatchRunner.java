@@ -0,0 +1,480 @@
+package batch;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import expression.Terminal;
+import instruction.Block;
+import instruction.ExecutionContext;
+import instruction.Output;
+import instruction.Program;
+import parser.Parser;
+import replay.InputLog;
+
+/**
+ * Runs pseudocode programs without a window, for grading many programs on a server started with
+ * -Djava.awt.headless=true. Each program is parsed, run for a number of frames against an
+ * offscreen image, and its final frame, console output and timing are written next to each
+ * other in the output directory:
+ * 
+ *   java batch.BatchRunner [-frames 300] [-size 600x600] [-rate 50] [-timeout 10] [-seed 0] [-input run.input] [-threads n] [-output .] program.pseudo ...
+ * 
+ * writes program.png, program.txt and program.json for every program, and prints one line of
+ * timing per program. Programs run at the same time on a GradingEngine, by default one for each
+ * core. The program's clock moves forward by exactly one frame's time each frame, and its random
+ * numbers start from the same seed, so a program gives the same result however fast the server
+ * is and whatever else is running.
+ * 
+ * Given the input recorded from a run in the window, programs instead replay that run: they
+ * start from its seed in a window of its size, and every frame takes the time it took and gets
+ * the input it got, for as many frames as were recorded.
+ * 
+ * No Swing component is created, so this runs on machines without a display.
+ * 
+ * @license MIT
+ */
+public class BatchRunner {
+
+	public static final int DEFAULT_FRAMES = 300;
+	public static final int DEFAULT_SIZE = 600;
+	public static final int DEFAULT_RATE = 50;
+	public static final int DEFAULT_TIMEOUT = 10;
+	public static final long DEFAULT_SEED = 0;
+
+	// The most characters of console output kept for a single program
+	private static final int MAX_OUTPUT = 1 << 20;
+
+	// The time in milliseconds a stopped program has to reach its next instruction and finish
+	private static final int STOP_WAIT = 100;
+
+	private int frames;
+	private int width;
+	private int height;
+	private int rate;
+
+	// The longest time in nanoseconds a program may take to parse and run
+	private long timeout;
+
+	// The seed of the random numbers of every program
+	private long seed = DEFAULT_SEED;
+
+	// The recorded run that every program replays, or null
+	private InputLog input;
+
+	/**
+	 * Creates a runner with the default number of frames, image size, frame rate and timeout.
+	 */
+	public BatchRunner() {
+		this(DEFAULT_FRAMES, DEFAULT_SIZE, DEFAULT_SIZE, DEFAULT_RATE, DEFAULT_TIMEOUT * 1000000000L);
+	}
+
+	/**
+	 * Creates a runner.
+	 * @param frames - the number of frames each program runs for
+	 * @param width - the width of the image programs draw on
+	 * @param height - the height of the image programs draw on
+	 * @param rate - the number of frames per second of the program's clock
+	 * @param timeout - the longest time in nanoseconds a program may take to parse and run
+	 */
+	public BatchRunner(int frames, int width, int height, int rate, long timeout) {
+		this.frames = Math.max(frames, 0);
+		this.width = Math.max(width, 1);
+		this.height = Math.max(height, 1);
+		this.rate = Math.max(rate, 1);
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Sets the seed that the random numbers of every program start from.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Makes every program replay the given recorded run, in place of the number of frames,
+	 * image size, frame rate and seed of this runner, or stops replaying if it is null.
+	 */
+	public void setInput(InputLog input) {
+		this.input = input;
+	}
+
+	/**
+	 * The final frame, console output and timing of a program.
+	 */
+	public static class Result {
+		private String name;
+		private volatile BufferedImage image;
+		private Transcript output = new Transcript();
+
+		// The time taken to parse the program, and to run each frame, in nanoseconds
+		private long parseTime;
+		private long[] frameTimes;
+		private volatile int framesRun;
+
+		// The running program, and whether it ran out of time and the error that stopped it
+		private volatile Block block;
+		private volatile boolean timedOut;
+		private volatile String error;
+
+		private Result(String name, int frames) {
+			this.name = name;
+			this.frameTimes = new long[frames];
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the last frame the program drew, or null if it never started running.
+		 */
+		public BufferedImage getImage() {
+			return image;
+		}
+
+		/**
+		 * Returns everything the program printed, one line per print.
+		 */
+		public String getOutput() {
+			return output.toString();
+		}
+
+		public long getParseTime() {
+			return parseTime;
+		}
+
+		public int getFramesRun() {
+			return framesRun;
+		}
+
+		/**
+		 * Returns the time each frame that ran took, in nanoseconds.
+		 */
+		public long[] getFrameTimes() {
+			return Arrays.copyOf(frameTimes, framesRun);
+		}
+
+		public boolean isTimedOut() {
+			return timedOut;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * Returns the time taken by the frame at the given percentile, in nanoseconds.
+		 */
+		public long getPercentile(double percentile) {
+			if (framesRun == 0)
+				return 0;
+			long[] sorted = getFrameTimes();
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+			return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+		}
+
+		/**
+		 * Returns the total time taken by every frame that ran, in nanoseconds.
+		 */
+		public long getRunTime() {
+			long total = 0;
+			for (int i = 0 ; i < framesRun ; i++)
+				total += frameTimes[i];
+			return total;
+		}
+
+		/**
+		 * Returns the timing of this program as a JSON object.
+		 */
+		public String toJson() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("{\n");
+			builder.append("  \"program\": \"" + escape(name) + "\",\n");
+			builder.append("  \"frames\": " + framesRun + ",\n");
+			builder.append("  \"timedOut\": " + timedOut + ",\n");
+			builder.append("  \"error\": " + ((error != null) ? "\"" + escape(error) + "\"" : "null") + ",\n");
+			builder.append("  \"outputTruncated\": " + output.isTruncated() + ",\n");
+			builder.append(String.format("  \"parseMillis\": %.3f,%n", parseTime / 1e6));
+			builder.append(String.format("  \"runMillis\": %.3f,%n", getRunTime() / 1e6));
+			builder.append(String.format("  \"meanFrameMicros\": %.3f,%n", (framesRun > 0) ? getRunTime() / 1e3 / framesRun : 0));
+			builder.append(String.format("  \"medianFrameMicros\": %.3f,%n", getPercentile(50) / 1e3));
+			builder.append(String.format("  \"p99FrameMicros\": %.3f,%n", getPercentile(99) / 1e3));
+			builder.append(String.format("  \"maxFrameMicros\": %.3f%n", getPercentile(100) / 1e3));
+			builder.append("}\n");
+			return builder.toString();
+		}
+
+		/**
+		 * Returns a single line with the timing of this program.
+		 */
+		public String toString() {
+			String status = timedOut ? "timed out" : (error != null) ? "failed: " + error : "ok";
+			return String.format("%-24s %6d frames   parse %9.3f ms   mean %9.3f us   p99 %9.3f us   max %9.3f us   %s",
+					name, framesRun, parseTime / 1e6, (framesRun > 0) ? getRunTime() / 1e3 / framesRun : 0,
+					getPercentile(99) / 1e3, getPercentile(100) / 1e3, status);
+		}
+
+		private static String escape(String text) {
+			return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+		}
+	}
+
+	/**
+	 * Collects the console output of a program, up to a limit.
+	 */
+	private static class Transcript implements Output {
+		private StringBuilder text = new StringBuilder();
+		private boolean truncated = false;
+
+		public synchronized void print(String line) {
+			if (text.length() + line.length() + 1 > MAX_OUTPUT) {
+				truncated = true;
+				return;
+			}
+			text.append(line).append('\n');
+		}
+
+		public void error(String message) {
+			print(message);
+		}
+
+		public synchronized boolean isTruncated() {
+			return truncated;
+		}
+
+		public synchronized String toString() {
+			return text.toString();
+		}
+	}
+
+	/**
+	 * Parses and runs a program on a background thread. If the program takes longer than the
+	 * timeout, even while it is being parsed or in the middle of a frame, its result so far is
+	 * returned.
+	 * @param name - the name of the program, used in its result
+	 * @param text - the pseudocode program
+	 * @return the final frame, console output and timing of the program
+	 */
+	public Result run(String name, String text) {
+		return run(name, text, null);
+	}
+
+	/**
+	 * Runs a program that was already parsed on a background thread, the same way as a program
+	 * given as text. The program is not changed, so the same program can be run by any number
+	 * of threads at once.
+	 * @param name - the name of the program, used in its result
+	 * @param program - the parsed program
+	 * @return the final frame, console output and timing of the program
+	 */
+	public Result run(String name, Program program) {
+		return run(name, null, program);
+	}
+
+	private Result run(String name, String text, Program program) {
+		InputLog input = this.input;
+		Result result = new Result(name, (input != null) ? input.getFrames() : frames);
+		long deadline = System.nanoTime() + timeout;
+		Thread worker = new Thread(() -> execute(result, text, program, input, deadline), "Batch " + name);
+		worker.setDaemon(true);
+		worker.start();
+		try {
+			worker.join(Math.max(timeout / 1000000, 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// A program stuck in a loop is stopped at its next instruction, and given a moment to
+		// finish. A parser that never finishes, or an instruction that never reaches the next
+		// one, cannot be stopped and is left to itself, drawing into an image of its own.
+		if (worker.isAlive()) {
+			result.timedOut = true;
+			if (result.block != null)
+				result.block.getControlStack().stop();
+			try {
+				worker.join(STOP_WAIT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (worker.isAlive() && result.image != null)
+				result.image = copy(result.image);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the given image.
+	 */
+	private static BufferedImage copy(BufferedImage image) {
+		BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+		Graphics2D graphics = copy.createGraphics();
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		return copy;
+	}
+
+	/**
+	 * Parses the given text unless a parsed program is given, and runs a new run of the program
+	 * on the current thread, replaying the given input if there is any, and stopping between
+	 * frames once the deadline has passed.
+	 */
+	private void execute(Result result, String text, Program program, InputLog input, long deadline) {
+		try {
+			if (program == null) {
+				long start = System.nanoTime();
+				program = new Program(new Parser().parse(text));
+				result.parseTime = System.nanoTime() - start;
+			}
+			ExecutionContext block = program.start();
+			result.block = block;
+			int width = (input != null) ? input.getWidth() : this.width;
+			int height = (input != null) ? input.getHeight() : this.height;
+
+			// Prepare the program the same way as the Interpreter, with the mouse in the corner
+			block.setConsole(result.output);
+			block.assign("width", new Terminal(width));
+			block.assign("height", new Terminal(height - 50));
+			block.assign("mousex", new Terminal(0));
+			block.assign("mousey", new Terminal(0));
+			block.assign("mouseclicked", new Terminal(0));
+			block.assign("deltatime", new Terminal(1.0 / rate));
+			block.getRandom().setSeed((input != null) ? input.getSeed() : seed);
+			int deltaTime = block.getSymbolTable().resolve("deltatime");
+
+			BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D graphics = image.createGraphics();
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, width, height);
+			result.image = image;
+
+			// The clock moves by one frame's time each frame, carrying the part of a millisecond over
+			long period = 1000000000L / rate;
+			long elapsed = 0;
+			for (int frame = 0 ; frame < result.frameTimes.length ; frame++) {
+				if (result.timedOut || System.nanoTime() > deadline) {
+					result.timedOut = true;
+					break;
+				}
+				long frameStart = System.nanoTime();
+				if (input != null) {
+					input.apply(frame, block);
+					period = input.getFrameTime(frame);
+					block.getSymbolTable().set(deltaTime, period / 1e9);
+				}
+				elapsed += period;
+				block.getTimers().advance(elapsed / 1000000);
+				elapsed %= 1000000;
+				block.execute(graphics, block);
+
+				// A frame cut short by a stop did not finish
+				if (result.timedOut)
+					break;
+				result.frameTimes[frame] = System.nanoTime() - frameStart;
+				result.framesRun = frame + 1;
+			}
+			graphics.dispose();
+		} catch (RuntimeException | StackOverflowError e) {
+			result.error = e.toString();
+		}
+	}
+
+	/**
+	 * Writes the final frame, console output and timing of a program to the given directory.
+	 */
+	public static void write(Result result, File directory) throws IOException {
+		if (result.getImage() != null)
+			ImageIO.write(result.getImage(), "png", new File(directory, result.getName() + ".png"));
+		Files.write(new File(directory, result.getName() + ".txt").toPath(), result.getOutput().getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(directory, result.getName() + ".json").toPath(), result.toJson().getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static void main(String[] args) throws IOException {
+		int frames = DEFAULT_FRAMES, width = DEFAULT_SIZE, height = DEFAULT_SIZE, rate = DEFAULT_RATE;
+		int threads = Runtime.getRuntime().availableProcessors();
+		double timeout = DEFAULT_TIMEOUT;
+		long seed = DEFAULT_SEED;
+		InputLog input = null;
+		File output = new File(".");
+		int i = 0;
+		try {
+			for ( ; i < args.length && args[i].startsWith("-") ; i++) {
+				switch (args[i]) {
+				case "-frames":		frames = Integer.parseInt(args[++i]); break;
+				case "-rate":		rate = Integer.parseInt(args[++i]); break;
+				case "-timeout":	timeout = Double.parseDouble(args[++i]); break;
+				case "-seed":		seed = Long.parseLong(args[++i]); break;
+				case "-input":
+					try (InputStream stream = new FileInputStream(args[++i])) {
+						input = InputLog.read(stream);
+					} catch (IOException e) {
+						System.err.println(args[i] + ": " + e.getMessage());
+						System.exit(2);
+					}
+					break;
+				case "-threads":	threads = Integer.parseInt(args[++i]); break;
+				case "-output":		output = new File(args[++i]); break;
+				case "-size":
+					String[] size = args[++i].split("x");
+					width = Integer.parseInt(size[0]);
+					height = Integer.parseInt(size[1]);
+					break;
+				default:
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			i = args.length;
+		}
+		if (i >= args.length) {
+			System.err.println("usage: java batch.BatchRunner [-frames n] [-size WxH] [-rate fps] [-timeout seconds] [-seed n] " +
+					"[-input run.input] [-threads n] [-output directory] program.pseudo ...");
+			System.exit(2);
+		}
+
+		// Read every program first, so that reading files does not hold up the programs
+		ArrayList <String> names = new ArrayList <String> ();
+		ArrayList <String> texts = new ArrayList <String> ();
+		boolean failed = false;
+		for ( ; i < args.length ; i++) {
+			File file = new File(args[i]);
+			try {
+				texts.add(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+				names.add(file.getName().replaceFirst("\\.pseudo$", ""));
+			} catch (IOException e) {
+				System.err.println(file + ": " + e.getMessage());
+				failed = true;
+			}
+		}
+
+		output.mkdirs();
+		BatchRunner runner = new BatchRunner(frames, width, height, rate, (long) (timeout * 1e9));
+		runner.setSeed(seed);
+		runner.setInput(input);
+		long start = System.nanoTime();
+		List <Result> results;
+		try (GradingEngine engine = new GradingEngine(runner, threads)) {
+			results = engine.run(names, texts);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		for (Result result : results) {
+			write(result, output);
+			System.out.println(result);
+		}
+		System.out.printf("%d programs in %.3f s on %d threads, %.1f programs/s%n", results.size(), seconds, threads, results.size() / seconds);
+		System.exit(failed ? 1 : 0);
+	}
+}
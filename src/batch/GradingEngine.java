@@ -0,0 +1,93 @@
+package batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import batch.BatchRunner.Result;
+import instruction.Program;
+
+/**
+ * Runs many programs at the same time, by default one for each core. Every program is parsed
+ * into its own root block, which has its own variables, timers, control stack, random numbers,
+ * input and console output, and nothing the interpreter keeps in static fields changes once it
+ * is loaded. A program therefore gives exactly the same result as when it runs on its own.
+ * 
+ * The pool only limits how many programs run at once. Each program still runs on a thread of
+ * its own started by the BatchRunner, so a program whose parse never finishes costs that one
+ * thread instead of a thread of the pool.
+ * 
+ * @license MIT
+ */
+public class GradingEngine implements AutoCloseable {
+
+	private BatchRunner runner;
+	private ExecutorService pool;
+
+	/**
+	 * Creates an engine that runs programs with the given runner on one thread per core.
+	 */
+	public GradingEngine(BatchRunner runner) {
+		this(runner, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates an engine that runs at most the given number of programs at once.
+	 */
+	public GradingEngine(BatchRunner runner, int threads) {
+		this.runner = runner;
+		this.pool = Executors.newFixedThreadPool(Math.max(threads, 1), task -> {
+			Thread thread = new Thread(task, "Grading");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts running a program, and returns its result once it is finished.
+	 */
+	public Future <Result> submit(String name, String text) {
+		return pool.submit(() -> runner.run(name, text));
+	}
+
+	/**
+	 * Starts running a program that was already parsed, and returns its result once it is
+	 * finished. The same program can be submitted any number of times, and its runs share it.
+	 */
+	public Future <Result> submit(String name, Program program) {
+		return pool.submit(() -> runner.run(name, program));
+	}
+
+	/**
+	 * Runs every program and returns their results in the same order.
+	 * @param names - the name of each program
+	 * @param texts - the text of each program
+	 */
+	public List <Result> run(List <String> names, List <String> texts) {
+		ArrayList <Future <Result>> futures = new ArrayList <Future <Result>> ();
+		for (int i = 0 ; i < names.size() ; i++)
+			futures.add(submit(names.get(i), texts.get(i)));
+
+		ArrayList <Result> results = new ArrayList <Result> ();
+		try {
+			for (Future <Result> future : futures)
+				results.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while grading", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Stops accepting programs. Programs that are already running are left to finish.
+	 */
+	public void close() {
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,217 @@
+package compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Assembles the bytes of a single class file. Only the parts of the format that the Compiler
+ * needs are supported: a constant pool, implemented interfaces, and methods with a Code attribute.
+ * 
+ * Classes are written with version 49, which the JVM verifies by type inference, so generated
+ * code can branch without having to emit stack map frames.
+ * 
+ * @license MIT
+ */
+class ClassFile {
+
+	private static final int MAGIC = 0xCAFEBABE;
+	private static final int VERSION = 49;
+
+	// Access flags
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	// Constant pool tags
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHOD = 10;
+	private static final int CONSTANT_INTERFACE_METHOD = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	// The constant pool, and the index of every constant that has already been added
+	private ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private DataOutputStream pool = new DataOutputStream(poolBytes);
+	private HashMap <String, Integer> constants = new HashMap <String, Integer> ();
+	private int poolSize = 1;
+
+	private int thisClass;
+	private int superClass;
+	private ArrayList <Integer> interfaces = new ArrayList <Integer> ();
+
+	// The assembled methods
+	private ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+	private DataOutputStream methods = new DataOutputStream(methodBytes);
+	private int methodCount = 0;
+
+	/**
+	 * Starts a class with the given internal name (i.e. "compiler/Compiled"), super class and
+	 * implemented interfaces.
+	 */
+	ClassFile(String name, String superName, String ... interfaceNames) {
+		thisClass = classConstant(name);
+		superClass = classConstant(superName);
+		for (String interfaceName : interfaceNames)
+			interfaces.add(classConstant(interfaceName));
+	}
+
+	/**
+	 * Returns the constant pool index of the given UTF8 string.
+	 */
+	int utf8(String value) {
+		String key = "U" + value;
+		Integer index = constants.get(key);
+		if (index != null)
+			return index;
+		try {
+			pool.writeByte(CONSTANT_UTF8);
+			pool.writeUTF(value);
+		} catch (IOException e) {}
+		return add(key, 1);
+	}
+
+	/**
+	 * Returns the constant pool index of the class with the given internal name.
+	 */
+	int classConstant(String name) {
+		String key = "C" + name;
+		Integer index = constants.get(key);
+		if (index != null)
+			return index;
+		int nameIndex = utf8(name);
+		write(CONSTANT_CLASS, nameIndex);
+		return add(key, 1);
+	}
+
+	/**
+	 * Returns the constant pool index of the given double value.
+	 */
+	int doubleConstant(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		String key = "D" + bits;
+		Integer index = constants.get(key);
+		if (index != null)
+			return index;
+		try {
+			pool.writeByte(CONSTANT_DOUBLE);
+			pool.writeLong(bits);
+		} catch (IOException e) {}
+		
+		// Doubles take up two entries of the constant pool
+		return add(key, 2);
+	}
+
+	/**
+	 * Returns the constant pool index of the given class method.
+	 */
+	int method(String owner, String name, String descriptor) {
+		return member(CONSTANT_METHOD, owner, name, descriptor);
+	}
+
+	/**
+	 * Returns the constant pool index of the given interface method.
+	 */
+	int interfaceMethod(String owner, String name, String descriptor) {
+		return member(CONSTANT_INTERFACE_METHOD, owner, name, descriptor);
+	}
+
+	/**
+	 * Adds a method with the given access flags, name, descriptor and code.
+	 */
+	void addMethod(int access, String name, String descriptor, Code code) {
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		int codeIndex = utf8("Code");
+		byte[] bytes = code.toByteArray();
+		try {
+			methods.writeShort(access);
+			methods.writeShort(nameIndex);
+			methods.writeShort(descriptorIndex);
+			
+			// A single Code attribute with no exception table or nested attributes
+			methods.writeShort(1);
+			methods.writeShort(codeIndex);
+			methods.writeInt(12 + bytes.length);
+			methods.writeShort(code.getMaxStack());
+			methods.writeShort(code.getMaxLocals());
+			methods.writeInt(bytes.length);
+			methods.write(bytes);
+			methods.writeShort(0);
+			methods.writeShort(0);
+		} catch (IOException e) {}
+		methodCount++;
+	}
+
+	/**
+	 * Returns the bytes of the assembled class file.
+	 */
+	byte[] toByteArray() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(0);
+			out.writeShort(VERSION);
+			out.writeShort(poolSize);
+			poolBytes.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(interfaces.size());
+			for (int index : interfaces)
+				out.writeShort(index);
+			out.writeShort(0);
+			out.writeShort(methodCount);
+			methodBytes.writeTo(out);
+			out.writeShort(0);
+		} catch (IOException e) {}
+		return bytes.toByteArray();
+	}
+
+	private int member(int tag, String owner, String name, String descriptor) {
+		String key = tag + owner + "." + name + descriptor;
+		Integer index = constants.get(key);
+		if (index != null)
+			return index;
+		int ownerIndex = classConstant(owner);
+		int nameAndType = nameAndType(name, descriptor);
+		write(tag, ownerIndex, nameAndType);
+		return add(key, 1);
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		String key = "N" + name + descriptor;
+		Integer index = constants.get(key);
+		if (index != null)
+			return index;
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		write(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+		return add(key, 1);
+	}
+
+	/**
+	 * Writes a constant pool entry made of a tag and two byte indices.
+	 */
+	private void write(int tag, int ... indices) {
+		try {
+			pool.writeByte(tag);
+			for (int index : indices)
+				pool.writeShort(index);
+		} catch (IOException e) {}
+	}
+
+	/**
+	 * Records the entry that was just written to the pool and returns its index.
+	 */
+	private int add(String key, int entries) {
+		int index = poolSize;
+		constants.put(key, index);
+		poolSize += entries;
+		return index;
+	}
+}
@@ -0,0 +1,180 @@
+package compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A growable buffer of JVM bytecode for a single method. Tracks the depth of the operand stack
+ * as instructions are emitted, and patches forward jumps once their labels are placed.
+ * 
+ * @license MIT
+ */
+class Code {
+
+	// Opcodes used by the Compiler
+	static final int ICONST_0 = 0x03;
+	static final int DCONST_0 = 0x0e;
+	static final int DCONST_1 = 0x0f;
+	static final int BIPUSH = 0x10;
+	static final int SIPUSH = 0x11;
+	static final int LDC2_W = 0x14;
+	static final int ALOAD = 0x19;
+	static final int DALOAD = 0x31;
+	static final int AALOAD = 0x32;
+	static final int ASTORE = 0x3a;
+	static final int DADD = 0x63;
+	static final int DSUB = 0x67;
+	static final int DMUL = 0x6b;
+	static final int DDIV = 0x6f;
+	static final int DCMPL = 0x97;
+	static final int DCMPG = 0x98;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9a;
+	static final int IFLT = 0x9b;
+	static final int IFGE = 0x9c;
+	static final int IFGT = 0x9d;
+	static final int IFLE = 0x9e;
+	static final int GOTO = 0xa7;
+	static final int DRETURN = 0xaf;
+	static final int RETURN = 0xb1;
+	static final int INVOKEVIRTUAL = 0xb6;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKESTATIC = 0xb8;
+
+	// Branch offsets are signed 16 bit numbers
+	static final int MAX_LENGTH = Short.MAX_VALUE;
+
+	/**
+	 * A position in the code that can be jumped to before it has been placed.
+	 */
+	static class Label {
+		private int position = -1;
+		private ArrayList <Integer> jumps = new ArrayList <Integer> ();
+	}
+
+	private byte[] bytes = new byte[64];
+	private int length = 0;
+	
+	// Every label that has been jumped to
+	private ArrayList <Label> labels = new ArrayList <Label> ();
+
+	// Current and maximum depth of the operand stack, in slots
+	private int stack = 0;
+	private int maxStack = 0;
+	private int maxLocals;
+
+	/**
+	 * Creates an empty method body that uses the given number of local variable slots.
+	 */
+	Code(int maxLocals) {
+		this.maxLocals = maxLocals;
+	}
+
+	/**
+	 * Emits an instruction with no operands that changes the stack depth by the given amount.
+	 */
+	void op(int opcode, int stackChange) {
+		write(opcode);
+		change(stackChange);
+	}
+
+	/**
+	 * Emits an instruction with a single byte operand, such as aload.
+	 */
+	void op1(int opcode, int operand, int stackChange) {
+		write(opcode);
+		write(operand);
+		change(stackChange);
+	}
+
+	/**
+	 * Emits an instruction with a two byte operand, such as a constant pool index.
+	 */
+	void op2(int opcode, int operand, int stackChange) {
+		write(opcode);
+		write(operand >> 8);
+		write(operand);
+		change(stackChange);
+	}
+
+	/**
+	 * Pushes the given int on to the stack.
+	 */
+	void pushInt(int value) {
+		if (value >= -1 && value <= 5)
+			op(ICONST_0 + value, 1);
+		else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+			op1(BIPUSH, value, 1);
+		else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+			op2(SIPUSH, value, 1);
+		else
+			throw new IllegalStateException("Constant too large: " + value);
+	}
+
+	/**
+	 * Emits a conditional or unconditional jump to the given label.
+	 */
+	void jump(int opcode, Label label, int stackChange) {
+		if (label.jumps.isEmpty())
+			labels.add(label);
+		label.jumps.add(length);
+		op2(opcode, 0, stackChange);
+	}
+
+	/**
+	 * Places the given label at the current position.
+	 */
+	void mark(Label label) {
+		label.position = length;
+	}
+
+	/**
+	 * Sets the stack depth, used after an unconditional jump where the next instruction is
+	 * only reached by jumping to it.
+	 */
+	void setStack(int stack) {
+		this.stack = stack;
+	}
+
+	int getStack() {
+		return stack;
+	}
+
+	int getMaxStack() {
+		return maxStack;
+	}
+
+	int getMaxLocals() {
+		return maxLocals;
+	}
+
+	/**
+	 * Returns the bytecode with every jump offset filled in.
+	 */
+	byte[] toByteArray() {
+		if (length > MAX_LENGTH)
+			throw new IllegalStateException("Method too large: " + length + " bytes");
+		
+		for (Label label : labels) {
+			if (label.position < 0)
+				throw new IllegalStateException("Jump to a label that was never placed");
+			for (int jump : label.jumps) {
+				int offset = label.position - jump;
+				bytes[jump + 1] = (byte) (offset >> 8);
+				bytes[jump + 2] = (byte) offset;
+			}
+		}
+		return Arrays.copyOf(bytes, length);
+	}
+
+	private void change(int stackChange) {
+		stack += stackChange;
+		maxStack = Math.max(stack, maxStack);
+	}
+
+	private void write(int b) {
+		if (length == bytes.length)
+			bytes = Arrays.copyOf(bytes, length * 2);
+		bytes[length++] = (byte) b;
+	}
+}
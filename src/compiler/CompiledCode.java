@@ -0,0 +1,22 @@
+package compiler;
+
+import expression.Expression;
+import instruction.Block;
+import instruction.SymbolTable;
+
+/**
+ * Implemented by every class generated by the Compiler.
+ * 
+ * @license MIT
+ */
+public interface CompiledCode {
+	
+	/**
+	 * Runs the compiled code.
+	 * @param block - the root block the code is running in
+	 * @param table - the symbol table that the code was compiled against
+	 * @param fallback - the expressions that could not be compiled, evaluated by the interpreter
+	 * @return the value of a compiled expression, or 0 for compiled instructions
+	 */
+	public double run(Block block, SymbolTable table, Expression[] fallback);
+}
@@ -0,0 +1,64 @@
+package compiler;
+
+import expression.Expression;
+import expression.Value;
+import instruction.Block;
+import instruction.SymbolTable;
+
+/**
+ * An expression whose evaluation has been compiled to JVM bytecode. Runs against the symbol
+ * table it was compiled for or any copy of it, and falls back to evaluating the original
+ * expression against any other table.
+ * 
+ * @license MIT
+ */
+public class CompiledExpression extends Expression {
+	
+	private Expression source;		// The original expression
+	private CompiledCode code;		// The generated code
+	private SymbolTable table;		// The symbol table whose slots the code refers to
+	private Expression[] fallback;	// Subexpressions evaluated by the interpreter
+	
+	CompiledExpression(Expression source, CompiledCode code, SymbolTable table, Expression[] fallback) {
+		this.source = source;
+		this.code = code;
+		this.table = table;
+		this.fallback = fallback;
+	}
+	
+	/**
+	 * Runs the compiled code in the context of the given block.
+	 */
+	public double evaluate(Block block) {
+		if (block != null && block.getSymbolTable().hasSlotsOf(table))
+			return code.run(block, block.getSymbolTable(), fallback);
+		return source.evaluate(block);
+	}
+	
+	/**
+	 * Compiled code only computes numbers, so strings and lists are read from the original
+	 * expression.
+	 */
+	public Value evaluateValue(Block block) {
+		return source.evaluateValue(block);
+	}
+	
+	/**
+	 * Returns the expression that was compiled.
+	 */
+	public Expression getSource() {
+		return source;
+	}
+	
+	public int getPrecedence() {
+		return source.getPrecedence();
+	}
+	
+	public boolean equals(Expression other) {
+		return source.equals(other);
+	}
+	
+	public String toString() {
+		return source.toString();
+	}
+}
@@ -0,0 +1,71 @@
+package compiler;
+
+import java.awt.Graphics;
+import java.util.ArrayList;
+
+import expression.Expression;
+import instruction.Block;
+import instruction.Instruction;
+import instruction.SymbolTable;
+
+/**
+ * A sequence of numeric assignments and if blocks compiled into one method. Replaces the
+ * original instructions in a nested block, and runs them one by one when executed against a
+ * symbol table that is neither the one it was compiled for nor a copy of it.
+ * 
+ * @license MIT
+ */
+public class CompiledRun extends Instruction {
+	
+	private ArrayList <Instruction> source;	// The original instructions
+	private CompiledCode code;				// The generated code
+	private SymbolTable table;				// The symbol table whose slots the code refers to
+	private Expression[] fallback;			// Subexpressions evaluated by the interpreter
+	
+	CompiledRun(ArrayList <Instruction> source, CompiledCode code, SymbolTable table, Expression[] fallback) {
+		this.source = source;
+		this.code = code;
+		this.table = table;
+		this.fallback = fallback;
+	}
+	
+	/**
+	 * Runs every instruction of this sequence.
+	 */
+	public void execute(Graphics graphics, Block block) {
+		if (block.getSymbolTable().hasSlotsOf(table))
+			code.run(block, block.getSymbolTable(), fallback);
+		else for (Instruction instruction : source)
+			if (instruction.shouldExecute(block))
+				instruction.execute(graphics, block);
+	}
+	
+	/**
+	 * Returns the instructions that were compiled.
+	 */
+	public ArrayList <Instruction> getSource() {
+		return source;
+	}
+	
+	/**
+	 * Returns the String representation of the compiled instructions.
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Instruction instruction : source) {
+			if (builder.length() > 0)
+				builder.append(" ");
+			builder.append(instruction.toString());
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Returns true if the other instruction is a compiled run of equivalent instructions.
+	 */
+	public boolean equals(Instruction instruction, Block block) {
+		if (instruction instanceof CompiledRun) 
+			return source.equals(((CompiledRun) instruction).source);
+		return false;
+	}
+}
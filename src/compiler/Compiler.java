@@ -0,0 +1,437 @@
+package compiler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+
+import expression.DistanceTerminal;
+import expression.Expression;
+import expression.Operator;
+import expression.SymbolTerminal;
+import expression.Terminal;
+import instruction.Assign;
+import instruction.Block;
+import instruction.ElseIfBlock;
+import instruction.IfBlock;
+import instruction.Increment;
+import instruction.Instruction;
+import instruction.Rewriter;
+import instruction.SymbolTable;
+
+/**
+ * The Compiler turns the arithmetic of a parsed program into JVM bytecode. Every expression
+ * with an operator is compiled into a hidden class that reads variables straight from the slots
+ * of the symbol table, and every run of numeric assignments and if blocks inside a loop or
+ * branch is compiled into a single method.
+ * 
+ * Anything the compiler does not understand (random numbers, keys, list elements, strings) is
+ * left to the tree-walking interpreter, either by leaving the instruction alone or by calling
+ * back into the original subexpression from the generated code.
+ * 
+ * @license MIT
+ */
+public class Compiler implements Rewriter {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	// Internal names and descriptors referred to by generated code
+	private static final String CLASS_NAME = "compiler/Compiled";
+	private static final String OBJECT = "java/lang/Object";
+	private static final String MATH = "java/lang/Math";
+	private static final String CODE = "compiler/CompiledCode";
+	private static final String BLOCK = "instruction/Block";
+	private static final String TABLE = "instruction/SymbolTable";
+	private static final String EXPRESSION = "expression/Expression";
+	private static final String RUN = "(L" + BLOCK + ";L" + TABLE + ";[L" + EXPRESSION + ";)D";
+
+	// Local variables of the generated run method
+	private static final int LOCAL_BLOCK = 1;
+	private static final int LOCAL_TABLE = 2;
+	private static final int LOCAL_FALLBACK = 3;
+	private static final int LOCAL_VALUES = 4;
+	private static final int LOCALS = 5;
+
+	// The symbol table that the compiled code reads and writes
+	private SymbolTable table;
+
+	// Counts of what has been compiled
+	private int expressions = 0;
+	private int runs = 0;
+
+	// The class currently being generated
+	private ClassFile file;
+	private Code code;
+	private ArrayList <Expression> fallback;
+
+	/**
+	 * Creates a compiler for programs whose variables are stored in the given symbol table.
+	 */
+	public Compiler(SymbolTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Compiles every expression of the given program, and every run of numeric assignments and
+	 * if blocks in its nested blocks.
+	 * @param block - the root block of the program
+	 */
+	public void compile(Block block) {
+		block.rewrite(this);
+	}
+
+	/**
+	 * Returns the number of expressions that have been compiled.
+	 */
+	public int getCompiledExpressions() {
+		return expressions;
+	}
+
+	/**
+	 * Returns the number of runs of instructions that have been compiled.
+	 */
+	public int getCompiledRuns() {
+		return runs;
+	}
+
+	/**
+	 * Returns a compiled version of the given expression, or the expression itself if it is
+	 * not worth compiling or could not be compiled.
+	 */
+	public Expression rewrite(Expression expression) {
+		if (expression.getClass() != Expression.class && expression.getClass() != DistanceTerminal.class)
+			return expression;
+
+		try {
+			begin();
+			expression(expression);
+			CompiledCode compiled = finish();
+			expressions++;
+			return new CompiledExpression(expression, compiled, table, fallback.toArray(new Expression[fallback.size()]));
+		}
+		catch (IllegalStateException e) {
+			return expression;
+		}
+	}
+
+	/**
+	 * Replaces every run of numeric assignments and if blocks in the given block with a compiled
+	 * run. The root block is left alone, since it only performs one instruction per frame.
+	 */
+	public void rewrite(Block block) {
+		if (block.getIndentLevel() == 0)
+			return;
+
+		int start = 0;
+		while (start < block.length()) {
+			// Find the end of the run of compilable instructions starting here
+			int end = start;
+			while (end < block.length() && isCompilable(block, end))
+				end++;
+
+			if (end - start > 1 || (end > start && block.get(start) instanceof IfBlock)) {
+				ArrayList <Instruction> instructions = new ArrayList <Instruction> ();
+				for (int i = start ; i < end ; i++)
+					instructions.add(block.get(i));
+
+				try {
+					Instruction run = compile(instructions);
+					run.setLine(instructions.get(0).getLine());
+					block.replace(start, end, run);
+					runs++;
+					end = start + 1;
+				}
+				catch (IllegalStateException e) {}
+			}
+			start = Math.max(end, start + 1);
+		}
+	}
+
+	/**
+	 * Returns true if the instruction at the given position of a block assigns a single number
+	 * to a variable, or is an if block with only such instructions.
+	 */
+	private boolean isCompilable(Block block, int index) {
+		Instruction instruction = block.get(index);
+		if (instruction instanceof Assign)
+			return ((Assign) instruction).getNumber() != null;
+		if (instruction instanceof Increment || instruction instanceof CompiledRun)
+			return true;
+
+		// Else blocks look at the if block before them, so it must stay an IfBlock
+		if (instruction.getClass() == IfBlock.class) {
+			if (index + 1 < block.length() && block.get(index + 1) instanceof ElseIfBlock)
+				return false;
+			Block body = ((IfBlock) instruction).getBlock();
+			for (int i = 0 ; i < body.length() ; i++)
+				if (! isCompilable(body, i))
+					return false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Compiles a run of instructions into one method.
+	 */
+	private Instruction compile(ArrayList <Instruction> instructions) {
+		begin();
+		for (Instruction instruction : instructions)
+			statement(instruction);
+		code.op(Code.DCONST_0, 2);
+		CompiledCode compiled = finish();
+		return new CompiledRun(instructions, compiled, table, fallback.toArray(new Expression[fallback.size()]));
+	}
+
+	/**
+	 * Generates code for an instruction accepted by isCompilable.
+	 */
+	private void statement(Instruction instruction) {
+		if (instruction instanceof Assign) {
+			Assign assign = (Assign) instruction;
+			code.op1(Code.ALOAD, LOCAL_TABLE, 1);
+			code.pushInt(assign.getSymbol().resolve(table));
+			expression(assign.getNumber());
+			code.op2(Code.INVOKEVIRTUAL, file.method(TABLE, "set", "(ID)V"), -4);
+		}
+		else if (instruction instanceof Increment) {
+			Increment increment = (Increment) instruction;
+			code.op1(Code.ALOAD, LOCAL_TABLE, 1);
+			code.pushInt(increment.getSymbol().resolve(table));
+			expression(increment.getSymbol());
+			expression(increment.getChange());
+			code.op(Code.DADD, -2);
+			code.op2(Code.INVOKEVIRTUAL, file.method(TABLE, "set", "(ID)V"), -4);
+		}
+		else if (instruction instanceof CompiledRun) {
+			for (Instruction source : ((CompiledRun) instruction).getSource())
+				statement(source);
+		}
+		else {
+			// The body of an if block runs when its condition is at least 1
+			IfBlock ifBlock = (IfBlock) instruction;
+			Code.Label skip = new Code.Label();
+			compareToOne(ifBlock.getExpression());
+			code.jump(Code.IFLT, skip, -1);
+			Block body = ifBlock.getBlock();
+			for (int i = 0 ; i < body.length() ; i++)
+				statement(body.get(i));
+			code.mark(skip);
+		}
+	}
+
+	/**
+	 * Starts generating a new class with an empty run method.
+	 */
+	private void begin() {
+		file = new ClassFile(CLASS_NAME, OBJECT, CODE);
+		fallback = new ArrayList <Expression> ();
+
+		// The default constructor
+		Code constructor = new Code(1);
+		constructor.op1(Code.ALOAD, 0, 1);
+		constructor.op2(Code.INVOKESPECIAL, file.method(OBJECT, "<init>", "()V"), -1);
+		constructor.op(Code.RETURN, 0);
+		file.addMethod(ClassFile.ACC_PUBLIC, "<init>", "()V", constructor);
+
+		// The run method starts by loading the slot values into a local variable
+		code = new Code(LOCALS);
+		loadValues();
+	}
+
+	/**
+	 * Returns the double on top of the stack, and defines the generated class.
+	 */
+	private CompiledCode finish() {
+		code.op(Code.DRETURN, -2);
+		file.addMethod(ClassFile.ACC_PUBLIC, "run", RUN, code);
+		byte[] bytes = file.toByteArray();
+		try {
+			MethodHandles.Lookup lookup = LOOKUP.defineHiddenClass(bytes, true);
+			return (CompiledCode) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("Could not define compiled code", e);
+		}
+	}
+
+	/**
+	 * Generates code that leaves the value of the given expression on the stack.
+	 */
+	private void expression(Expression expression) {
+		if (expression instanceof CompiledExpression)
+			expression = ((CompiledExpression) expression).getSource();
+
+		if (expression.getClass() == Terminal.class)
+			constant(((Terminal) expression).getValue());
+		else if (expression.getClass() == SymbolTerminal.class && ((SymbolTerminal) expression).getIndex() == null) {
+			code.op1(Code.ALOAD, LOCAL_VALUES, 1);
+			code.pushInt(((SymbolTerminal) expression).resolve(table));
+			code.op(Code.DALOAD, 0);
+		}
+		else if (expression.getClass() == DistanceTerminal.class)
+			distance((DistanceTerminal) expression);
+		else if (expression.getClass() == Expression.class)
+			operation(expression);
+		else
+			fallback(expression);
+	}
+
+	/**
+	 * Generates code for an expression node, following Expression.evaluate.
+	 */
+	private void operation(Expression expression) {
+		Expression left = expression.getLeft();
+		Operator operator = expression.getOperator();
+		Expression right = expression.getRight();
+
+		if (left == null) {
+			constant(0);
+			return;
+		}
+		if (operator == null || (operator != Operator.Not && right == null)) {
+			expression(left);
+			return;
+		}
+
+		switch (operator) {
+		// Basic math operators
+		case Add:					arithmetic(left, right, Code.DADD); break;
+		case Subtract:				arithmetic(left, right, Code.DSUB); break;
+		case Multiply:				arithmetic(left, right, Code.DMUL); break;
+		case Divide:				arithmetic(left, right, Code.DDIV); break;
+
+		// Comparisons jump to false when the comparison fails. NaN compares as less with DCMPL
+		// and as greater with DCMPG, so every comparison with NaN is false except not equals.
+		case Equal:					compare(left, right, Code.DCMPL, Code.IFNE); break;
+		case NotEqual:				compare(left, right, Code.DCMPL, Code.IFEQ); break;
+		case GreaterThan:			compare(left, right, Code.DCMPL, Code.IFLE); break;
+		case GreaterThanOrEqual:	compare(left, right, Code.DCMPL, Code.IFLT); break;
+		case LessThan:				compare(left, right, Code.DCMPG, Code.IFGE); break;
+		case LessThanOrEqual:		compare(left, right, Code.DCMPG, Code.IFGT); break;
+
+		// Logic operators short circuit like the interpreter does
+		case And: {
+			Code.Label no = new Code.Label(), end = new Code.Label();
+			compareToOne(left);
+			code.jump(Code.IFNE, no, -1);
+			compareToOne(right);
+			code.jump(Code.IFNE, no, -1);
+			result(no, end);
+			break;
+		}
+		case Or: {
+			Code.Label yes = new Code.Label(), no = new Code.Label(), end = new Code.Label();
+			compareToOne(left);
+			code.jump(Code.IFEQ, yes, -1);
+			compareToOne(right);
+			code.jump(Code.IFNE, no, -1);
+			code.mark(yes);
+			result(no, end);
+			break;
+		}
+		case Not: {
+			Code.Label no = new Code.Label(), end = new Code.Label();
+			expression(left);
+			constant(0);
+			code.op(Code.DCMPL, -3);
+			code.jump(Code.IFNE, no, -1);
+			result(no, end);
+			break;
+		}
+		default:
+			constant(0);
+		}
+	}
+
+	private void arithmetic(Expression left, Expression right, int opcode) {
+		expression(left);
+		expression(right);
+		code.op(opcode, -2);
+	}
+
+	private void compare(Expression left, Expression right, int comparison, int jumpIfFalse) {
+		Code.Label no = new Code.Label(), end = new Code.Label();
+		expression(left);
+		expression(right);
+		code.op(comparison, -3);
+		code.jump(jumpIfFalse, no, -1);
+		result(no, end);
+	}
+
+	/**
+	 * Leaves the comparison of the given expression with 1 on the stack, which is -1 for NaN.
+	 */
+	private void compareToOne(Expression expression) {
+		expression(expression);
+		constant(1);
+		code.op(Code.DCMPL, -3);
+	}
+
+	/**
+	 * Pushes 1 if execution reaches this point, or 0 if it jumped to the given label.
+	 */
+	private void result(Code.Label no, Code.Label end) {
+		constant(1);
+		code.jump(Code.GOTO, end, 0);
+		code.mark(no);
+		code.setStack(code.getStack() - 2);
+		constant(0);
+		code.mark(end);
+	}
+
+	/**
+	 * Generates the same calls as DistanceTerminal.evaluate.
+	 */
+	private void distance(DistanceTerminal distance) {
+		Expression[] points = distance.getCoordinates();
+		int pow = file.method(MATH, "pow", "(DD)D");
+		expression(points[0]);
+		expression(points[2]);
+		code.op(Code.DSUB, -2);
+		constant(2);
+		code.op2(Code.INVOKESTATIC, pow, -2);
+		expression(points[1]);
+		expression(points[3]);
+		code.op(Code.DSUB, -2);
+		constant(2);
+		code.op2(Code.INVOKESTATIC, pow, -2);
+		code.op(Code.DADD, -2);
+		code.op2(Code.INVOKESTATIC, file.method(MATH, "sqrt", "(D)D"), 0);
+	}
+
+	/**
+	 * Generates a call back into the interpreter to evaluate the given expression.
+	 */
+	private void fallback(Expression expression) {
+		code.op1(Code.ALOAD, LOCAL_FALLBACK, 1);
+		code.pushInt(fallback.size());
+		code.op(Code.AALOAD, -1);
+		code.op1(Code.ALOAD, LOCAL_BLOCK, 1);
+		code.op2(Code.INVOKEVIRTUAL, file.method(EXPRESSION, "evaluate", "(L" + BLOCK + ";)D"), 0);
+		fallback.add(expression);
+		
+		// The interpreter may have resolved a new variable and grown the symbol table
+		loadValues();
+	}
+
+	/**
+	 * Stores the current array of slot values in a local variable.
+	 */
+	private void loadValues() {
+		code.op1(Code.ALOAD, LOCAL_TABLE, 1);
+		code.op2(Code.INVOKEVIRTUAL, file.method(TABLE, "values", "()[D"), 0);
+		code.op1(Code.ASTORE, LOCAL_VALUES, -1);
+	}
+
+	/**
+	 * Pushes the given double constant.
+	 */
+	private void constant(double value) {
+		if (Double.doubleToRawLongBits(value) == 0)
+			code.op(Code.DCONST_0, 2);
+		else if (value == 1)
+			code.op(Code.DCONST_1, 2);
+		else
+			code.op2(Code.LDC2_W, file.doubleConstant(value), 2);
+	}
+}
@@ -15,9 +15,23 @@ public class DistanceTerminal extends Terminal {
 		this.y2 = y2;
 	}
 	
+	/**
+	 * Returns the four coordinate expressions, in the order x1, y1, x2, y2.
+	 */
+	public Expression[] getCoordinates() {
+		return new Expression[] { x1, y1, x2, y2 };
+	}
+	
 	public double evaluate(Block block) {
 		return Math.sqrt(
 					Math.pow(x1.evaluate(block) - x2.evaluate(block), 2) + 
 					Math.pow(y1.evaluate(block) - y2.evaluate(block), 2));
 	}
+	
+	/**
+	 * Returns the String representation of this terminal.
+	 */
+	public String toString() {
+		return "distance(" + x1 + ", " + y1 + ", " + x2 + ", " + y2 + ")";
+	}
 }
@@ -50,6 +50,27 @@ public class Expression {
 		this.right = right;
 	}
 	
+	/**
+	 * Returns the left subexpression, or the single value of this expression.
+	 */
+	public Expression getLeft() {
+		return left;
+	}
+	
+	/**
+	 * Returns the operator of this expression, or null if there is none.
+	 */
+	public Operator getOperator() {
+		return operator;
+	}
+	
+	/**
+	 * Returns the right subexpression, or null if this is not a binary expression.
+	 */
+	public Expression getRight() {
+		return right;
+	}
+	
 	/**
 	 * Returns the precedence of this expression.
 	 * @return the precedence of the operator of this expression if there is one.
@@ -103,6 +124,20 @@ public class Expression {
 		return 0;
 	}
 	
+	/**
+	 * Evaluates this expression to the string or list it refers to in the context of the given
+	 * Block. Numeric expressions return null, and are read with evaluate instead, so that numbers
+	 * are never wrapped in an object.
+	 * @param block - the block evaluating this expression
+	 * @return the string or list value of this expression, or null if it is a number
+	 */
+	public Value evaluateValue(Block block) {
+		// Only a single value expression can refer to a string or list
+		if (left != null && operator == null)
+			return left.evaluateValue(block);
+		return null;
+	}
+	
 	/**
 	 * Returns the String representation of this expression.
 	 */
@@ -1,12 +1,18 @@
 package expression;
 
 import instruction.Block;
+import instruction.SymbolTable;
 
 public class KeyTerminal extends Terminal {
 	
 	private String key;
 	private boolean pressed;
 	
+	// The symbol table this key was resolved against, and the slot of its "pressed" variable
+	// in that table and every copy of it
+	private SymbolTable table;
+	private int slot = -1;
+	
 	public KeyTerminal(String key) {
 		this.key = key;
 		pressed = true;
@@ -22,14 +28,33 @@ public class KeyTerminal extends Terminal {
 	 * evaluates to its double value.
 	 */
 	public double evaluate(Block block) {
+		SymbolTable table = block.getSymbolTable();
+		int slot = resolve(table);
+		
 		// If the pressed flag is true, get the symbol for whether the key is pressed
 		if (pressed)
-			return block.get(key + " pressed",0);
+			return table.get(slot, 0);
 		
 		// Otherwise negate the symbol
 		else
-			return (block.hasSymbol(key + " pressed") && 
-					block.get(key + " pressed",0) == 0) ? 1 : 0;
+			return (table.isDefined(slot) && table.get(slot, 0) == 0) ? 1 : 0;
 	}
 	
+	/**
+	 * Returns the slot of the variable that holds whether this key is pressed, resolving it once
+	 * for a symbol table and every copy of it.
+	 */
+	public int resolve(SymbolTable table) {
+		int slot = this.slot;
+		if (table.shares(this.table, slot))
+			return slot;
+		
+		slot = table.resolve(key + " pressed");
+		SymbolTable owner = table.getOwner(slot);
+		if (owner != null) {
+			this.slot = slot;
+			this.table = owner;
+		}
+		return slot;
+	}
 }
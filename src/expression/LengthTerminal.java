@@ -0,0 +1,34 @@
+package expression;
+
+import instruction.Block;
+
+/**
+ * Evaluates to the number of elements in a list, or the number of characters in a string.
+ * 
+ * @license MIT
+ */
+public class LengthTerminal extends Terminal {
+	
+	// The list or string being measured
+	private SymbolTerminal symbol;
+	
+	public LengthTerminal(SymbolTerminal symbol) {
+		this.symbol = symbol;
+	}
+	
+	/**
+	 * Evaluates the length of the list in the context of the given block.
+	 */
+	public double evaluate(Block block) {
+		if (block != null)
+			return block.length(symbol);
+		else return 0;
+	}
+	
+	/**
+	 * Returns the String representation of this terminal.
+	 */
+	public String toString() {
+		return symbol.toString() + ".length";
+	}
+}
@@ -0,0 +1,133 @@
+package expression;
+
+import java.util.Arrays;
+
+/**
+ * A ListValue is a growable list of numbers backed by a primitive array. Reading, writing,
+ * appending and removing the last element take constant time.
+ * 
+ * @license MIT
+ */
+public class ListValue implements Value {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	// The elements of the list, and the number of elements in use
+	private double[] elements;
+	private int length;
+
+	/**
+	 * Constructs an empty list.
+	 */
+	public ListValue() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty list with room for the given number of elements.
+	 * @param capacity - the number of elements that can be added before the list grows
+	 */
+	public ListValue(int capacity) {
+		elements = new double[Math.max(capacity, 1)];
+		length = 0;
+	}
+
+	/**
+	 * Constructs a list containing the given elements.
+	 * @param elements - the initial elements of the list
+	 */
+	public ListValue(double ... elements) {
+		this.elements = Arrays.copyOf(elements, Math.max(elements.length, 1));
+		this.length = elements.length;
+	}
+
+	/**
+	 * Constructs a copy of the given list.
+	 * @param list - the list whose elements are copied
+	 */
+	public ListValue(ListValue list) {
+		this.elements = list.elements.clone();
+		this.length = list.length;
+	}
+
+	/**
+	 * Returns the number of elements in this list.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Returns the element at the given index. Indices outside of the list refer to the first
+	 * element, and an empty list always returns 0.
+	 */
+	public double get(int index) {
+		if (index < 0 || index >= length)
+			index = 0;
+		return (length > 0) ? elements[index] : 0;
+	}
+
+	/**
+	 * Sets the element at the given index. Does nothing if the index is outside of the list.
+	 * @return true if an element was set
+	 */
+	public boolean set(int index, double value) {
+		if (index < 0 || index >= length)
+			return false;
+		elements[index] = value;
+		return true;
+	}
+
+	/**
+	 * Adds the given value to the end of this list.
+	 */
+	public void append(double value) {
+		if (length == elements.length)
+			elements = Arrays.copyOf(elements, length * 2);
+		elements[length++] = value;
+	}
+
+	/**
+	 * Removes the element at the given index, shifting later elements down by one. Does nothing
+	 * if the index is outside of the list.
+	 * @return true if an element was removed
+	 */
+	public boolean remove(int index) {
+		if (index < 0 || index >= length)
+			return false;
+		System.arraycopy(elements, index + 1, elements, index, length - index - 1);
+		length--;
+		return true;
+	}
+
+	/**
+	 * Removes the last element of this list.
+	 * @return true if an element was removed
+	 */
+	public boolean removeLast() {
+		if (length == 0)
+			return false;
+		length--;
+		return true;
+	}
+
+	/**
+	 * Returns a copy of the elements of this list.
+	 */
+	public double[] toArray() {
+		return Arrays.copyOf(elements, length);
+	}
+
+	/**
+	 * Returns the elements of this list separated by commas.
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0 ; i < length ; i++) {
+			if (i > 0)
+				builder.append(", ");
+			builder.append(elements[i]);
+		}
+		return builder.toString();
+	}
+}
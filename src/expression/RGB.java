@@ -6,8 +6,7 @@ import java.util.HashMap;
 public class RGB {
 	
 	// Stores a Trie to quickly map String colors to their Color object.
-	private static HashMap <String, Color> color = new HashMap <String, Color> ();
-	private static boolean initialized = false;
+	private static final HashMap <String, Color> color = new HashMap <String, Color> ();
 	
 	/**
 	 * Adds a single color to the color trie. 
@@ -45,13 +44,10 @@ public class RGB {
 	}
 	
 	/**
-	 * Called once on frame load to initialize all RGB colors. 
+	 * Adds all RGB colors when the class is loaded. The JVM does this exactly once, even if
+	 * several threads parse programs at the same time, and the colors are only read afterwards.
 	 */
-	public static void initialize() {
-		// Prevent duplicate initialization.
-		if (initialized) return;
-		initialized = true;
-		
+	static {
 		// Add all colors.
 		addColor("alice blue", 240, 248, 255);
 		addColor("antique white", 250, 235, 215);
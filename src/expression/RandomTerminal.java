@@ -36,7 +36,7 @@ public class RandomTerminal extends Terminal {
 		}
 		
 		// Return the random value
-		return minValue + Math.random() * (1 + maxValue - minValue);
+		return minValue + block.getRandom().nextDouble() * (1 + maxValue - minValue);
 	}
 	
 }
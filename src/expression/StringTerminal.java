@@ -4,10 +4,12 @@ import instruction.Block;
 
 public class StringTerminal extends Terminal {
 	private String value;
+	private StringValue stringValue;
 	
 	public StringTerminal(String value) {
 		// Save the value of this terminal
 		this.value = value;
+		this.stringValue = new StringValue(value);
 	}
 	
 	
@@ -15,6 +17,14 @@ public class StringTerminal extends Terminal {
 		return value;
 	}
 	
+	/**
+	 * Returns the characters of this string. The value is shared by every evaluation, so it
+	 * must be copied before it is changed.
+	 */
+	public Value evaluateValue(Block block) {
+		return stringValue;
+	}
+	
 	public String evaluateString(Block block) {
 		if (value.indexOf('$') < 0)
 			return value;
@@ -0,0 +1,80 @@
+package expression;
+
+import java.util.Arrays;
+
+/**
+ * A StringValue stores the characters of a string variable in a growable char array. 
+ * Characters can be read by index in constant time, and the String form is only built 
+ * when it is first needed after a change.
+ * 
+ * @license MIT
+ */
+public class StringValue implements Value, CharSequence {
+
+	// The characters of the string, and the number of characters in use
+	private char[] characters;
+	private int length;
+
+	// Caches the String form of this value until the characters change
+	private String string;
+
+	/**
+	 * Constructs a StringValue holding the given text.
+	 * @param text - the initial characters
+	 */
+	public StringValue(String text) {
+		characters = text.toCharArray();
+		length = characters.length;
+		string = text;
+	}
+
+	/**
+	 * Returns the number of characters in this string.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Returns the character at the given index.
+	 */
+	public char charAt(int index) {
+		return characters[index];
+	}
+
+	/**
+	 * Returns the character at the given index as a number. Indices outside of the string refer
+	 * to the first character, and an empty string always returns 0.
+	 */
+	public double get(int index) {
+		if (index < 0 || index >= length)
+			index = 0;
+		return (length > 0) ? characters[index] : 0;
+	}
+
+	/**
+	 * Adds a character to the end of this string.
+	 */
+	public void append(char c) {
+		if (length == characters.length)
+			characters = Arrays.copyOf(characters, Math.max(length * 2, 8));
+		characters[length++] = c;
+		string = null;
+	}
+
+	/**
+	 * Returns the characters between the given indices.
+	 */
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+
+	/**
+	 * Returns the String form of this value.
+	 */
+	public String toString() {
+		if (string == null)
+			string = new String(characters, 0, length);
+		return string;
+	}
+}
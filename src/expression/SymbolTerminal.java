@@ -1,6 +1,7 @@
 package expression;
 
 import instruction.Block;
+import instruction.SymbolTable;
 
 /**
  * A Symbol is a type of Expression object that stores a symbolic representation of 
@@ -16,6 +17,11 @@ public class SymbolTerminal extends Terminal {
 	private String symbol;
 	private Expression index;
 	
+	// The symbol table this symbol was resolved against, and its slot in that table and in
+	// every copy of it
+	private SymbolTable table;
+	private int slot = -1;
+	
 	/**
 	 * Creates a Symbol object with the given name.
 	 * @param symbol
@@ -35,14 +41,60 @@ public class SymbolTerminal extends Terminal {
 	}
 	
 	/**
-	 * Evaluates the value of this symbol in the context of the given block.
+	 * Evaluates the value of this symbol in the context of the given block. The first evaluation
+	 * against a symbol table resolves the slot of this symbol, which stays the same for every
+	 * copy of that table.
 	 */
 	public double evaluate(Block block) {
-		// If a block object is given, return the value of this symbol in 
-		// the block object's symbol table.
-		if (block != null)
-			return block.get(this,index);
-		else return 0;
+		if (block == null)
+			return 0;
+		
+		SymbolTable table = block.getSymbolTable();
+		int slot = resolve(table);
+		
+		// The numeric value of every slot is what an unindexed read returns, whatever its type
+		if (index == null)
+			return table.get(slot);
+		return table.get(slot, (int) index.evaluate(block));
+	}
+	
+	/**
+	 * Returns the list or string assigned to this symbol, or null if it holds a number or is
+	 * read at an index.
+	 */
+	public Value evaluateValue(Block block) {
+		if (block == null || index != null)
+			return null;
+		SymbolTable table = block.getSymbolTable();
+		return table.getValue(resolve(table));
+	}
+	
+	/**
+	 * Returns the slot of this symbol in the given symbol table. The slot is resolved by name
+	 * the first time, and remembered for every later lookup in the same table or a copy of it.
+	 * A variable that only exists in one copy is looked up by name every time.
+	 * @param table - the symbol table holding this symbol's value
+	 * @return the slot of this symbol
+	 */
+	public int resolve(SymbolTable table) {
+		int slot = this.slot;
+		if (table.shares(this.table, slot))
+			return slot;
+		
+		slot = table.resolve(symbol);
+		SymbolTable owner = table.getOwner(slot);
+		if (owner != null) {
+			this.slot = slot;
+			this.table = owner;
+		}
+		return slot;
+	}
+	
+	/**
+	 * Returns the index expression of this symbol, or null if it is not indexed.
+	 */
+	public Expression getIndex() {
+		return index;
 	}
 	
 	/**
@@ -0,0 +1,22 @@
+package expression;
+
+/**
+ * A Value is a string or list that an expression evaluates to. Numbers are never wrapped in a
+ * Value: expressions return them from evaluate as plain doubles, and only expressions that may
+ * refer to a string or list are asked for their Value.
+ * 
+ * @license MIT
+ */
+public interface Value {
+
+	/**
+	 * Returns the element at the given index as a number. Indices outside of the value refer
+	 * to the first element.
+	 */
+	public double get(int index);
+
+	/**
+	 * Returns the number of elements in this value.
+	 */
+	public int length();
+}
@@ -0,0 +1,60 @@
+package instruction;
+
+import java.awt.Graphics;
+
+import expression.Expression;
+import expression.SymbolTerminal;
+
+/**
+ * The instruction for adding the result of an expression to the end of a list.
+ * 
+ * @license MIT
+ */
+public class Append extends Instruction {
+	
+	// The list being added to, and the value being added
+	SymbolTerminal symbol;
+	Expression value;
+	
+	/**
+	 * Constructs an instruction that appends the given value to the given list.
+	 * @param symbol - the symbol of the list
+	 * @param value - the expression whose value is added to the list
+	 */
+	public Append(SymbolTerminal symbol, Expression value) {
+		this.symbol = symbol;
+		this.value = value;
+	}
+	
+	/**
+	 * Appends the value to the list.
+	 */
+	public void execute(Graphics graphics, Block block) {
+		block.append(symbol, value.evaluate(block));
+	}
+	
+	/**
+	 * Returns the String representation of this instruction.
+	 */
+	public String toString() {
+		return symbol.toString() + ".add(" + value.toString() + ");";
+	}
+	
+	/**
+	 * Returns true if this instruction object is equivalent to another in the parse tree.
+	 */
+	public boolean equals(Instruction instruction, Block block) {
+		if (instruction instanceof Append) {
+			Append other = (Append) instruction;
+			return other.symbol.equals(symbol) && other.value.equals(value);
+		}
+		return false;
+	}
+	
+	/**
+	 * Rewrites the expressions of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		value = rewriter.rewrite(value);
+	}
+}
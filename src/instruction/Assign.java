@@ -2,7 +2,6 @@ package instruction;
 
 import java.awt.Graphics;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 import expression.Expression;
 import expression.SymbolTerminal;
@@ -37,6 +36,7 @@ public class Assign extends Instruction {
 	
 	public Assign(SymbolTerminal symbol, Expression expression) {
 		this.symbol = symbol;
+		this.expression = new ArrayList<Expression>();
 		this.expression.add(expression);
 		type = Block.Variable.List;
 	}
@@ -54,23 +54,34 @@ public class Assign extends Instruction {
 		type = Block.Variable.String;
 	}
 
+	/**
+	 * Returns the symbol being assigned to.
+	 */
+	public SymbolTerminal getSymbol() {
+		return symbol;
+	}
+	
+	/**
+	 * Returns the expression being assigned if this instruction assigns a single number
+	 * to a whole variable, or null for lists, strings and list elements.
+	 */
+	public Expression getNumber() {
+		if (type == Block.Variable.List && expression.size() == 1)
+			return expression.get(0);
+		if (type == Block.Variable.Number && index == null)
+			return value;
+		return null;
+	}
+
 	/**
 	 * Calls the Block object's assign method with the given symbol and expression object.
 	 */
 	public void execute(Graphics graphics, Block block) {
-		HashMap<String, HashMap<String, Double>> scope = block.currentScope();
 		switch(type){
 		case List:
 				block.assign(symbol, expression, type);
 			break;
 		case Number:
-			int i = -1;
-			if(index != null){
-				i = (int) index.evaluate(block);
-				if(i > scope.get(symbol).get("length") || i < 0){
-					i = 0;
-				}
-			}
 			block.assign(symbol, value, index, type);
 			break;
 		case String:
@@ -96,4 +107,17 @@ public class Assign extends Instruction {
 		}
 		return false;
 	}
+	
+	/**
+	 * Rewrites the expressions of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		if (expression != null)
+			for (int i = 0 ; i < expression.size() ; i++)
+				expression.set(i, rewriter.rewrite(expression.get(i)));
+		if (value != null)
+			value = rewriter.rewrite(value);
+		if (index != null)
+			index = rewriter.rewrite(index);
+	}
 }
@@ -1,16 +1,20 @@
 package instruction;
 
 import java.awt.Graphics;
-import java.nio.ByteBuffer;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import expression.Expression;
+import expression.ListValue;
+import expression.StringValue;
 import expression.SymbolTerminal;
 import expression.Terminal;
-import view.Console;
+import expression.Value;
 
 /**
  * Represents a block of pseudocode instructions.
@@ -24,21 +28,29 @@ public class Block extends Instruction {
 	
 	// Reference to the symbol table. If this block is created by a parent block, this
 	// will reference the symbol table of the parent block.
-	private HashMap <String, HashMap <String, Double>> symbol;
-	private HashMap <String, HashMap <String, Double>> local;
-	private HashMap <String, Block> function;
+	private SymbolTable symbol;
+	private TimerWheel timers;
+	private ControlStack calls;
+	private Random random;
+	private HashMap <String, Function> function;
 	private Block parent;
 	
+	// Counts the lines of the program that run, if the program is profiled. Only set on the root block.
+	private LineProfile profile;
+	
+	// The number of shapes the program has drawn. Only counted by the root block.
+	private long draws = 0;
+	
+	// The images the program has drawn by their location, or an empty entry for each location
+	// that could not be read. Shared by every run of the program, and only set on the root block.
+	private ConcurrentHashMap <String, Optional <BufferedImage>> images;
+	
 	enum Variable {
 		Number, List, String
 	};
 	
-	private static final double NUMBER = 0;
-	private static final double LIST = 1;
-	private static final double STRING = 2;
-	
 	// The console output view.
-	private Console console;
+	private Output console;
 	
 	// A list of instructions in the block.
 	private ArrayList <Instruction> instructions;
@@ -54,7 +66,7 @@ public class Block extends Instruction {
 	 * Creates the root block.
 	 */
 	public Block() {
-		this(null);
+		this((Block) null);
 	}
 	
 	/**
@@ -63,27 +75,62 @@ public class Block extends Instruction {
 	 */
 	public Block(Block parent) {
 		instructions = new ArrayList <Instruction> ();
-		local = new HashMap <String, HashMap<String, Double>> ();
 		
 		// If this is the root block
 		if (parent == null) {
-			symbol = new HashMap <String, HashMap<String, Double>> ();
-			function = new HashMap <String, Block> ();
+			symbol = new SymbolTable();
+			timers = new TimerWheel();
+			calls = new ControlStack(this);
+			random = new Random();
+			function = new HashMap <String, Function> ();
+			images = new ConcurrentHashMap <String, Optional <BufferedImage>> ();
 		}
 		
 		// Otherwise take the symbol table from the root block
 		else { 
 			symbol = parent.symbol;
+			timers = parent.timers;
+			calls = parent.calls;
+			random = parent.random;
 			indentLevel = parent.indentLevel + 1;
 		}
 	}
 	
+	/**
+	 * Creates a root block whose variables are kept in the given table, so that instructions
+	 * parsed into another root block with the same table can be moved into this one.
+	 */
+	public Block(SymbolTable table) {
+		instructions = new ArrayList <Instruction> ();
+		symbol = table;
+		timers = new TimerWheel();
+		calls = new ControlStack(this);
+		random = new Random();
+		function = new HashMap <String, Function> ();
+		images = new ConcurrentHashMap <String, Optional <BufferedImage>> ();
+	}
+
+	/**
+	 * Creates a root block that runs the instructions of the given root block, with variables
+	 * held in the given table and timers, running blocks, functions and random numbers of its own.
+	 */
+	Block(Block program, SymbolTable table) {
+		instructions = program.instructions;
+		parameters = program.parameters;
+		symbol = table;
+		timers = new TimerWheel();
+		calls = new ControlStack(this);
+		random = new Random();
+		function = new HashMap <String, Function> ();
+		images = program.images;
+	}
+	
 	/**
 	 * Sets the console output view of this block to the given console.
 	 * 
-	 * @param console - the Console object representing the console output JFrame
+	 * @param console - the Console window, or any other Output that receives printed text
 	 */
-	public void setConsole(Console console) {
+	public void setConsole(Output console) {
 		this.console = console;
 	}
 	
@@ -106,23 +153,41 @@ public class Block extends Instruction {
 	}
 	
 	/**
-	 * Sets the parameters of this block to their current values before evaluating.
+	 * Returns the parameters of this block, in the order they were added.
 	 */
-	public void setParameters(Block block, HashMap <String, Expression> arguments) {
-		if (parameters != null) {
-			for (String parameter : parameters) {
-				//if (arguments.containsKey(parameter))
-					//assignLocal(parameter, arguments.get(parameter).evaluate(block));
-			}
-		}
+	public ArrayList <String> getParameters() {
+		return (parameters != null) ? parameters : new ArrayList <String> ();
 	}
 	
 	/**
 	 * Executes this block with the given Graphics object and root execution block.
 	 */
 	public void execute(Graphics graphics, Block block) {
+		ControlStack calls = block.getControlStack();
+		
+		// Each frame of the root block starts by running its timers, and does nothing else while
+		// the program is waiting
+		if (block == this) {
+			timers.run(graphics, this);
+			if (timers.isWaiting())
+				return;
+			
+			// Blocks that a wait stopped in the middle are finished first, and the frame ends
+			// there if anything was left to run in them
+			if (calls.depth() > 0) {
+				long steps = calls.getSteps();
+				if (! calls.run(graphics, this, 0, true) || calls.getSteps() > steps)
+					return;
+			}
+		}
+		
 		// If this block is not yet complete
 		if (! isComplete()) {
+			int depth = calls.depth();
+			
+			if (block.profile != null)
+				block.profile.enter(currentInstruction().getLine());
+			
 			// Check if the current instruction should execute.
 			if (currentInstruction().shouldExecute(block)) {
 				
@@ -130,14 +195,28 @@ public class Block extends Instruction {
 				currentInstruction().execute(graphics, block);
 				
 				// If the current instruction does not request to be repeated, go to the next instruction.
-				if (! currentInstruction().shouldRepeat())
+				if (! currentInstruction().shouldRepeat(block))
 					nextInstruction();
 			}
 			// If it shouldn't be executed, skip it.
 			else nextInstruction();
+			
+			// Run any block that the instruction started. Only the root block stops for a wait.
+			calls.run(graphics, block, depth, block == this);
 		}
 	}
 
+	/**
+	 * Runs every instruction of this block within the current frame, on top of the frames of
+	 * the ControlStack that are already running.
+	 */
+	public void run(Graphics graphics, Block block) {
+		ControlStack calls = block.getControlStack();
+		int depth = calls.depth();
+		if (calls.push(this, null, 0))
+			calls.run(graphics, block, depth, false);
+	}
+
 	/**
 	 * Returns true if the block is complete, and false otherwise.
 	 * @return whether the block has executed all instructions
@@ -163,12 +242,14 @@ public class Block extends Instruction {
 	}
 	
 	/**
-	 * Returns the previous Instruction object.
+	 * Returns the instruction before the one that the given block is running, where this is the
+	 * root block of the program. The root block keeps its own position, and the positions of
+	 * nested blocks are kept by the ControlStack.
 	 */
-	public Instruction previousInstruction() {
-		if (currentInstruction == 0) return null;
-		return instructions.get(currentInstruction - 1);
-	};
+	public Instruction previousInstruction(Block block) {
+		int position = (block.instructions == instructions) ? currentInstruction : calls.position(block);
+		return (position > 0) ? block.get(position - 1) : null;
+	}
 
 	/**
 	 * Resets the program counter to the first instruction.
@@ -184,6 +265,42 @@ public class Block extends Instruction {
 		currentInstruction++;
 	}
 	
+	/**
+	 * Returns the instruction at the given position in this block.
+	 */
+	public Instruction get(int index) {
+		return instructions.get(index);
+	}
+	
+	/**
+	 * Replaces the instructions from start (inclusive) to end (exclusive) with the given instruction.
+	 */
+	public void replace(int start, int end, Instruction instruction) {
+		instructions.subList(start, end).clear();
+		instruction.setBlock(this);
+		instructions.add(start, instruction);
+	}
+	
+	/**
+	 * Replaces the instructions from start (inclusive) to end (exclusive) with the given list of
+	 * instructions, which may be empty.
+	 */
+	public void replace(int start, int end, List <Instruction> replacement) {
+		instructions.subList(start, end).clear();
+		for (Instruction instruction : replacement)
+			instruction.setBlock(this);
+		instructions.addAll(start, replacement);
+	}
+	
+	/**
+	 * Rewrites the instructions of this block, and then this block itself, with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		for (Instruction instruction : instructions)
+			instruction.rewrite(rewriter);
+		rewriter.rewrite(this);
+	}
+	
 	/**
 	 * Returns the number of instructions in this block.
 	 * @return the size of the block in terms of instructions
@@ -192,9 +309,73 @@ public class Block extends Instruction {
 		return instructions.size();
 	}
 	
-	public HashMap<String, HashMap<String, Double>> getSymbolTable() {
+	/**
+	 * Returns the symbol table that stores the variables of this block.
+	 */
+	public SymbolTable getSymbolTable() {
 		return symbol;
 	}
+	
+	/**
+	 * Returns the clock and timers of the program this block belongs to.
+	 */
+	public TimerWheel getTimers() {
+		return timers;
+	}
+	
+	/**
+	 * Returns the random number generator of the program this block belongs to. Each program
+	 * has its own, so programs running at the same time never share one, and a program given
+	 * a seed picks the same random numbers every time it runs.
+	 */
+	public Random getRandom() {
+		return random;
+	}
+	
+	/**
+	 * Counts a shape drawn by the program this root block runs.
+	 */
+	public void countDraw() {
+		draws++;
+	}
+	
+	/**
+	 * Returns the number of shapes drawn by the program this root block runs.
+	 */
+	public long getDrawCount() {
+		return draws;
+	}
+	
+	/**
+	 * Returns the images drawn by the program this root block runs, by their location. A location
+	 * whose image could not be read has an empty entry, so that it is not read again.
+	 */
+	public ConcurrentHashMap <String, Optional <BufferedImage>> getImages() {
+		return images;
+	}
+	
+	/**
+	 * Profiles the lines of this root block as it runs, or stops profiling them if the profile
+	 * is null.
+	 */
+	public void setProfile(LineProfile profile) {
+		this.profile = profile;
+	}
+	
+	/**
+	 * Returns the profile of the lines of this root block, or null if it is not profiled.
+	 */
+	public LineProfile getProfile() {
+		return profile;
+	}
+	
+	/**
+	 * Returns the stack of the running blocks and function calls of the program this block
+	 * belongs to.
+	 */
+	public ControlStack getControlStack() {
+		return calls;
+	}
 
 	/**
 	 * Returns the String representation of this block by concatenating the String
@@ -256,7 +437,7 @@ public class Block extends Instruction {
 	 * @return true if the symbol exists, false otherwise
 	 */
 	public boolean hasSymbol(SymbolTerminal symbol) {
-		return this.local.containsKey(symbol.toString()) || this.symbol.containsKey(symbol.toString());
+		return this.symbol.isDefined(symbol.resolve(this.symbol));
 	}
 	
 	/**
@@ -265,7 +446,8 @@ public class Block extends Instruction {
 	 * @return true if the symbol exists, false otherwise
 	 */
 	public boolean hasSymbol(String symbol) {
-		return this.local.containsKey(symbol) || this.symbol.containsKey(symbol);
+		int slot = this.symbol.find(symbol);
+		return slot >= 0 && this.symbol.isDefined(slot);
 	}
 	
 	
@@ -275,129 +457,94 @@ public class Block extends Instruction {
 	 * @return the value assigned to the symbol, or 0 if no value was assigned
 	 */
 	public double get(SymbolTerminal symbol, Expression exp) {
-		int index = 0;
-		if(exp != null)
-			 index = (int) exp.evaluate(this);
-		return get(symbol.toString(), index, getScope(symbol.toString()));
+		int slot = symbol.resolve(this.symbol);
+		if (exp == null)
+			return this.symbol.get(slot);
+		return this.symbol.get(slot, (int) exp.evaluate(this));
 	}
 
-	public double get(String symbol, int index) { return get(symbol, index, getScope(symbol)); }
+	public double get(String symbol, int index) { return get(this.symbol.resolve(symbol), index); }
 	
-	public double get(String symbol){ return get(symbol, 0, getScope(symbol)); }
+	public double get(String symbol){ return this.symbol.get(this.symbol.resolve(symbol)); }
 	
 	/**
-	 * Returns an array of the entire list
+	 * Returns the value assigned to the given slot of the symbol table.
+	 * @param slot - the slot of the variable
+	 * @param index - index if list
 	 */
-	public ArrayList<Double> getList(String symbol){
-		ArrayList<Double> values = new ArrayList<Double>();
-		if(hasSymbol(symbol)){
-			for(int i=0; i < getScope(symbol).get(symbol).get("length");i++){
-				values.add(get(symbol, i , getScope(symbol)));
-			}
-		}
-		return values;
+	public double get(int slot, int index) {
+		return this.symbol.get(slot, index);
 	}
 	
 	/**
-	 * Returns the value assigned to either the local or global variables
-	 * @param symbol - name of the variable
-	 * @param index - index if list
-	 * @param values - the HashMap of either the local or global variables
-	 * @return
-	 */
-	public double get(String symbol, int index, HashMap <String, HashMap <String, Double>> values){
-		if(values == null)
-			return 0;
-		if(isType(values, symbol, NUMBER)){
-			return values.get(symbol).get("value");
-		}
-			
-		if(isType(values, symbol, LIST) || isType(values, symbol, STRING)){
-			if(index >= values.get(symbol.toString()).get("length") || index < 0)
-				index = 0;
-			return values.get(symbol).get("" + index);
-		}
-		return 0;
+	 * Returns the entire list assigned to the given symbol, or null if it is not a list.
+	 */
+	public ListValue getList(String symbol){
+		int slot = this.symbol.find(symbol);
+		return (slot >= 0) ? this.symbol.getList(slot) : null;
+	}
+	
+	/**
+	 * Returns the number of elements in the list or string assigned to the given symbol.
+	 */
+	public int length(SymbolTerminal symbol) {
+		return this.symbol.length(symbol.resolve(this.symbol));
 	}
 	
 	/**
-	 * Various methods that call the assign method below
+	 * Various methods that assign values to variables
 	 */
 	public void assign(String symbol, int value){
-		assign(symbol, value, 0, null, currentScope(), Variable.Number);
+		this.symbol.set(this.symbol.resolve(symbol), value);
 	}
 	public void assign(String symbol, Terminal value){
-		assign(symbol, value.evaluate(this), 0, null, currentScope(), Variable.Number);
+		this.symbol.set(this.symbol.resolve(symbol), value.evaluate(this));
 	}
 	public void assign(String symbol, Expression value){
-		assign(symbol, value.evaluate(this), 0, null, currentScope(), Variable.Number);
+		this.symbol.set(this.symbol.resolve(symbol), value.evaluate(this));
+	}
+	public void assign(SymbolTerminal symbol, double value){
+		this.symbol.set(symbol.resolve(this.symbol), value);
 	}
 	public void assign(SymbolTerminal symbol, String word, Variable type){
-		assign(symbol.toString(), 0, -1, castString(word), currentScope(), type);
+		this.symbol.set(symbol.resolve(this.symbol), new StringValue(word));
 	}
 	public void assign(SymbolTerminal symbol, Expression value, Expression index, Variable type){
-		int i = -1;
-		if(index != null){
-			type = Variable.List;
-			i = (int) index.evaluate(this);
-		}
-		assign(symbol.toString(), value.evaluate(this), i, null, currentScope(), type);
+		int slot = symbol.resolve(this.symbol);
+		if(index != null)
+			this.symbol.set(slot, (int) index.evaluate(this), value.evaluate(this));
+		else
+			this.symbol.set(slot, value.evaluate(this));
 	}
 	public void assign(SymbolTerminal symbol, ArrayList<Expression> values, Variable type){
-		ArrayList<Double> nums = new ArrayList<Double>();
-		for(Expression i: values){
-			nums.add(i.evaluate(this));
+		int slot = symbol.resolve(this.symbol);
+		
+		// A list with a single value is stored as a number
+		if(values.size() == 1){
+			this.symbol.set(slot, values.get(0).evaluate(this));
+			return;
 		}
-		assign(symbol.toString(), 0, -1, nums, currentScope(), type);
-	}
-	
-	/**
-	 * Assigns the given value to the given variable
-	 * @param symbol - name of variable
-	 * @param value - what the variable equals
-	 * @param i - index of what is being set if the variable is a list
-	 * @param scope - HashMap of local or global variable
-	 */
-	public void assign(String symbol, double value, int index, ArrayList<Double> values, HashMap <String, HashMap <String, Double>> scope, Variable type ){
-		HashMap <String, Double> valueMap = new HashMap <String, Double>();
-		switch(type){
-		case Number:
-				valueMap.put("value", value);
-				valueMap.put("type", NUMBER);
-				scope.put(symbol, valueMap);	
-			break;
-		case List:
-			if(index < 0){
-				if(values.size() == 1){
-					valueMap.put("type", NUMBER);
-					valueMap.put("value", values.get(0));
-					scope.put(symbol.toString(), valueMap);
-				}
-				else{
-					valueMap.put("type", LIST);
-					valueMap.put("length", (double) values.size());
-					for(int i = 0; i < values.size(); i++){
-						valueMap.put("" + i, values.get(i));
-					}
-					scope.put(symbol.toString(), valueMap);
-				}
-			}
-			else {
-				if(isType(scope, symbol, LIST)){
-					if(scope.get(symbol).get("length") > (double)index)
-						scope.get(symbol).put("" + index, value);
-				}
-			}
-			break;
-		case String:
-			valueMap.put("type", STRING);
-			valueMap.put("length", (double) values.size());
-			for(int i = 0; i < values.size(); i++){
-				valueMap.put("" + i, values.get(i));
-			}
-			scope.put(symbol.toString(), valueMap);
-			break;
+		
+		ListValue list = new ListValue(values.size());
+		for(Expression value : values){
+			list.append(value.evaluate(this));
 		}
+		this.symbol.set(slot, list);
+	}
+	
+	/**
+	 * Adds the given value to the end of the list assigned to the given symbol.
+	 */
+	public void append(SymbolTerminal symbol, double value) {
+		this.symbol.append(symbol.resolve(this.symbol), value);
+	}
+	
+	/**
+	 * Removes the element at the given index of the list assigned to the given symbol, or
+	 * the last element if the index is negative.
+	 */
+	public void remove(SymbolTerminal symbol, int index) {
+		this.symbol.remove(symbol.resolve(this.symbol), index);
 	}
 	
 	private ArrayList<Double> parseString(String string2) {
@@ -408,106 +555,81 @@ public class Block extends Instruction {
 	 * Defines a function with the given name and block.
 	 */
 	public void define(SymbolTerminal symbol, Block block) {
-		this.function.put(symbol.toString(), block);
+		define(symbol.toString(), block);
 	}
 	
 	/**
 	 * Defines a function with the given name and block.
 	 */
 	public void define(String symbol, Block block) {
-		this.function.put(symbol, block);
+		getFunction(symbol).define(block, this.symbol);
 	}
 	
 	/**
-	 * Returns the function definition for the given symbol.
+	 * Returns the function definition for the given symbol, or null if it is not defined.
 	 */
 	public Block getDefinition(String symbol) {
-		return this.function.get(symbol);
+		Function definition = this.function.get(symbol);
+		return (definition != null) ? definition.getBody() : null;
 	}
 	
 	/**
-	 * Prints the given value to the console.
+	 * Returns the function the given name is bound to, which has no body until it is defined.
 	 */
-	public void print(String output) {
-		console.print(output);
+	public Function getFunction(String symbol) {
+		Function definition = this.function.get(symbol);
+		if (definition == null) {
+			definition = new Function(symbol);
+			this.function.put(symbol, definition);
+		}
+		return definition;
 	}
 	
 	/**
-	 * Prints the given error message to the console.
+	 * Prints the given value to the console.
 	 */
-	public void error(String message) {
-		console.error(message);
-	}
-	
-	/**
-	 * Returns the scope of the given variable
-	 **/
-	public HashMap<String, HashMap<String, Double>> getScope(String symbol){
-		if (local.containsKey(symbol))
-			return local;
-		else if (hasSymbol(symbol)){
-			return this.symbol;
-		}
-		return null;
-	}
-	
-	public HashMap<String, HashMap<String, Double>> currentScope(){
-		return symbol;
+	public void print(String output) {
+		if (console != null)
+			console.print(output);
 	}
 	
 	/**
-	 * Returns the double value of the given String
+	 * Prints the given error message to the console.
 	 */
-	private ArrayList<Double> castString(String word){
-		  ArrayList<Double> output = new ArrayList<Double>();
-		  for(char i: word.toCharArray()){
-			  output.add((double) i);
-		  }
-		  return output;
+	public void error(String message) {
+		if (console != null)
+			console.error(message);
 	}
 	
 	/**
 	 * Returns true if the given variable is of the given type
 	 */
-	private boolean isType(HashMap< String, HashMap<String, Double>> map, String variable, double type) {
-		if(map != null){
-			if(map.containsKey(variable))
-				return map.get(variable).get("type") == type;
-		}
-		return false;
+	private boolean isType(String variable, byte type) {
+		int slot = symbol.find(variable);
+		return slot >= 0 && symbol.getType(slot) == type;
 	}
 	/**
 	 * Returns the value that needs to be printed
 	 */
 	public String printVal(String symbol, int index){
-		if(isType(getScope(symbol), symbol, NUMBER))
+		if(isType(symbol, SymbolTable.NUMBER))
 			return "" + get(symbol);
-		else if(isType(getScope(symbol), symbol, LIST)){
-			String print = "";
-			if(index > 0){
-				print = "" + get(symbol,index);
-			}
-			else{
-				for(Double i : getList(symbol)){
-					print += i + ", ";
-				}
-				print = print.substring(0, print.lastIndexOf(","));
-			}
-			
-			return print;
+		else if(isType(symbol, SymbolTable.LIST)){
+			if(index > 0)
+				return "" + get(symbol,index);
+			return getList(symbol).toString();
 		}
 		return "";
 	}
 	
 	/**
-	 * Returns a String of a Binary Representation
+	 * Returns the string that the given expression refers to, or an empty String if it does
+	 * not refer to a string.
 	 */
 	public String charToString(Expression input){
-		String word = "";
-		for(double i: getList(input.toString())){
-			char c = (char)i;
-			word += c;
-		}
-		return word;
+		Value value = input.evaluateValue(this);
+		if(value instanceof StringValue)
+			return value.toString();
+		return "";
 	}
 }
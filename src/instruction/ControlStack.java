@@ -0,0 +1,295 @@
+package instruction;
+
+import java.awt.Graphics;
+import java.util.Arrays;
+
+import expression.Expression;
+import expression.ListValue;
+import expression.StringValue;
+import expression.Value;
+
+/**
+ * Holds the blocks that a program is in the middle of running, so that nested blocks and
+ * function calls run in a loop over a growable array instead of on the Java stack. Each frame
+ * is a block and the position of its next instruction, along with the instruction that started
+ * the frame and a number that instruction keeps until the frame is finished.
+ * 
+ * Because the position of every running block is kept here, a program that starts waiting in
+ * the middle of a nested block or a function simply leaves its frames on the stack, and the
+ * root block continues them once the wait is over.
+ * 
+ * The stack also holds the arguments of the function calls that are running, and the values
+ * their parameters had before each call. Parameters live in slots of the symbol table like any
+ * other variable: a call saves the values of its parameter slots here, assigns its arguments to
+ * them, and puts the saved values back when its frame is finished.
+ * 
+ * Neither part of the stack shrinks, so once it is as deep as the deepest point of a program,
+ * running the program allocates nothing. The number of frames is limited, and an instruction
+ * that would go deeper than the limit is skipped. The first one skipped is reported as an error
+ * of the program.
+ * 
+ * @license MIT
+ */
+public class ControlStack {
+
+	// The number of frames a program may have by default
+	public static final int DEFAULT_LIMIT = 10000;
+
+	private static final int INITIAL_CAPACITY = 32;
+
+	// The block, position, starting instruction and kept number of each frame
+	private Block[] blocks = new Block[INITIAL_CAPACITY];
+	private int[] positions = new int[INITIAL_CAPACITY];
+	private Instruction[] owners = new Instruction[INITIAL_CAPACITY];
+	private double[] marks = new double[INITIAL_CAPACITY];
+	private int depth = 0;
+	private int limit = DEFAULT_LIMIT;
+
+	// The type, numeric value and list or string of each saved value or argument, and the slot
+	// each saved value was read from or -1 for an argument
+	private byte[] types = new byte[INITIAL_CAPACITY];
+	private double[] values = new double[INITIAL_CAPACITY];
+	private Value[] references = new Value[INITIAL_CAPACITY];
+	private int[] slots = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// The number of instructions run from this stack so far
+	private long steps = 0;
+
+	// Set from another thread to stop a program that is stuck in a loop
+	private volatile boolean stopped = false;
+
+	// The root block the errors of this stack are reported to, and whether the limit was reported
+	private Block root;
+	private boolean overflowed = false;
+
+	/**
+	 * Creates the stack of the given root block.
+	 */
+	ControlStack(Block root) {
+		this.root = root;
+	}
+
+	/**
+	 * Sets the largest number of frames.
+	 */
+	public void setLimit(int limit) {
+		this.limit = Math.max(limit, 1);
+	}
+
+	/**
+	 * Returns the largest number of frames.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Returns the number of frames.
+	 */
+	public int depth() {
+		return depth;
+	}
+
+	/**
+	 * Returns true if no more frames can be started.
+	 */
+	public boolean isFull() {
+		return depth >= limit;
+	}
+
+	/**
+	 * Reports that an instruction was skipped because the stack is full, the first time one is.
+	 */
+	void overflow() {
+		if (! overflowed) {
+			overflowed = true;
+			root.error("Blocks and calls nested deeper than " + limit + " are skipped");
+		}
+	}
+
+	/**
+	 * Stops the program from any thread. The running frames are dropped before their next
+	 * instruction, and no block started afterwards runs.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Returns the number of instructions run from this stack so far.
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Starts a frame that runs the given block from its first instruction. When the frame is
+	 * finished, the given instruction is told with the given number.
+	 * @param block - the block to run
+	 * @param owner - the instruction starting the frame, or null
+	 * @param mark - a number kept for the instruction
+	 * @return false if the stack is full, in which case the block does not run
+	 */
+	public boolean push(Block block, Instruction owner, double mark) {
+		if (depth >= limit) {
+			overflow();
+			return false;
+		}
+		if (depth == blocks.length) {
+			int capacity = Math.min(depth * 2, limit);
+			blocks = Arrays.copyOf(blocks, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			owners = Arrays.copyOf(owners, capacity);
+			marks = Arrays.copyOf(marks, capacity);
+		}
+		blocks[depth] = block;
+		positions[depth] = 0;
+		owners[depth] = owner;
+		marks[depth] = mark;
+		depth++;
+		return true;
+	}
+
+	/**
+	 * Runs the frames above the given depth until they are finished. A program that starts
+	 * waiting can leave its frames to be continued later.
+	 * @param graphics - the graphics the instructions draw on
+	 * @param root - the root block of the program
+	 * @param base - the number of frames to leave on the stack
+	 * @param suspend - true if a wait stops the frames where they are
+	 * @return false if the frames were left because the program is waiting
+	 */
+	public boolean run(Graphics graphics, Block root, int base, boolean suspend) {
+		TimerWheel timers = root.getTimers();
+		LineProfile profile = root.getProfile();
+		while (depth > base) {
+			if (stopped) {
+				clear();
+				return true;
+			}
+			int top = depth - 1;
+			Block block = blocks[top];
+			int position = positions[top];
+			if (position >= block.length()) {
+				pop(root);
+				continue;
+			}
+
+			Instruction instruction = block.get(position);
+			steps++;
+			if (profile != null)
+				profile.enter(instruction.getLine());
+			if (instruction.shouldExecute(root)) {
+				instruction.execute(graphics, root);
+				if (! instruction.shouldRepeat(root))
+					positions[top]++;
+			}
+			else positions[top]++;
+
+			if (suspend && timers.isWaiting())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the position of the instruction that the topmost frame running the given block is
+	 * at, so that an else can find the if before it, or -1 if the block is not running.
+	 */
+	public int position(Block block) {
+		for (int frame = depth - 1 ; frame >= 0 ; frame--)
+			if (blocks[frame] == block)
+				return positions[frame];
+		return -1;
+	}
+
+	/**
+	 * Removes the top frame, and tells the instruction that started it.
+	 */
+	private void pop(Block root) {
+		depth--;
+		Instruction owner = owners[depth];
+		blocks[depth] = null;
+		owners[depth] = null;
+		if (owner != null)
+			owner.finish(root, marks[depth]);
+	}
+
+	/**
+	 * Removes every frame and value.
+	 */
+	public void clear() {
+		Arrays.fill(blocks, 0, depth, null);
+		Arrays.fill(owners, 0, depth, null);
+		depth = 0;
+		truncate(0);
+	}
+
+	/**
+	 * Returns the number of saved values and arguments.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Evaluates an argument and pushes its value, keeping a string or list as it is.
+	 */
+	public void push(Expression argument, Block root) {
+		Value value = argument.evaluateValue(root);
+		if (value instanceof ListValue)
+			push(SymbolTable.LIST, value.get(0), value);
+		else if (value instanceof StringValue)
+			push(SymbolTable.STRING, value.get(0), value);
+		else
+			push(SymbolTable.NUMBER, argument.evaluate(root), null);
+	}
+
+	/**
+	 * Pushes the current value of the given slot, along with the slot.
+	 */
+	public void save(SymbolTable table, int slot) {
+		push(table.getType(slot), table.get(slot), table.getValue(slot));
+		slots[size - 1] = slot;
+	}
+
+	/**
+	 * Assigns the value at the given position of the stack to the given slot.
+	 */
+	public void assign(SymbolTable table, int slot, int position) {
+		table.restore(slot, types[position], values[position], references[position]);
+	}
+
+	/**
+	 * Pops the top value back into the slot it was saved from.
+	 */
+	public void restore(SymbolTable table) {
+		size--;
+		table.restore(slots[size], types[size], values[size], references[size]);
+		references[size] = null;
+	}
+
+	/**
+	 * Removes every value above the given size.
+	 */
+	public void truncate(int size) {
+		Arrays.fill(references, size, this.size, null);
+		this.size = size;
+	}
+
+	private void push(byte type, double value, Value reference) {
+		if (size == types.length) {
+			int capacity = size * 2;
+			types = Arrays.copyOf(types, capacity);
+			values = Arrays.copyOf(values, capacity);
+			references = Arrays.copyOf(references, capacity);
+			slots = Arrays.copyOf(slots, capacity);
+		}
+		types[size] = type;
+		values[size] = value;
+		references[size] = reference;
+		slots[size] = -1;
+		size++;
+	}
+}
@@ -8,12 +8,14 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Optional;
 
 import javax.imageio.ImageIO;
 
 import expression.Expression;
 import expression.Operator;
 import expression.Terminal;
+import metrics.DrawEvent;
 
 public class Draw extends Instruction {
 	
@@ -32,7 +34,6 @@ public class Draw extends Instruction {
 	boolean randomColor = false;
 	String StringImage = "";
 	Expression expImage;
-	BufferedImage image;
 	boolean filled = false;
 	
 	// ArrayList for all the points in a arbitrary polygon
@@ -182,6 +183,50 @@ public class Draw extends Instruction {
 	
 	@Override
 	public void execute(Graphics g, Block algorithm) {
+		algorithm.countDraw();
+		DrawEvent event = new DrawEvent();
+		event.begin();
+		boolean loaded = draw(g, algorithm);
+		event.end();
+		if (event.shouldCommit()) {
+			event.shape = type.name();
+			event.image = (type == Shape.Image) ? getImageLocation(algorithm) : null;
+			event.loaded = loaded;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Returns the location of the image to draw.
+	 */
+	private String getImageLocation(Block algorithm) {
+		return (expImage != null) ? algorithm.charToString(expImage) : StringImage;
+	}
+	
+	/**
+	 * Reads the image at the given location from the computer, or else from the web, and returns
+	 * null if it could not be read.
+	 */
+	private static BufferedImage read(String location) {
+		try {
+			return ImageIO.read(new File(location));
+		} catch (IOException e) {
+			try {
+				return ImageIO.read(new URL(location));
+			} catch (IOException e1) {
+				// if both fail tell the user that the image didn't load
+				System.out.println("image not found");
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Draws the shape, and returns true if an image had to be read first.
+	 */
+	private boolean draw(Graphics g, Block algorithm) {
+		boolean loaded = false;
+		
 		// Evaluate expressions for this shape
 		double x = (this.x != null) ? this.x.evaluate(algorithm) : 0;
 		double y = (this.y != null) ? this.y.evaluate(algorithm) : 0;
@@ -197,7 +242,7 @@ public class Draw extends Instruction {
 		}
 		// Set the drawing color
 		if (randomColor)
-			g.setColor(new Color((int) (Math.random() * 256), (int) (Math.random() * 256), (int) (Math.random() * 256)));
+			g.setColor(new Color(algorithm.getRandom().nextInt(256), algorithm.getRandom().nextInt(256), algorithm.getRandom().nextInt(256)));
 		else
 			g.setColor(color);
 		
@@ -216,27 +261,16 @@ public class Draw extends Instruction {
 				g.drawLine((int) x, (int) y, (int) width, (int) height);
 			break;
 		case Image:
-			
-			if(expImage != null){
-				StringImage = algorithm.charToString(expImage);
+			// Each location is read once for every run of the program, even if it could not be read
+			String location = getImageLocation(algorithm);
+			Optional <BufferedImage> image = algorithm.getImages().get(location);
+			if (image == null) {
+				loaded = true;
+				image = Optional.ofNullable(read(location));
+				algorithm.getImages().put(location, image);
 			}
-				
-			// read image from computer
-			try {
-				this.image = ImageIO.read(new File(StringImage));
-			} catch (IOException e) {
-				// if fail read from url
-				try{
-					URL url = new URL(StringImage);
-					this.image = ImageIO.read(url);
-				} catch (IOException e1){
-					// if both fail tell the user that the image didn't load
-					System.out.println("image not found");
-				}
-	            
-				
-			}
-			g.drawImage(image, (int)x, (int)y, (int)width, (int)height, null);
+			if (image.isPresent())
+				g.drawImage(image.get(), (int)x, (int)y, (int)width, (int)height, null);
 			break;
 		case Polygon:
 	        Polygon poly = new Polygon(polyx, polyy, polyx.length);
@@ -246,6 +280,7 @@ public class Draw extends Instruction {
 	        	g.drawPolygon(poly);
 			break;
 		}
+		return loaded;
 	}
 	
 	/**
@@ -305,4 +340,18 @@ public class Draw extends Instruction {
 		return type == Shape.Polygon;
 	}
 	
+	/**
+	 * Rewrites the expressions of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		if (x != null) x = rewriter.rewrite(x);
+		if (y != null) y = rewriter.rewrite(y);
+		if (width != null) width = rewriter.rewrite(width);
+		if (height != null) height = rewriter.rewrite(height);
+		if (expImage != null) expImage = rewriter.rewrite(expImage);
+		for (int i = 0 ; i < polyx.size() ; i++)
+			if (polyx.get(i) != null) polyx.set(i, rewriter.rewrite(polyx.get(i)));
+		for (int i = 0 ; i < polyy.size() ; i++)
+			if (polyy.get(i) != null) polyy.set(i, rewriter.rewrite(polyy.get(i)));
+	}
 }
@@ -28,14 +28,16 @@ public class ElseIfBlock extends IfBlock {
 	 * Evaluates the branch instruction, and returns true if it evaluates to a positive non-zero number.
 	 */
 	public boolean shouldExecute(Block block) {
-		Instruction previous = parentBlock.previousInstruction();
+		Instruction previous = block.previousInstruction(parentBlock);
 		if (previous != null && previous instanceof IfBlock) {
 			IfBlock parentIf = (IfBlock) previous;
-			if (! parentIf.didExecute()) {
-				evaluated.setValue(expression.evaluate(block));
-				return evaluated.getValue() > 0;
+			SymbolTable table = block.getSymbolTable();
+			if (! parentIf.didExecute(block)) {
+				double value = expression.evaluate(block);
+				table.setState(evaluated, value);
+				return value > 0;
 			}
-			else evaluated.setValue(0);
+			else table.setState(evaluated, 0);
 		}
 		return false;
 	}
@@ -0,0 +1,32 @@
+package instruction;
+
+/**
+ * A single run of a Program. A context is the root block that the instructions of the program
+ * run against: it shares those instructions, and keeps its own copy of the variables along with
+ * everything else that changes while the program runs, such as its position, the blocks it is
+ * in the middle of, its timers, functions, random numbers and console.
+ * 
+ * A context is only ever run by one thread at a time, but any number of contexts of the same
+ * program can run at once without copying the program.
+ * 
+ * @license MIT
+ */
+public class ExecutionContext extends Block {
+
+	private Program program;
+
+	/**
+	 * Creates a run of the given program.
+	 */
+	ExecutionContext(Program program) {
+		super(program.getBlock(), new SymbolTable(program.getBlock().getSymbolTable()));
+		this.program = program;
+	}
+
+	/**
+	 * Returns the program this is a run of.
+	 */
+	public Program getProgram() {
+		return program;
+	}
+}
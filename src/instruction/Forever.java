@@ -27,9 +27,7 @@ public class Forever extends Instruction {
 	 * Executes this infinite loop by performing the entire block being repeated.
 	 */
 	public void execute(Graphics graphics, Block algorithm) {
-		block.reset();
-		while (! block.isComplete())
-			block.execute(graphics, algorithm);
+		algorithm.getControlStack().push(block, null, 0);
 	}
 	
 	/**
@@ -48,6 +46,13 @@ public class Forever extends Instruction {
 		return true;
 	}
 	
+	/**
+	 * Returns the block of instructions being repeated.
+	 */
+	public Block getBlock() {
+		return block;
+	}
+	
 	/**
 	 * Returns the String representation of this infinite loop.
 	 */
@@ -68,4 +73,11 @@ public class Forever extends Instruction {
 		}
 		return false;
 	}
+	
+	/**
+	 * Rewrites the block of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		block.rewrite(rewriter);
+	}
 }
@@ -0,0 +1,77 @@
+package instruction;
+
+import java.util.ArrayList;
+
+/**
+ * The body and parameters that a function name is bound to. The root block keeps one Function
+ * for every name that is defined or called, so a call looks its function up only once and still
+ * runs the latest definition if the name is defined again.
+ * 
+ * @license MIT
+ */
+public class Function {
+
+	private String name;
+	private Block body;
+
+	// The names of the parameters in the order they were written, and their slots
+	private String[] parameters = new String[0];
+	private int[] slots = new int[0];
+
+	/**
+	 * Creates a function that has not been defined yet.
+	 */
+	Function(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Binds this function to the given body, resolving each of its parameters to a slot.
+	 */
+	void define(Block body, SymbolTable table) {
+		ArrayList <String> names = body.getParameters();
+		parameters = names.toArray(new String[names.size()]);
+		slots = new int[parameters.length];
+		for (int i = 0 ; i < parameters.length ; i++)
+			slots[i] = table.resolve(parameters[i]);
+		this.body = body;
+	}
+
+	/**
+	 * Returns the name of this function.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the body of this function, or null if it has not been defined yet.
+	 */
+	public Block getBody() {
+		return body;
+	}
+
+	/**
+	 * Returns the number of parameters of this function.
+	 */
+	public int getParameterCount() {
+		return parameters.length;
+	}
+
+	/**
+	 * Returns the slot of the parameter at the given position.
+	 */
+	public int getSlot(int parameter) {
+		return slots[parameter];
+	}
+
+	/**
+	 * Returns the position of the parameter with the given name, or -1 if there is none.
+	 */
+	public int indexOf(String parameter) {
+		for (int i = 0 ; i < parameters.length ; i++)
+			if (parameters[i].equals(parameter))
+				return i;
+		return -1;
+	}
+}
@@ -1,44 +1,185 @@
 package instruction;
 
 import java.awt.Graphics;
-import java.util.HashMap;
+import java.util.ArrayList;
 
 import expression.Expression;
 
+/**
+ * Runs a function with the given arguments. Each argument is either given by position, or
+ * names the parameter it is assigned to.
+ * 
+ * A call remembers the function it found in the root block it last ran in, and matches its
+ * arguments with the parameters of the function again only when the function is given a
+ * different body, so a call usually neither looks anything up nor allocates. Each run of a
+ * program has its own functions, but the parameters of a body have the same slots in every run,
+ * so a call made by another run of the same program only looks its function up again.
+ * 
+ * @license MIT
+ */
 public class FunctionCall extends Instruction {
 
 	private String name;
-	private HashMap <String, Expression> arguments;
+	
+	// The arguments of the call, and the parameter named by each argument or null for an
+	// argument given by position
+	private ArrayList <Expression> arguments = new ArrayList <Expression> ();
+	private ArrayList <String> parameters = new ArrayList <String> ();
+	
+	// The arguments matched with the parameters of the function the call last ran
+	private Binding binding;
+	
+	/**
+	 * The root block a call ran in, the function it found there and the body of that function,
+	 * and the slot each argument of the call is assigned to or -1 for an argument the function
+	 * has no use for. Never changed once made, so that runs of the same program on different
+	 * threads can share it.
+	 */
+	private static class Binding {
+		private final Block root;
+		private final Function function;
+		private final Block body;
+		private final int[] slots;
+		
+		private Binding(Block root, Function function, int[] slots) {
+			this.root = root;
+			this.function = function;
+			this.body = function.getBody();
+			this.slots = slots;
+		}
+	}
 	
 	public FunctionCall(String name) {
 		this.name = name;
 	}
 	
+	/**
+	 * Adds an argument for the parameter with the given name, or for the next parameter if the
+	 * name is null.
+	 */
 	public void addArgument(String parameter, Expression argument) {
-		if (arguments == null)
-			arguments = new HashMap <String, Expression> ();
-		if(argument != null && parameter != null)
-			arguments.put(parameter, argument);
+		if (argument != null) {
+			parameters.add(parameter);
+			arguments.add(argument);
+		}
 	}
 	
 	@Override
 	public void execute(Graphics graphics, Block block) {
-		Block functionBlock = block.getDefinition(name);
-		if (functionBlock != null) {
-			if (arguments != null)
-				functionBlock.setParameters(block, arguments);
-			functionBlock.execute(graphics, block);
+		Binding binding = bind(block);
+		Block definition = binding.body;
+		if (definition == null)
+			return;
+		int[] slots = binding.slots;
+		
+		// Calls that go too deep are skipped, and the first one is reported
+		ControlStack stack = block.getControlStack();
+		if (stack.isFull()) {
+			stack.overflow();
+			return;
+		}
+		
+		// Every argument is evaluated before any parameter changes, since an argument may refer
+		// to a parameter of the function that is making the call
+		SymbolTable table = block.getSymbolTable();
+		int base = stack.size();
+		for (int i = 0 ; i < slots.length ; i++)
+			if (slots[i] >= 0)
+				stack.push(arguments.get(i), block);
+		for (int i = 0 ; i < slots.length ; i++)
+			if (slots[i] >= 0)
+				stack.save(table, slots[i]);
+		int position = base;
+		for (int i = 0 ; i < slots.length ; i++)
+			if (slots[i] >= 0)
+				stack.assign(table, slots[i], position++);
+		
+		stack.push(definition, this, base);
+	}
+	
+	/**
+	 * Puts back the values the parameters had before the call once the body is finished. The
+	 * call saved one value above its arguments for each argument, along with the slot it came
+	 * from, so the same slots are restored even if the body defined the function again.
+	 */
+	public void finish(Block block, double mark) {
+		ControlStack stack = block.getControlStack();
+		SymbolTable table = block.getSymbolTable();
+		int base = (int) mark;
+		for (int saved = (stack.size() - base) / 2 ; saved > 0 ; saved--)
+			stack.restore(table);
+		stack.truncate(base);
+	}
+	
+	/**
+	 * Returns the arguments matched with the parameters of the current body of the function in
+	 * the given root block, matching them again if they were last matched with another body.
+	 * The binding of another root block is kept, so that runs of the same program taking turns
+	 * share it.
+	 */
+	private Binding bind(Block block) {
+		Binding binding = this.binding;
+		if (binding != null && binding.root == block && binding.body == binding.function.getBody())
+			return binding;
+		
+		Function function = block.getFunction(name);
+		if (binding != null && binding.body == function.getBody())
+			return binding;
+		int[] slots = new int[arguments.size()];
+		int next = 0;
+		for (int i = 0 ; i < slots.length ; i++) {
+			int parameter = (parameters.get(i) != null) ? function.indexOf(parameters.get(i)) : next++;
+			slots[i] = (parameter >= 0 && parameter < function.getParameterCount()) ? function.getSlot(parameter) : -1;
 		}
+		binding = new Binding(block, function, slots);
+		this.binding = binding;
+		return binding;
+	}
+	
+	/**
+	 * Returns the name of the function this calls.
+	 */
+	public String getName() {
+		return name;
 	}
 
 	@Override
 	public String toString() {
-		return "";
+		StringBuilder builder = new StringBuilder();
+		builder.append(name.replace(' ', '_'));
+		builder.append("(");
+		for (int i = 0 ; i < arguments.size() ; i++) {
+			builder.append((i > 0) ? ", " : " ");
+			if (parameters.get(i) != null)
+				builder.append(parameters.get(i) + " = ");
+			builder.append(arguments.get(i));
+		}
+		builder.append(" );");
+		return builder.toString();
 	}
 
 	@Override
 	public boolean equals(Instruction instruction, Block block) {
+		if (instruction instanceof FunctionCall) {
+			FunctionCall other = (FunctionCall) instruction;
+			if (! other.name.equals(name) || other.arguments.size() != arguments.size())
+				return false;
+			for (int i = 0 ; i < arguments.size() ; i++) {
+				String parameter = parameters.get(i);
+				if (! arguments.get(i).equals(other.arguments.get(i)) ||
+					(parameter == null ? other.parameters.get(i) != null : ! parameter.equals(other.parameters.get(i))))
+					return false;
+			}
+			return true;
+		}
 		return false;
 	}
-
+	
+	/**
+	 * Rewrites the arguments of this call with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		for (int i = 0 ; i < arguments.size() ; i++)
+			arguments.set(i, rewriter.rewrite(arguments.get(i)));
+	}
 }
@@ -2,6 +2,11 @@ package instruction;
 
 import java.awt.Graphics;
 
+/**
+ * Binds a function name to a block of instructions and its parameters when it runs.
+ * 
+ * @license MIT
+ */
 public class FunctionDefinition extends Instruction {
 	
 	String symbol;
@@ -16,14 +21,41 @@ public class FunctionDefinition extends Instruction {
 	public void execute(Graphics graphics, Block rootBlock) {
 		rootBlock.define(symbol, block);
 	}
+	
+	/**
+	 * Returns the name of the function.
+	 */
+	public String getName() {
+		return symbol;
+	}
+	
+	/**
+	 * Returns the body of the function.
+	 */
+	public Block getBlock() {
+		return block;
+	}
 
 	@Override
 	public String toString() {
-		return "";
+		return "void " + symbol.replace(' ', '_') + "( " + String.join(", ", block.getParameters()) + " ) " + block.toString();
 	}
 
 	@Override
 	public boolean equals(Instruction instruction, Block block) {
+		if (instruction instanceof FunctionDefinition) {
+			FunctionDefinition other = (FunctionDefinition) instruction;
+			return other.symbol.equals(symbol) &&
+				   other.block.getParameters().equals(this.block.getParameters()) &&
+				   other.block.equals(this.block);
+		}
 		return false;
 	}
+	
+	/**
+	 * Rewrites the body of this function with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		block.rewrite(rewriter);
+	}
 }
@@ -3,7 +3,6 @@ package instruction;
 import java.awt.Graphics;
 
 import expression.Expression;
-import expression.Terminal;
 
 /**
  * Represents an if statement and its corresponding block in a pseudocode program. 
@@ -16,7 +15,7 @@ import expression.Terminal;
 public class IfBlock extends Instruction {
 	
 	Expression expression;	// The expression that controls whether this block executes
-	Terminal evaluated; 	// Caches the last evaluated value for the expression
+	int evaluated; 			// The state holding the last evaluated value for the expression
 	Block block;			// The block of instructions
 	
 	/**
@@ -28,33 +27,61 @@ public class IfBlock extends Instruction {
 	 */
 	public IfBlock(Expression expression, Block block) {
 		this.expression = expression;
-		this.evaluated = new Terminal();
+		this.evaluated = block.getSymbolTable().allocateState();
 		this.block = block;
 	}
 	
 	/**
 	 * Assumes that the shouldExecute method returned true to the block parent of this instruction.
-	 * Executes this instruction by first resetting the statement's block, then running every instruction.
+	 * Executes this instruction by starting a frame that runs every instruction of the block.
 	 */
 	public void execute(Graphics graphics, Block rootBlock) {
-		block.reset();
-		while (! block.isComplete())
-			block.execute(graphics, rootBlock);
+		rootBlock.getControlStack().push(block, this, rootBlock.getSymbolTable().getState(evaluated));
+	}
+	
+	/**
+	 * Puts back the result of the condition once the block is finished, since a function called
+	 * within the block may have evaluated it again, and an else branch checks it next.
+	 */
+	public void finish(Block rootBlock, double mark) {
+		rootBlock.getSymbolTable().setState(evaluated, mark);
 	}
 	
 	/**
 	 * Evaluates the branch instruction, and returns true if it evaluates to a positive non-zero number.
 	 */
 	public boolean shouldExecute(Block rootBlock) {
-		evaluated.setValue(expression.evaluate(rootBlock));
-		return evaluated.getValue() >= 1;
+		double value = expression.evaluate(rootBlock);
+		rootBlock.getSymbolTable().setState(evaluated, value);
+		return value >= 1;
 	}
 	
 	/**
-	 * Returns true if in the last test of execution, this block executed.
+	 * Returns the expression that controls whether this block executes.
 	 */
-	public boolean didExecute() {
-		return evaluated.getValue() >= 1;
+	public Expression getExpression() {
+		return expression;
+	}
+	
+	/**
+	 * Replaces the expression that controls whether this block executes.
+	 */
+	public void setExpression(Expression expression) {
+		this.expression = expression;
+	}
+	
+	/**
+	 * Returns the block of instructions.
+	 */
+	public Block getBlock() {
+		return block;
+	}
+	
+	/**
+	 * Returns true if in the last test of execution in the given root block, this block executed.
+	 */
+	public boolean didExecute(Block rootBlock) {
+		return rootBlock.getSymbolTable().getState(evaluated) >= 1;
 	}
 	
 	/**
@@ -80,4 +107,12 @@ public class IfBlock extends Instruction {
 		}
 		return false;
 	}
+	
+	/**
+	 * Rewrites the condition and block of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		expression = rewriter.rewrite(expression);
+		block.rewrite(rewriter);
+	}
 }
@@ -3,7 +3,6 @@ package instruction;
 import java.awt.Graphics;
 
 import expression.Expression;
-import expression.Operator;
 import expression.SymbolTerminal;
 import expression.Terminal;
 
@@ -41,6 +40,20 @@ public class Increment extends Instruction {
 		this.change = change;
 	}
 	
+	/**
+	 * Returns the symbol being changed.
+	 */
+	public SymbolTerminal getSymbol() {
+		return symbol;
+	}
+	
+	/**
+	 * Returns the expression describing the change.
+	 */
+	public Expression getChange() {
+		return change;
+	}
+	
 	/**
 	 * Returns the String representation of this instruction.
 	 */
@@ -52,7 +65,7 @@ public class Increment extends Instruction {
 	 * Executes this increment instruction.
 	 */
 	public void execute(Graphics graphics, Block block) {
-		block.assign(symbol.toString(), new Expression(symbol, Operator.Add, change));
+		block.assign(symbol, symbol.evaluate(block) + change.evaluate(block));
 	}
 	
 	/**
@@ -66,4 +79,11 @@ public class Increment extends Instruction {
 		}
 		return false;
 	}
+	
+	/**
+	 * Rewrites the expressions of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		change = rewriter.rewrite(change);
+	}
 }
@@ -15,6 +15,9 @@ public abstract class Instruction {
 	// Reference to the Block object that this instruction is a child of.
 	protected Block parentBlock;
 	
+	// The line of the source text this instruction was parsed from, counting from 0, or -1
+	private int line = -1;
+	
 	/**
 	 * Called by the Block object when this instruction is added to it.
 	 * @param block - the Block that is adding this instruction
@@ -23,6 +26,21 @@ public abstract class Instruction {
 		this.parentBlock = block;
 	}
 	
+	/**
+	 * Returns the line of the source text this instruction was parsed from, counting from 0, or
+	 * -1 if it was not parsed from text.
+	 */
+	public int getLine() {
+		return line;
+	}
+	
+	/**
+	 * Sets the line of the source text this instruction was parsed from.
+	 */
+	public void setLine(int line) {
+		this.line = line;
+	}
+	
 	/**
 	 * Implement this method to execute a Pseudocode instruction. 
 	 * 
@@ -71,4 +89,29 @@ public abstract class Instruction {
 	public boolean shouldRepeat() { 
 		return false; 
 	}
+	
+	/**
+	 * Can be overridden by loops that keep count of their runs in the given root block, instead
+	 * of shouldRepeat. Calls shouldRepeat by default.
+	 * @param block - the root block of the program
+	 * @return true if this instruction should run again
+	 */
+	public boolean shouldRepeat(Block block) {
+		return shouldRepeat();
+	}
+	
+	/**
+	 * Can be overridden by instructions that start a frame on the ControlStack, to be told when
+	 * the frame is finished.
+	 * @param block - the root block of the program
+	 * @param mark - the number given when the frame was started
+	 */
+	public void finish(Block block, double mark) {}
+	
+	/**
+	 * Should be overridden by every instruction that holds expressions or blocks, so that passes
+	 * over the parsed program can replace each expression and visit each nested block.
+	 * @param rewriter - the Rewriter that is given every expression and block
+	 */
+	public void rewrite(Rewriter rewriter) {}
 }
@@ -0,0 +1,107 @@
+package instruction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Counts how often a running program reaches each line of its source text, and adds up the time
+ * spent on each line. Every instruction that runs tells the profile its line, which takes an
+ * array increment and a field write, and another thread samples the line the program is on
+ * every millisecond or so, adding the time since the previous sample to that line. The time of
+ * each line is therefore an estimate, which gets better the longer the program runs, while the
+ * counts are exact.
+ *
+ * A program only has a profile when it is profiled, and otherwise never pays for one.
+ *
+ * @license MIT
+ */
+public class LineProfile {
+
+	// The number of times each line was reached, and the nanoseconds sampled on each line
+	private long[] counts;
+	private long[] times;
+
+	// Reads and writes the current line in opaque mode, so that the sampling thread always sees
+	// the line the program wrote soon after, while the program pays no more than for a plain
+	// field write. A sample that is a little late is harmless, so nothing stronger is needed.
+	private static final VarHandle CURRENT;
+
+	static {
+		try {
+			CURRENT = MethodHandles.lookup().findVarHandle(LineProfile.class, "current", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	// The line the program is on, or -1 between frames. Written by the program and read by the
+	// sampling thread, only through CURRENT.
+	private int current = -1;
+
+	/**
+	 * Creates a profile of a program with the given number of lines.
+	 */
+	public LineProfile(int lines) {
+		counts = new long[lines];
+		times = new long[lines];
+	}
+
+	/**
+	 * Called by the running program when it reaches an instruction on the given line. Lines
+	 * outside of the source text, such as those of instructions made up by the parser, are
+	 * ignored.
+	 */
+	public void enter(int line) {
+		if (line >= 0 && line < counts.length) {
+			counts[line]++;
+			CURRENT.setOpaque(this, line);
+		}
+	}
+
+	/**
+	 * Called by whatever runs the program when a frame is finished, so that the time between
+	 * frames is not counted against any line.
+	 */
+	public void leave() {
+		CURRENT.setOpaque(this, -1);
+	}
+
+	/**
+	 * Adds the given time to the line the program is on, if it is on one.
+	 */
+	public void sample(long nanoseconds) {
+		int line = (int) CURRENT.getOpaque(this);
+		if (line >= 0)
+			times[line] += nanoseconds;
+	}
+
+	/**
+	 * Returns the number of lines of the program.
+	 */
+	public int getLines() {
+		return counts.length;
+	}
+
+	/**
+	 * Returns the number of times the given line was reached.
+	 */
+	public long getCount(int line) {
+		return counts[line];
+	}
+
+	/**
+	 * Returns the estimated nanoseconds spent on the given line.
+	 */
+	public long getTime(int line) {
+		return times[line];
+	}
+
+	/**
+	 * Clears every count and time.
+	 */
+	public void clear() {
+		Arrays.fill(counts, 0);
+		Arrays.fill(times, 0);
+	}
+}
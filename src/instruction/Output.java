@@ -0,0 +1,20 @@
+package instruction;
+
+/**
+ * Receives the text that a program prints, such as the Console window or the output file of a
+ * program run without a window.
+ * 
+ * @license MIT
+ */
+public interface Output {
+
+	/**
+	 * Prints a line of text.
+	 */
+	public void print(String text);
+
+	/**
+	 * Prints an error message.
+	 */
+	public void error(String message);
+}
@@ -4,6 +4,7 @@ import java.awt.Graphics;
 
 import expression.Expression;
 import expression.StringTerminal;
+import expression.Value;
 
 /**
  * 
@@ -34,9 +35,15 @@ public class Print extends Instruction {
 		if (expression instanceof StringTerminal)
 			algorithm.print(evaluateString(((StringTerminal) expression).getStringValue(), algorithm));
 		
-		// Otherwise print the evaluated value of the expression.
-		else 
-			algorithm.print(evaluateString("" + expression.evaluate(algorithm), algorithm));
+		// Otherwise print the evaluated value of the expression, reading a string or list variable
+		// directly instead of as a number.
+		else {
+			Value value = expression.evaluateValue(algorithm);
+			if (value != null)
+				algorithm.print(value.toString());
+			else
+				algorithm.print(evaluateString("" + expression.evaluate(algorithm), algorithm));
+		}
 	}
 	
 	/**
@@ -90,4 +97,11 @@ public class Print extends Instruction {
 		}
 		return false;
 	}
+	
+	/**
+	 * Rewrites the expressions of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		expression = rewriter.rewrite(expression);
+	}
 }
@@ -0,0 +1,47 @@
+package instruction;
+
+/**
+ * A parsed program that can be run any number of times, one after another or at the same time.
+ * Running a program never changes its instructions: everything that changes while it runs is
+ * kept by the ExecutionContext of each run, so a program only has to be parsed once.
+ * 
+ * Passes that rewrite the instructions, such as profiling, compiling or lowering, must be
+ * made before the first run is started, since every run shares the same instructions and
+ * starts from a copy of the variables the program has at that point.
+ * 
+ * A program reparsed after an edit takes over the instructions of the lines that did not
+ * change from the program before it, so only the latest of them may be started.
+ * 
+ * @license MIT
+ */
+public class Program {
+
+	// The root block of the parsed program
+	private Block block;
+
+	/**
+	 * Creates a program from the root block returned by the parser.
+	 */
+	public Program(Block block) {
+		this.block = block;
+	}
+
+	/**
+	 * Returns the root block of the program, which holds its instructions and the variables every
+	 * run starts with.
+	 */
+	public Block getBlock() {
+		return block;
+	}
+
+	/**
+	 * Starts a new run of this program, from its first instruction.
+	 */
+	public ExecutionContext start() {
+		return new ExecutionContext(this);
+	}
+
+	public String toString() {
+		return block.toString();
+	}
+}
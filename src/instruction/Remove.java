@@ -0,0 +1,64 @@
+package instruction;
+
+import java.awt.Graphics;
+
+import expression.Expression;
+import expression.SymbolTerminal;
+
+/**
+ * The instruction for removing an element from a list.
+ * 
+ * @license MIT
+ */
+public class Remove extends Instruction {
+	
+	// The list being removed from, and the index of the element (or null for the last element)
+	SymbolTerminal symbol;
+	Expression index;
+	
+	/**
+	 * Constructs an instruction that removes the element at the given index from the given list.
+	 * @param symbol - the symbol of the list
+	 * @param index - the index of the element to remove, or null to remove the last element
+	 */
+	public Remove(SymbolTerminal symbol, Expression index) {
+		this.symbol = symbol;
+		this.index = index;
+	}
+	
+	/**
+	 * Removes the element from the list.
+	 */
+	public void execute(Graphics graphics, Block block) {
+		block.remove(symbol, (index != null) ? (int) index.evaluate(block) : -1);
+	}
+	
+	/**
+	 * Returns the String representation of this instruction.
+	 */
+	public String toString() {
+		if (index == null)
+			return symbol.toString() + ".removeLast();";
+		return symbol.toString() + ".remove(" + index.toString() + ");";
+	}
+	
+	/**
+	 * Returns true if this instruction object is equivalent to another in the parse tree.
+	 */
+	public boolean equals(Instruction instruction, Block block) {
+		if (instruction instanceof Remove) {
+			Remove other = (Remove) instruction;
+			return other.symbol.equals(symbol) && 
+				   ((index == null && other.index == null) || (index != null && index.equals(other.index)));
+		}
+		return false;
+	}
+	
+	/**
+	 * Rewrites the expressions of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		if (index != null)
+			index = rewriter.rewrite(index);
+	}
+}
@@ -13,7 +13,7 @@ public class RepeatBlock extends Instruction {
 	Expression expression;	// How many time to loop
 	double evaluated; 		// Caches the last evaluated value for the expression
 	Block block;			// The block of instructions
-	int repeated;			// Times repeated
+	int repeated;			// The state holding the times repeated
 	
 	/**
 	 * Constructs a RepeatBlock object that performs the given block a number of times based on 
@@ -26,18 +26,17 @@ public class RepeatBlock extends Instruction {
 		this.expression = expression;
 		this.evaluated = expression.evaluate(block);
 		this.block = block;
-		repeated = 0;
+		this.repeated = block.getSymbolTable().allocateState();
 	}
 	
 	/**
 	 * Assumes that the shouldExecute method returned true to the block parent of this instruction.
-	 * Executes this instruction by first resetting the statement's block, then running every instruction.
+	 * Executes this instruction by starting a frame that runs every instruction of the block.
 	 */
 	public void execute(Graphics graphics, Block rootBlock) {
-		repeated++;
-		block.reset();
-		while (! block.isComplete())
-			block.execute(graphics, rootBlock);
+		SymbolTable table = rootBlock.getSymbolTable();
+		table.setState(repeated, table.getState(repeated) + 1);
+		rootBlock.getControlStack().push(block, null, 0);
 	}
 	
 	public boolean shouldExecute() {
@@ -45,10 +44,24 @@ public class RepeatBlock extends Instruction {
 	}
 	
 	/**
-	 * Checks how many times it repeated.
+	 * Checks how many times it repeated in the given root block.
 	 */
-	public boolean shouldRepeat() {
-		return evaluated>repeated;
+	public boolean shouldRepeat(Block rootBlock) {
+		return evaluated > rootBlock.getSymbolTable().getState(repeated);
+	}
+	
+	/**
+	 * Returns how many times the block repeats, as evaluated when this loop was parsed.
+	 */
+	public double getCount() {
+		return evaluated;
+	}
+	
+	/**
+	 * Returns the block of instructions.
+	 */
+	public Block getBlock() {
+		return block;
 	}
 	
 	/**
@@ -74,4 +87,12 @@ public class RepeatBlock extends Instruction {
 		}
 		return false;
 	}
+	
+	/**
+	 * Rewrites the repeat count and block of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		expression = rewriter.rewrite(expression);
+		block.rewrite(rewriter);
+	}
 }
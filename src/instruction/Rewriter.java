@@ -0,0 +1,25 @@
+package instruction;
+
+import expression.Expression;
+
+/**
+ * A Rewriter is given every expression and block of a parsed program, and can replace each
+ * expression with an equivalent one. Used by passes that transform a program after parsing.
+ * 
+ * @license MIT
+ */
+public interface Rewriter {
+	
+	/**
+	 * Returns the expression that should replace the given expression. May return the same
+	 * expression to leave it unchanged.
+	 * @param expression - an expression of an instruction, never null
+	 */
+	public Expression rewrite(Expression expression);
+	
+	/**
+	 * Called for every block after all of its instructions have been rewritten.
+	 * @param block - the block that was rewritten
+	 */
+	public default void rewrite(Block block) {}
+}
@@ -0,0 +1,376 @@
+package instruction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import expression.ListValue;
+import expression.StringValue;
+import expression.Value;
+
+/**
+ * Stores the value of every variable in a program. Each variable name is resolved once to an
+ * integer slot, and values are kept in primitive arrays indexed by that slot, so reading or
+ * writing a variable never hashes a String or allocates.
+ *
+ * The numeric value of a slot is always what reading the variable without an index would
+ * return: the number itself, or the first element of a list or string.
+ *
+ * The table also holds the state that instructions keep while a program runs, such as the
+ * result of each if block, apart from the variables, so that all of it is copied along with
+ * the variables.
+ *
+ * A table can be copied for each run of a program. Every slot of the original is the same
+ * variable in the copy, so a slot that was resolved against the original can be used with any
+ * of its copies, and names resolved later by a copy only belong to that copy.
+ *
+ * @license MIT
+ */
+public class SymbolTable {
+
+	// Type tags stored for each slot
+	public static final byte UNDEFINED = 0;
+	public static final byte NUMBER = 1;
+	public static final byte LIST = 2;
+	public static final byte STRING = 3;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Maps each variable name to its slot. Only used when a name is resolved.
+	private HashMap <String, Integer> slots;
+
+	// The name, type and numeric value of each slot, and the ListValue or StringValue
+	// of list and string slots.
+	private String[] names;
+	private byte[] types;
+	private double[] values;
+	private Value[] references;
+
+	// The number of slots that have been resolved
+	private int size = 0;
+
+	// The state kept by instructions, and the number of states that have been allocated
+	private double[] states = new double[INITIAL_CAPACITY];
+	private int stateCount = 0;
+
+	// The table this one was copied from, or this table if it is not a copy, and the number of
+	// slots it had when it was copied
+	private SymbolTable origin = this;
+	private int shared = 0;
+
+	/**
+	 * Creates an empty symbol table.
+	 */
+	public SymbolTable() {
+		slots = new HashMap <String, Integer> ();
+		names = new String[INITIAL_CAPACITY];
+		types = new byte[INITIAL_CAPACITY];
+		values = new double[INITIAL_CAPACITY];
+		references = new Value[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Creates a copy of the given table, with the same slots holding the same values. Lists are
+	 * copied, so changing a list in one table does not change it in the other.
+	 * @param table - a table that is not itself a copy
+	 */
+	public SymbolTable(SymbolTable table) {
+		slots = new HashMap <String, Integer> (table.slots);
+		names = table.names.clone();
+		types = table.types.clone();
+		values = table.values.clone();
+		references = table.references.clone();
+		for (int slot = 0 ; slot < table.size ; slot++)
+			if (references[slot] instanceof ListValue)
+				references[slot] = new ListValue((ListValue) references[slot]);
+		size = table.size;
+		states = table.states.clone();
+		stateCount = table.stateCount;
+		origin = table.origin;
+		shared = (table.origin == table) ? table.size : table.shared;
+	}
+
+	/**
+	 * Copies the value of every variable of the given table into the variable of the same name in
+	 * this table, and the state of the instructions both tables have if they were copied from the
+	 * same table, so that a run of a changed program carries on from an earlier run. Lists are
+	 * copied, and unnamed slots are left alone.
+	 */
+	public void load(SymbolTable table) {
+		for (int slot = 0 ; slot < table.size ; slot++) {
+			if (table.names[slot] == null || table.types[slot] == UNDEFINED)
+				continue;
+			Value reference = table.references[slot];
+			if (reference instanceof ListValue)
+				reference = new ListValue((ListValue) reference);
+			restore(resolve(table.names[slot]), table.types[slot], table.values[slot], reference);
+		}
+		if (table.origin == origin)
+			System.arraycopy(table.states, 0, states, 0, Math.min(stateCount, table.stateCount));
+	}
+
+	/**
+	 * Returns true if the given slot of the given table is the same variable in this table,
+	 * because they are the same table or this table was copied from it after the slot was
+	 * resolved.
+	 */
+	public boolean shares(SymbolTable table, int slot) {
+		return table == this || (table == origin && slot >= 0 && slot < shared);
+	}
+
+	/**
+	 * Returns true if every slot of the given table is the same variable in this table.
+	 */
+	public boolean hasSlotsOf(SymbolTable table) {
+		return table == this || (table == origin && table.size <= shared);
+	}
+
+	/**
+	 * Returns the table that a lookup of the given slot of this table can be remembered for: the
+	 * table this one was copied from if the slot was copied, since every copy has the same slot,
+	 * this table if it is not a copy, or null if the slot only exists in this copy.
+	 */
+	public SymbolTable getOwner(int slot) {
+		if (origin == this)
+			return this;
+		return (slot < shared) ? origin : null;
+	}
+
+	/**
+	 * Returns the slot of the given variable, allocating an undefined slot if the variable
+	 * has never been resolved before.
+	 * @param name - the name of the variable
+	 * @return the slot of the variable
+	 */
+	public int resolve(String name) {
+		Integer slot = slots.get(name);
+		if (slot != null)
+			return slot;
+
+		grow();
+		names[size] = name;
+		slots.put(name, size);
+		return size++;
+	}
+
+	/**
+	 * Allocates a slot that has no name and holds the given number, for values that a lowered
+	 * program keeps next to its variables. The slot stays undefined, so it is never printed.
+	 * @param value - the initial value of the slot
+	 * @return the new slot
+	 */
+	public int allocate(double value) {
+		grow();
+		values[size] = value;
+		return size++;
+	}
+
+	/**
+	 * Grows the slot arrays if they are full.
+	 */
+	private void grow() {
+		if (size == names.length) {
+			int capacity = size * 2;
+			names = Arrays.copyOf(names, capacity);
+			types = Arrays.copyOf(types, capacity);
+			values = Arrays.copyOf(values, capacity);
+			references = Arrays.copyOf(references, capacity);
+		}
+	}
+
+	/**
+	 * Returns the slot of the given variable, or -1 if it has never been resolved.
+	 */
+	public int find(String name) {
+		Integer slot = slots.get(name);
+		return (slot != null) ? slot : -1;
+	}
+
+	/**
+	 * Returns the number of slots in this table.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the name of the variable stored in the given slot.
+	 */
+	public String getName(int slot) {
+		return names[slot];
+	}
+
+	/**
+	 * Returns the type tag of the given slot.
+	 */
+	public byte getType(int slot) {
+		return types[slot];
+	}
+
+	/**
+	 * Returns true if a value has been assigned to the given slot.
+	 */
+	public boolean isDefined(int slot) {
+		return types[slot] != UNDEFINED;
+	}
+
+	/**
+	 * Returns the numeric value of the given slot.
+	 */
+	public double get(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Returns the array holding the numeric value of every slot, for compiled code that reads
+	 * variables directly. The array is replaced when the table grows, so it must be fetched
+	 * again after anything that may resolve a new name.
+	 */
+	public double[] values() {
+		return values;
+	}
+
+	/**
+	 * Returns the element at the given index of a list or string, or the value of a number.
+	 * Indices outside of the list refer to the first element.
+	 */
+	public double get(int slot, int index) {
+		switch (types[slot]) {
+		case LIST:		return ((ListValue) references[slot]).get(index);
+		case STRING:	return ((StringValue) references[slot]).get(index);
+		default:		return values[slot];
+		}
+	}
+
+	/**
+	 * Returns the number of elements of a list or string slot, or 0 for any other slot.
+	 */
+	public int length(int slot) {
+		switch (types[slot]) {
+		case LIST:		return ((ListValue) references[slot]).length();
+		case STRING:	return ((StringValue) references[slot]).length();
+		default:		return 0;
+		}
+	}
+
+	/**
+	 * Returns the list or string stored in the given slot, or null if it holds a number.
+	 */
+	public Value getValue(int slot) {
+		return references[slot];
+	}
+
+	/**
+	 * Returns the list stored in the given slot, or null if it is not a list. Lists should only
+	 * be changed through this table so that the numeric value of the slot stays up to date.
+	 */
+	public ListValue getList(int slot) {
+		return (types[slot] == LIST) ? (ListValue) references[slot] : null;
+	}
+
+	/**
+	 * Returns the string stored in the given slot, or null if it is not a string.
+	 */
+	public StringValue getString(int slot) {
+		return (types[slot] == STRING) ? (StringValue) references[slot] : null;
+	}
+
+	/**
+	 * Assigns a number to the given slot.
+	 */
+	public void set(int slot, double value) {
+		types[slot] = NUMBER;
+		values[slot] = value;
+		references[slot] = null;
+	}
+
+	/**
+	 * Allocates a number that an instruction keeps while the program runs, such as the result of
+	 * an if block, and returns its index.
+	 */
+	int allocateState() {
+		if (stateCount == states.length)
+			states = Arrays.copyOf(states, stateCount * 2);
+		return stateCount++;
+	}
+
+	/**
+	 * Returns the state of an instruction.
+	 */
+	double getState(int state) {
+		return states[state];
+	}
+
+	/**
+	 * Changes the state of an instruction.
+	 */
+	void setState(int state, double value) {
+		states[state] = value;
+	}
+
+	/**
+	 * Puts back a type, numeric value and list or string that were read from a slot.
+	 */
+	void restore(int slot, byte type, double value, Value reference) {
+		types[slot] = type;
+		values[slot] = value;
+		references[slot] = reference;
+	}
+
+	/**
+	 * Assigns a value to an existing element of a list. Does nothing if the slot is not a list
+	 * or the index is outside of the list.
+	 */
+	public void set(int slot, int index, double value) {
+		if (types[slot] == LIST && ((ListValue) references[slot]).set(index, value) && index == 0)
+			values[slot] = value;
+	}
+
+	/**
+	 * Assigns a list to the given slot.
+	 */
+	public void set(int slot, ListValue list) {
+		types[slot] = LIST;
+		values[slot] = list.get(0);
+		references[slot] = list;
+	}
+
+	/**
+	 * Assigns a string to the given slot.
+	 */
+	public void set(int slot, StringValue string) {
+		types[slot] = STRING;
+		values[slot] = string.get(0);
+		references[slot] = string;
+	}
+
+	/**
+	 * Adds a value to the end of the list in the given slot. Any other variable becomes a list
+	 * with its numeric value as the first element, and an undefined slot becomes a new list.
+	 */
+	public void append(int slot, double value) {
+		if (types[slot] != LIST) {
+			ListValue list = new ListValue();
+			if (types[slot] != UNDEFINED)
+				list.append(values[slot]);
+			set(slot, list);
+		}
+		ListValue list = (ListValue) references[slot];
+		list.append(value);
+		values[slot] = list.get(0);
+	}
+
+	/**
+	 * Removes the element at the given index of the list in the given slot, or the last element
+	 * if the index is negative. Does nothing if the slot is not a list.
+	 */
+	public void remove(int slot, int index) {
+		if (types[slot] != LIST)
+			return;
+		ListValue list = (ListValue) references[slot];
+		if (index < 0)
+			list.removeLast();
+		else
+			list.remove(index);
+		values[slot] = list.get(0);
+	}
+}
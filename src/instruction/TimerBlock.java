@@ -0,0 +1,99 @@
+package instruction;
+
+import java.awt.Graphics;
+
+import expression.Expression;
+
+/**
+ * Runs a block of instructions after a number of seconds, or every that many seconds. Running
+ * an "after" instruction schedules its block again each time, while an "every" instruction only
+ * schedules its block the first time it runs, and the block then keeps repeating.
+ * 
+ * @license MIT
+ */
+public class TimerBlock extends Instruction {
+	
+	Expression delay;		// The number of seconds before the block runs
+	Block block;			// The block of instructions
+	boolean repeat;			// True if the block runs every that many seconds
+	
+	/**
+	 * Constructs a timer block.
+	 * @param delay - the number of seconds before the block runs
+	 * @param block - the block of instructions to run
+	 * @param repeat - true to run the block every that many seconds
+	 */
+	public TimerBlock(Expression delay, Block block, boolean repeat) {
+		this.delay = delay;
+		this.block = block;
+		this.repeat = repeat;
+	}
+	
+	/**
+	 * Schedules the block with the timers of the program. The timers of each run remember the
+	 * timer of a repeating block, so that it is only scheduled once per run.
+	 */
+	public void execute(Graphics graphics, Block rootBlock) {
+		TimerWheel timers = rootBlock.getTimers();
+		if (repeat) {
+			TimerWheel.Timer timer = timers.getTimer(this);
+			if (timer == null || ! timer.isActive(timers))
+				timers.schedule(this, block, delay.evaluate(rootBlock), true);
+		}
+		else timers.schedule(block, delay.evaluate(rootBlock), false);
+	}
+	
+	/**
+	 * Returns the number of seconds before the block runs.
+	 */
+	public Expression getDelay() {
+		return delay;
+	}
+	
+	/**
+	 * Returns the block of instructions.
+	 */
+	public Block getBlock() {
+		return block;
+	}
+	
+	/**
+	 * Returns true if the block runs repeatedly.
+	 */
+	public boolean isRepeating() {
+		return repeat;
+	}
+	
+	/**
+	 * Returns the String representation of this block.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(repeat ? "every( " : "after( ");
+		sb.append(delay.toString());
+		sb.append(" ) ");
+		sb.append(block.toString());
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns true if this instruction object is equivalent to another in the parse tree.
+	 */
+	public boolean equals(Instruction instruction, Block block) {
+		if (instruction instanceof TimerBlock) {
+			TimerBlock other = (TimerBlock) instruction;
+			return other.repeat == this.repeat &&
+				   other.delay.equals(this.delay) &&
+				   other.block.equals(this.block);
+		}
+		return false;
+	}
+	
+	/**
+	 * Rewrites the delay and block of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		delay = rewriter.rewrite(delay);
+		block.rewrite(rewriter);
+	}
+}
@@ -0,0 +1,288 @@
+package instruction;
+
+import java.awt.Graphics;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+
+/**
+ * Keeps the clock of a running program, and the timers of its "wait", "after" and "every"
+ * instructions. Timers are kept in a hierarchical timer wheel: four levels of 64 slots, where
+ * a slot of the first level covers one millisecond and a slot of each higher level covers 64
+ * slots of the level below. A timer is placed in the lowest level whose slots still reach its
+ * deadline, and moves down a level each time the level below turns over.
+ *
+ * Scheduling a timer and moving the clock forward both take constant time no matter how many
+ * timers are waiting, and slots without timers are skipped using a bit mask of each level,
+ * so a program with thousands of idle timers costs almost nothing per frame.
+ *
+ * The clock only moves when advance is called by whatever drives the program, such as the
+ * simulation thread, so programs run the same way whatever the speed of the computer.
+ *
+ * Every run of a program has a wheel of its own, which also remembers the timer each
+ * instruction scheduled, so that the instructions themselves never change while they run.
+ *
+ * @license MIT
+ */
+public class TimerWheel {
+
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+
+	// The furthest in milliseconds a repeating timer may fall behind before it skips runs
+	private static final long MAX_LAG = 1000;
+
+	/**
+	 * A block of instructions that runs once or repeatedly when its deadline is reached.
+	 */
+	public static class Timer {
+		private Block block;
+		private long deadline;
+		private long period;
+		private boolean active = true;
+		private TimerWheel wheel;
+		private Timer next;
+
+		private Timer(TimerWheel wheel, Block block, long deadline, long period) {
+			this.wheel = wheel;
+			this.block = block;
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		/**
+		 * Returns true if the timer will still run, in the given wheel.
+		 */
+		public boolean isActive(TimerWheel wheel) {
+			return active && this.wheel == wheel;
+		}
+
+		/**
+		 * Returns the time in milliseconds at which the timer runs next.
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+	}
+
+	// The first timer in each slot of each level, and the slots of each level that hold timers
+	private Timer[][] slots = new Timer[LEVELS][SLOTS];
+	private long[] occupied = new long[LEVELS];
+
+	// Timers that have reached their deadline and have not run yet
+	private ArrayDeque <Timer> due = new ArrayDeque <Timer> ();
+
+	// The last timer scheduled by each instruction that asked for one to be remembered
+	private IdentityHashMap <Instruction, Timer> owned = new IdentityHashMap <Instruction, Timer> ();
+
+	// The current time in milliseconds, the number of timers in the wheel, and the time until
+	// which the program is waiting
+	private long now = 0;
+	private int size = 0;
+	private long resume = 0;
+
+	/**
+	 * Returns the current time of the program in milliseconds.
+	 */
+	public long now() {
+		return now;
+	}
+
+	/**
+	 * Returns the number of timers that have not reached their deadline.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Schedules a block to run after the given number of seconds, and then again every that many
+	 * seconds if the timer repeats. A repeating timer runs at most once per millisecond.
+	 * @return the scheduled timer
+	 */
+	public Timer schedule(Block block, double seconds, boolean repeat) {
+		long delay = milliseconds(seconds);
+		Timer timer = new Timer(this, block, now + delay, repeat ? Math.max(delay, 1) : 0);
+		place(timer);
+		return timer;
+	}
+
+	/**
+	 * Schedules a block the same way, on behalf of the given instruction, and remembers the timer
+	 * as the one the instruction scheduled in this wheel.
+	 * @return the scheduled timer
+	 */
+	public Timer schedule(Instruction owner, Block block, double seconds, boolean repeat) {
+		Timer timer = schedule(block, seconds, repeat);
+		owned.put(owner, timer);
+		return timer;
+	}
+
+	/**
+	 * Returns the last timer the given instruction scheduled in this wheel, or null if it has not
+	 * scheduled one.
+	 */
+	public Timer getTimer(Instruction owner) {
+		return owned.get(owner);
+	}
+
+	/**
+	 * Makes the program wait for the given number of seconds.
+	 */
+	public void waitFor(double seconds) {
+		resume = now + milliseconds(seconds);
+	}
+
+	/**
+	 * Returns true if the program is waiting.
+	 */
+	public boolean isWaiting() {
+		return now < resume;
+	}
+
+	/**
+	 * Moves the clock forward by the given number of milliseconds, collecting every timer whose
+	 * deadline is reached.
+	 */
+	public void advance(long milliseconds) {
+		long target = now + Math.max(milliseconds, 0);
+		while (now < target) {
+			if (size == 0) {
+				now = target;
+				break;
+			}
+
+			// Find the next slot of the first level that holds timers, or the next time the first
+			// level turns over, since higher levels may then move timers into it
+			int index = (int) (now & MASK);
+			long later = (index == MASK) ? 0 : occupied[0] & (-1L << (index + 1));
+			long next = (later != 0) ? (now & ~MASK) + Long.numberOfTrailingZeros(later) : (now | MASK) + 1;
+			if (next > target) {
+				now = target;
+				break;
+			}
+			now = next;
+
+			// Move timers down from every level that turns over, starting at the highest
+			int level = 1;
+			while (level < LEVELS && (now & ((1L << (BITS * level)) - 1)) == 0)
+				level++;
+			while (--level >= 1)
+				cascade(level);
+			collect(0, (int) (now & MASK));
+		}
+	}
+
+	/**
+	 * Runs the block of every timer that has reached its deadline, in the order they were reached.
+	 * @param graphics - the graphics the blocks draw on
+	 * @param root - the root block of the program
+	 */
+	public void run(Graphics graphics, Block root) {
+		Timer timer;
+		while ((timer = due.poll()) != null) {
+			if (! timer.active)
+				continue;
+			if (timer.period > 0) {
+				// Runs missed by more than a second, such as while the program was paused, are skipped
+				timer.deadline += timer.period;
+				if (now - timer.deadline > MAX_LAG)
+					timer.deadline = now + timer.period;
+				place(timer);
+			}
+			else timer.active = false;
+
+			timer.block.run(graphics, root);
+		}
+	}
+
+	/**
+	 * Cancels every timer and stops waiting, keeping the current time.
+	 */
+	public void clear() {
+		for (int level = 0 ; level < LEVELS ; level++) {
+			for (int slot = 0 ; slot < SLOTS ; slot++) {
+				for (Timer timer = slots[level][slot] ; timer != null ; timer = timer.next)
+					timer.active = false;
+				slots[level][slot] = null;
+			}
+			occupied[level] = 0;
+		}
+		for (Timer timer : due)
+			timer.active = false;
+		due.clear();
+		owned.clear();
+		size = 0;
+		resume = now;
+	}
+
+	/**
+	 * Places a timer in the slot that its deadline falls into, or with the due timers if its
+	 * deadline has been reached.
+	 */
+	private void place(Timer timer) {
+		if (timer.deadline <= now) {
+			due.add(timer);
+			return;
+		}
+
+		// The lowest level at which the deadline and the current time share every higher digit
+		long difference = timer.deadline ^ now;
+		int level = 0;
+		while (level < LEVELS - 1 && (difference >> (BITS * (level + 1))) != 0)
+			level++;
+
+		int slot = (int) ((timer.deadline >> (BITS * level)) & MASK);
+		timer.next = slots[level][slot];
+		slots[level][slot] = timer;
+		occupied[level] |= 1L << slot;
+		size++;
+	}
+
+	/**
+	 * Moves the timers of the current slot of the given level to lower levels.
+	 */
+	private void cascade(int level) {
+		int slot = (int) ((now >> (BITS * level)) & MASK);
+		Timer timer = take(level, slot);
+		while (timer != null) {
+			Timer next = timer.next;
+			timer.next = null;
+			place(timer);
+			timer = next;
+		}
+	}
+
+	/**
+	 * Adds the timers of the given slot to the due timers.
+	 */
+	private void collect(int level, int slot) {
+		Timer timer = take(level, slot);
+		while (timer != null) {
+			Timer next = timer.next;
+			timer.next = null;
+			due.add(timer);
+			timer = next;
+		}
+	}
+
+	/**
+	 * Removes every timer from the given slot and returns the first of them.
+	 */
+	private Timer take(int level, int slot) {
+		Timer timer = slots[level][slot];
+		slots[level][slot] = null;
+		occupied[level] &= ~(1L << slot);
+		for (Timer counted = timer ; counted != null ; counted = counted.next)
+			size--;
+		return timer;
+	}
+
+	/**
+	 * Converts seconds to whole milliseconds, treating anything that is not a positive number as 0.
+	 */
+	private static long milliseconds(double seconds) {
+		return (seconds > 0) ? Math.round(seconds * 1000) : 0;
+	}
+}
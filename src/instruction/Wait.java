@@ -4,12 +4,19 @@ import java.awt.Graphics;
 
 import expression.Expression;
 
+/**
+ * Makes the program wait for a number of seconds of its clock. A lowered program stops right at
+ * the wait, while the tree walking interpreter first finishes the current instruction of the
+ * root block. Timers keep running while the program waits.
+ * 
+ * @license MIT
+ */
 public class Wait extends Instruction{
 	Expression time;
 	
 	/**
 	 * Constructs a wait instruction for the given time expression
-	 * @param time 
+	 * @param time - the number of seconds to wait
 	 */
 	public Wait(Expression time){
 		this.time = time;
@@ -17,18 +24,35 @@ public class Wait extends Instruction{
 	
 	
 	public void execute(Graphics graphics, Block algorithm) {
-		long time = (long) ((this.time != null) ? this.time.evaluate(algorithm) : 0);
-		
+		algorithm.getTimers().waitFor((this.time != null) ? this.time.evaluate(algorithm) : 0);
+	}
+	
+	/**
+	 * Returns the number of seconds to wait, or null if no time was given.
+	 */
+	public Expression getTime() {
+		return time;
 	}
 
 	@Override
 	public String toString() {
-		return null;
+		return "Thread.sleep( " + ((time != null) ? time.toString() : "0") + " );";
 	}
 
 	@Override
 	public boolean equals(Instruction instruction, Block block) {
+		if (instruction instanceof Wait) {
+			Wait other = (Wait) instruction;
+			return (time == null) ? other.time == null : other.time != null && time.equals(other.time);
+		}
 		return false;
 	}
-
+	
+	/**
+	 * Rewrites the expressions of this instruction with the given rewriter.
+	 */
+	public void rewrite(Rewriter rewriter) {
+		if (time != null)
+			time = rewriter.rewrite(time);
+	}
 }
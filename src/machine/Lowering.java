@@ -0,0 +1,394 @@
+package machine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import expression.DistanceTerminal;
+import expression.Expression;
+import expression.Operator;
+import expression.SymbolTerminal;
+import expression.Terminal;
+import instruction.Assign;
+import instruction.Block;
+import instruction.ElseIfBlock;
+import instruction.Forever;
+import instruction.IfBlock;
+import instruction.Increment;
+import instruction.Instruction;
+import instruction.RepeatBlock;
+import instruction.SymbolTable;
+import instruction.Wait;
+
+/**
+ * Lowers a parsed program into the flat opcodes run by a Machine. Loops and branches become
+ * jumps, arithmetic becomes operations on the slots of the symbol table, and every other
+ * instruction or expression is kept as an escape to the tree walking interpreter.
+ * 
+ * The root block performs one instruction per frame, so a YIELD follows each of its
+ * instructions. Nested blocks run to completion within the frame, exactly like Block.execute.
+ * 
+ * A program lowered to be profiled reaches an ENTER with the line of each instruction just
+ * before the instruction runs, everywhere the tree walking interpreter would tell its profile
+ * about the line. A program lowered without a profile has no ENTER at all.
+ * 
+ * @license MIT
+ */
+public class Lowering {
+
+	// The program being lowered, and its symbol table
+	private Block root;
+	private SymbolTable table;
+
+	// True if the lines of the program are profiled
+	private boolean profile;
+
+	// The opcodes generated so far
+	private int[] code = new int[64];
+	private int length = 0;
+
+	// The register holding each constant
+	private HashMap <Long, Integer> constants = new HashMap <Long, Integer> ();
+
+	// Temporary registers, reused by each statement
+	private ArrayList <Integer> temporaries = new ArrayList <Integer> ();
+	private int temporary = 0;
+
+	// The register holding the last condition of each if block
+	private IdentityHashMap <IfBlock, Integer> conditions = new IdentityHashMap <IfBlock, Integer> ();
+
+	// Expressions and instructions left to the interpreter
+	private ArrayList <Expression> expressions = new ArrayList <Expression> ();
+	private ArrayList <Instruction> instructions = new ArrayList <Instruction> ();
+
+	// The position of the first opcode of each instruction of the root block, and of the HALT
+	private int[] roots;
+
+	/**
+	 * Lowers the given parsed program.
+	 * @param block - the root block of the program
+	 * @return a machine that runs the program
+	 */
+	public static Machine lower(Block block) {
+		return lower(block, false);
+	}
+
+	/**
+	 * Lowers the given parsed program, telling the LineProfile of each run the line of every
+	 * instruction it reaches if the program is profiled.
+	 * @param block - the root block of the program
+	 * @param profile - true if the lines of the program are profiled
+	 * @return a machine that runs the program
+	 */
+	public static Machine lower(Block block, boolean profile) {
+		return new Lowering(block, profile).lower();
+	}
+
+	private Lowering(Block root, boolean profile) {
+		this.root = root;
+		this.table = root.getSymbolTable();
+		this.profile = profile;
+	}
+
+	private Machine lower() {
+		roots = new int[root.length() + 1];
+		for (int i = 0 ; i < root.length() ; i++) {
+			roots[i] = length;
+			rootInstruction(root, i);
+		}
+		roots[root.length()] = length;
+		emit(Machine.HALT, 0, 0, 0);
+
+		return new Machine(root, Arrays.copyOf(code, length),
+				expressions.toArray(new Expression[expressions.size()]),
+				instructions.toArray(new Instruction[instructions.size()]), roots);
+	}
+
+	/**
+	 * Lowers an instruction of the root block, which ends the frame after it runs. Loops keep
+	 * running their block once per frame.
+	 */
+	private void rootInstruction(Block block, int index) {
+		Instruction instruction = block.get(index);
+		if (instruction instanceof Forever) {
+			int start = length;
+			enter(instruction);
+			block(((Forever) instruction).getBlock());
+			emit(Machine.YIELD, 0, 0, 0);
+			emit(Machine.JUMP, start, 0, 0);
+		}
+		else if (instruction instanceof RepeatBlock) {
+			RepeatBlock repeat = (RepeatBlock) instruction;
+			int counter = register(0);
+			int start = length;
+			enter(instruction);
+			emit(Machine.INCREMENT, counter, 0, 0);
+			block(repeat.getBlock());
+			temporary = 0;
+			int test = temporary();
+			emit(Machine.GREATER, test, constant(repeat.getCount()), counter);
+			emit(Machine.YIELD, 0, 0, 0);
+			emit(Machine.JUMP_AT_LEAST_ONE, test, start, 0);
+		}
+		else {
+			instruction(block, index);
+			emit(Machine.YIELD, 0, 0, 0);
+		}
+	}
+
+	/**
+	 * Lowers every instruction of a nested block.
+	 */
+	private void block(Block block) {
+		for (int i = 0 ; i < block.length() ; i++)
+			instruction(block, i);
+	}
+
+	/**
+	 * Lowers the instruction at the given position of a block.
+	 */
+	private void instruction(Block block, int index) {
+		Instruction instruction = block.get(index);
+		temporary = 0;
+		if (! (instruction instanceof Forever || instruction instanceof RepeatBlock))
+			enter(instruction);
+
+		if (instruction instanceof Assign && ((Assign) instruction).getNumber() != null) {
+			Assign assign = (Assign) instruction;
+			int value = expression(assign.getNumber());
+			emit(Machine.STORE, assign.getSymbol().resolve(table), value, 0);
+		}
+		else if (instruction instanceof Increment) {
+			Increment increment = (Increment) instruction;
+			int value = expression(increment.getSymbol());
+			int change = expression(increment.getChange());
+			int sum = temporary();
+			emit(Machine.ADD, sum, value, change);
+			emit(Machine.STORE, increment.getSymbol().resolve(table), sum, 0);
+		}
+		else if (instruction instanceof ElseIfBlock) {
+			// An else if block only looks at its condition if the if block before it did not execute
+			ElseIfBlock elseIf = (ElseIfBlock) instruction;
+			Instruction previous = (index > 0) ? block.get(index - 1) : null;
+			if (! (previous instanceof IfBlock))
+				return;
+
+			int condition = condition(elseIf);
+			int skip = length, end;
+			emit(Machine.JUMP_AT_LEAST_ONE, condition((IfBlock) previous), -1, 0);
+			emit(Machine.MOVE, condition, expression(elseIf.getExpression()), 0);
+			int test = length;
+			emit(Machine.JUMP_NOT_POSITIVE, condition, -1, 0);
+			block(elseIf.getBlock());
+			end = length;
+			emit(Machine.JUMP, -1, 0, 0);
+			code[skip + 2] = length;
+			emit(Machine.MOVE, condition, constant(0), 0);
+			code[test + 2] = length;
+			code[end + 1] = length;
+		}
+		else if (instruction instanceof IfBlock) {
+			IfBlock ifBlock = (IfBlock) instruction;
+			int condition = condition(ifBlock);
+			emit(Machine.MOVE, condition, expression(ifBlock.getExpression()), 0);
+			int test = length;
+			emit(Machine.JUMP_BELOW_ONE, condition, -1, 0);
+			block(ifBlock.getBlock());
+			code[test + 2] = length;
+		}
+		else if (instruction instanceof Forever) {
+			int start = length;
+			enter(instruction);
+			block(((Forever) instruction).getBlock());
+			emit(Machine.JUMP, start, 0, 0);
+		}
+		else if (instruction instanceof RepeatBlock) {
+			// The counter is never reset, like RepeatBlock.repeated
+			RepeatBlock repeat = (RepeatBlock) instruction;
+			int counter = register(0);
+			int start = length;
+			enter(instruction);
+			emit(Machine.INCREMENT, counter, 0, 0);
+			block(repeat.getBlock());
+			temporary = 0;
+			int test = temporary();
+			emit(Machine.GREATER, test, constant(repeat.getCount()), counter);
+			emit(Machine.JUMP_AT_LEAST_ONE, test, start, 0);
+		}
+		else if (instruction instanceof Wait) {
+			Expression time = ((Wait) instruction).getTime();
+			emit(Machine.WAIT, (time != null) ? expression(time) : constant(0), 0, 0);
+		}
+		else {
+			emit(Machine.EXEC, instructions.size(), 0, 0);
+			instructions.add(instruction);
+		}
+	}
+
+	/**
+	 * Tells the profile the line of the given instruction, if the program is profiled. Loops tell
+	 * it on every pass, like the ControlStack repeating them.
+	 */
+	private void enter(Instruction instruction) {
+		if (profile)
+			emit(Machine.ENTER, instruction.getLine(), 0, 0);
+	}
+
+	/**
+	 * Lowers an expression, and returns the register that holds its value.
+	 */
+	private int expression(Expression expression) {
+		if (expression.getClass() == Terminal.class)
+			return constant(((Terminal) expression).getValue());
+
+		if (expression.getClass() == SymbolTerminal.class && ((SymbolTerminal) expression).getIndex() == null)
+			return ((SymbolTerminal) expression).resolve(table);
+
+		if (expression.getClass() == DistanceTerminal.class) {
+			Expression[] points = ((DistanceTerminal) expression).getCoordinates();
+			int x = difference(points[0], points[2]);
+			int y = difference(points[1], points[3]);
+			int result = temporary();
+			emit(Machine.POW, x, x, constant(2));
+			emit(Machine.POW, y, y, constant(2));
+			emit(Machine.ADD, result, x, y);
+			emit(Machine.SQRT, result, result, 0);
+			return result;
+		}
+
+		if (expression.getClass() == Expression.class)
+			return operation(expression);
+
+		int result = temporary();
+		emit(Machine.EVAL, result, expressions.size(), 0);
+		expressions.add(expression);
+		return result;
+	}
+
+	private int difference(Expression left, Expression right) {
+		int a = expression(left);
+		int b = expression(right);
+		int result = temporary();
+		emit(Machine.SUBTRACT, result, a, b);
+		return result;
+	}
+
+	/**
+	 * Lowers an expression node, following Expression.evaluate.
+	 */
+	private int operation(Expression expression) {
+		Expression left = expression.getLeft();
+		Operator operator = expression.getOperator();
+		Expression right = expression.getRight();
+
+		if (left == null)
+			return constant(0);
+		if (operator == null || (operator != Operator.Not && right == null))
+			return expression(left);
+
+		switch (operator) {
+		case Add:					return binary(Machine.ADD, left, right);
+		case Subtract:				return binary(Machine.SUBTRACT, left, right);
+		case Multiply:				return binary(Machine.MULTIPLY, left, right);
+		case Divide:				return binary(Machine.DIVIDE, left, right);
+		case Equal:					return binary(Machine.EQUAL, left, right);
+		case NotEqual:				return binary(Machine.NOT_EQUAL, left, right);
+		case GreaterThan:			return binary(Machine.GREATER, left, right);
+		case GreaterThanOrEqual:	return binary(Machine.GREATER_EQUAL, left, right);
+		case LessThan:				return binary(Machine.LESS, left, right);
+		case LessThanOrEqual:		return binary(Machine.LESS_EQUAL, left, right);
+		case Not: {
+			int value = expression(left);
+			int result = temporary();
+			emit(Machine.NOT, result, value, 0);
+			return result;
+		}
+
+		// Logic operators short circuit, so the right side may never be evaluated
+		case And:					return logic(Machine.JUMP_UNLESS_ONE, left, right);
+		case Or:					return logic(Machine.JUMP_IF_ONE, left, right);
+		default:					return constant(0);
+		}
+	}
+
+	private int binary(int opcode, Expression left, Expression right) {
+		int a = expression(left);
+		int b = expression(right);
+		int result = temporary();
+		emit(opcode, result, a, b);
+		return result;
+	}
+
+	/**
+	 * Lowers "and" or "or", which jump straight to the result when the left side decides it.
+	 */
+	private int logic(int jump, Expression left, Expression right) {
+		int result = temporary();
+		int decided = (jump == Machine.JUMP_IF_ONE) ? constant(1) : constant(0);
+		emit(Machine.MOVE, result, decided, 0);
+		int value = expression(left);
+		int first = length;
+		emit(jump, value, -1, 0);
+		value = expression(right);
+		int second = length;
+		emit(jump, value, -1, 0);
+		emit(Machine.MOVE, result, (jump == Machine.JUMP_IF_ONE) ? constant(0) : constant(1), 0);
+		code[first + 2] = length;
+		code[second + 2] = length;
+		return result;
+	}
+
+	/**
+	 * Returns the register holding the last condition of the given if block.
+	 */
+	private int condition(IfBlock ifBlock) {
+		Integer register = conditions.get(ifBlock);
+		if (register == null) {
+			register = register(0);
+			conditions.put(ifBlock, register);
+		}
+		return register;
+	}
+
+	/**
+	 * Returns a register that always holds the given constant.
+	 */
+	private int constant(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		Integer register = constants.get(bits);
+		if (register == null) {
+			register = register(value);
+			constants.put(bits, register);
+		}
+		return register;
+	}
+
+	/**
+	 * Returns a temporary register that is not used by the current statement.
+	 */
+	private int temporary() {
+		if (temporary == temporaries.size())
+			temporaries.add(register(0));
+		return temporaries.get(temporary++);
+	}
+
+	/**
+	 * Allocates a new register with the given initial value.
+	 */
+	private int register(double value) {
+		return table.allocate(value);
+	}
+
+	/**
+	 * Appends an opcode and its operands.
+	 */
+	private void emit(int opcode, int a, int b, int c) {
+		if (length + Machine.WIDTH > code.length)
+			code = Arrays.copyOf(code, code.length * 2);
+		code[length++] = opcode;
+		code[length++] = a;
+		code[length++] = b;
+		code[length++] = c;
+	}
+}
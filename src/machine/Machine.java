@@ -0,0 +1,410 @@
+package machine;
+
+import java.awt.Graphics;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.function.UnaryOperator;
+
+import expression.Expression;
+import instruction.Block;
+import instruction.ControlStack;
+import instruction.FunctionDefinition;
+import instruction.Instruction;
+import instruction.LineProfile;
+import instruction.SymbolTable;
+import instruction.TimerBlock;
+import instruction.TimerWheel;
+
+/**
+ * A Machine runs a program that has been lowered from a tree of instructions into a flat array
+ * of opcodes. Every opcode takes four ints: the opcode and three operands, which are registers,
+ * jump targets or indices of escaped expressions and instructions.
+ * 
+ * The registers are the numeric values of the symbol table. Variables are read straight from
+ * their slots, and constants, temporary values, the last condition of each if block and the
+ * counter of each repeat loop live in unnamed slots. Variables are only written through the
+ * symbol table, so anything the machine escapes to (drawing, printing, function calls) sees
+ * the same state as the tree walking interpreter would.
+ * 
+ * Each call to run performs one frame of the program: it runs until the next YIELD, which the
+ * lowering pass places after every instruction of the root block. A frame can also be given a
+ * budget of opcodes, so that a long loop is spread over several calls instead of blocking the
+ * caller until it finishes.
+ * 
+ * Every frame starts by running the timers of the program that are due. A WAIT ends the frame,
+ * and later frames only run timers until the program's clock reaches the end of the wait.
+ * 
+ * A program is lowered once, and each ExecutionContext of it is run by a machine of its own
+ * that shares the lowered code.
+ * 
+ * When a program is changed while it runs, the machine of the changed program can carry on
+ * from the machine of the old one, with its variables and at the matching instruction of the
+ * root block.
+ * 
+ * @license MIT
+ */
+public class Machine {
+
+	// Opcodes
+	public static final int HALT = 0;				// stop, and stay stopped
+	public static final int YIELD = 1;				// end the current frame
+	public static final int STORE = 2;				// variable a = number b
+	public static final int MOVE = 3;				// a = b
+	public static final int ADD = 4;				// a = b + c
+	public static final int SUBTRACT = 5;			// a = b - c
+	public static final int MULTIPLY = 6;			// a = b * c
+	public static final int DIVIDE = 7;				// a = b / c
+	public static final int EQUAL = 8;				// a = b == c
+	public static final int NOT_EQUAL = 9;			// a = b != c
+	public static final int GREATER = 10;			// a = b > c
+	public static final int GREATER_EQUAL = 11;		// a = b >= c
+	public static final int LESS = 12;				// a = b < c
+	public static final int LESS_EQUAL = 13;		// a = b <= c
+	public static final int NOT = 14;				// a = b == 0
+	public static final int POW = 15;				// a = b to the power of c
+	public static final int SQRT = 16;				// a = square root of b
+	public static final int INCREMENT = 17;			// a = a + 1
+	public static final int EVAL = 18;				// a = expression b evaluated by the interpreter
+	public static final int EXEC = 19;				// instruction a executed by the interpreter
+	public static final int JUMP = 20;				// go to a
+	public static final int JUMP_IF_ONE = 21;		// go to b if a == 1
+	public static final int JUMP_UNLESS_ONE = 22;	// go to b unless a == 1
+	public static final int JUMP_AT_LEAST_ONE = 23;	// go to b if a >= 1
+	public static final int JUMP_BELOW_ONE = 24;	// go to b unless a >= 1
+	public static final int JUMP_NOT_POSITIVE = 25;	// go to b unless a > 0
+	public static final int WAIT = 26;				// wait a seconds, ending the current frame
+	public static final int ENTER = 27;				// tell the profile the program is on line a
+
+	private static final String[] NAMES = { "halt", "yield", "store", "move", "add", "subtract",
+		"multiply", "divide", "equal", "not_equal", "greater", "greater_equal", "less", "less_equal",
+		"not", "pow", "sqrt", "increment", "eval", "exec", "jump", "jump_if_one", "jump_unless_one",
+		"jump_at_least_one", "jump_below_one", "jump_not_positive", "wait", "enter" };
+
+	// Width of each opcode in the code array
+	public static final int WIDTH = 4;
+
+	private int[] code;
+	private Expression[] expressions;
+	private Instruction[] instructions;
+
+	// The position of the first opcode of each instruction of the root block, and of the HALT
+	private int[] roots;
+
+	// The program that was lowered, which escaped expressions and instructions run against
+	private Block block;
+	private SymbolTable table;
+	private TimerWheel timers;
+	private ControlStack calls;
+
+	// Position of the next opcode to run
+	private int pc = 0;
+
+	// Number of opcodes run so far
+	private long count = 0;
+
+	// True if the budget ran out part of the way through the current frame
+	private boolean resuming = false;
+
+	Machine(Block block, int[] code, Expression[] expressions, Instruction[] instructions, int[] roots) {
+		this.block = block;
+		this.table = block.getSymbolTable();
+		this.timers = block.getTimers();
+		this.calls = block.getControlStack();
+		this.code = code;
+		this.expressions = expressions;
+		this.instructions = instructions;
+		this.roots = roots;
+	}
+
+	/**
+	 * Returns a machine that runs the same code from the start against the given run of the
+	 * program. The code, escaped expressions and instructions are shared, so any number of runs
+	 * can be started from one lowering.
+	 * @param block - a run whose symbol table was copied from the lowered program after lowering
+	 */
+	public Machine start(Block block) {
+		if (! block.getSymbolTable().hasSlotsOf(table))
+			throw new IllegalArgumentException("the block is not a run of the lowered program");
+		return new Machine(block, code, expressions, instructions, roots);
+	}
+
+	/**
+	 * Carries on from the run of an earlier version of the program, before this machine has run.
+	 * The variables of the earlier run are copied by name, and this machine starts at the root
+	 * instruction that takes the place of the one the earlier run was at. If nothing does, it
+	 * starts after the successor of the last root instruction before that one, or from the start.
+	 * The functions and repeating timers of the root instructions that are skipped are declared
+	 * again, since this run never reaches them.
+	 * @param previous - the machine of the earlier run
+	 * @param successor - returns the root instruction of this program that takes the place of a
+	 *        root instruction of the earlier program, or null if none does
+	 */
+	public void resume(Machine previous, UnaryOperator <Instruction> successor) {
+		table.load(previous.table);
+
+		IdentityHashMap <Instruction, Integer> positions = new IdentityHashMap <Instruction, Integer> ();
+		for (int i = 0 ; i < block.length() ; i++)
+			positions.put(block.get(i), i);
+
+		Block earlier = previous.block;
+		int running = previous.getRootPosition();
+		int position = 0;
+		for (int i = Math.min(running, earlier.length() - 1) ; i >= 0 ; i--) {
+			Instruction next = successor.apply(earlier.get(i));
+			Integer found = (next != null) ? positions.get(next) : null;
+			if (found != null) {
+				position = (i == running) ? found : found + 1;
+				break;
+			}
+		}
+
+		for (int i = 0 ; i < position ; i++) {
+			Instruction instruction = block.get(i);
+			if (instruction instanceof FunctionDefinition ||
+					(instruction instanceof TimerBlock && ((TimerBlock) instruction).isRepeating()))
+				instruction.execute(null, block);
+		}
+		seek(position);
+	}
+
+	/**
+	 * Runs one frame of the program.
+	 * @param graphics - the graphics that escaped instructions draw on
+	 */
+	public void run(Graphics graphics) {
+		run(graphics, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Runs the program until the end of the current frame, or until the given number of opcodes
+	 * have been run. Every value the program uses lives in the symbol table and the position of
+	 * the next opcode, so a frame that is stopped part of the way through simply continues where
+	 * it left off on the next call. Instructions escaped to the interpreter are always run whole,
+	 * unless they wait.
+	 * @param graphics - the graphics that escaped instructions draw on
+	 * @param budget - the largest number of opcodes to run
+	 * @return true if the frame was finished, false if the budget ran out first
+	 */
+	public boolean run(Graphics graphics, long budget) {
+		if (! resuming) {
+			timers.run(graphics, block);
+			if (timers.isWaiting())
+				return true;
+
+			// Blocks of an escaped instruction that a wait stopped in the middle are finished
+			// first. If nothing was left to run in them, the wait already ended the frame.
+			if (calls.depth() > 0) {
+				long steps = calls.getSteps();
+				if (! calls.run(graphics, block, 0, true))
+					return true;
+				if (calls.getSteps() == steps && code[pc] == YIELD)
+					pc += WIDTH;
+			}
+		}
+		
+		int[] code = this.code;
+		double[] values = table.values();
+		LineProfile profile = block.getProfile();
+		int pc = this.pc;
+		long count = 0;
+
+		while (true) {
+			if (count == budget) {
+				this.pc = pc;
+				this.count += count;
+				resuming = true;
+				return false;
+			}
+			count++;
+
+			// The line of the next instruction is told to the profile on the way to it, rather
+			// than as an opcode of its own, so that profiling neither adds a pass through the
+			// switch for every instruction nor uses up the budget
+			while (code[pc] == ENTER) {
+				if (profile != null)
+					profile.enter(code[pc + 1]);
+				pc += WIDTH;
+			}
+			switch (code[pc]) {
+			case HALT:
+				this.pc = pc;
+				this.count += count;
+				resuming = false;
+				return true;
+			case YIELD:
+				this.pc = pc + WIDTH;
+				this.count += count;
+				resuming = false;
+				return true;
+			case WAIT:
+				// The wait already ends the frame, so a YIELD right after it is skipped
+				timers.waitFor(values[code[pc + 1]]);
+				pc += WIDTH;
+				this.pc = (code[pc] == YIELD) ? pc + WIDTH : pc;
+				this.count += count;
+				resuming = false;
+				return true;
+
+			// Variables
+			case STORE:				table.set(code[pc + 1], values[code[pc + 2]]); break;
+			case MOVE:				values[code[pc + 1]] = values[code[pc + 2]]; break;
+
+			// Arithmetic, following Expression.evaluate
+			case ADD:				values[code[pc + 1]] = values[code[pc + 2]] + values[code[pc + 3]]; break;
+			case SUBTRACT:			values[code[pc + 1]] = values[code[pc + 2]] - values[code[pc + 3]]; break;
+			case MULTIPLY:			values[code[pc + 1]] = values[code[pc + 2]] * values[code[pc + 3]]; break;
+			case DIVIDE:			values[code[pc + 1]] = values[code[pc + 2]] / values[code[pc + 3]]; break;
+			case EQUAL:				values[code[pc + 1]] = (values[code[pc + 2]] == values[code[pc + 3]]) ? 1 : 0; break;
+			case NOT_EQUAL:			values[code[pc + 1]] = (values[code[pc + 2]] != values[code[pc + 3]]) ? 1 : 0; break;
+			case GREATER:			values[code[pc + 1]] = (values[code[pc + 2]] > values[code[pc + 3]]) ? 1 : 0; break;
+			case GREATER_EQUAL:		values[code[pc + 1]] = (values[code[pc + 2]] >= values[code[pc + 3]]) ? 1 : 0; break;
+			case LESS:				values[code[pc + 1]] = (values[code[pc + 2]] < values[code[pc + 3]]) ? 1 : 0; break;
+			case LESS_EQUAL:		values[code[pc + 1]] = (values[code[pc + 2]] <= values[code[pc + 3]]) ? 1 : 0; break;
+			case NOT:				values[code[pc + 1]] = (values[code[pc + 2]] == 0) ? 1 : 0; break;
+			case POW:				values[code[pc + 1]] = Math.pow(values[code[pc + 2]], values[code[pc + 3]]); break;
+			case SQRT:				values[code[pc + 1]] = Math.sqrt(values[code[pc + 2]]); break;
+			case INCREMENT:			values[code[pc + 1]]++; break;
+
+			// Escapes to the tree walking interpreter, which may resolve new variables
+			case EVAL:
+				values[code[pc + 1]] = expressions[code[pc + 2]].evaluate(block);
+				values = table.values();
+				break;
+			case EXEC:
+				Instruction instruction = instructions[code[pc + 1]];
+				if (instruction.shouldExecute(block)) {
+					instruction.execute(graphics, block);
+
+					// Any block the instruction started runs now, until the program starts waiting
+					if (! calls.run(graphics, block, 0, true)) {
+						this.pc = pc + WIDTH;
+						this.count += count;
+						resuming = false;
+						return true;
+					}
+				}
+				values = table.values();
+				break;
+
+			// Jumps
+			case JUMP:
+				pc = code[pc + 1];
+				continue;
+			case JUMP_IF_ONE:
+				if (values[code[pc + 1]] == 1) {
+					pc = code[pc + 2];
+					continue;
+				}
+				break;
+			case JUMP_UNLESS_ONE:
+				if (values[code[pc + 1]] != 1) {
+					pc = code[pc + 2];
+					continue;
+				}
+				break;
+			case JUMP_AT_LEAST_ONE:
+				if (values[code[pc + 1]] >= 1) {
+					pc = code[pc + 2];
+					continue;
+				}
+				break;
+			case JUMP_BELOW_ONE:
+				if (! (values[code[pc + 1]] >= 1)) {
+					pc = code[pc + 2];
+					continue;
+				}
+				break;
+			case JUMP_NOT_POSITIVE:
+				if (! (values[code[pc + 1]] > 0)) {
+					pc = code[pc + 2];
+					continue;
+				}
+				break;
+			default:
+				throw new IllegalStateException("Unknown opcode " + code[pc] + " at " + pc);
+			}
+			pc += WIDTH;
+		}
+	}
+
+	/**
+	 * Restarts the program from its first instruction.
+	 */
+	public void reset() {
+		pc = 0;
+		resuming = false;
+		calls.clear();
+	}
+
+	/**
+	 * Continues the program from the given instruction of its root block, leaving any block it is
+	 * in the middle of.
+	 * @param position - the position of the instruction in the root block, or its length to stop
+	 */
+	public void seek(int position) {
+		pc = roots[position];
+		resuming = false;
+		calls.clear();
+	}
+
+	/**
+	 * Returns the position in the root block of the instruction the program is in the middle of
+	 * or runs next, which is the length of the root block once the program is complete.
+	 */
+	public int getRootPosition() {
+		int position = Arrays.binarySearch(roots, pc);
+		return (position >= 0) ? position : -position - 2;
+	}
+
+	/**
+	 * Returns true if the program has run every instruction of its root block.
+	 */
+	public boolean isComplete() {
+		return code[pc] == HALT;
+	}
+
+	/**
+	 * Returns the position of the next opcode to run.
+	 */
+	public int getPosition() {
+		return pc;
+	}
+
+	/**
+	 * Returns the number of opcodes that have been run.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of opcodes in the program.
+	 */
+	public int length() {
+		return code.length / WIDTH;
+	}
+
+	/**
+	 * Returns the program that this machine runs.
+	 */
+	public Block getBlock() {
+		return block;
+	}
+
+	/**
+	 * Returns a listing of every opcode of the program.
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int position = 0 ; position < code.length ; position += WIDTH) {
+			builder.append(String.format("%5d  %-18s %d, %d, %d", position, NAMES[code[position]],
+					code[position + 1], code[position + 2], code[position + 3]));
+			if (code[position] == EVAL)
+				builder.append("   ; ").append(expressions[code[position + 2]]);
+			else if (code[position] == EXEC)
+				builder.append("   ; ").append(instructions[code[position + 1]]);
+			builder.append("\n");
+		}
+		return builder.toString();
+	}
+}
@@ -7,6 +7,7 @@ import java.io.PrintWriter;
 import java.net.Socket;
 import java.util.concurrent.ConcurrentHashMap;
 
+import metrics.MeshEvent;
 import view.Interpreter;
 
 public class Client extends Thread {
@@ -43,6 +44,8 @@ public class Client extends Thread {
 					interpreter.print("Connection to " + ip + " closed.");
 					break;
 				}
+				MeshEvent event = new MeshEvent();
+				event.begin();
 				if (line.length() > 0) {
 					// Get delimiters in the update string.
 					int at = line.indexOf('@'), equals = line.indexOf('=');
@@ -57,6 +60,7 @@ public class Client extends Thread {
 					
 					cache.get(name).put(key, Double.parseDouble(value));
 				}
+				commit(event, false, ip, line.length());
 			}
 			connected = false;
 			input.close();
@@ -72,6 +76,19 @@ public class Client extends Thread {
 		}
 	}
 	
+	/**
+	 * Ends a mesh event, and records it if the recording wants it.
+	 */
+	static void commit(MeshEvent event, boolean sent, String peer, int length) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.sent = sent;
+			event.peer = peer;
+			event.length = length;
+			event.commit();
+		}
+	}
+	
 	public static void parse(String line, ConcurrentHashMap <String, ConcurrentHashMap <String, Double>> cache) {
 		if (line.length() > 0) {
 			// Get delimiters in the update string.
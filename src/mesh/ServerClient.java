@@ -7,6 +7,8 @@ import java.io.PrintWriter;
 import java.net.Socket;
 import java.util.concurrent.ConcurrentHashMap;
 
+import metrics.MeshEvent;
+
 public class ServerClient extends Thread {
 	private Server server;
 	private BufferedReader input;
@@ -43,7 +45,10 @@ public class ServerClient extends Thread {
 					.append(server.cache.get(name).get(key)).append('\n');
 		}
 
+		MeshEvent sent = new MeshEvent();
+		sent.begin();
 		output.println(initialUpdate);
+		Client.commit(sent, true, ip, initialUpdate.length());
 
 		// Keep reading updates from the client until disconnect, and update all other clients with updates
 		try {
@@ -51,7 +56,9 @@ public class ServerClient extends Thread {
 				String line = input.readLine();
 				if (line == null) 
 					break;
-				else if (! hasName) {
+				MeshEvent event = new MeshEvent();
+				event.begin();
+				if (! hasName) {
 					name = line;
 					server.cache.put(name, new ConcurrentHashMap <String, Double> ());
 				}
@@ -69,6 +76,7 @@ public class ServerClient extends Thread {
 					
 					server.cache.get(name).put(key, Double.parseDouble(value));
 				}
+				Client.commit(event, false, ip, line.length());
 			}
 
 			input.close();
@@ -79,7 +87,11 @@ public class ServerClient extends Thread {
 
 	public void put(String name, String key, double value) {
 		if (connected) {
-			output.println(name + '@' + key + '=' + value);
+			MeshEvent event = new MeshEvent();
+			event.begin();
+			String message = name + '@' + key + '=' + value;
+			output.println(message);
+			Client.commit(event, true, ip, message.length());
 		}
 	}
 }
\ No newline at end of file
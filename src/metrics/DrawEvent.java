@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for each shape or image that takes longer than the threshold to draw,
+ * such as an image that is read and decoded before it is drawn.
+ *
+ * @license MIT
+ */
+@Name("io.pseudocode.Draw")
+@Label("Draw")
+@Category("Pseudocode")
+@Description("A slow draw instruction")
+@Threshold("1 ms")
+public class DrawEvent extends jdk.jfr.Event {
+
+	@Label("Shape")
+	public String shape;
+
+	@Label("Image")
+	@Description("The location of the image, if the shape is an image")
+	public String image;
+
+	@Label("Loaded")
+	@Description("True if the image was read while it was drawn")
+	public boolean loaded;
+}
@@ -0,0 +1,33 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for each frame of a program that takes longer than the threshold to
+ * run, not counting the time the frame waits for the next one to start.
+ *
+ * @license MIT
+ */
+@Name("io.pseudocode.Frame")
+@Label("Frame")
+@Category("Pseudocode")
+@Description("A frame of a running program")
+@Threshold("5 ms")
+public class FrameEvent extends jdk.jfr.Event {
+
+	@Label("Opcodes")
+	@Description("The number of opcodes the machine ran")
+	public long opcodes;
+
+	@Label("Draws")
+	@Description("The number of shapes and images drawn")
+	public long draws;
+
+	@Label("Finished")
+	@Description("False if the frame ran out of time and continues in the next frame")
+	public boolean finished;
+}
@@ -0,0 +1,228 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Times everything a window does to show a program: parsing the text after each key stroke,
+ * running each frame of the program, and painting frames on the screen. It also counts the
+ * frames that were dropped because the program fell behind, and the bytes each frame
+ * allocates. Every measurement goes into a Histogram, so recording is cheap enough to always
+ * be on, and tells whether a stutter comes from the program, from painting or from parsing.
+ *
+ * The metrics can be registered as an MBean, to be watched with JConsole or any other JMX client.
+ *
+ * @license MIT
+ */
+public class FrameMetrics implements FrameMetricsMBean {
+
+	// The number of metrics registered so far, which names each of them
+	private static final AtomicInteger registered = new AtomicInteger();
+
+	// Measures the bytes allocated by a thread, or null if the JVM cannot
+	private static final com.sun.management.ThreadMXBean allocations = allocations();
+
+	private final Histogram execute = new Histogram();
+	private final Histogram paint = new Histogram();
+	private final Histogram parse = new Histogram();
+	private final Histogram allocated = new Histogram();
+	private final LongAdder dropped = new LongAdder();
+
+	private ObjectName name;
+
+	/**
+	 * Records the nanoseconds a frame ran the program for, and the bytes it allocated, or a
+	 * negative number if they are not known.
+	 */
+	public void frame(long nanoseconds, long bytes) {
+		execute.record(nanoseconds);
+		if (bytes >= 0)
+			allocated.record(bytes);
+	}
+
+	/**
+	 * Records the nanoseconds it took to paint a frame.
+	 */
+	public void paint(long nanoseconds) {
+		paint.record(nanoseconds);
+	}
+
+	/**
+	 * Records the nanoseconds it took to parse a program.
+	 */
+	public void parse(long nanoseconds) {
+		parse.record(nanoseconds);
+	}
+
+	/**
+	 * Records frames that were never run because the program fell behind.
+	 */
+	public void drop(long frames) {
+		if (frames > 0)
+			dropped.add(frames);
+	}
+
+	/**
+	 * Returns the bytes the current thread has allocated so far, or -1 if the JVM cannot tell.
+	 * The difference of two calls is what the thread allocated in between.
+	 */
+	public static long allocated() {
+		return (allocations != null) ? allocations.getCurrentThreadAllocatedBytes() : -1;
+	}
+
+	private static com.sun.management.ThreadMXBean allocations() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+			if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled())
+				return bean;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the times of the frames the program ran, in nanoseconds.
+	 */
+	public Histogram getExecute() {
+		return execute;
+	}
+
+	/**
+	 * Returns the times of the frames painted, in nanoseconds.
+	 */
+	public Histogram getPaint() {
+		return paint;
+	}
+
+	/**
+	 * Returns the times of the programs parsed, in nanoseconds.
+	 */
+	public Histogram getParse() {
+		return parse;
+	}
+
+	/**
+	 * Returns the bytes allocated by each frame the program ran.
+	 */
+	public Histogram getAllocated() {
+		return allocated;
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, as the metrics of another window.
+	 * Metrics that cannot be registered are simply not visible over JMX.
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			name = new ObjectName("io.pseudocode:type=FrameMetrics,window=" + registered.incrementAndGet());
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			System.err.println("Frame metrics are not available over JMX: " + e.getMessage());
+			name = null;
+		}
+	}
+
+	/**
+	 * Removes these metrics from the platform MBean server, if they were registered.
+	 */
+	public void unregister() {
+		if (name == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {}
+		name = null;
+	}
+
+	/**
+	 * Returns the name these metrics are registered under, or null if they are not registered.
+	 */
+	public ObjectName getName() {
+		return name;
+	}
+
+	public long getFrames() {
+		return execute.getCount();
+	}
+
+	public long getDroppedFrames() {
+		return dropped.sum();
+	}
+
+	public double getExecuteMeanMillis() {
+		return execute.getMean() / 1e6;
+	}
+
+	public double getExecuteP50Millis() {
+		return execute.getPercentile(0.5) / 1e6;
+	}
+
+	public double getExecuteP99Millis() {
+		return execute.getPercentile(0.99) / 1e6;
+	}
+
+	public double getExecuteMaxMillis() {
+		return execute.getMax() / 1e6;
+	}
+
+	public long getPaints() {
+		return paint.getCount();
+	}
+
+	public double getPaintP50Millis() {
+		return paint.getPercentile(0.5) / 1e6;
+	}
+
+	public double getPaintP99Millis() {
+		return paint.getPercentile(0.99) / 1e6;
+	}
+
+	public double getPaintMaxMillis() {
+		return paint.getMax() / 1e6;
+	}
+
+	public long getParses() {
+		return parse.getCount();
+	}
+
+	public double getParseP50Millis() {
+		return parse.getPercentile(0.5) / 1e6;
+	}
+
+	public double getParseP99Millis() {
+		return parse.getPercentile(0.99) / 1e6;
+	}
+
+	public double getParseMaxMillis() {
+		return parse.getMax() / 1e6;
+	}
+
+	public double getAllocatedMeanBytes() {
+		return allocated.getMean();
+	}
+
+	public long getAllocatedP99Bytes() {
+		return allocated.getPercentile(0.99);
+	}
+
+	public String getSummary() {
+		return String.format("frame %.2f ms (p99 %.2f)   paint %.2f ms (p99 %.2f)   parse %.1f ms   dropped %d   %.1f KB/frame",
+				getExecuteP50Millis(), getExecuteP99Millis(), getPaintP50Millis(), getPaintP99Millis(),
+				getParseP50Millis(), getDroppedFrames(), getAllocatedMeanBytes() / 1024);
+	}
+
+	public void reset() {
+		execute.reset();
+		paint.reset();
+		parse.reset();
+		allocated.reset();
+		dropped.reset();
+	}
+}
@@ -0,0 +1,41 @@
+package metrics;
+
+/**
+ * The timings of the frames of a window, as seen by a JMX client such as JConsole. Times are in
+ * milliseconds and allocations in bytes.
+ *
+ * @license MIT
+ */
+public interface FrameMetricsMBean {
+
+	public long getFrames();
+	public long getDroppedFrames();
+
+	public double getExecuteMeanMillis();
+	public double getExecuteP50Millis();
+	public double getExecuteP99Millis();
+	public double getExecuteMaxMillis();
+
+	public long getPaints();
+	public double getPaintP50Millis();
+	public double getPaintP99Millis();
+	public double getPaintMaxMillis();
+
+	public long getParses();
+	public double getParseP50Millis();
+	public double getParseP99Millis();
+	public double getParseMaxMillis();
+
+	public double getAllocatedMeanBytes();
+	public long getAllocatedP99Bytes();
+
+	/**
+	 * Returns a single line summing up the metrics.
+	 */
+	public String getSummary();
+
+	/**
+	 * Forgets every frame recorded so far.
+	 */
+	public void reset();
+}
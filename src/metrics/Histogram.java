@@ -0,0 +1,128 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often values such as nanoseconds or bytes were recorded, in buckets whose width
+ * grows with the value, like an HdrHistogram. Values below 64 have a bucket each, and every
+ * power of two above that is split into 32 buckets, so any value is known to within about 3%
+ * and every possible long fits in fewer than 2000 buckets.
+ *
+ * Recording a value only increments a few atomic counters, so any number of threads can record
+ * without locking while another reads the percentiles. The percentiles read while values are
+ * being recorded may be slightly behind, but are never wrong by more than those values.
+ *
+ * @license MIT
+ */
+public class Histogram {
+
+	// The number of bits of a value that are kept exactly, below its highest bit
+	private static final int PRECISION = 5;
+	private static final int SUB_BUCKETS = 1 << PRECISION;
+	private static final int BUCKETS = (64 - PRECISION) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		value = Math.max(value, 0);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		long highest = max.get();
+		while (value > highest && ! max.compareAndSet(highest, value))
+			highest = max.get();
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the largest value recorded, or 0 if there are none.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the mean of the values recorded, or 0 if there are none.
+	 */
+	public double getMean() {
+		long count = getCount();
+		return (count > 0) ? (double) sum.sum() / count : 0;
+	}
+
+	/**
+	 * Returns the value that the given share of the recorded values are at or below, such as
+	 * 0.99 for the 99th percentile, to within the precision of its bucket. Returns 0 if there
+	 * are no values.
+	 */
+	public long getPercentile(double share) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int bucket = 0 ; bucket < BUCKETS ; bucket++) {
+			snapshot[bucket] = counts.get(bucket);
+			total += snapshot[bucket];
+		}
+		if (total == 0)
+			return 0;
+
+		long rank = Math.max((long) Math.ceil(Math.min(Math.max(share, 0), 1) * total), 1);
+		long seen = 0;
+		for (int bucket = 0 ; bucket < BUCKETS ; bucket++) {
+			seen += snapshot[bucket];
+			if (seen >= rank)
+				return Math.min(highest(bucket), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * Forgets every value recorded. Values recorded at the same time may or may not be kept.
+	 */
+	public void reset() {
+		for (int bucket = 0 ; bucket < BUCKETS ; bucket++)
+			counts.set(bucket, 0);
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Returns the bucket of a value that is not negative.
+	 */
+	private static int bucket(long value) {
+		if (value < 2 * SUB_BUCKETS)
+			return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - PRECISION;
+		return (shift << PRECISION) + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the smallest value that falls in the given bucket.
+	 */
+	private static long lowest(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS)
+			return bucket;
+		int shift = (bucket >> PRECISION) - 1;
+		return (long) ((bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+	}
+
+	/**
+	 * Returns the largest value that falls in the given bucket.
+	 */
+	private static long highest(int bucket) {
+		return (bucket + 1 < BUCKETS) ? lowest(bucket + 1) - 1 : Long.MAX_VALUE;
+	}
+}
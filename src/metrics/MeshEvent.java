@@ -0,0 +1,33 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for each message sent or received over the mesh network. A received
+ * message is timed from when it arrives, not while the connection waits for it.
+ *
+ * @license MIT
+ */
+@Name("io.pseudocode.Mesh")
+@Label("Mesh Message")
+@Category("Pseudocode")
+@Description("A message sent or received over the mesh")
+@Threshold("0 ms")
+public class MeshEvent extends jdk.jfr.Event {
+
+	@Label("Sent")
+	@Description("True if the message was sent, false if it was received")
+	public boolean sent;
+
+	@Label("Peer")
+	@Description("The address of the other end of the connection")
+	public String peer;
+
+	@Label("Length")
+	@Description("The number of characters in the message")
+	public int length;
+}
@@ -0,0 +1,28 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for each program parsed, such as after every key stroke in the editor.
+ * Like every event of Pseudocode it only costs anything while a recording with the event
+ * enabled is running, and its threshold can be changed in the recording settings.
+ *
+ * @license MIT
+ */
+@Name("io.pseudocode.Parse")
+@Label("Parse")
+@Category("Pseudocode")
+@Description("A program parsed from text")
+@Threshold("0 ms")
+public class ParseEvent extends jdk.jfr.Event {
+
+	@Label("Characters")
+	public int characters;
+
+	@Label("Tokens")
+	public int tokens;
+}
@@ -2,10 +2,26 @@ package parser;
 
 import java.util.ArrayList;
 
+/**
+ * The Lexer splits a text into tokens. The tokens are kept in a TokenStream as ranges of the
+ * characters of the text, each with the ID of the word of the language it is, so lexing a text
+ * only makes Strings for the few tokens that are not a range of it. The tokens can still be read
+ * as an array of Strings in lower case.
+ *
+ * @license MIT
+ */
 public class Lexer {
 
-	ArrayList<String> tokens;
-	StringBuilder token;
+	// The tokens of the text being lexed, and its characters
+	private TokenStream tokens;
+	private char[] text;
+
+	// The range of the text of the current token, which starts at -1 if there is none. A token
+	// that skips characters or adds one that is not in the text is copied into the builder.
+	private int start = -1;
+	private int end;
+	private StringBuilder token;
+	private boolean copied = false;
 
 	private static final int WORD = 1;
 	private static final int NUMBER = 2;
@@ -16,12 +32,14 @@ public class Lexer {
 	boolean hasDecimal = false;
 	boolean hasQuote = false;
 	boolean hasEscape = false;
+	
+	// Whether the last text lexed ended in the middle of a string
+	private boolean openString = false;
 
 	/**
 	 * Creates the lexer.
 	 */
 	public Lexer() {
-		tokens = new ArrayList<String>();
 		token = new StringBuilder();
 	}
 
@@ -38,14 +56,34 @@ public class Lexer {
 	 * @return
 	 */
 	public String[] lex(String text, boolean all, boolean includeComments) {
+		return stream(text.toCharArray(), all, includeComments).toArray();
+	}
+
+	/**
+	 * Lexes the given text without delimiters or comments, for the parser.
+	 */
+	public TokenStream stream(String text) {
+		return stream(text.toCharArray(), false, true);
+	}
+
+	/**
+	 * Lexes the given characters into a stream of tokens that keeps them.
+	 * @param text - the raw text, which must not change while the tokens are read
+	 * @param all - whether to include all tokens, including delimiters
+	 * @param includeComments - whether two slashes start a comment that is left out
+	 */
+	public TokenStream stream(char[] text, boolean all, boolean includeComments) {
 		// Reset the lexer token stream and state.
-		tokens.clear();
+		this.text = text;
+		tokens = new TokenStream(text, text.length / 3);
+		clearToken();
+		hasDecimal = hasQuote = hasEscape = false;
 		int state = 0;
 		boolean comment = false;
 
 		// Iterate to each character in the input string.
-		for (int index = 0; index < text.length(); index++) {
-			char c = text.charAt(index);
+		for (int index = 0; index < text.length; index++) {
+			char c = text[index];
 
 			// If the line is a comment ignore the characters until the next next line
 			if (!comment) {
@@ -53,7 +91,7 @@ public class Lexer {
 				if (state == STRING) {
 					// If the escape flag was activated by an escape character
 					if (hasEscape) {
-						token.append(c);
+						append(index);
 						hasEscape = false;
 					}
 					// The escape character will escape the next character
@@ -63,7 +101,7 @@ public class Lexer {
 					// An unescaped quotation mark or new line will end the
 					// string token
 					else if (c == '"') {
-						token.append(c);
+						append(index);
 						pushToken();
 						state = 0;
 					}
@@ -71,14 +109,14 @@ public class Lexer {
 					// quotation mark that
 					// wasn't already there.
 					else if (c == '\n') {
-						token.append('"');
+						append('"');
 						pushToken();
-						pushToken(c);
+						pushToken(index, 1);
 						state = 0;
 					}
 					// Otherwise append the charater
 					else
-						token.append(c);
+						append(index);
 				}
 				// Comments ignore the whole line
 				else if (state == COMMENT) {
@@ -89,39 +127,39 @@ public class Lexer {
 					} else {
 						state = 0;
 						pushToken();
-						pushToken('/');
+						pushToken(index - 1, 1);
 						index -= 1;
 					}
 				} else if (c == ' ') {
 					pushToken();
 					if (all)
-						pushToken(' ');
+						pushToken(index, 1);
 				}
 				// Alphabetic characters are appended to the token if in the
 				// WORD state.
-				else if (state == WORD && Character.isAlphabetic(c)) {
-					token.append(c);
+				else if (state == WORD && isAlphabetic(c)) {
+					append(index);
 				}
 				// One single quote can be added to the word.
 				else if (state == WORD && !hasQuote && c == '\'') {
-					token.append(c);
+					append(index);
 					hasQuote = true;
 				}
 				// Numeric characters are appending to the number if in the
 				// NUMBER state.
-				else if (state == NUMBER && Character.isDigit(c)) {
-					token.append(c);
+				else if (state == NUMBER && isDigit(c)) {
+					append(index);
 				}
 				// Numbers can have one decimal place character.
 				else if (state == NUMBER && !hasDecimal && c == '.') {
-					token.append(c);
+					append(index);
 					hasDecimal = true;
 				}
 				// If there is a double character operator in the input stream,
 				// i.e <= or >=
-				else if (index + 1 < text.length() && isDouble(c, text.charAt(index + 1))) {
+				else if (index + 1 < text.length && isDouble(c, text[index + 1])) {
 					pushToken();
-					pushToken("" + c + text.charAt(index + 1));
+					pushToken(index, 2);
 				}
 				// If this is a single character operator.
 				else if (isSingle(c)) {
@@ -130,67 +168,169 @@ public class Lexer {
 						state = COMMENT;
 					} else {
 						pushToken();
-						pushToken(c);
+						pushToken(index, 1);
 					}
 				}
 				// Otherwise determine a new state for the lexer.
 				else {
 					// If this is the start of an alphabetic character
-					if (Character.isAlphabetic(c)) {
-						token.append(c);
+					if (isAlphabetic(c)) {
+						append(index);
 						state = WORD;
 					}
 					// If this is the start of a number.
-					else if (Character.isDigit(c)) {
-						token.append(c);
+					else if (isDigit(c)) {
+						append(index);
 						state = NUMBER;
 					}
 					// If this is a beginning quotation mark for a string
 					else if (c == '"') {
-						token.append(c);
+						append(index);
 						state = STRING;
 					} else if (all) {
-						pushToken(c);
+						pushToken(index, 1);
 					}
 				}
 
 			}
 			else{
-				if(c == '\n')
+				// The newline ends the comment, and is still a token so that lines are counted
+				if(c == '\n') {
 					comment = false;
+					state = 0;
+					pushToken();
+					pushToken(index, 1);
+				}
 			}
 		}
+		openString = (state == STRING);
 		pushToken();
 
-		return tokens.toArray(new String[tokens.size()]);
+		TokenStream lexed = tokens;
+		tokens = null;
+		this.text = null;
+		return lexed;
+	}
+
+	/**
+	 * Returns true if the last text lexed ended in the middle of a string, whose token then has
+	 * no closing quotation mark.
+	 */
+	boolean endsInString() {
+		return openString;
+	}
+
+	/**
+	 * Returns the tokens that lexing a line without delimiters would give, from the tokens of the
+	 * same line lexed with every delimiter and without comments: the spaces and characters that
+	 * are only tokens when every delimiter is included are dropped, and so is a comment.
+	 */
+	static String[] withoutDelimiters(String[] tokens) {
+		ArrayList<String> kept = new ArrayList<String>(tokens.length);
+		for (int i = 0 ; i < tokens.length ; i++) {
+			String token = tokens[i];
+			if (token.equals("/") && i + 1 < tokens.length && tokens[i + 1].equals("/"))
+				break;
+			if (token.length() == 1) {
+				char c = token.charAt(0);
+				if (! Character.isAlphabetic(c) && ! Character.isDigit(c) && c != '"' && ! isSingle(c))
+					continue;
+			}
+			kept.add(token);
+		}
+		return kept.toArray(new String[kept.size()]);
+	}
+
+	/**
+	 * Returns Character.isAlphabetic of the given character, answering for ASCII without a
+	 * lookup in the Unicode tables.
+	 */
+	private static boolean isAlphabetic(char c) {
+		if (c < 128)
+			return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+		return Character.isAlphabetic(c);
 	}
 
-	private boolean isSingle(char c) {
+	/**
+	 * Returns Character.isDigit of the given character, answering for ASCII without a lookup in
+	 * the Unicode tables.
+	 */
+	private static boolean isDigit(char c) {
+		if (c < 128)
+			return c >= '0' && c <= '9';
+		return Character.isDigit(c);
+	}
+
+	private static boolean isSingle(char c) {
 		return c == '\n' || c == '\t' || c == '/' || c == ',' || c == '.' || isOperator(c);
 	}
 
-	private boolean isOperator(char c) {
+	private static boolean isOperator(char c) {
 		return c == '+' || c == '-' || c == '*' || c == '<' || c == '>';
 	}
 
-	private boolean isDouble(char c, char d) {
+	private static boolean isDouble(char c, char d) {
 		return (c == '>' || c == '<') && d == '=';
 	}
 
-	private void pushToken(char token) {
-		tokens.add(("" + token).toLowerCase());
+	/**
+	 * Adds the character at the given index of the text to the current token.
+	 */
+	private void append(int index) {
+		if (start < 0) {
+			start = index;
+			end = index + 1;
+		}
+		else if (copied) {
+			token.append(text[index]);
+			end = index + 1;
+		}
+		else if (index == end)
+			end++;
+		else {
+			// A character was skipped, so the token is no longer a range of the text
+			copy();
+			token.append(text[index]);
+		}
+	}
+
+	/**
+	 * Adds a character that is not in the text to the current token.
+	 */
+	private void append(char c) {
+		if (! copied)
+			copy();
+		token.append(c);
 	}
 
-	private void pushToken(String token) {
-		tokens.add(token.toLowerCase());
+	/**
+	 * Copies the current token into the builder.
+	 */
+	private void copy() {
+		token.setLength(0);
+		if (start >= 0)
+			token.append(text, start, end - start);
+		else
+			start = end = 0;
+		copied = true;
+	}
+
+	/**
+	 * Pushes a token that is the given range of the text.
+	 */
+	private void pushToken(int index, int length) {
+		tokens.add(index, length);
 	}
 
 	/**
 	 * Push the current token.
 	 */
 	private void pushToken() {
-		if (token.length() > 0) {
-			tokens.add(token.toString().toLowerCase());
+		if (start >= 0) {
+			if (copied)
+				tokens.add(start, end - start, token.toString().toLowerCase());
+			else
+				tokens.add(start, end - start);
 			hasDecimal = false;
 			hasQuote = false;
 			clearToken();
@@ -201,7 +341,8 @@ public class Lexer {
 	 * Clears the current token in the lexer.
 	 */
 	private void clearToken() {
-		token.delete(0, token.length());
+		start = -1;
+		copied = false;
 		hasDecimal = false;
 	}
 }
@@ -0,0 +1,239 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import expression.DistanceTerminal;
+import expression.Expression;
+import expression.Operator;
+import expression.SymbolTerminal;
+import expression.Terminal;
+import instruction.Block;
+import instruction.ElseIfBlock;
+import instruction.IfBlock;
+import instruction.Instruction;
+import instruction.Rewriter;
+
+/**
+ * The Optimizer simplifies a parsed program before it runs. It folds constant subexpressions,
+ * removes identities such as x * 1, replaces division by a power of two with multiplication,
+ * and removes if blocks whose condition is a constant.
+ * 
+ * Every rewrite gives exactly the same result as the original expression, including for NaN,
+ * infinity and negative zero. That is why x + 0 is kept (it turns -0 into 0) while x - 0 is not.
+ * 
+ * @license MIT
+ */
+public class Optimizer implements Rewriter {
+
+	/**
+	 * Optimizes the given program in place.
+	 * @param block - the root block of the program
+	 * @return the number of instructions and expression nodes that were removed
+	 */
+	public int optimize(Block block) {
+		int before = count(block);
+		block.rewrite(this);
+		return before - count(block);
+	}
+
+	/**
+	 * Returns a simplified version of the given expression.
+	 */
+	public Expression rewrite(Expression expression) {
+		if (expression.getClass() == DistanceTerminal.class)
+			return distance((DistanceTerminal) expression);
+		if (expression.getClass() != Expression.class)
+			return expression;
+
+		Expression left = expression.getLeft();
+		Operator operator = expression.getOperator();
+		Expression right = expression.getRight();
+
+		// Single values and empty expressions
+		if (left == null)
+			return new Terminal(0);
+		if (operator == null || (operator != Operator.Not && right == null))
+			return rewrite(left);
+
+		left = rewrite(left);
+		if (operator == Operator.Not) {
+			Expression not = new Expression(left, Operator.Not);
+			return isConstant(left) ? new Terminal(not.evaluate(null)) : not;
+		}
+
+		right = rewrite(right);
+		Expression result = new Expression(left, operator, right);
+		if (isConstant(left) && isConstant(right))
+			return new Terminal(result.evaluate(null));
+
+		switch (operator) {
+		case Add:
+			// Only negative zero is an exact identity for addition
+			if (isConstant(right, -0.0))
+				return left;
+			if (isConstant(left, -0.0))
+				return right;
+			break;
+		case Subtract:
+			if (isConstant(right, 0))
+				return left;
+			break;
+		case Multiply:
+			if (isConstant(right, 1))
+				return left;
+			if (isConstant(left, 1))
+				return right;
+			if (isConstant(right, 2) && isVariable(left))
+				return new Expression(left, Operator.Add, left);
+			if (isConstant(left, 2) && isVariable(right))
+				return new Expression(right, Operator.Add, right);
+			break;
+		case Divide:
+			if (isConstant(right, 1))
+				return left;
+			if (isConstant(right) && hasExactReciprocal(value(right)))
+				return new Expression(left, Operator.Multiply, new Terminal(1 / value(right)));
+			break;
+
+		// A constant on the left decides "and" and "or" on its own, or leaves only the right side.
+		// The right side is only evaluated when the left side is 1.
+		case And:
+			if (isConstant(left))
+				return (value(left) == 1) ? new Expression(right, Operator.Equal, new Terminal(1)) : new Terminal(0);
+			break;
+		case Or:
+			if (isConstant(left))
+				return (value(left) == 1) ? new Terminal(1) : new Expression(right, Operator.Equal, new Terminal(1));
+			break;
+		default:
+			break;
+		}
+		return result;
+	}
+
+	/**
+	 * Simplifies the coordinates of a distance, or folds it if they are all constant.
+	 */
+	private Expression distance(DistanceTerminal distance) {
+		Expression[] points = distance.getCoordinates();
+		boolean constant = true;
+		for (int i = 0 ; i < points.length ; i++) {
+			points[i] = rewrite(points[i]);
+			constant &= isConstant(points[i]);
+		}
+		DistanceTerminal result = new DistanceTerminal(points[0], points[1], points[2], points[3]);
+		return constant ? new Terminal(result.evaluate(null)) : result;
+	}
+
+	/**
+	 * Removes if blocks with constant conditions from a nested block. A true if block is
+	 * replaced by its instructions, and a false one is removed. The root block is left alone,
+	 * since removing an instruction there would change which frame everything runs in.
+	 */
+	public void rewrite(Block block) {
+		if (block.getIndentLevel() == 0)
+			return;
+
+		for (int i = 0 ; i < block.length() ; i++) {
+			// Else if blocks look at the instruction before them, so chains are left alone
+			if (i + 1 < block.length() && block.get(i + 1) instanceof ElseIfBlock)
+				continue;
+
+			Instruction instruction = block.get(i);
+			if (instruction.getClass() == IfBlock.class) {
+				IfBlock ifBlock = (IfBlock) instruction;
+				if (! isConstant(ifBlock.getExpression()))
+					continue;
+
+				Block body = ifBlock.getBlock();
+				if (value(ifBlock.getExpression()) >= 1) {
+					if (body.length() > 0 && body.get(0) instanceof ElseIfBlock)
+						continue;
+					ArrayList <Instruction> instructions = new ArrayList <Instruction> ();
+					for (int j = 0 ; j < body.length() ; j++)
+						instructions.add(body.get(j));
+					block.replace(i, i + 1, instructions);
+					i += instructions.size() - 1;
+				}
+				else {
+					block.replace(i, i + 1, Collections.<Instruction>emptyList());
+					i--;
+				}
+			}
+			else if (instruction instanceof ElseIfBlock) {
+				// An else if block only runs when its condition is positive
+				IfBlock elseIf = (IfBlock) instruction;
+				if (isConstant(elseIf.getExpression()) && ! (value(elseIf.getExpression()) > 0)) {
+					block.replace(i, i + 1, Collections.<Instruction>emptyList());
+					i--;
+				}
+			}
+		}
+	}
+
+	private static boolean isConstant(Expression expression) {
+		return expression.getClass() == Terminal.class;
+	}
+
+	private static boolean isConstant(Expression expression, double value) {
+		return isConstant(expression) && Double.doubleToRawLongBits(value(expression)) == Double.doubleToRawLongBits(value);
+	}
+
+	private static boolean isVariable(Expression expression) {
+		return expression.getClass() == SymbolTerminal.class && ((SymbolTerminal) expression).getIndex() == null;
+	}
+
+	private static double value(Expression expression) {
+		return ((Terminal) expression).getValue();
+	}
+
+	/**
+	 * Returns true if the value is a power of two whose reciprocal is also a normal number, so
+	 * that multiplying by the reciprocal rounds exactly like dividing.
+	 */
+	private static boolean hasExactReciprocal(double value) {
+		int exponent = Math.getExponent(value);
+		return value != 0 && exponent > Double.MIN_EXPONENT && exponent < Double.MAX_EXPONENT
+				&& value == Math.scalb(Math.signum(value), exponent);
+	}
+
+	/**
+	 * Returns the number of instructions and expression nodes in the given program.
+	 */
+	public static int count(Block block) {
+		Counter counter = new Counter();
+		block.rewrite(counter);
+		return counter.nodes;
+	}
+
+	/**
+	 * Counts the instructions of every block and the nodes of every expression it is given.
+	 */
+	private static class Counter implements Rewriter {
+		private int nodes = 0;
+
+		public Expression rewrite(Expression expression) {
+			nodes += size(expression);
+			return expression;
+		}
+
+		public void rewrite(Block block) {
+			nodes += block.length();
+		}
+
+		private int size(Expression expression) {
+			if (expression == null)
+				return 0;
+			if (expression.getClass() == Expression.class)
+				return 1 + size(expression.getLeft()) + size(expression.getRight());
+			if (expression.getClass() == DistanceTerminal.class) {
+				int size = 1;
+				for (Expression point : ((DistanceTerminal) expression).getCoordinates())
+					size += size(point);
+				return size;
+			}
+			return 1;
+		}
+	}
+}
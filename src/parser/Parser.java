@@ -1,16 +1,28 @@
 package parser;
 
 import java.awt.Color;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 import expression.*;
 import instruction.*;
+import metrics.ParseEvent;
 
 /**
  * The Parser generates an object representation of a runnable pseudocode program described by a String.
  * 
+ * A program kept in a TokenStore can also be reparsed after an edit. The text is split into
+ * parts, each a line without indent followed by the lines indented below it, and a part whose
+ * lines and whose view of the variables declared before it are unchanged keeps the instructions
+ * it was parsed into last time. Only the other parts are parsed again. Every reparsed program
+ * shares one symbol table, so the slots and state of the instructions it keeps stay valid.
+ * 
  * @author  Keshav Saharia
  *			keshav@techlabeducation.com
  *
@@ -19,30 +31,77 @@ import instruction.*;
 public class Parser {
 
 	private Lexer lexer;				// the Lexer object for lexing the input text
-	private String[] tokens;			// an array of string tokens that this parser has lexed
+	private TokenStream tokens;			// the tokens that this parser has lexed
 	private int index = 0;				// the current index of the parser in the token stream
+	private int[] lines;				// the line of the source text each token is on
 	private Block rootBlock;			// The root block being parsed
+	private boolean optimizing = true;	// Whether parsed programs are simplified by the Optimizer
+	private int removed = 0;			// The number of nodes the Optimizer removed from the last program
+	private HashSet <String> symbols;	// The variables declared so far by the program being parsed
+
+	// The number of slots a shared symbol table may grow to, as a multiple of its slots when it
+	// was created, before reparsing starts over with a new table
+	private static final int SHARED_GROWTH = 4;
+	private static final int SHARED_SLACK = 1024;
+
+	/**
+	 * The instructions parsed from a line without indent and the lines indented below it.
+	 */
+	private static class Part {
+		private List <String> lines;			// the text of each line
+		private int line;						// the first line
+		private Instruction[] instructions;		// the instructions of the root block parsed from it
+
+		// The variables the part declares, and every other variable it looked up while being
+		// parsed with whether it had been declared before the part
+		private HashSet <String> declared = new HashSet <String> ();
+		private HashMap <String, Boolean> lookups = new HashMap <String, Boolean> ();
+		private boolean matched = false;
+
+		private Part(List <String> lines, int line) {
+			this.lines = lines;
+			this.line = line;
+		}
+
+		/**
+		 * Returns true if the part would be parsed the same way after the given declarations.
+		 */
+		private boolean isParsedAfter(HashSet <String> symbols) {
+			for (String symbol : lookups.keySet())
+				if (symbols.contains(symbol) != lookups.get(symbol))
+					return false;
+			return true;
+		}
+	}
+
+	private ArrayList <Part> parts = new ArrayList <Part> ();	// The parts of the last reparsed text
+	private Part part;											// The part being parsed, or null
+	private SymbolTable shared;									// The table of every reparsed program
+	private int sharedLimit;									// The size at which the table is replaced
+	private int reparsed = 0;									// The lines parsed by the last reparse
+
+	// The parts and shared table of the reparse before the last one, until the program of the
+	// last reparse is known to be run
+	private ArrayList <Part> undoneParts;
+	private SymbolTable undoneShared;
+	private int undoneLimit;
+
+	// The root instruction of the last reparsed program that takes the place of each root
+	// instruction of the program reparsed before it
+	private IdentityHashMap <Instruction, Instruction> successors = new IdentityHashMap <Instruction, Instruction> ();
 
 	// The list of shapes that can be drawn.
 	private String[] drawType = { "circle", "square", "rectangle", "oval", "line", "background", "image", "polygon" };
-	private String[] builtInExpression = { "mouse", "random", "square root", "absolute value", "distance" };
+	private String[] builtInExpression = { "mouse", "random", "square root", "absolute value", "distance", "length", "delta time" };
 	private String[] specialKeys = {"up", "down", "left", "right", "space"};
-	private static HashSet <String> reservedWords;
+	private static final HashSet <String> reservedWords = new HashSet <String> (Arrays.asList(
+			"width", "height", "mouse", "mousex", "mousey", "mouseclicked", "deltatime"));
 
 	/**
 	 * Constructs the Parser object.
 	 */
 	public Parser() {
 		lexer = new Lexer();
-		if (reservedWords == null) {
-			reservedWords = new HashSet <String> ();
-			reservedWords.add("width");
-			reservedWords.add("height");
-			reservedWords.add("mouse");
-			reservedWords.add("mousex");
-			reservedWords.add("mousey");
-			reservedWords.add("mouseclicked");
-		}
 	}
 
 	/**
@@ -51,11 +110,304 @@ public class Parser {
 	 * @return
 	 */
 	public Block parse(String text) {
-		// Reset the parser with the given text
-		reset(text);
+		return parse(lexer.stream(text), text.length());
+	}
+	
+	/**
+	 * Parses the text kept by the given token store, whose lines are already lexed.
+	 */
+	public Block parse(TokenStore store) {
+		return parse(store.getStream(), store.getLength());
+	}
+	
+	/**
+	 * Parses the given tokens of a text of the given number of characters.
+	 */
+	private Block parse(TokenStream tokens, int characters) {
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		
+		// Reset the parser with the given tokens
+		reset(tokens);
 		
 		// Start the high-level parsing routine
-		return parseBlock(null);
+		Block block = parseBlock(null);
+		removed = (optimizing) ? new Optimizer().optimize(block) : 0;
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.characters = characters;
+			event.tokens = tokens.size();
+			event.commit();
+		}
+		return block;
+	}
+
+	/**
+	 * Parses the text kept by the given token store, keeping the instructions of every part of
+	 * the text that is parsed the same way as the last time it was reparsed. The kept instructions
+	 * are moved into the new root block and to their new lines, so the previous program must not
+	 * run while the text is reparsed, and must not run again afterwards.
+	 */
+	public Block reparse(TokenStore store) {
+		return reparse(store, () -> false);
+	}
+
+	/**
+	 * Reparses the text kept by the given token store like {@link #reparse(TokenStore)}, unless
+	 * the given test says the result is no longer wanted before one of the parts that changed is
+	 * parsed. The parser is then left as it was before, and null is returned.
+	 */
+	public Block reparse(TokenStore store, BooleanSupplier cancelled) {
+		ParseEvent event = new ParseEvent();
+		event.begin();
+
+		ArrayList <Part> earlier = parts;
+		SymbolTable earlierShared = shared;
+		int earlierLimit = sharedLimit;
+
+		// Start over with a new symbol table once the shared one is mostly slots that earlier
+		// programs no longer use, keeping none of the earlier parts
+		boolean restarted = shared != null && shared.size() > sharedLimit;
+		if (restarted)
+			shared = null;
+		Block block = (shared != null) ? new Block(shared) : new Block();
+		setRoot(block);
+
+		// Every earlier part by its lines, to be taken by the first part with the same lines
+		HashMap <List <String>, ArrayDeque <Part>> previous = new HashMap <List <String>, ArrayDeque <Part>> ();
+		if (! restarted)
+			for (Part part : earlier)
+				previous.computeIfAbsent(part.lines, lines -> new ArrayDeque <Part> ()).add(part);
+		parts = new ArrayList <Part> ();
+		removed = 0;
+		reparsed = 0;
+		int parsed = 0;
+
+		int count = store.getLineCount();
+		for (int first = 0, last ; first < count ; first = last) {
+			last = first + 1;
+			while (last < count && ! startsPart(store.getParsedTokens(last)))
+				last++;
+			String[] lines = new String[last - first];
+			for (int i = 0 ; i < lines.length ; i++)
+				lines[i] = store.getLine(first + i);
+
+			ArrayDeque <Part> same = previous.get(Arrays.asList(lines));
+			Part part = (same != null) ? same.poll() : null;
+			if (part != null && part.isParsedAfter(symbols)) {
+				move(part, first);
+				part.matched = true;
+			}
+			else {
+				if (cancelled.getAsBoolean()) {
+					restore(earlier, earlierShared, earlierLimit);
+					return null;
+				}
+				part = parsePart(store, first, last);
+				parsed += tokens.size();
+			}
+			for (Instruction instruction : part.instructions)
+				block.add(instruction);
+			symbols.addAll(part.declared);
+			parts.add(part);
+		}
+		match(earlier);
+
+		if (shared == null) {
+			shared = block.getSymbolTable();
+			sharedLimit = shared.size() * SHARED_GROWTH + SHARED_SLACK;
+		}
+		undoneParts = earlier;
+		undoneShared = earlierShared;
+		undoneLimit = earlierLimit;
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.characters = store.getLength();
+			event.tokens = parsed;
+			event.commit();
+		}
+		return block;
+	}
+
+	/**
+	 * Goes back to the parts of the reparse before the last one, when the program of the last
+	 * reparse is never run, so that the next reparse carries on from the program that is running
+	 * and finds successors for its instructions. Does nothing if there is nothing to go back to.
+	 */
+	public void discard() {
+		if (undoneParts == null)
+			return;
+		restore(undoneParts, undoneShared, undoneLimit);
+		successors.clear();
+	}
+
+	/**
+	 * Goes back to the given parts and shared table of an earlier reparse. Kept parts may have
+	 * been moved to other lines, which the next reparse moves them from again.
+	 */
+	private void restore(ArrayList <Part> earlier, SymbolTable earlierShared, int earlierLimit) {
+		for (Part part : earlier)
+			part.matched = false;
+		parts = earlier;
+		shared = earlierShared;
+		sharedLimit = earlierLimit;
+		undoneParts = null;
+	}
+
+	/**
+	 * Returns true if a line with the given tokens starts a new part of the text: it is not
+	 * empty, not indented, and does not continue an if block.
+	 */
+	private static boolean startsPart(String[] tokens) {
+		return tokens.length > 0 && ! tokens[0].equals("\t") && ! tokens[0].equals("else") && ! tokens[0].equals("otherwise");
+	}
+
+	/**
+	 * Parses the given lines of a token store into a new part, after the parts before it.
+	 */
+	private Part parsePart(TokenStore store, int first, int last) {
+		Part part = new Part(new ArrayList <String> (), first);
+
+		// The tokens of every line, with the newline that follows it in the text
+		TokenStream tokens = new TokenStream(null);
+		for (int i = first ; i < last ; i++) {
+			part.lines.add(store.getLine(i));
+			TokenStream line = store.getParsedStream(i);
+			for (int token = 0 ; token < line.size() ; token++)
+				tokens.add(line, token);
+			if (i < store.getLineCount() - 1)
+				tokens.add("\n");
+		}
+
+		// The part is parsed into a root block of its own, so the Optimizer only sees the part
+		reset(tokens, first);
+		Block block = new Block(rootBlock.getSymbolTable());
+		this.part = part;
+		parseInstructions(block);
+		this.part = null;
+		if (optimizing)
+			removed += new Optimizer().optimize(block);
+
+		part.instructions = new Instruction[block.length()];
+		for (int i = 0 ; i < block.length() ; i++)
+			part.instructions[i] = block.get(i);
+		reparsed += last - first;
+		return part;
+	}
+
+	/**
+	 * Moves the instructions of a part that was kept to the given first line.
+	 */
+	private static void move(Part part, int line) {
+		int shift = line - part.line;
+		part.line = line;
+		if (shift == 0)
+			return;
+
+		Rewriter rewriter = new Rewriter() {
+			public Expression rewrite(Expression expression) {
+				return expression;
+			}
+
+			public void rewrite(Block block) {
+				for (int i = 0 ; i < block.length() ; i++)
+					shift(block.get(i));
+			}
+
+			private void shift(Instruction instruction) {
+				if (instruction.getLine() >= 0)
+					instruction.setLine(instruction.getLine() + shift);
+			}
+		};
+		for (Instruction instruction : part.instructions) {
+			if (instruction.getLine() >= 0)
+				instruction.setLine(instruction.getLine() + shift);
+			instruction.rewrite(rewriter);
+		}
+	}
+
+	/**
+	 * Finds the successor of every root instruction of the earlier parts. A kept part is its own
+	 * successor, and a part that was parsed again succeeds an earlier part with the same lines,
+	 * or else with the same first line, instruction by instruction.
+	 */
+	private void match(ArrayList <Part> earlier) {
+		successors.clear();
+		HashMap <List <String>, ArrayDeque <Part>> same = new HashMap <List <String>, ArrayDeque <Part>> ();
+		HashMap <String, ArrayDeque <Part>> headed = new HashMap <String, ArrayDeque <Part>> ();
+		for (Part part : earlier) {
+			if (part.matched) {
+				for (Instruction instruction : part.instructions)
+					successors.put(instruction, instruction);
+			}
+			else {
+				same.computeIfAbsent(part.lines, lines -> new ArrayDeque <Part> ()).add(part);
+				headed.computeIfAbsent(part.lines.get(0), line -> new ArrayDeque <Part> ()).add(part);
+			}
+		}
+
+		for (Part part : parts) {
+			if (part.matched)
+				continue;
+			Part predecessor = take(same.get(part.lines));
+			if (predecessor == null)
+				predecessor = take(headed.get(part.lines.get(0)));
+			if (predecessor == null)
+				continue;
+			predecessor.matched = true;
+			for (int i = 0 ; i < Math.min(part.instructions.length, predecessor.instructions.length) ; i++)
+				successors.put(predecessor.instructions[i], part.instructions[i]);
+		}
+
+		// Kept parts are matched again by the next reparse
+		for (Part part : parts)
+			part.matched = false;
+	}
+
+	/**
+	 * Takes the first part that has not been matched yet from the given parts, or returns null.
+	 */
+	private static Part take(ArrayDeque <Part> parts) {
+		if (parts == null)
+			return null;
+		Part part;
+		while ((part = parts.poll()) != null)
+			if (! part.matched)
+				return part;
+		return null;
+	}
+
+	/**
+	 * Returns the root instruction of the last reparsed program that takes the place of the given
+	 * root instruction of the program reparsed before it, or null if none does. An instruction
+	 * whose lines did not change is its own successor.
+	 */
+	public Instruction getSuccessor(Instruction instruction) {
+		return successors.get(instruction);
+	}
+
+	/**
+	 * Returns the number of lines that the last reparse parsed again.
+	 */
+	public int getReparsedLines() {
+		return reparsed;
+	}
+
+	/**
+	 * Sets whether parsed programs are simplified by the Optimizer, which is on by default.
+	 */
+	public void setOptimizing(boolean optimizing) {
+		this.optimizing = optimizing;
+	}
+	
+	/**
+	 * Returns the number of instructions and expression nodes that the Optimizer removed from
+	 * the last parsed program.
+	 */
+	public int getRemovedNodes() {
+		return removed;
 	}
 	
 	/**
@@ -63,8 +415,31 @@ public class Parser {
 	 */
 	public void reset(String text) {
 		// Lex the input text and reset the parser
-		tokens = lexer.lex(text);
+		reset(lexer.stream(text));
+	}
+	
+	/**
+	 * Resets the parser with the given tokens.
+	 */
+	private void reset(TokenStream tokens) {
+		reset(tokens, 0);
+	}
+	
+	/**
+	 * Resets the parser with the given tokens, which start at the given line of the text.
+	 */
+	private void reset(TokenStream tokens, int first) {
+		this.tokens = tokens;
 		index = 0;
+		
+		// Every newline token ends a line
+		lines = new int[tokens.size()];
+		int line = first;
+		for (int i = 0 ; i < tokens.size() ; i++) {
+			lines[i] = line;
+			if (tokens.getId(i) == Words.NEWLINE)
+				line++;
+		}
 	}
 
 	/**
@@ -77,8 +452,30 @@ public class Parser {
 		// Create an algorithm and store it to the object reference
 		Block block = new Block(parent);
 		if (parent == null)
-			rootBlock = block;
+			setRoot(block);
+		parseInstructions(block);
 
+		// Return the resulting algorithm object
+		return block;
+	}
+	
+	/**
+	 * Starts parsing a program into the given root block.
+	 */
+	private void setRoot(Block block) {
+		rootBlock = block;
+		symbols = new HashSet <String> ();
+		
+		// The variables given by the window have a slot in every run of the program
+		for (String word : reservedWords)
+			rootBlock.getSymbolTable().resolve(word);
+	}
+	
+	/**
+	 * Parses instructions into the given block until a line is indented less than the block,
+	 * or the tokens run out.
+	 */
+	private void parseInstructions(Block block) {
 		// While there are tokens left in the token stream, parse an instruction from the token stream
 		while (hasNext()) {
 			if (getNext("\n")) continue;
@@ -90,19 +487,19 @@ public class Parser {
 			// Otherwise take all tabs off the stream
 			else while (getNext("\t"));
 
+			int line = (index < lines.length) ? lines[index] : -1;
 			Instruction instruction = parseInstruction(block);
 
 			// If an instruction was successfully parsed
 			if (instruction != null) {
+				if (instruction.getLine() < 0)
+					instruction.setLine(line);
 				block.add(instruction);
 				getNext("\n");
 			}
 			// Otherwise skip the current token so the stream is gradually consumed
 			else skipNext();
 		}
-
-		// Return the resulting algorithm object
-		return block;
 	}
 
 	/**
@@ -132,7 +529,13 @@ public class Parser {
 			
 			if (getNext("with")) {
 				while (! atDelimiter()) {
-					parameters.add(getNext());
+					// Parameters are variables, so the body can refer to them
+					if (peekSymbolTerminal()) {
+						String parameter = getNext();
+						declare(parameter);
+						parameters.add(parameter);
+					}
+					else skipNext();
 					skipNext(",");
 					skipNext("and");
 				}
@@ -165,13 +568,23 @@ public class Parser {
 			
 			if (getNext("with")) {
 				while (! atDelimiter()) {
-					String parameter = getNext();
+					// An argument is a value, or the name of a parameter followed by its value. A
+					// name followed by a sign is the start of a sum instead.
+					int start = index;
+					String parameter = peekNext().matches("[a-zA-Z]+") ? getNext() : null;
+					if (parameter != null && (! peekExpression() || peekNext("-", "+"))) {
+						index = start;
+						parameter = null;
+					}
+					
 					if (peekExpression()) {
 						Expression expression = parseExpression();
 						if (expression != null)
 							call.addArgument(parameter, expression);
 					}
+					else skipNext();
 					skipNext(",");
+					skipNext("and");
 				}
 			}
 			return call;
@@ -239,6 +652,16 @@ public class Parser {
 			return parseIncrement();
 		}
 		
+		// Add an element to the end of a list
+		else if (getNext("append", "push")) {
+			return parseAppend();
+		}
+		
+		// Remove an element from a list
+		else if (getNext("remove")) {
+			return parseRemove();
+		}
+		
 		// Perform a mathematical operation on a symbol
 		else if (peekNext("add", "subtract", "multiply", "divide", "scale")) {
 			return parseMath();
@@ -253,13 +676,59 @@ public class Parser {
 		else if (getNext("sleep","delay","wait","pause")){
 			return parseWait();
 		}
+		
+		// Run instructions once after, or repeatedly every, a certain amount of time
+		else if (getNext("after") && peekExpression()) {
+			return parseTimer(block, false);
+		}
+		else if (getNext("every") && peekExpression()) {
+			return parseTimer(block, true);
+		}
 
 		return null;
 	}
 
 	private Instruction parseWait(){
+		skipNext("for");
 		if(peekExpression()){
-			return new Wait(parseExpression());
+			Wait wait = new Wait(parseExpression());
+			skipNext("seconds", "second");
+			return wait;
+		}
+		return null;
+	}
+	
+	private Instruction parseTimer(Block parentBlock, boolean repeat) {
+		Expression delay = parseExpression();
+		if (delay == null)
+			return null;
+		skipNext("seconds", "second");
+		
+		// A single instruction on the same line, or an indented block
+		if (! atDelimiter()) {
+			Instruction instruction = parseInstruction(parentBlock);
+			if (instruction == null)
+				return null;
+			Block timerBlock = new Block(parentBlock);
+			timerBlock.add(instruction);
+			return new TimerBlock(delay, timerBlock, repeat);
+		}
+		return new TimerBlock(delay, parseBlock(parentBlock), repeat);
+	}
+	
+	private Instruction parseAppend() {
+		if (peekExpression()) {
+			Expression value = parseExpression();
+			if (getNext("to", "onto") && peekSymbolTerminal())
+				return new Append(parseSymbolTerminal(), value);
+		}
+		return null;
+	}
+	
+	private Instruction parseRemove() {
+		if (peekExistingSymbolTerminal()) {
+			SymbolTerminal symbol = parseSymbolTerminal();
+			return new Remove(symbol, symbol.getIndex());
 		}
 		return null;
 	}
@@ -366,7 +835,13 @@ public class Parser {
 	public Instruction parseAssign() {
 		if (peekSymbolTerminal()) {
 			SymbolTerminal symbol = parseSymbolTerminal();
-			if(getNext("of") && peekExpression()){
+			
+			// Assign to a single element of a list, i.e. "set x of 1 to 5"
+			if(symbol.getIndex() != null){
+				if(getNext("to", "as") && peekExpression())
+					return new Assign(symbol, parseExpression(), symbol.getIndex());
+			}
+			else if(getNext("of") && peekExpression()){
 				Expression index = parseExpression();
 				if(getNext("to", "as") &&  peekExpression())
 					return new Assign(symbol, parseExpression(), index);
@@ -379,10 +854,9 @@ public class Parser {
 				}
 				else if(peekExpression()){
 					values.add(parseExpression());
-					while(!atDelimiter()){
-						if(getNext(",") && peekExpression())
-							values.add(parseExpression());
-					}
+					// Stop at anything that does not continue the list, such as trailing whitespace
+					while(!atDelimiter() && getNext(",") && peekExpression())
+						values.add(parseExpression());
 				}
 
 
@@ -764,6 +1238,18 @@ public class Parser {
 		return new SymbolTerminal("mouseclicked");
 	}
 	
+	public boolean peekDeltaTimeTerminal() {
+		return peekNext("delta time");
+	}
+
+	/**
+	 * Returns the number of seconds since the previous frame started.
+	 */
+	public Terminal parseDeltaTimeTerminal() {
+		getNext("delta time");
+		return new SymbolTerminal("deltatime");
+	}
+	
 	/**
 	 * Returns true if the next token is a terminal value.
 	 * @return
@@ -784,6 +1270,8 @@ public class Parser {
 			return parseRandomTerminal();
 		if (peekMouseTerminal())
 			return parseMouseTerminal();
+		if (peekDeltaTimeTerminal())
+			return parseDeltaTimeTerminal();
 		if (peekNumberTerminal())
 			return parseNumberTerminal();
 		if (peekStringTerminal())
@@ -792,6 +1280,8 @@ public class Parser {
 			return parseKeyTerminal();
 		if (peekDistanceTerminal())
 			return parseDistanceTerminal();
+		if (peekLengthTerminal())
+			return parseLengthTerminal();
 		if (peekExistingSymbolTerminal())
 			return parseSymbolTerminal();
 		return null;
@@ -887,12 +1377,27 @@ public class Parser {
 		return new DistanceTerminal(x1, y1, x2, y2);
 	}
 
+	public boolean peekLengthTerminal() {
+		return peekNext("length");
+	}
+	
+	/**
+	 * Parses the length of a list or string, i.e. "length of x".
+	 */
+	public Terminal parseLengthTerminal() {
+		getNext("length");
+		skipNext("of");
+		if (peekExistingSymbolTerminal())
+			return new LengthTerminal(parseSymbolTerminal());
+		return null;
+	}
+
 	/**
 	 * Returns true if there is a valid symbol at the parsing index
 	 * @return
 	 */
 	public boolean peekSymbolTerminal() {
-		return peekNext().matches("[a-zA-Z][a-zA-Z0-9\\_]*");
+		return index < tokens.size() && tokens.getKind(index) == TokenStream.NAME;
 	}
 
 	/**
@@ -900,7 +1405,29 @@ public class Parser {
 	 * @return true if the next symbol is an existing symbol or a reserved word.
 	 */
 	public boolean peekExistingSymbolTerminal() {
-		return peekSymbolTerminal() && (rootBlock.hasSymbol(peekNext()) || reservedWords.contains(peekNext()));
+		return peekSymbolTerminal() && (isDeclared(peekNext()) || reservedWords.contains(peekNext()));
+	}
+
+	/**
+	 * Returns true if the given variable has been declared by the program so far. A part being
+	 * reparsed remembers the answer for every variable it does not declare itself.
+	 */
+	private boolean isDeclared(String symbol) {
+		boolean declared = symbols.contains(symbol);
+		if (part != null && ! part.declared.contains(symbol))
+			part.lookups.putIfAbsent(symbol, declared);
+		return declared;
+	}
+
+	/**
+	 * Declares a variable of the program, which reads as 0 but stays undefined until the program
+	 * assigns it, so that appending to it makes a list of only the appended value.
+	 */
+	private void declare(String symbol) {
+		rootBlock.getSymbolTable().resolve(symbol);
+		symbols.add(symbol);
+		if (part != null)
+			part.declared.add(symbol);
 	}
 
 	/**
@@ -909,10 +1436,17 @@ public class Parser {
 	 */
 	public SymbolTerminal parseSymbolTerminal() {
 		String symbolName = getNext();
-		rootBlock.assign(symbolName, new Terminal(0));
+		declare(symbolName);
+		
+		SymbolTerminal symbol;
 		if(getNext("of") && peekExpression())
-			return new SymbolTerminal(symbolName, parseExpression());
-		return new SymbolTerminal(symbolName);
+			symbol = new SymbolTerminal(symbolName, parseExpression());
+		else
+			symbol = new SymbolTerminal(symbolName);
+		
+		// Resolve the symbol to its slot in the program's symbol table
+		symbol.resolve(rootBlock.getSymbolTable());
+		return symbol;
 	}
 
 	/**
@@ -920,8 +1454,8 @@ public class Parser {
 	 * @return true if the next token is a numeric terminal, false otherwise.
 	 */
 	public boolean peekNumberTerminal() {
-		return peekNext().matches("\\d+(|\\.\\d*)") ||
-				(index + 1 < tokens.length && peekNext().equals("-") && tokens[index + 1].matches("\\d+(|\\.\\d*)"));
+		return (index < tokens.size() && tokens.getKind(index) == TokenStream.NUMBER) ||
+				(index + 1 < tokens.size() && tokens.getId(index) == Words.MINUS && tokens.getKind(index + 1) == TokenStream.NUMBER);
 	}
 
 	/**
@@ -945,7 +1479,7 @@ public class Parser {
 	 * @return true if the next token is a string terminal, false otherwise.
 	 */
 	public boolean peekStringTerminal() {
-		return peekNext().length() >= 2 && peekNext().startsWith("\"") && peekNext().endsWith("\"");
+		return index < tokens.size() && tokens.getKind(index) == TokenStream.STRING;
 	}
 
 	/**
@@ -959,9 +1493,9 @@ public class Parser {
 		next = next.substring(1, next.length() - 1);
 		
 		if (getNext("pressed"))
-			return new KeyTerminal(next);
+			return parseKey(next, true);
 		else if (getNext("released"))
-			return new KeyTerminal(next, false);
+			return parseKey(next, false);
 		else
 			return new StringTerminal(next);
 	}
@@ -980,11 +1514,21 @@ public class Parser {
 	public Terminal parseKeyTerminal() {
 		String next = getNext();
 		if (getNext("pressed"))
-			return new KeyTerminal(next);
+			return parseKey(next, true);
 		else if (getNext("released"))
-			return new KeyTerminal(next, false);
+			return parseKey(next, false);
 		else
-			return new KeyTerminal(next);
+			return parseKey(next, true);
+	}
+
+	/**
+	 * Returns a terminal for whether the given key is pressed or released, resolved to its slot
+	 * in the program's symbol table.
+	 */
+	private KeyTerminal parseKey(String key, boolean pressed) {
+		KeyTerminal terminal = new KeyTerminal(key, pressed);
+		terminal.resolve(rootBlock.getSymbolTable());
+		return terminal;
 	}
 
 	/**
@@ -1008,8 +1552,8 @@ public class Parser {
 	 */
 	public String peekNext(int n) {
 		String next = "";
-		for (int i = 0 ; i < n && index + i < tokens.length ; i++)
-			next += tokens[index + i] + " ";
+		for (int i = 0 ; i < n && index + i < tokens.size() ; i++)
+			next += tokens.get(index + i) + " ";
 		return next.trim();
 	}
 
@@ -1023,10 +1567,7 @@ public class Parser {
 	public boolean getNext(String ... matches) {
 		for (String match : matches) {
 			if (peekNext(match)) {
-				if (match.indexOf(' ') > 0)
-					index += match.split(" ").length;
-				else 
-					index++;
+				index += Words.phrase(match).ids.length;
 				return true;
 			}
 		}
@@ -1049,17 +1590,17 @@ public class Parser {
 	 * @return true if the match occurs in the next tokens, false otherwise
 	 */
 	public boolean peekNext(String match) {
-		if (match.indexOf(' ') > 0) {
-			String[] parts = match.split(" ");
-			for (int i = 0 ; i < parts.length ; i++) {
-				if (index + i >= tokens.length || ! parts[i].equals(tokens[index + i]))
-					return false;
-			}
-			return true;
+		// Words are matched by their IDs, and only a word that is not a word of the language
+		// is compared to the token
+		Words.Phrase phrase = Words.phrase(match);
+		if (index + phrase.ids.length > tokens.size())
+			return false;
+		for (int i = 0 ; i < phrase.ids.length ; i++) {
+			int id = phrase.ids[i];
+			if (id != tokens.getId(index + i) || (id == Words.NONE && ! phrase.words[i].equals(tokens.get(index + i))))
+				return false;
 		}
-		else if (index < tokens.length)
-			return tokens[index].equals(match);
-		else return false;
+		return true;
 	}
 
 	/**
@@ -1067,8 +1608,8 @@ public class Parser {
 	 * @return the next token in the token stream
 	 */
 	public String peekNext() {
-		if (index < tokens.length)
-			return tokens[index];
+		if (index < tokens.size())
+			return tokens.get(index);
 		else return "";
 	}
 
@@ -1079,8 +1620,8 @@ public class Parser {
 	 * @return the next token in the token stream
 	 */
 	public String getNext() {
-		if (index < tokens.length) {
-			String t = tokens[index];
+		if (index < tokens.size()) {
+			String t = tokens.get(index);
 			index++;
 			return t;
 		}
@@ -1099,14 +1640,14 @@ public class Parser {
 	 * @return
 	 */
 	public boolean hasNext() {
-		return index < tokens.length;
+		return index < tokens.size();
 	}
 
 	/**
 	 * Returns true if the parser is currently at a delimiter.
 	 */
 	public boolean atDelimiter() {
-		return index >= tokens.length || tokens[index].equals("\n") || tokens[index].equals(".");
+		return index >= tokens.size() || tokens.getId(index) == Words.NEWLINE || tokens.getId(index) == Words.PERIOD;
 	}
 
 	/**
@@ -1114,7 +1655,7 @@ public class Parser {
 	 */
 	public int countIndent() {
 		int indent = 0;
-		while (index + indent < tokens.length && tokens[index + indent].equals("\t"))
+		while (index + indent < tokens.size() && tokens.getId(index + indent) == Words.TAB)
 			indent++;
 		return indent;
 	}
@@ -0,0 +1,223 @@
+package parser;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the tokens of a text line by line, so that an edit only lexes the lines it changed.
+ * Each line is lexed once with every delimiter, which is what the editor highlights, and the
+ * tokens the parser reads are taken from those, so a line is never lexed twice.
+ *
+ * Lines are lexed on their own, which gives the same tokens as lexing the whole text: every
+ * token, string and comment ends at the end of its line. The only difference is that a string
+ * left open on the last line is closed, like on any other line.
+ *
+ * @license MIT
+ */
+public class TokenStore {
+
+	/**
+	 * The text of a line and its tokens.
+	 */
+	private static class Line {
+		private String text;
+		private String[] tokens;
+		private String[] parsed;
+		private TokenStream stream;
+	}
+
+	private ArrayList <Line> lines = new ArrayList <Line> ();
+	private Lexer lexer = new Lexer();
+
+	// The tokens the parser reads for the whole text, as Strings and as a stream, or null if a
+	// line changed since they were joined
+	private String[] joined;
+	private TokenStream stream;
+
+	// The number of lines lexed so far
+	private long lexed = 0;
+
+	/**
+	 * Creates a store of an empty text.
+	 */
+	public TokenStore() {
+		this("");
+	}
+
+	/**
+	 * Creates a store of the tokens of the given text.
+	 */
+	public TokenStore(String text) {
+		setText(text);
+	}
+
+	/**
+	 * Creates a copy of the given store that shares its lexed lines, so that the copy can be read
+	 * on another thread while the store keeps changing. Lines are never changed once they are
+	 * lexed, so copying a store only copies the list of its lines.
+	 */
+	private TokenStore(TokenStore store) {
+		lines = new ArrayList <Line> (store.lines);
+		joined = store.joined;
+		stream = store.stream;
+		lexed = store.lexed;
+	}
+
+	/**
+	 * Returns a copy of the current text of this store, which does not change with this store.
+	 */
+	public TokenStore snapshot() {
+		return new TokenStore(this);
+	}
+
+	/**
+	 * Replaces the whole text, lexing every line.
+	 */
+	public void setText(String text) {
+		replace(0, lines.size(), text.split("\n", -1));
+	}
+
+	/**
+	 * Replaces lines of the text with other lines, and lexes only the new lines. The text always
+	 * has at least one line, so replacing every line with none leaves a single empty line.
+	 * @param first - the index of the first line replaced
+	 * @param removed - the number of lines replaced
+	 * @param added - the lines put in their place, without newlines
+	 */
+	public void replace(int first, int removed, String... added) {
+		if (first < 0 || removed < 0 || first + removed > lines.size())
+			throw new IndexOutOfBoundsException("lines " + first + " to " + (first + removed) + " of " + lines.size());
+
+		ArrayList <Line> replacement = new ArrayList <Line> (added.length);
+		for (String text : added)
+			replacement.add(lex(text));
+		lines.subList(first, first + removed).clear();
+		lines.addAll(first, replacement);
+		if (lines.isEmpty())
+			lines.add(lex(""));
+		joined = null;
+		stream = null;
+	}
+
+	/**
+	 * Lexes a line.
+	 */
+	private Line lex(String text) {
+		Line line = new Line();
+		line.text = text;
+		line.tokens = lexer.lex(text, true, false);
+		line.parsed = Lexer.withoutDelimiters(line.tokens);
+		if (lexer.endsInString() && line.parsed.length > 0)
+			line.parsed[line.parsed.length - 1] += "\"";
+		line.stream = TokenStream.of(line.parsed);
+		lexed++;
+		return line;
+	}
+
+	/**
+	 * Returns the number of lines of the text.
+	 */
+	public int getLineCount() {
+		return lines.size();
+	}
+
+	/**
+	 * Returns the text of the given line, without its newline.
+	 */
+	public String getLine(int line) {
+		return lines.get(line).text;
+	}
+
+	/**
+	 * Returns the tokens of the given line with every delimiter, such as the spaces between
+	 * words, so that the lengths of the tokens add up to the length of the line.
+	 */
+	public String[] getLineTokens(int line) {
+		return lines.get(line).tokens;
+	}
+
+	/**
+	 * Returns the tokens the parser reads for the given line.
+	 */
+	public String[] getParsedTokens(int line) {
+		return lines.get(line).parsed;
+	}
+
+	/**
+	 * Returns the tokens the parser reads for the given line, with the ID of every word of the
+	 * language, which is looked up once when the line is lexed.
+	 */
+	public TokenStream getParsedStream(int line) {
+		return lines.get(line).stream;
+	}
+
+	/**
+	 * Returns the tokens the parser reads for the whole text as a stream, with a newline token
+	 * between lines.
+	 */
+	public TokenStream getStream() {
+		if (stream == null) {
+			stream = new TokenStream(null);
+			for (int i = 0 ; i < lines.size() ; i++) {
+				if (i > 0)
+					stream.add("\n");
+				TokenStream line = lines.get(i).stream;
+				for (int token = 0 ; token < line.size() ; token++)
+					stream.add(line, token);
+			}
+		}
+		return stream;
+	}
+
+	/**
+	 * Returns the tokens the parser reads for the whole text, with a newline token between lines.
+	 */
+	public String[] getTokens() {
+		if (joined == null) {
+			int length = lines.size() - 1;
+			for (Line line : lines)
+				length += line.parsed.length;
+
+			String[] tokens = new String[length];
+			int position = 0;
+			for (int i = 0 ; i < lines.size() ; i++) {
+				if (i > 0)
+					tokens[position++] = "\n";
+				String[] parsed = lines.get(i).parsed;
+				System.arraycopy(parsed, 0, tokens, position, parsed.length);
+				position += parsed.length;
+			}
+			joined = tokens;
+		}
+		return joined;
+	}
+
+	/**
+	 * Returns the whole text.
+	 */
+	public String getText() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0 ; i < lines.size() ; i++) {
+			if (i > 0)
+				builder.append('\n');
+			builder.append(lines.get(i).text);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Returns the number of characters of the whole text.
+	 */
+	public int getLength() {
+		int length = lines.size() - 1;
+		for (Line line : lines)
+			length += line.text.length();
+		return length;
+	}
+
+	/**
+	 * Returns the number of lines that have been lexed since the store was created.
+	 */
+	public long getLexedLines() {
+		return lexed;
+	}
+}
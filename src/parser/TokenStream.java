@@ -0,0 +1,231 @@
+package parser;
+
+import java.util.Arrays;
+
+/**
+ * The tokens of a text, kept in parallel arrays instead of as Strings: the kind of each token,
+ * the ID of the word of the language it is, and where it starts in the characters of the text
+ * and how long it is. The Lexer fills them in as it reads the text, so a token only becomes a
+ * String when the parser reads it as a name, number or string, and never for a word of the
+ * language, which the parser matches by its ID.
+ *
+ * A few tokens are not a range of the text, such as a string with an escaped quotation mark,
+ * and are kept as Strings from the start. A stream can also be made of Strings lexed earlier.
+ * Every token reads in lower case, like the tokens the Lexer gives as Strings.
+ *
+ * @license MIT
+ */
+public class TokenStream {
+
+	// The kinds of tokens, by what the parser can read them as
+	public static final byte OTHER = 0;		// an operator, a delimiter or anything else
+	public static final byte NAME = 1;		// a letter, followed by letters, digits and underscores
+	public static final byte NUMBER = 2;	// digits, with a decimal point and more digits after them
+	public static final byte STRING = 3;	// text between quotation marks
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// The characters the tokens were lexed from, or null
+	private char[] text;
+
+	private int count = 0;
+	private byte[] kinds;
+	private int[] ids;
+	private int[] starts;
+	private int[] lengths;
+
+	// The String of every token that has been read as one, or that is not a range of the text,
+	// or null until there is one
+	private String[] strings;
+
+	/**
+	 * Creates an empty stream of tokens lexed from the given characters.
+	 */
+	TokenStream(char[] text) {
+		this(text, INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty stream of tokens lexed from the given characters, with room for the given
+	 * number of tokens.
+	 */
+	TokenStream(char[] text, int capacity) {
+		this.text = text;
+		capacity = Math.max(capacity, INITIAL_CAPACITY);
+		kinds = new byte[capacity];
+		ids = new int[capacity];
+		starts = new int[capacity];
+		lengths = new int[capacity];
+	}
+
+	/**
+	 * Returns a stream of the given tokens, which are already in lower case.
+	 */
+	public static TokenStream of(String... tokens) {
+		TokenStream stream = new TokenStream(null);
+		for (String token : tokens)
+			stream.add(token);
+		return stream;
+	}
+
+	/**
+	 * Adds the token in the given range of the text.
+	 */
+	void add(int start, int length) {
+		for (int i = start ; i < start + length ; i++) {
+			// The lower case of other characters may depend on the characters around them
+			if (text[i] >= 128) {
+				add(start, length, new String(text, start, length).toLowerCase());
+				return;
+			}
+		}
+		add(start, length, null, kind(text, start, length), Words.find(text, start, length));
+	}
+
+	/**
+	 * Adds a token that was lexed from the given range of the text, but is not the same as the
+	 * characters in it.
+	 */
+	void add(int start, int length, String token) {
+		add(start, length, token, kind(token.toCharArray(), 0, token.length()), Words.find(token));
+	}
+
+	/**
+	 * Adds a token that is not part of the text of this stream.
+	 */
+	void add(String token) {
+		add(-1, token.length(), token);
+	}
+
+	/**
+	 * Adds the given token of another stream.
+	 */
+	void add(TokenStream stream, int token) {
+		add(-1, stream.lengths[token], stream.get(token), stream.kinds[token], stream.ids[token]);
+	}
+
+	private void add(int start, int length, String token, byte kind, int id) {
+		if (count == kinds.length) {
+			int capacity = count * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			ids = Arrays.copyOf(ids, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			if (strings != null)
+				strings = Arrays.copyOf(strings, capacity);
+		}
+		kinds[count] = kind;
+		ids[count] = id;
+		starts[count] = start;
+		lengths[count] = length;
+		if (token != null)
+			strings()[count] = token;
+		count++;
+	}
+
+	/**
+	 * Returns the kind of the token in the given range of characters.
+	 */
+	private static byte kind(char[] chars, int start, int length) {
+		if (length == 0)
+			return OTHER;
+		int end = start + length;
+		char first = chars[start];
+		if (length >= 2 && first == '"' && chars[end - 1] == '"')
+			return STRING;
+
+		if (isDigit(first)) {
+			int i = start;
+			while (i < end && isDigit(chars[i]))
+				i++;
+			if (i < end && chars[i] == '.')
+				i++;
+			while (i < end && isDigit(chars[i]))
+				i++;
+			return (i == end) ? NUMBER : OTHER;
+		}
+
+		if (isLetter(first)) {
+			for (int i = start + 1 ; i < end ; i++)
+				if (! isLetter(chars[i]) && ! isDigit(chars[i]) && chars[i] != '_')
+					return OTHER;
+			return NAME;
+		}
+		return OTHER;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	/**
+	 * Returns the number of tokens.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the kind of the given token: OTHER, NAME, NUMBER or STRING.
+	 */
+	public byte getKind(int token) {
+		return kinds[token];
+	}
+
+	/**
+	 * Returns the ID of the word of the language the given token is, or Words.NONE.
+	 */
+	public int getId(int token) {
+		return ids[token];
+	}
+
+	/**
+	 * Returns where the given token starts in the text, or -1 if it is not part of the text.
+	 */
+	public int getStart(int token) {
+		return starts[token];
+	}
+
+	/**
+	 * Returns the number of characters of the given token in the text.
+	 */
+	public int getLength(int token) {
+		return lengths[token];
+	}
+
+	/**
+	 * Returns the given token as a String in lower case.
+	 */
+	public String get(int token) {
+		String string = (strings != null) ? strings[token] : null;
+		if (string == null) {
+			if (ids[token] != Words.NONE)
+				return Words.get(ids[token]);
+			string = strings()[token] = new String(text, starts[token], lengths[token]).toLowerCase();
+		}
+		return string;
+	}
+
+	/**
+	 * Returns the Strings of the tokens, creating the array the first time.
+	 */
+	private String[] strings() {
+		if (strings == null)
+			strings = new String[kinds.length];
+		return strings;
+	}
+
+	/**
+	 * Returns every token as a String.
+	 */
+	public String[] toArray() {
+		String[] tokens = new String[count];
+		for (int i = 0 ; i < count ; i++)
+			tokens[i] = get(i);
+		return tokens;
+	}
+}
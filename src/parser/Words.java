@@ -0,0 +1,156 @@
+package parser;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The words and operators of the language, each interned to a small integer ID. The lexer looks
+ * up the ID of every token once, straight from the characters of the text, so that the parser
+ * matches a token by comparing two integers instead of two Strings, and a token that is a word
+ * of the language never needs a String of its own.
+ *
+ * The words are fixed when the class is loaded and only read afterwards, so any number of
+ * threads can lex and parse at the same time.
+ *
+ * @license MIT
+ */
+public final class Words {
+
+	/**
+	 * The ID of a token that is not a word of the language, such as a variable or a number.
+	 */
+	public static final int NONE = -1;
+
+	// Every word and operator the parser matches, in the lower case the lexer gives tokens
+	private static final String[] WORDS = {
+		"\n", "\t", ",", ".", "/", "+", "-", "*", "<", ">", "<=", ">=", "(", ")", "&&", "||", "==", "!=",
+		"a", "absolute", "add", "after", "always", "an", "and", "append", "as", "at", "background",
+		"between", "big", "black", "blue", "by", "center", "change", "circle", "clicked", "color",
+		"colored", "create", "cyan", "dark", "decrease", "decrement", "delay", "delta", "deltatime",
+		"diameter", "distance", "divide", "divided", "do", "down", "draw", "else", "ending", "equal",
+		"every", "filled", "for", "forever", "from", "going", "gray", "greater", "green", "height",
+		"if", "image", "in", "increase", "increment", "into", "invert", "is", "left", "length", "less",
+		"light", "line", "magenta", "minus", "mouse", "mouseclicked", "mousex", "mousey", "multiply",
+		"not", "number", "of", "onto", "or", "orange", "otherwise", "oval", "over", "pause", "pink",
+		"place", "plus", "polygon", "pressed", "print", "push", "put", "radius", "random", "randomly",
+		"rectangle", "red", "released", "remove", "repeat", "repeatedly", "reverse", "rgb", "right",
+		"root", "scale", "second", "seconds", "set", "size", "sleep", "small", "space", "square",
+		"starting", "subtract", "than", "the", "time", "times", "to", "up", "upto", "value", "wait",
+		"white", "width", "with", "x", "y", "yellow"
+	};
+
+	// The IDs of the tokens that end lines, indent them and end instructions, and of the minus sign
+	public static final int NEWLINE = 0;
+	public static final int TAB = 1;
+	public static final int PERIOD = 3;
+	public static final int MINUS = 6;
+
+	// An open addressing hash table of the ID of every word plus one, indexed by the hash of
+	// its characters, and the IDs of every word by its String
+	private static final int[] table = new int[512];
+	private static final HashMap <String, Integer> ids = new HashMap <String, Integer> ();
+
+	// The IDs of every phrase matched so far
+	private static final ConcurrentHashMap <String, Phrase> phrases = new ConcurrentHashMap <String, Phrase> ();
+
+	static {
+		for (int id = 0 ; id < WORDS.length ; id++) {
+			String word = WORDS[id];
+			int hash = 0;
+			for (int i = 0 ; i < word.length() ; i++)
+				hash = hash * 31 + word.charAt(i);
+			int slot = spread(hash);
+			while (table[slot] != 0)
+				slot = (slot + 1) & (table.length - 1);
+			table[slot] = id + 1;
+			ids.put(word, id);
+		}
+	}
+
+	/**
+	 * The words of a phrase that a parser matches against tokens, such as "is greater than",
+	 * with the ID of each word, or NONE for a word that is not a word of the language.
+	 */
+	static final class Phrase {
+		final String[] words;
+		final int[] ids;
+
+		private Phrase(String phrase) {
+			words = phrase.split(" ");
+			ids = new int[words.length];
+			for (int i = 0 ; i < words.length ; i++)
+				ids[i] = find(words[i]);
+		}
+	}
+
+	private Words() {}
+
+	/**
+	 * Returns the ID of the given token, or NONE if it is not a word of the language.
+	 */
+	public static int find(String token) {
+		Integer id = ids.get(token);
+		return (id != null) ? id : NONE;
+	}
+
+	/**
+	 * Returns the ID of the token in the given range of characters, ignoring case, or NONE if it
+	 * is not a word of the language. Nothing is allocated unless a character is not ASCII, whose
+	 * lower case may depend on the characters around it.
+	 */
+	public static int find(char[] text, int start, int length) {
+		int hash = 0;
+		for (int i = start ; i < start + length ; i++) {
+			char c = text[i];
+			if (c >= 128)
+				return find(new String(text, start, length).toLowerCase());
+			hash = hash * 31 + lower(c);
+		}
+
+		for (int slot = spread(hash) ; table[slot] != 0 ; slot = (slot + 1) & (table.length - 1)) {
+			String word = WORDS[table[slot] - 1];
+			if (word.length() != length)
+				continue;
+			int i = 0;
+			while (i < length && word.charAt(i) == lower(text[start + i]))
+				i++;
+			if (i == length)
+				return table[slot] - 1;
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the word with the given ID.
+	 */
+	public static String get(int id) {
+		return WORDS[id];
+	}
+
+	/**
+	 * Returns the words of the given phrase and their IDs, which are only worked out the first
+	 * time a phrase is matched.
+	 */
+	static Phrase phrase(String phrase) {
+		Phrase words = phrases.get(phrase);
+		if (words == null)
+			words = phrases.computeIfAbsent(phrase, Phrase::new);
+		return words;
+	}
+
+	/**
+	 * Returns the slot of the table that a word with the given hash of its characters starts
+	 * looking from.
+	 */
+	private static int spread(int hash) {
+		hash ^= hash >>> 16;
+		return hash & (table.length - 1);
+	}
+
+	/**
+	 * Returns the lower case of an ASCII character.
+	 */
+	private static char lower(char c) {
+		return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+	}
+}
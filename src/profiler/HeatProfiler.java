@@ -0,0 +1,134 @@
+package profiler;
+
+import instruction.Block;
+import instruction.LineProfile;
+
+/**
+ * The HeatProfiler finds the lines of a program that its runs spend their time on. Each run
+ * that is profiled counts the lines it reaches in a LineProfile, and a sampling thread adds the
+ * time that passes to whatever line the run is on, about once per millisecond. The time of a
+ * line includes everything its instruction evaluates, such as the expressions and functions it
+ * calls, but not the instructions of the blocks it starts, which count for their own lines.
+ *
+ * The heat of each line is its time as a share of the time of the hottest line, which the editor
+ * shows as a color behind the line.
+ *
+ * @license MIT
+ */
+public class HeatProfiler {
+
+	// The time the sampling thread sleeps between samples, in milliseconds
+	private static final long INTERVAL = 1;
+
+	// The source text of the program, split into lines
+	private String[] lines;
+	private LineProfile profile;
+
+	// The sampling thread, while it runs
+	private Thread sampler;
+	private volatile boolean sampling = false;
+
+	/**
+	 * Creates a profiler of the program parsed from the given text.
+	 */
+	public HeatProfiler(String text) {
+		lines = text.split("\n", -1);
+		profile = new LineProfile(lines.length);
+	}
+
+	/**
+	 * Profiles the lines of the given run of the program.
+	 * @param block - the root block of the run
+	 */
+	public void profile(Block block) {
+		block.setProfile(profile);
+	}
+
+	/**
+	 * Returns the profile that the runs of the program count their lines in.
+	 */
+	public LineProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Starts sampling the line the program is on.
+	 */
+	public void start() {
+		if (sampler != null)
+			return;
+		sampling = true;
+		sampler = new Thread(this::sample, "Heat profiler");
+		sampler.setDaemon(true);
+		sampler.start();
+	}
+
+	/**
+	 * Stops sampling, and waits for the sampling thread to finish.
+	 */
+	public void stop() {
+		if (sampler == null)
+			return;
+		sampling = false;
+		sampler.interrupt();
+		try {
+			sampler.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sampler = null;
+	}
+
+	/**
+	 * Adds the time since the previous sample to the current line, until sampling stops.
+	 */
+	private void sample() {
+		long previous = System.nanoTime();
+		while (sampling) {
+			try {
+				Thread.sleep(INTERVAL);
+			} catch (InterruptedException e) {
+				break;
+			}
+			long now = System.nanoTime();
+			profile.sample(now - previous);
+			previous = now;
+		}
+	}
+
+	/**
+	 * Returns the heat of every line, from 0 for a line the program spent no time on to 1 for the
+	 * line it spent the most time on.
+	 */
+	public double[] getHeat() {
+		double[] heat = new double[profile.getLines()];
+		long hottest = 0;
+		for (int line = 0 ; line < heat.length ; line++)
+			hottest = Math.max(hottest, profile.getTime(line));
+		if (hottest > 0)
+			for (int line = 0 ; line < heat.length ; line++)
+				heat[line] = (double) profile.getTime(line) / hottest;
+		return heat;
+	}
+
+	/**
+	 * Returns a table of every line that was reached, in program order, with the number of times
+	 * it was reached, the time spent on it and its share of the time of the whole program.
+	 */
+	public String dump() {
+		long total = 0;
+		for (int line = 0 ; line < lines.length ; line++)
+			total += profile.getTime(line);
+
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%5s %10s %10s %6s  %s%n", "line", "count", "ms", "time", "source"));
+		for (int line = 0 ; line < lines.length ; line++) {
+			if (profile.getCount(line) == 0)
+				continue;
+			long time = profile.getTime(line);
+			builder.append(String.format("%5d %10d %10.1f %5.1f%%  %s%n", line + 1, profile.getCount(line),
+					time / 1e6, (total > 0) ? 100.0 * time / total : 0, lines[line].trim()));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,259 @@
+package profiler;
+
+import expression.Expression;
+import expression.Operator;
+import instruction.Block;
+
+/**
+ * A condition that counts how it is evaluated. A condition is either the whole condition of an
+ * if or else-if branch, which counts how often the branch is taken, or a chain of operands
+ * joined by "and" or "or", which counts how often each operand is evaluated and how often it
+ * decides the result on its own.
+ *
+ * When every operand of a chain is free of side effects, the chain reorders its operands from
+ * time to time so that cheap operands that usually decide the result are evaluated first.
+ *
+ * @license MIT
+ */
+public class ProfiledCondition extends Expression {
+
+	// The number of evaluations between two reorderings of the operands
+	static final int INTERVAL = 1024;
+
+	private Expression source;		// The original condition, used for printing and comparing
+	private Operator operator;		// And or Or for a chain, null for the condition of a branch
+	private boolean elseIf;			// True if this is the condition of an else-if branch
+	private boolean reorderable;	// True if the operands can be evaluated in any order
+	private boolean nested;			// True if this condition is evaluated by another condition
+
+	// The operands in the order they are currently evaluated, with their estimated cost and
+	// the number of times each was evaluated and decided the result
+	private Expression[] operands;
+	private int[] costs;
+	private long[] evaluations;
+	private long[] decisions;
+
+	// The number of times this condition was evaluated, and was true
+	private long count;
+	private long taken;
+
+	/**
+	 * Constructs a profiled chain of operands joined by the given operator.
+	 * @param source - the original condition
+	 * @param operator - And or Or
+	 * @param operands - the operands in the order they were written
+	 * @param costs - the estimated cost of evaluating each operand
+	 * @param reorderable - true if the operands have no side effects
+	 */
+	ProfiledCondition(Expression source, Operator operator, Expression[] operands, int[] costs, boolean reorderable) {
+		this.source = source;
+		this.operator = operator;
+		this.operands = operands;
+		this.costs = costs;
+		this.reorderable = reorderable && operands.length > 1;
+		this.evaluations = new long[operands.length];
+		this.decisions = new long[operands.length];
+	}
+
+	/**
+	 * Constructs the profiled condition of an if or else-if branch.
+	 * @param condition - the condition of the branch
+	 * @param cost - the estimated cost of evaluating the condition
+	 * @param elseIf - true for an else-if branch, which is taken for any positive value
+	 */
+	ProfiledCondition(Expression condition, int cost, boolean elseIf) {
+		this(condition, null, new Expression[] { condition }, new int[] { cost }, false);
+		this.elseIf = elseIf;
+	}
+
+	/**
+	 * Evaluates the condition, counting the operands that are evaluated.
+	 */
+	public double evaluate(Block block) {
+		double result;
+		if (operator == Operator.And)
+			result = and(block);
+		else if (operator == Operator.Or)
+			result = or(block);
+		else {
+			result = operands[0].evaluate(block);
+			evaluations[0]++;
+		}
+
+		if ((elseIf) ? result > 0 : result >= 1)
+			taken++;
+		if (++count % INTERVAL == 0 && reorderable)
+			reorder();
+		return result;
+	}
+
+	/**
+	 * Returns 1 if every operand evaluates to 1, stopping at the first one that does not.
+	 */
+	private double and(Block block) {
+		for (int i = 0 ; i < operands.length ; i++) {
+			evaluations[i]++;
+			if (operands[i].evaluate(block) != 1) {
+				decisions[i]++;
+				return 0;
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Returns 1 if any operand evaluates to 1, stopping at the first one that does.
+	 */
+	private double or(Block block) {
+		for (int i = 0 ; i < operands.length ; i++) {
+			evaluations[i]++;
+			if (operands[i].evaluate(block) == 1) {
+				decisions[i]++;
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Sorts the operands by their cost divided by the chance that they decide the result, which
+	 * gives the lowest expected cost for independent operands. The chance is estimated from the
+	 * counters with one extra decision and non-decision, so that an operand that has never been
+	 * evaluated is neither always first nor always last.
+	 */
+	private void reorder() {
+		for (int i = 1 ; i < operands.length ; i++) {
+			for (int j = i ; j > 0 && rank(j) < rank(j - 1) ; j--)
+				swap(j, j - 1);
+		}
+	}
+
+	private double rank(int i) {
+		return costs[i] * (evaluations[i] + 2.0) / (decisions[i] + 1.0);
+	}
+
+	private void swap(int i, int j) {
+		Expression operand = operands[i];
+		operands[i] = operands[j];
+		operands[j] = operand;
+
+		int cost = costs[i];
+		costs[i] = costs[j];
+		costs[j] = cost;
+
+		long evaluated = evaluations[i];
+		evaluations[i] = evaluations[j];
+		evaluations[j] = evaluated;
+
+		long decided = decisions[i];
+		decisions[i] = decisions[j];
+		decisions[j] = decided;
+	}
+
+	/**
+	 * Returns the estimated cost of every evaluation of this condition so far. A branch whose
+	 * condition is a chain costs as much as the operands of the chain that were evaluated.
+	 */
+	public long getTotalCost() {
+		if (operator == null && operands[0] instanceof ProfiledCondition)
+			return ((ProfiledCondition) operands[0]).getTotalCost();
+		
+		long total = 0;
+		for (int i = 0 ; i < operands.length ; i++)
+			total += evaluations[i] * costs[i];
+		return total;
+	}
+
+	/**
+	 * Returns the number of times this condition was evaluated.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of times this condition was true, or the branch it controls was taken.
+	 */
+	public long getTaken() {
+		return taken;
+	}
+
+	/**
+	 * Returns the operator joining the operands, or null if this is the condition of a branch.
+	 */
+	public Operator getChainOperator() {
+		return operator;
+	}
+
+	/**
+	 * Returns true if this is the condition of an else-if branch.
+	 */
+	public boolean isElseIf() {
+		return elseIf;
+	}
+
+	/**
+	 * Returns true if this condition is part of another profiled condition.
+	 */
+	public boolean isNested() {
+		return nested;
+	}
+
+	void setNested() {
+		nested = true;
+	}
+
+	/**
+	 * Returns true if the operands of this condition may be reordered.
+	 */
+	public boolean isReorderable() {
+		return reorderable;
+	}
+
+	/**
+	 * Returns the operands in the order they are currently evaluated.
+	 */
+	public Expression[] getOperands() {
+		return operands.clone();
+	}
+
+	/**
+	 * Returns the number of times the operand at the given position was evaluated.
+	 */
+	public long getEvaluations(int operand) {
+		return evaluations[operand];
+	}
+
+	/**
+	 * Returns the number of times the operand at the given position decided the result.
+	 */
+	public long getDecisions(int operand) {
+		return decisions[operand];
+	}
+
+	/**
+	 * Returns the estimated cost of evaluating the operand at the given position once.
+	 */
+	public int getCost(int operand) {
+		return costs[operand];
+	}
+
+	/**
+	 * Returns the original condition.
+	 */
+	public Expression getSource() {
+		return source;
+	}
+
+	public int getPrecedence() {
+		return source.getPrecedence();
+	}
+
+	public boolean equals(Expression other) {
+		return source.equals(other);
+	}
+
+	public String toString() {
+		return source.toString();
+	}
+}
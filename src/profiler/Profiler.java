@@ -0,0 +1,277 @@
+package profiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import expression.DistanceTerminal;
+import expression.Expression;
+import expression.KeyTerminal;
+import expression.LengthTerminal;
+import expression.Operator;
+import expression.StringTerminal;
+import expression.SymbolTerminal;
+import expression.Terminal;
+import instruction.Block;
+import instruction.ElseIfBlock;
+import instruction.IfBlock;
+import instruction.Instruction;
+import instruction.Rewriter;
+
+/**
+ * The Profiler replaces the conditions of a program with ProfiledConditions. Every if and
+ * else-if branch counts how often it is taken, and every chain of "and" or "or" counts how often
+ * each of its operands is evaluated and decides the result. Chains without side effects use
+ * their counters to evaluate the operands most likely to decide the result cheaply first.
+ *
+ * Each operand has an estimated cost in units of one variable read, so that the dump can show
+ * which conditions take up most of the evaluation time of a frame.
+ *
+ * Instructions that a reparsed program keeps from the program before it are already profiled.
+ * Their conditions are not profiled again, and keep counting from where they were.
+ *
+ * @license MIT
+ */
+public class Profiler implements Rewriter {
+
+	// Estimated costs of evaluating each kind of expression node
+	private static final int TERMINAL_COST = 1;
+	private static final int VARIABLE_COST = 2;
+	private static final int DISTANCE_COST = 16;
+	private static final int UNKNOWN_COST = 8;
+
+	// Every condition created by this profiler, in program order
+	private ArrayList <ProfiledCondition> conditions = new ArrayList <ProfiledCondition> ();
+
+	/**
+	 * Replaces the conditions of the given program with profiled conditions.
+	 * @param block - the root block of the program
+	 */
+	public void profile(Block block) {
+		block.rewrite(this);
+	}
+
+	/**
+	 * Profiles every chain of "and" or "or" within the given expression.
+	 */
+	public Expression rewrite(Expression expression) {
+		if (expression instanceof ProfiledCondition) {
+			keep(expression);
+			return expression;
+		}
+		if (expression.getClass() != Expression.class)
+			return expression;
+
+		Expression left = expression.getLeft();
+		Operator operator = expression.getOperator();
+		Expression right = expression.getRight();
+		if (left == null)
+			return expression;
+		if (operator == null)
+			return rewrite(left);
+		if (right == null)
+			return new Expression(rewrite(left), operator);
+		if (operator == Operator.And || operator == Operator.Or)
+			return chain(expression, operator);
+		return new Expression(rewrite(left), operator, rewrite(right));
+	}
+
+	/**
+	 * Profiles the conditions of the if and else-if branches of a block.
+	 */
+	public void rewrite(Block block) {
+		for (int i = 0 ; i < block.length() ; i++) {
+			Instruction instruction = block.get(i);
+			if (instruction instanceof IfBlock) {
+				IfBlock branch = (IfBlock) instruction;
+				Expression condition = branch.getExpression();
+				if (condition instanceof ProfiledCondition && ((ProfiledCondition) condition).getChainOperator() == null)
+					continue;
+				ProfiledCondition profiled = new ProfiledCondition(condition, cost(condition), branch instanceof ElseIfBlock);
+				nest(condition);
+				branch.setExpression(profiled);
+				conditions.add(profiled);
+			}
+		}
+	}
+
+	/**
+	 * Adds the profiled conditions within an expression that was profiled before to the
+	 * conditions of this profiler.
+	 */
+	private void keep(Expression expression) {
+		if (expression instanceof ProfiledCondition) {
+			conditions.add((ProfiledCondition) expression);
+			for (Expression operand : ((ProfiledCondition) expression).getOperands())
+				keep(operand);
+		}
+		else if (expression.getClass() == Expression.class) {
+			if (expression.getLeft() != null)
+				keep(expression.getLeft());
+			if (expression.getRight() != null)
+				keep(expression.getRight());
+		}
+	}
+
+	/**
+	 * Flattens a chain of the given operator into a single profiled condition.
+	 */
+	private Expression chain(Expression expression, Operator operator) {
+		ArrayList <Expression> operands = new ArrayList <Expression> ();
+		collect(expression, operator, operands);
+
+		int[] costs = new int[operands.size()];
+		boolean pure = true;
+		for (int i = 0 ; i < costs.length ; i++) {
+			costs[i] = cost(operands.get(i));
+			pure = pure && isPure(operands.get(i));
+			nest(operands.get(i));
+		}
+
+		ProfiledCondition condition = new ProfiledCondition(expression, operator,
+				operands.toArray(new Expression[operands.size()]), costs, pure);
+		conditions.add(condition);
+		return condition;
+	}
+
+	/**
+	 * Adds the operands of a chain of the given operator to the list, in the order they are written.
+	 */
+	private void collect(Expression expression, Operator operator, List <Expression> operands) {
+		if (expression.getClass() == Expression.class && expression.getLeft() != null) {
+			if (expression.getOperator() == null) {
+				collect(expression.getLeft(), operator, operands);
+				return;
+			}
+			if (expression.getOperator() == operator && expression.getRight() != null) {
+				collect(expression.getLeft(), operator, operands);
+				collect(expression.getRight(), operator, operands);
+				return;
+			}
+		}
+		operands.add(rewrite(expression));
+	}
+
+	/**
+	 * Marks the profiled conditions within the given expression as nested, so that their cost is
+	 * only counted once in the dump.
+	 */
+	private void nest(Expression expression) {
+		if (expression instanceof ProfiledCondition)
+			((ProfiledCondition) expression).setNested();
+		else if (expression.getClass() == Expression.class) {
+			if (expression.getLeft() != null)
+				nest(expression.getLeft());
+			if (expression.getRight() != null)
+				nest(expression.getRight());
+		}
+	}
+
+	/**
+	 * Returns true if evaluating the given expression has no side effects, so that it can be
+	 * evaluated at a different time. Random numbers and unknown kinds of expressions are never pure.
+	 */
+	static boolean isPure(Expression expression) {
+		Class <?> type = expression.getClass();
+		if (type == Expression.class)
+			return (expression.getLeft() == null || isPure(expression.getLeft())) &&
+				   (expression.getRight() == null || isPure(expression.getRight()));
+		if (type == SymbolTerminal.class)
+			return ((SymbolTerminal) expression).getIndex() == null || isPure(((SymbolTerminal) expression).getIndex());
+		if (type == DistanceTerminal.class) {
+			for (Expression coordinate : ((DistanceTerminal) expression).getCoordinates())
+				if (! isPure(coordinate))
+					return false;
+			return true;
+		}
+		if (type == ProfiledCondition.class) {
+			for (Expression operand : ((ProfiledCondition) expression).getOperands())
+				if (! isPure(operand))
+					return false;
+			return true;
+		}
+		return type == Terminal.class || type == KeyTerminal.class || type == LengthTerminal.class || type == StringTerminal.class;
+	}
+
+	/**
+	 * Returns the estimated cost of evaluating the given expression once.
+	 */
+	static int cost(Expression expression) {
+		Class <?> type = expression.getClass();
+		if (type == Expression.class) {
+			int cost = TERMINAL_COST;
+			if (expression.getLeft() != null)
+				cost += cost(expression.getLeft());
+			if (expression.getRight() != null)
+				cost += cost(expression.getRight());
+			return cost;
+		}
+		if (type == SymbolTerminal.class) {
+			Expression index = ((SymbolTerminal) expression).getIndex();
+			return VARIABLE_COST + ((index != null) ? cost(index) : 0);
+		}
+		if (type == DistanceTerminal.class) {
+			int cost = DISTANCE_COST;
+			for (Expression coordinate : ((DistanceTerminal) expression).getCoordinates())
+				cost += cost(coordinate);
+			return cost;
+		}
+		if (type == ProfiledCondition.class) {
+			ProfiledCondition condition = (ProfiledCondition) expression;
+			int cost = TERMINAL_COST;
+			for (int i = 0 ; i < condition.getOperands().length ; i++)
+				cost += condition.getCost(i);
+			return cost;
+		}
+		if (type == KeyTerminal.class || type == LengthTerminal.class)
+			return VARIABLE_COST;
+		if (type == Terminal.class || type == StringTerminal.class)
+			return TERMINAL_COST;
+		return UNKNOWN_COST;
+	}
+
+	/**
+	 * Returns every profiled condition, in program order.
+	 */
+	public List <ProfiledCondition> getConditions() {
+		return Collections.unmodifiableList(conditions);
+	}
+
+	/**
+	 * Returns a table of every condition, most expensive first, with the share of the estimated
+	 * evaluation cost it accounts for, how often it was evaluated and true, and for chains the
+	 * counters of each operand in the order they are currently evaluated.
+	 */
+	public String dump() {
+		ArrayList <ProfiledCondition> sorted = new ArrayList <ProfiledCondition> (conditions);
+		Collections.sort(sorted, (a, b) -> Long.compare(b.getTotalCost(), a.getTotalCost()));
+
+		// Conditions within other conditions are already part of the cost of the outer condition
+		long total = 0;
+		for (ProfiledCondition condition : conditions)
+			if (! condition.isNested())
+				total += condition.getTotalCost();
+
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%6s %10s %10s %10s  %s%n", "cost", "evaluated", "true", "decided", "condition"));
+		for (ProfiledCondition condition : sorted) {
+			String kind = (condition.getChainOperator() == null) ? (condition.isElseIf() ? "else if " : "if ") :
+				(condition.isReorderable() ? "" : "fixed ");
+			builder.append(String.format("%5.1f%% %10d %10d %10s  %s%s%n", percent(condition.getTotalCost(), total),
+					condition.getCount(), condition.getTaken(), "", kind, condition));
+
+			if (condition.getChainOperator() != null) {
+				Expression[] operands = condition.getOperands();
+				for (int i = 0 ; i < operands.length ; i++)
+					builder.append(String.format("%5.1f%% %10d %10s %10d    %s%n",
+							percent(condition.getEvaluations(i) * condition.getCost(i), total),
+							condition.getEvaluations(i), "", condition.getDecisions(i), operands[i]));
+			}
+		}
+		return builder.toString();
+	}
+
+	private static double percent(long part, long total) {
+		return (total > 0) ? 100.0 * part / total : 0;
+	}
+}
@@ -0,0 +1,199 @@
+package replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import instruction.Block;
+
+/**
+ * The input of a recorded run of a program, read back from the file written by an
+ * InputRecorder. A log holds the seed of the program's random numbers, the size of its window,
+ * the time each frame took, and every input assigned before each frame, so that the run can be
+ * repeated frame by frame without a window.
+ *
+ * The file starts with the bytes "PSIN", a version byte, the seed as a long and the width and
+ * height of the window as ints. A record of one byte follows for each input and each frame:
+ *
+ *   INPUT - the index of the variable as a varint, followed by its name in modified UTF-8 the
+ *           first time it is used, and the value as a zigzag varint
+ *   FRAME - the nanoseconds since the previous frame started as a varint
+ *
+ * Inputs are assigned before the frame that follows them. A frame takes five bytes and an input
+ * about four, so a minute of play at 50 frames per second fits in a few tens of kilobytes.
+ *
+ * @license MIT
+ */
+public class InputLog {
+
+	static final int MAGIC = 0x5053494E;
+	static final int VERSION = 1;
+
+	// The kinds of record
+	static final int INPUT = 0;
+	static final int FRAME = 1;
+
+	private long seed;
+	private int width;
+	private int height;
+
+	// The name of each variable given input, in the order they were first used
+	private String[] names;
+
+	// The nanoseconds each frame took, and the first input assigned before each frame, with
+	// one more entry at the end for the inputs after the last frame
+	private long[] frameTimes;
+	private int[] firstInput;
+	private int frames;
+
+	// The variable and value of every input
+	private int[] variables;
+	private int[] values;
+
+	private InputLog() {}
+
+	/**
+	 * Reads a log written by an InputRecorder.
+	 * @throws IOException if the stream cannot be read or does not hold a log
+	 */
+	public static InputLog read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION)
+			throw new IOException("Not an input log");
+
+		InputLog log = new InputLog();
+		log.seed = in.readLong();
+		log.width = in.readInt();
+		log.height = in.readInt();
+
+		ArrayList <String> names = new ArrayList <String> ();
+		long[] frameTimes = new long[256];
+		int[] firstInput = new int[256];
+		int[] variables = new int[256];
+		int[] values = new int[256];
+		int frames = 0, inputs = 0;
+
+		int kind;
+		while ((kind = in.read()) >= 0) {
+			if (kind == INPUT) {
+				int variable = (int) readVarLong(in);
+				if (variable == names.size())
+					names.add(in.readUTF());
+				else if (variable > names.size())
+					throw new IOException("Input for an unknown variable");
+				if (inputs == variables.length) {
+					variables = Arrays.copyOf(variables, inputs * 2);
+					values = Arrays.copyOf(values, inputs * 2);
+				}
+				variables[inputs] = variable;
+				values[inputs] = unzigzag(readVarLong(in));
+				inputs++;
+			}
+			else if (kind == FRAME) {
+				if (frames + 1 == frameTimes.length) {
+					frameTimes = Arrays.copyOf(frameTimes, frames * 2);
+					firstInput = Arrays.copyOf(firstInput, frames * 2);
+				}
+				frameTimes[frames] = readVarLong(in);
+				firstInput[frames + 1] = inputs;
+				frames++;
+			}
+			else throw new IOException("Unknown record " + kind);
+		}
+
+		log.names = names.toArray(new String[names.size()]);
+		log.frameTimes = frameTimes;
+		log.firstInput = firstInput;
+		log.frames = frames;
+		log.variables = variables;
+		log.values = values;
+		return log;
+	}
+
+	/**
+	 * Returns the seed that the random numbers of the program started from.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the width of the window the program ran in.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the window the program ran in.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the number of frames that were recorded.
+	 */
+	public int getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Returns the nanoseconds between the start of the given frame and the start of the one
+	 * before it.
+	 */
+	public long getFrameTime(int frame) {
+		return frameTimes[frame];
+	}
+
+	/**
+	 * Assigns every input that was given before the given frame to the variables of a program.
+	 */
+	public void apply(int frame, Block block) {
+		for (int input = firstInput[frame] ; input < firstInput[frame + 1] ; input++)
+			block.assign(names[variables[input]], values[input]);
+	}
+
+	/**
+	 * Writes a number as a varint: seven bits per byte, lowest first, with the high bit set on
+	 * every byte but the last.
+	 */
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads a number written by writeVarLong.
+	 */
+	static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0 ; shift < 64 ; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new EOFException("Varint is too long");
+	}
+
+	/**
+	 * Maps a number to one that is small for small negative numbers too, and back again.
+	 */
+	static long zigzag(int value) {
+		return ((long) value << 1) ^ (value >> 31);
+	}
+
+	static int unzigzag(long value) {
+		return (int) (value >>> 1) ^ -(int) (value & 1);
+	}
+}
@@ -0,0 +1,70 @@
+package replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/**
+ * Records the input of a run of a program as it happens, in the format read by InputLog. The
+ * Simulation records each input when it is assigned and each frame when it starts, so that
+ * the run can be replayed with exactly the same input on exactly the same frames.
+ *
+ * @license MIT
+ */
+public class InputRecorder implements Closeable {
+
+	private DataOutputStream out;
+
+	// The index of each variable that has been given input
+	private HashMap <String, Integer> variables = new HashMap <String, Integer> ();
+
+	/**
+	 * Starts a recording.
+	 * @param stream - the stream the log is written to, which is closed with the recorder
+	 * @param seed - the seed the random numbers of the program start from
+	 * @param width - the width of the window the program runs in
+	 * @param height - the height of the window the program runs in
+	 */
+	public InputRecorder(OutputStream stream, long seed, int width, int height) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(InputLog.MAGIC);
+		out.writeByte(InputLog.VERSION);
+		out.writeLong(seed);
+		out.writeInt(width);
+		out.writeInt(height);
+	}
+
+	/**
+	 * Records a value assigned to a variable before the next frame.
+	 */
+	public void input(String variable, int value) throws IOException {
+		Integer index = variables.get(variable);
+		out.writeByte(InputLog.INPUT);
+		if (index == null) {
+			InputLog.writeVarLong(out, variables.size());
+			out.writeUTF(variable);
+			variables.put(variable, variables.size());
+		}
+		else InputLog.writeVarLong(out, index);
+		InputLog.writeVarLong(out, InputLog.zigzag(value));
+	}
+
+	/**
+	 * Records the start of a frame.
+	 * @param nanoseconds - the time since the previous frame started
+	 */
+	public void frame(long nanoseconds) throws IOException {
+		out.writeByte(InputLog.FRAME);
+		InputLog.writeVarLong(out, Math.max(nanoseconds, 0));
+	}
+
+	/**
+	 * Writes everything that was recorded and closes the stream.
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,84 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.Scanner;
+import java.util.function.Consumer;
+
+import expression.Terminal;
+import instruction.Block;
+import instruction.SymbolTable;
+
+/**
+ * Reads the example programs that come with Pseudocode, and runs a program two ways frame by
+ * frame, for the tests that check every way of running a program against the tree walking
+ * interpreter.
+ *
+ * @license MIT
+ */
+class Examples {
+
+	// Every example
+	static final String[] ALL = { "Bouncing_Ball", "Draw_Shapes", "Etch_A_Sketch", "Flappy_Bird",
+		"Follower", "Key_Character", "Mini_Golf", "Mouse_Coloring", "Paddle_Bounce", "Random_Colors",
+		"Random_Shapes", "Simple_Branching" };
+
+	// Examples whose variables do not depend on random numbers
+	static final String[] DETERMINISTIC = { "Bouncing_Ball", "Draw_Shapes", "Etch_A_Sketch", "Flappy_Bird",
+		"Key_Character", "Mini_Golf", "Mouse_Coloring", "Paddle_Bounce", "Simple_Branching" };
+
+	/**
+	 * Returns the text of the example with the given name, such as "Bouncing_Ball".
+	 */
+	static String read(String name) {
+		InputStream stream = Examples.class.getResourceAsStream("/example/" + name + ".pseudo");
+		if (stream == null)
+			throw new IllegalArgumentException("No example named " + name);
+		Scanner scanner = new Scanner(stream).useDelimiter("\\A");
+		String text = scanner.hasNext() ? scanner.next() : "";
+		scanner.close();
+		return text;
+	}
+
+	/**
+	 * Gives the given root block the size and input of a 600 by 600 window with the mouse in the
+	 * middle, and starts it from its first instruction.
+	 */
+	static Block initialize(Block block) {
+		block.assign("width", new Terminal(600));
+		block.assign("height", new Terminal(550));
+		block.assign("mousex", new Terminal(300));
+		block.assign("mousey", new Terminal(250));
+		block.assign("mouseclicked", new Terminal(0));
+		block.reset();
+		return block;
+	}
+
+	/**
+	 * Runs a frame of the expected root block with the tree walking interpreter and then a frame
+	 * of the actual one the way the given frame runs it, for the given number of frames, and
+	 * asserts that every variable has the same type and value after each frame.
+	 */
+	static void compare(String name, int frames, Block expected, Block actual, Consumer <Graphics> frame) {
+		Graphics graphics = new BufferedImage(600, 600, BufferedImage.TYPE_INT_RGB).getGraphics();
+		for (int count = 0 ; count < frames ; count++) {
+			expected.execute(graphics, expected);
+			frame.accept(graphics);
+
+			SymbolTable table = expected.getSymbolTable();
+			SymbolTable other = actual.getSymbolTable();
+			for (int slot = 0 ; slot < table.size() ; slot++) {
+				int found = other.find(table.getName(slot));
+				String message = name + " " + table.getName(slot) + " in frame " + count;
+				assertTrue(message, found >= 0);
+				assertEquals(message, table.getType(slot), other.getType(found));
+				assertEquals(message, table.get(slot), other.get(found), 0);
+				assertEquals(message, String.valueOf(table.getList(slot)), String.valueOf(other.getList(found)));
+			}
+		}
+		graphics.dispose();
+	}
+}
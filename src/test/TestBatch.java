@@ -0,0 +1,70 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import batch.BatchRunner;
+
+public class TestBatch {
+
+	private static final String PROGRAM =
+			"set x to 0\n" +
+			"print \"start\"\n" +
+			"every 1 second\n" +
+			"\tprint \"tick\"\n" +
+			"forever\n" +
+			"\tchange x by 1\n" +
+			"\tdraw a red square at 100, 100\n";
+
+	// The nested loop never finishes its first frame
+	private static final String ENDLESS =
+			"set x to 0\n" +
+			"forever\n" +
+			"\tforever\n" +
+			"\t\tchange x by 1\n";
+
+	@Test
+	public void testRun() {
+		// Three seconds of frames at 50 frames per second
+		BatchRunner runner = new BatchRunner(150, 200, 200, 50, 10000000000L);
+		BatchRunner.Result result = runner.run("program", PROGRAM);
+		assertFalse(result.isTimedOut());
+		assertNull(result.getError());
+		assertEquals(150, result.getFramesRun());
+		assertEquals(150, result.getFrameTimes().length);
+		assertEquals("start \ntick \ntick \n", result.getOutput());
+		
+		// The square is drawn on a white background
+		assertEquals(Color.WHITE.getRGB(), result.getImage().getRGB(5, 5));
+		assertEquals(Color.RED.getRGB(), result.getImage().getRGB(100, 100));
+		assertTrue(result.getPercentile(50) <= result.getPercentile(100));
+		assertTrue(result.toJson().contains("\"frames\": 150"));
+	}
+
+	@Test
+	public void testTimeout() {
+		BatchRunner runner = new BatchRunner(100, 100, 100, 50, 200000000L);
+		BatchRunner.Result result = runner.run("endless", ENDLESS);
+		assertTrue(result.isTimedOut());
+		
+		// Only the first frame, which sets x, finished
+		assertEquals(1, result.getFramesRun());
+		assertEquals(Color.WHITE.getRGB(), result.getImage().getRGB(5, 5));
+		
+		// The loop is stopped instead of running on in the background
+		long deadline = System.currentTimeMillis() + 5000;
+		while (running("Batch endless") && System.currentTimeMillis() < deadline)
+			Thread.yield();
+		assertFalse(running("Batch endless"));
+	}
+	
+	private boolean running(String name) {
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+			if (thread.getName().equals(name))
+				return true;
+		return false;
+	}
+}
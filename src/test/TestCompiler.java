@@ -0,0 +1,60 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import compiler.Compiler;
+import instruction.Block;
+import parser.Parser;
+
+public class TestCompiler {
+
+	private static final int FRAMES = 300;
+
+	private static final String ARITHMETIC =
+			"set a to 1\n" +
+			"set b to 2\n" +
+			"set c to 0\n" +
+			"set d to 0\n" +
+			"set x to 1, 2, 3\n" +
+			"forever\n" +
+			"\tset c to (a * 3 + b * 2 - 1) / 7\n" +
+			"\tset d to c * c - a * b + 3 / 4\n" +
+			"\tset e to distance from a, b to c, d\n" +
+			"\tchange a by 1\n" +
+			"\tset b to b / 2 + length of x\n" +
+			"\tif a > 10 and not b = 0 or c <= d\n" +
+			"\t\tset f to a - b\n" +
+			"\t\tchange f by c * 2\n" +
+			"\tif a >= b\n" +
+			"\t\tset g to a / b\n" +
+			"\tappend a to x\n";
+
+	@Test
+	public void testExamples() {
+		for (String example : Examples.DETERMINISTIC)
+			compare(example, Examples.read(example));
+	}
+
+	@Test
+	public void testArithmetic() {
+		Compiler compiler = compare("ARITHMETIC", ARITHMETIC);
+		assertTrue(compiler.getCompiledExpressions() > 0);
+		assertTrue(compiler.getCompiledRuns() > 0);
+	}
+
+	/**
+	 * Runs the given program with and without compilation, and asserts that every variable has
+	 * the same value after each frame.
+	 */
+	private Compiler compare(String name, String program) {
+		Block interpreted = Examples.initialize(new Parser().parse(program));
+		Block compiled = Examples.initialize(new Parser().parse(program));
+
+		Compiler compiler = new Compiler(compiled.getSymbolTable());
+		compiler.compile(compiled);
+		Examples.compare(name, FRAMES, interpreted, compiled, graphics -> compiled.execute(graphics, compiled));
+		return compiler;
+	}
+}
@@ -0,0 +1,64 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import expression.Terminal;
+import instruction.Block;
+import instruction.Draw;
+import instruction.Program;
+import parser.Parser;
+
+public class TestDraw {
+
+	@Test
+	public void testImage() throws IOException {
+		File file = File.createTempFile("image", ".png");
+		file.delete();
+		file.deleteOnExit();
+		Draw draw = new Draw("image");
+		draw.setImageLocation(file.getPath());
+		draw.setX(new Terminal(0));
+		draw.setY(new Terminal(0));
+		draw.setSize(new Terminal(10));
+
+		// An image that cannot be read draws nothing, and is not read again by the same program
+		Program program = new Program(new Parser().parse("set x to 0"));
+		assertEquals(Color.WHITE.getRGB(), draw(draw, program.start()).getRGB(5, 5));
+		BufferedImage red = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		Graphics graphics = red.getGraphics();
+		graphics.setColor(Color.RED);
+		graphics.fillRect(0, 0, 10, 10);
+		graphics.dispose();
+		ImageIO.write(red, "png", file);
+		assertEquals(Color.WHITE.getRGB(), draw(draw, program.start()).getRGB(5, 5));
+
+		// A new program reads it again, and keeps it for every run, even after the file is gone
+		program = new Program(new Parser().parse("set x to 0"));
+		assertEquals(Color.RED.getRGB(), draw(draw, program.start()).getRGB(5, 5));
+		file.delete();
+		assertEquals(Color.RED.getRGB(), draw(draw, program.start()).getRGB(5, 5));
+	}
+
+	/**
+	 * Runs the given instruction in the given run of a program, drawing on a white image.
+	 */
+	private BufferedImage draw(Draw draw, Block block) {
+		BufferedImage image = new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB);
+		Graphics graphics = image.getGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, 20, 20);
+		draw.execute(graphics, block);
+		graphics.dispose();
+		return image;
+	}
+}
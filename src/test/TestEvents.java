@@ -0,0 +1,90 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.Test;
+
+import instruction.Block;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import machine.Lowering;
+import parser.Parser;
+import view.FrameBuffer;
+import view.Simulation;
+
+public class TestEvents {
+
+	@Test
+	public void testEvents() throws IOException, InterruptedException {
+		String text = "set x to 0\nforever\n\tchange x by 1\n\tdraw a circle at x, 10\n";
+		Path file = Files.createTempFile("pseudocode", ".jfr");
+		List <RecordedEvent> events;
+		try (Recording recording = new Recording()) {
+			recording.enable("io.pseudocode.Parse").withThreshold(Duration.ZERO);
+			recording.enable("io.pseudocode.Frame").withThreshold(Duration.ZERO);
+			recording.enable("io.pseudocode.Draw").withThreshold(Duration.ZERO);
+			recording.start();
+
+			Block block = new Parser().parse(text);
+			block.reset();
+			Simulation simulation = new Simulation(block, Lowering.lower(block), new FrameBuffer(50, 50), 200, 5000000);
+			simulation.start();
+			Thread.sleep(100);
+			simulation.finish();
+
+			recording.stop();
+			recording.dump(file);
+			events = RecordingFile.readAllEvents(file);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+		RecordedEvent parse = find(events, "io.pseudocode.Parse");
+		assertEquals(text.length(), parse.getInt("characters"));
+		assertTrue(parse.getInt("tokens") > 10);
+
+		// Every frame of the loop draws one circle
+		long draws = 0;
+		for (RecordedEvent event : events)
+			if (event.getEventType().getName().equals("io.pseudocode.Frame"))
+				draws = Math.max(draws, event.getLong("draws"));
+		assertEquals(1, draws);
+		assertTrue(find(events, "io.pseudocode.Frame").getLong("opcodes") > 0);
+
+		RecordedEvent draw = find(events, "io.pseudocode.Draw");
+		assertEquals("Circle", draw.getString("shape"));
+		assertFalse(draw.getBoolean("loaded"));
+	}
+
+	@Test
+	public void testThreshold() throws IOException {
+		// Parsing a tiny program never takes an hour
+		Path file = Files.createTempFile("pseudocode", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("io.pseudocode.Parse").withThreshold(Duration.ofHours(1));
+			recording.start();
+			new Parser().parse("set x to 1\n");
+			recording.stop();
+			recording.dump(file);
+			for (RecordedEvent event : RecordingFile.readAllEvents(file))
+				assertNotEquals("io.pseudocode.Parse", event.getEventType().getName());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static RecordedEvent find(List <RecordedEvent> events, String name) {
+		for (RecordedEvent event : events)
+			if (event.getEventType().getName().equals(name))
+				return event;
+		fail("No " + name + " event was recorded");
+		return null;
+	}
+}
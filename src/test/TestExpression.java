@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import expression.*;
+import instruction.Block;
+import instruction.SymbolTable;
 
 public class TestExpression {
 
@@ -30,5 +32,75 @@ public class TestExpression {
 		Expression f = new Expression(e, Operator.Multiply, t1);
 		System.out.println(f);
 	}
+	
+	@Test
+	public void testElementRead() {
+		Block block = new Block();
+		SymbolTable table = block.getSymbolTable();
+		int x = table.resolve("x");
+		table.set(x, new ListValue(1, 2, 3));
+		
+		SymbolTerminal element = new SymbolTerminal("x", new Terminal(1));
+		assertEquals(2, element.evaluate(block), 0);
+		
+		// An element read sees the list changed in place as well as a new list
+		table.set(x, 1, 5);
+		assertEquals(5, element.evaluate(block), 0);
+		table.set(x, new ListValue(7, 8));
+		assertEquals(8, element.evaluate(block), 0);
+		
+		// and follows the type of the variable when it changes
+		table.set(x, new StringValue("hi"));
+		assertEquals('i', element.evaluate(block), 0);
+		table.set(x, 4);
+		assertEquals(4, element.evaluate(block), 0);
+		assertEquals(4, new SymbolTerminal("x").evaluate(block), 0);
+	}
+	
+	@Test
+	public void testKeyTerminal() {
+		Block block = new Block();
+		KeyTerminal pressed = new KeyTerminal("up");
+		KeyTerminal released = new KeyTerminal("up", false);
+		assertEquals(0, pressed.evaluate(block), 0);
+		assertEquals(0, released.evaluate(block), 0);
+		
+		block.assign("up pressed", 1);
+		assertEquals(1, pressed.evaluate(block), 0);
+		assertEquals(0, released.evaluate(block), 0);
+		
+		block.assign("up pressed", 0);
+		assertEquals(0, pressed.evaluate(block), 0);
+		assertEquals(1, released.evaluate(block), 0);
+	}
+	
+	@Test
+	public void testValue() {
+		Block block = new Block();
+		SymbolTable table = block.getSymbolTable();
+		int x = table.resolve("x");
+		SymbolTerminal symbol = new SymbolTerminal("x");
+		
+		// Numbers have no value object
+		table.set(x, 3);
+		assertNull(symbol.evaluateValue(block));
+		assertEquals("", block.charToString(symbol));
+		
+		// Strings and lists are returned as they are stored
+		StringValue string = new StringValue("ball.png");
+		table.set(x, string);
+		assertSame(string, symbol.evaluateValue(block));
+		assertSame(string, new Expression(symbol).evaluateValue(block));
+		assertEquals("ball.png", block.charToString(symbol));
+		assertNull(new SymbolTerminal("x", new Terminal(0)).evaluateValue(block));
+		
+		ListValue list = new ListValue(1, 2);
+		table.set(x, list);
+		assertSame(list, symbol.evaluateValue(block));
+		assertEquals("", block.charToString(symbol));
+		
+		assertEquals("ball.png", block.charToString(new StringTerminal("ball.png")));
+		assertNull(new Expression(symbol, Operator.Add, new Terminal(1)).evaluateValue(block));
+	}
 
 }
@@ -0,0 +1,220 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import instruction.Block;
+import instruction.ControlStack;
+import instruction.ExecutionContext;
+import instruction.Output;
+import instruction.Program;
+import machine.Lowering;
+import machine.Machine;
+import metrics.FrameMetrics;
+import parser.Parser;
+
+public class TestFunction {
+
+	private static final String FACTORIAL =
+			"set r to 0\n" +
+			"set n to 7\n" +
+			"to factorial with n\n" +
+			"\tif n > 1\n" +
+			"\t\tdo factorial with n - 1\n" +
+			"\t\tset r to r * n\n" +
+			"\telse\n" +
+			"\t\tset r to 1\n" +
+			"do factorial with 5\n";
+
+	private static final String FIBONACCI =
+			"set total to 0\n" +
+			"to fibonacci with n\n" +
+			"\tif n < 2\n" +
+			"\t\tchange total by n\n" +
+			"\telse\n" +
+			"\t\tdo fibonacci with n - 1\n" +
+			"\t\tdo fibonacci with n - 2\n" +
+			"do fibonacci with 15\n";
+
+	private static final String ARGUMENTS =
+			"set s to 0\n" +
+			"set d to 0\n" +
+			"to subtract with a and b\n" +
+			"\tset s to a - b\n" +
+			"do subtract with 40, 2\n" +
+			"set d to s\n" +
+			"do subtract with b 40, a 2\n";
+
+	private static final String VALUES =
+			"set total to 0\n" +
+			"set numbers to 1, 2, 3\n" +
+			"to sum with list\n" +
+			"\tset total to length of list\n" +
+			"do sum with numbers\n";
+
+	private static final String REDEFINED =
+			"set p to 5\n" +
+			"set q to 7\n" +
+			"to swap with p\n" +
+			"\tto swap with q\n" +
+			"\t\tset p to q\n" +
+			"\tset r to p\n" +
+			"do swap with 1\n";
+
+	private static final String ENDLESS =
+			"set depth to 0\n" +
+			"to dive\n" +
+			"\tchange depth by 1\n" +
+			"\tdo dive\n" +
+			"do dive\n";
+
+	@Test
+	public void testRecursion() {
+		Block block = run(FACTORIAL, 10);
+		assertEquals(120, block.get("r"), 0);
+		
+		// The parameter gets back the value it had before the call
+		assertEquals(7, block.get("n"), 0);
+		
+		block = run(FIBONACCI, 10);
+		assertEquals(610, block.get("total"), 0);
+		assertEquals(0, block.getControlStack().size());
+	}
+
+	@Test
+	public void testArguments() {
+		Block block = run(ARGUMENTS, 10);
+		assertEquals(38, block.get("d"), 0);
+		assertEquals(-38, block.get("s"), 0);
+		assertFalse(block.hasSymbol("x"));
+		
+		block = run(VALUES, 10);
+		assertEquals(3, block.get("total"), 0);
+	}
+
+	@Test
+	public void testRedefined() {
+		// The body defines the function again with another parameter, and the parameter of
+		// the call that is running still gets back its value
+		Block block = run(REDEFINED, 10);
+		assertEquals(1, block.get("r"), 0);
+		assertEquals(5, block.get("p"), 0);
+		assertEquals(7, block.get("q"), 0);
+		assertEquals(0, block.getControlStack().size());
+	}
+
+	@Test
+	public void testDepth() {
+		Block block = run(ENDLESS, 10);
+		assertEquals(ControlStack.DEFAULT_LIMIT, block.get("depth"), 0);
+		assertEquals(0, block.getControlStack().depth());
+	}
+
+	@Test
+	public void testLimit() {
+		// Far deeper than the Java stack of the thread allows
+		Block block = new Parser().parse(ENDLESS);
+		block.getControlStack().setLimit(200000);
+		block.reset();
+		for (int frame = 0 ; frame < 10 ; frame++)
+			block.execute(null, block);
+		assertEquals(200000, block.get("depth"), 0);
+		
+		// Nested blocks count towards the limit as well as calls
+		block = new Parser().parse(FACTORIAL);
+		block.getControlStack().setLimit(4);
+		block.reset();
+		for (int frame = 0 ; frame < 10 ; frame++)
+			block.execute(null, block);
+		assertEquals(0, block.getControlStack().depth());
+		assertEquals(0, block.getControlStack().size());
+		assertEquals(7, block.get("n"), 0);
+		assertTrue(block.get("r") < 120);
+	}
+
+	@Test
+	public void testLimitReported() {
+		// Going past the limit is reported once, however many calls and blocks are skipped
+		for (String program : new String[] { ENDLESS, FACTORIAL }) {
+			List <String> errors = new ArrayList <String> ();
+			run(program, 4, errors);
+			assertEquals(1, errors.size());
+			assertEquals("Blocks and calls nested deeper than 4 are skipped", errors.get(0));
+		}
+
+		// A program that stays within the limit reports nothing
+		List <String> errors = new ArrayList <String> ();
+		run(FACTORIAL, ControlStack.DEFAULT_LIMIT, errors);
+		assertTrue(errors.isEmpty());
+	}
+
+	@Test
+	public void testRunsTakingTurns() {
+		// Two runs of the same program share the arguments their calls matched, so calls made
+		// by runs taking turns allocate nothing once the runs are warmed up, apart from the odd
+		// allocation of the JVM itself
+		Program program = new Program(new Parser().parse(FIBONACCI.replace("do fibonacci with 15", "forever\n\tdo fibonacci with 10")));
+		ExecutionContext first = program.start();
+		ExecutionContext second = program.start();
+		for (int frame = 0 ; frame < 2000 ; frame++) {
+			first.execute(null, first);
+			second.execute(null, second);
+		}
+		long allocated = FrameMetrics.allocated();
+		for (int frame = 0 ; frame < 2000 ; frame++) {
+			first.execute(null, first);
+			second.execute(null, second);
+		}
+		if (allocated >= 0)
+			assertTrue(FrameMetrics.allocated() - allocated < 2000);
+		assertEquals(first.get("total"), second.get("total"), 0);
+	}
+
+	@Test
+	public void testMachine() {
+		for (String program : new String[] { FACTORIAL, FIBONACCI, ARGUMENTS, VALUES, REDEFINED }) {
+			Block interpreted = run(program, 10);
+			Block lowered = new Parser().parse(program);
+			Machine machine = Lowering.lower(lowered);
+			for (int frame = 0 ; frame < 10 ; frame++)
+				machine.run(null);
+			for (int slot = 0 ; slot < interpreted.getSymbolTable().size() ; slot++) {
+				String name = interpreted.getSymbolTable().getName(slot);
+				assertEquals(name, interpreted.get(name), lowered.get(name), 0);
+			}
+		}
+	}
+
+	/**
+	 * Parses the given program and runs it for 10 frames with the given limit, collecting the
+	 * errors it reports.
+	 */
+	private void run(String program, int limit, List <String> errors) {
+		Block block = new Parser().parse(program);
+		block.setConsole(new Output() {
+			public void print(String line) {}
+			public void error(String message) {
+				errors.add(message);
+			}
+		});
+		block.getControlStack().setLimit(limit);
+		block.reset();
+		for (int frame = 0 ; frame < 10 ; frame++)
+			block.execute(null, block);
+	}
+
+	/**
+	 * Parses the given program and runs it with the tree walking interpreter.
+	 */
+	private Block run(String program, int frames) {
+		Block block = new Parser().parse(program);
+		block.reset();
+		for (int frame = 0 ; frame < frames ; frame++)
+			block.execute(null, block);
+		return block;
+	}
+}
@@ -0,0 +1,75 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import batch.BatchRunner;
+import batch.GradingEngine;
+
+public class TestGrading {
+
+	private static final String[] EXAMPLES = {
+		"Bouncing_Ball", "Draw_Shapes", "Follower", "Paddle_Bounce", "Random_Colors", "Simple_Branching"
+	};
+
+	// Random numbers, printing and timers in one program
+	private static final String RANDOM =
+			"set total to 0\n" +
+			"every 0.1 seconds\n" +
+			"\tprint total\n" +
+			"forever\n" +
+			"\tset r to random number\n" +
+			"\tchange total by r\n" +
+			"\tdraw a randomly colored circle at r * 100, 50\n";
+
+	@Test
+	public void testParallel() {
+		ArrayList <String> names = new ArrayList <String> ();
+		ArrayList <String> texts = new ArrayList <String> ();
+		for (int copy = 0 ; copy < 3 ; copy++) {
+			for (String example : EXAMPLES) {
+				names.add(example);
+				texts.add(Examples.read(example));
+			}
+			names.add("random");
+			texts.add(RANDOM);
+		}
+
+		BatchRunner runner = new BatchRunner(100, 200, 200, 50, 20000000000L);
+		List <BatchRunner.Result> sequential, parallel;
+		try (GradingEngine engine = new GradingEngine(runner, 1)) {
+			sequential = engine.run(names, texts);
+		}
+		try (GradingEngine engine = new GradingEngine(runner, 4)) {
+			parallel = engine.run(names, texts);
+		}
+
+		// Every program gives exactly the same frame and output, however many run at once
+		assertEquals(names.size(), parallel.size());
+		for (int i = 0 ; i < names.size() ; i++) {
+			BatchRunner.Result expected = sequential.get(i), actual = parallel.get(i);
+			assertEquals(names.get(i), actual.getName());
+			assertFalse(actual.isTimedOut());
+			assertEquals(expected.getFramesRun(), actual.getFramesRun());
+			assertEquals(expected.getOutput(), actual.getOutput());
+			int[] expectedPixels = expected.getImage().getRGB(0, 0, 200, 200, null, 0, 200);
+			int[] actualPixels = actual.getImage().getRGB(0, 0, 200, 200, null, 0, 200);
+			assertArrayEquals(names.get(i), expectedPixels, actualPixels);
+		}
+		assertTrue(parallel.get(EXAMPLES.length).getOutput().length() > 0);
+	}
+
+	@Test
+	public void testSeed() {
+		BatchRunner runner = new BatchRunner(20, 200, 200, 50, 10000000000L);
+		String first = runner.run("random", RANDOM).getOutput();
+		assertEquals(first, runner.run("random", RANDOM).getOutput());
+
+		runner.setSeed(1);
+		assertNotEquals(first, runner.run("random", RANDOM).getOutput());
+	}
+}
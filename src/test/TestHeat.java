@@ -0,0 +1,91 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import instruction.Block;
+import instruction.ExecutionContext;
+import instruction.LineProfile;
+import instruction.Program;
+import machine.Lowering;
+import machine.Machine;
+import parser.Parser;
+import profiler.HeatProfiler;
+
+public class TestHeat {
+
+	private static final int FRAMES = 200;
+
+	private static final String PROGRAM =
+			"// counts to three\n" +
+			"set n to 0\n" +
+			"\n" +
+			"forever\n" +
+			"\tchange n by 1\n" +
+			"\tif n > 3\n" +
+			"\t\tset n to 0\n" +
+			"\trepeat 2\n" +
+			"\t\tset m to distance from n, 0 to 3, 4\n";
+
+	@Test
+	public void testLines() {
+		Block block = new Parser().parse(PROGRAM);
+		assertEquals(1, block.get(0).getLine());
+		assertEquals(3, block.get(1).getLine());
+	}
+
+	@Test
+	public void testCounts() {
+		LineProfile tree = run(false);
+		LineProfile lowered = run(true);
+		for (int line = 0 ; line < tree.getLines() ; line++)
+			assertEquals("line " + (line + 1), tree.getCount(line), lowered.getCount(line));
+
+		assertEquals(0, tree.getCount(0));
+		assertEquals(1, tree.getCount(1));
+		assertEquals(FRAMES - 1, tree.getCount(4));
+		assertEquals((FRAMES - 1) / 4, tree.getCount(6));
+		assertTrue(tree.getCount(8) >= FRAMES - 1);
+	}
+
+	@Test
+	public void testTime() throws InterruptedException {
+		String text = "forever\n\tset x to 1\n";
+		HeatProfiler profiler = new HeatProfiler(text);
+		profiler.getProfile().enter(1);
+		profiler.start();
+		Thread.sleep(50);
+		profiler.stop();
+		assertTrue(profiler.getProfile().getTime(1) > 0);
+		assertEquals(1, profiler.getHeat()[1], 0);
+		assertEquals(0, profiler.getHeat()[0], 0);
+		assertTrue(profiler.dump().contains("set x to 1"));
+	}
+
+	/**
+	 * Runs the program for a number of frames, by the tree walking interpreter or lowered, and
+	 * returns the profile of its lines.
+	 */
+	private static LineProfile run(boolean lower) {
+		Program program = new Program(new Parser().parse(PROGRAM));
+		Machine lowered = lower ? Lowering.lower(program.getBlock(), true) : null;
+		ExecutionContext block = program.start();
+		HeatProfiler profiler = new HeatProfiler(PROGRAM);
+		profiler.profile(block);
+
+		Graphics graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+		Machine machine = lower ? lowered.start(block) : null;
+		for (int i = 0 ; i < FRAMES ; i++) {
+			if (lower)
+				machine.run(graphics);
+			else
+				block.execute(graphics, block);
+		}
+		graphics.dispose();
+		return profiler.getProfile();
+	}
+}
@@ -9,6 +9,8 @@ import org.junit.Test;
 import expression.Expression;
 import expression.Terminal;
 import parser.Lexer;
+import parser.TokenStream;
+import parser.Words;
 
 public class TestLexer {
 
@@ -63,6 +65,29 @@ public class TestLexer {
 		assertTrue(test("draw a circle at keshav's x, keshav's y", "draw", "a", "circle", "at", "keshav's", "x", ",", "keshav's", "y"));
 	}
 	
+	@Test
+	public void testStream() {
+		String text = "Draw a RED circle at x2, -5.5\n\tprint \"a \\\"b\" // note\nIs";
+		TokenStream stream = lexer.stream(text);
+		assertArrayEquals(lexer.lex(text), stream.toArray());
+
+		// Words of the language have an ID, and plain ranges of the text keep where they are
+		assertEquals(Words.find("draw"), stream.getId(0));
+		assertEquals("red", stream.get(2));
+		assertEquals(7, stream.getStart(2));
+		assertEquals(3, stream.getLength(2));
+		assertEquals(Words.NONE, stream.getId(5));
+		assertEquals(TokenStream.NAME, stream.getKind(5));
+		assertEquals(Words.MINUS, stream.getId(7));
+		assertEquals(TokenStream.NUMBER, stream.getKind(8));
+
+		// A string with an escaped quotation mark is not a range of the text
+		assertEquals(TokenStream.STRING, stream.getKind(12));
+		assertEquals("\"a \"b\"", stream.get(12));
+		assertEquals(Words.NEWLINE, stream.getId(13));
+		assertEquals(Words.find("is"), stream.getId(14));
+	}
+
 	public boolean test(String ... lex) {
 		if (lex.length > 0) {
 			String[] tokens = lexer.lex(lex[0]);
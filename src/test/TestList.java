@@ -0,0 +1,70 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import expression.ListValue;
+import instruction.Block;
+import parser.Parser;
+
+public class TestList {
+
+	@Test
+	public void testListValue() {
+		ListValue list = new ListValue(1, 2, 3);
+		assertEquals(3, list.length());
+		assertEquals(2, list.get(1), 0);
+		
+		// Out of range indices refer to the first element
+		assertEquals(1, list.get(5), 0);
+		assertFalse(list.set(3, 10));
+		
+		list.append(4);
+		assertEquals(4, list.length());
+		assertEquals(4, list.get(3), 0);
+		
+		assertTrue(list.remove(0));
+		assertEquals("2.0, 3.0, 4.0", list.toString());
+		assertTrue(list.removeLast());
+		assertEquals(2, list.length());
+	}
+	
+	@Test
+	public void testListInstructions() {
+		Block block = run("set x to 1, 2, 3\nappend 4 to x\nset x of 1 to 9\nremove x of 0\nset n to length of x");
+		assertEquals(3, block.get("n"), 0);
+		assertEquals("9.0, 3.0, 4.0", block.getList("x").toString());
+		
+		// The first element is also the numeric value of the list
+		assertEquals(9, block.get("x"), 0);
+	}
+	
+	@Test
+	public void testAppendToUnassigned() {
+		// A variable that was never assigned becomes a list of only the appended value
+		Block block = run("append 4 to x\nset n to length of x");
+		assertEquals("4.0", block.getList("x").toString());
+		assertEquals(1, block.get("n"), 0);
+		
+		// A variable that holds a number keeps it as the first element
+		block = run("set x to 3\nappend 4 to x");
+		assertEquals("3.0, 4.0", block.getList("x").toString());
+	}
+	
+	@Test
+	public void testLargeList() {
+		Block block = run("set x to 0, 0\nrepeat 10000\n\tappend 1 to x\nset n to length of x");
+		assertEquals(10002, block.get("n"), 0);
+	}
+	
+	/**
+	 * Parses the given program and executes it until the root block is complete.
+	 */
+	private Block run(String program) {
+		Block block = new Parser().parse(program);
+		while (! block.isComplete())
+			block.execute(null, block);
+		return block;
+	}
+}
@@ -0,0 +1,97 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import instruction.Block;
+import machine.Lowering;
+import machine.Machine;
+import parser.Parser;
+
+public class TestMachine {
+
+	private static final int FRAMES = 300;
+
+	private static final String BRANCHING =
+			"set a to 0\n" +
+			"set b to 0\n" +
+			"set n to 0\n" +
+			"set c to 0\n" +
+			"repeat 3\n" +
+			"\tchange n by 1\n" +
+			"forever\n" +
+			"\tchange a by 1\n" +
+			"\tif a > 5 and a < 10\n" +
+			"\t\tset b to 1\n" +
+			"\telse if a > 12\n" +
+			"\t\tset b to 2\n" +
+			"\telse\n" +
+			"\t\tset b to 3\n" +
+			"\trepeat 4\n" +
+			"\t\tchange n by 1\n" +
+			"\tif b < 3 or a > 20\n" +
+			"\t\tchange n by 100\n" +
+			"\tset c to distance from a, b to n, 3\n";
+
+	@Test
+	public void testExamples() {
+		for (String example : Examples.DETERMINISTIC)
+			compare(example, Examples.read(example));
+	}
+
+	@Test
+	public void testBranching() {
+		Machine machine = compare("BRANCHING", BRANCHING);
+		assertTrue(machine.getCount() > FRAMES);
+	}
+
+	@Test
+	public void testComplete() {
+		Block block = new Parser().parse("set x to 1\nset y to x + 2\nrepeat 5\n\tchange y by x");
+		Machine machine = Lowering.lower(block);
+		for (int frame = 0 ; frame < 10 ; frame++)
+			machine.run(null);
+		assertTrue(machine.isComplete());
+		assertEquals(8, block.get("y"), 0);
+	}
+
+	@Test
+	public void testBudget() {
+		String program = "set x to 0\nset y to 0\nforever\n\trepeat 10000\n\t\tchange x by 1\n\tchange y by 1";
+		Block whole = new Parser().parse(program);
+		Machine reference = Lowering.lower(whole);
+		Block sliced = new Parser().parse(program);
+		Machine machine = Lowering.lower(sliced);
+		
+		// The frame with the long loop runs over several calls, continuing exactly where the last
+		// call stopped
+		int most = 0;
+		for (int frame = 0 ; frame < 5 ; frame++) {
+			reference.run(null);
+			int calls = 1;
+			while (! machine.run(null, 1000))
+				calls++;
+			most = Math.max(most, calls);
+			assertEquals(whole.get("x"), sliced.get("x"), 0);
+			assertEquals(whole.get("y"), sliced.get("y"), 0);
+		}
+		assertTrue(most > 10);
+		assertEquals(reference.getCount(), machine.getCount());
+	}
+	
+	/**
+	 * Runs the given program with the tree walking interpreter and the machine, and asserts
+	 * that every variable has the same value after each frame.
+	 */
+	private Machine compare(String name, String program) {
+		Block interpreted = Examples.initialize(new Parser().parse(program));
+		Block lowered = Examples.initialize(new Parser().parse(program));
+		Machine machine = Lowering.lower(lowered);
+		Examples.compare(name, FRAMES, interpreted, lowered, graphics -> {
+			machine.run(graphics);
+			assertEquals(interpreted.isComplete(), machine.isComplete());
+		});
+		return machine;
+	}
+}
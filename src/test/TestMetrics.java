@@ -0,0 +1,99 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+
+import org.junit.Test;
+
+import instruction.Block;
+import machine.Lowering;
+import metrics.FrameMetrics;
+import metrics.Histogram;
+import parser.Parser;
+import view.FrameBuffer;
+import view.Simulation;
+
+public class TestMetrics {
+
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+		for (long value = 1 ; value <= 1000 ; value++)
+			histogram.record(value * 1000);
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500, histogram.getMean(), 0.001);
+		assertEquals(500000, histogram.getPercentile(0.5), 500000 * 0.04);
+		assertEquals(990000, histogram.getPercentile(0.99), 990000 * 0.04);
+		assertEquals(1000000, histogram.getPercentile(1));
+
+		// Small values are exact, and negative values count as 0
+		histogram.reset();
+		histogram.record(-5);
+		histogram.record(7);
+		histogram.record(63);
+		assertEquals(0, histogram.getPercentile(0.3));
+		assertEquals(7, histogram.getPercentile(0.5));
+		assertEquals(63, histogram.getPercentile(0.9));
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void testConcurrentRecording() throws InterruptedException {
+		Histogram histogram = new Histogram();
+		Thread[] threads = new Thread[4];
+		for (int i = 0 ; i < threads.length ; i++) {
+			threads[i] = new Thread(() -> {
+				for (int value = 0 ; value < 100000 ; value++)
+					histogram.record(value);
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(400000, histogram.getCount());
+		assertEquals(99999, histogram.getMax());
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		FrameMetrics metrics = new FrameMetrics();
+		metrics.register();
+		try {
+			metrics.frame(2000000, 1024);
+			metrics.frame(4000000, 1024);
+			metrics.drop(3);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(2L, server.getAttribute(metrics.getName(), "Frames"));
+			assertEquals(3L, server.getAttribute(metrics.getName(), "DroppedFrames"));
+			assertEquals(4.0, (Double) server.getAttribute(metrics.getName(), "ExecuteMaxMillis"), 0.001);
+			assertEquals(1024.0, (Double) server.getAttribute(metrics.getName(), "AllocatedMeanBytes"), 0.001);
+
+			server.invoke(metrics.getName(), "reset", new Object[0], new String[0]);
+			assertEquals(0, metrics.getFrames());
+		} finally {
+			metrics.unregister();
+		}
+	}
+
+	@Test
+	public void testSimulation() throws InterruptedException {
+		Block block = new Parser().parse("set x to 0\nforever\n\tchange x by 1\n");
+		block.reset();
+		FrameMetrics metrics = new FrameMetrics();
+		Simulation simulation = new Simulation(block, Lowering.lower(block), new FrameBuffer(10, 10), 200, 5000000);
+		simulation.measure(metrics);
+		simulation.start();
+		Thread.sleep(200);
+		simulation.finish();
+		assertTrue(metrics.getFrames() > 0);
+		assertTrue(metrics.getExecute().getMax() > 0);
+		assertTrue(metrics.getSummary().startsWith("frame "));
+	}
+}
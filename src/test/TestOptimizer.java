@@ -0,0 +1,74 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import expression.Expression;
+import expression.Operator;
+import expression.SymbolTerminal;
+import expression.Terminal;
+import instruction.Assign;
+import instruction.Block;
+import instruction.Forever;
+import parser.Parser;
+
+public class TestOptimizer {
+
+	private static final int FRAMES = 300;
+
+	@Test
+	public void testFolding() {
+		Expression folded = number(new Parser().parse("set x to 100 + 50 * 2"), 0);
+		assertEquals(Terminal.class, folded.getClass());
+		assertEquals(200, folded.evaluate(null), 0);
+	}
+
+	@Test
+	public void testIdentities() {
+		Block block = new Parser().parse("set y to 3\nset x to y * 1\nset z to y - 0\nset w to y + 0");
+		assertEquals(SymbolTerminal.class, number(block, 1).getClass());
+		assertEquals(SymbolTerminal.class, number(block, 2).getClass());
+
+		// Adding 0 would turn negative zero into zero, so it stays
+		assertEquals(Expression.class, number(block, 3).getClass());
+	}
+
+	@Test
+	public void testStrengthReduction() {
+		Block block = new Parser().parse("set y to 3\nset x to y / 4\nset z to y / 3");
+		Expression quarter = number(block, 1);
+		assertEquals(Operator.Multiply, quarter.getOperator());
+		assertEquals(0.25, quarter.getRight().evaluate(null), 0);
+		assertEquals(Operator.Divide, number(block, 2).getOperator());
+	}
+
+	@Test
+	public void testPruning() {
+		Parser parser = new Parser();
+		Block block = parser.parse("set a to 0\nforever\n\tif 1 > 2\n\t\tset a to 5\n\tif 2 > 1\n\t\tset a to 3");
+		Block body = ((Forever) block.get(1)).getBlock();
+		assertEquals(1, body.length());
+		assertTrue(body.get(0) instanceof Assign);
+		assertTrue(parser.getRemovedNodes() >= 8);
+	}
+
+	@Test
+	public void testExamples() {
+		for (String example : Examples.DETERMINISTIC) {
+			String program = Examples.read(example);
+			Parser parser = new Parser();
+			parser.setOptimizing(false);
+			Block original = Examples.initialize(parser.parse(program));
+			Block optimized = Examples.initialize(new Parser().parse(program));
+			Examples.compare(example, FRAMES, original, optimized, graphics -> optimized.execute(graphics, optimized));
+		}
+	}
+
+	/**
+	 * Returns the number assigned by the instruction at the given position of the root block.
+	 */
+	private Expression number(Block block, int index) {
+		return ((Assign) block.get(index)).getNumber();
+	}
+}
@@ -0,0 +1,198 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.After;
+import org.junit.Test;
+
+import instruction.ExecutionContext;
+import instruction.Instruction;
+import instruction.Program;
+import parser.Parser;
+import parser.TokenStore;
+import view.ParseWorker;
+
+public class TestParseWorker {
+
+	/**
+	 * A program handed over by the worker, and whether it carries on from the one before.
+	 */
+	private static class Parsed {
+		private Program program;
+		private boolean reloaded;
+		private boolean onEventThread;
+	}
+
+	/**
+	 * Runs a program again and again on its own thread, the way the simulation runs it, and
+	 * counts the runs that took the wrong branch of its if block.
+	 */
+	private static class Runner extends Thread {
+		private Program program;
+		private volatile boolean running = true;
+		private volatile int runs = 0;
+		private int wrong = 0;
+
+		private Runner(Program program) {
+			this.program = program;
+		}
+
+		public void run() {
+			Graphics graphics = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB).getGraphics();
+			while (running) {
+				ExecutionContext context = program.start();
+				while (! context.isComplete())
+					context.execute(graphics, context);
+				if (context.get("b") != 2)
+					wrong++;
+				runs++;
+			}
+		}
+
+		private int finish() throws InterruptedException {
+			running = false;
+			join();
+			return wrong;
+		}
+	}
+
+	private static final String BRANCHING =
+			"set a to 0\n" +
+			"set b to 0\n" +
+			"if a > 0\n" +
+			"\tset b to 1\n" +
+			"else if a < 1\n" +
+			"\tset b to 2\n";
+
+	private LinkedBlockingQueue <Parsed> handed = new LinkedBlockingQueue <Parsed> ();
+
+	// Runs every program that is handed over if true, until the worker pauses it
+	private boolean run = false;
+	private Runner runner;
+	private int wrong = 0;
+
+	private ParseWorker worker = new ParseWorker(new ParseWorker.Target() {
+		public void pause() {
+			TestParseWorker.this.pause();
+		}
+
+		public void parsed(Program program, UnaryOperator <Instruction> successor, long time) {
+			TestParseWorker.this.parsed(program, successor, time);
+		}
+	}, 50);
+
+	private void pause() {
+		try {
+			if (runner != null)
+				wrong += runner.finish();
+			runner = null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void parsed(Program program, UnaryOperator <Instruction> successor, long time) {
+		Parsed parsed = new Parsed();
+		parsed.program = program;
+		parsed.reloaded = successor != null;
+		parsed.onEventThread = SwingUtilities.isEventDispatchThread();
+		handed.add(parsed);
+
+		// A program that is still running when the next one is handed over runs a few more
+		// times, the way the simulation would until the next program replaces it
+		if (runner != null) {
+			int runs = runner.runs + 3;
+			while (runner.runs < runs)
+				Thread.yield();
+			pause();
+		}
+		if (run) {
+			runner = new Runner(program);
+			runner.start();
+		}
+	}
+
+	@After
+	public void stop() throws Exception {
+		worker.interrupt();
+		SwingUtilities.invokeAndWait(this::pause);
+	}
+
+	@Test
+	public void testNewestText() throws InterruptedException {
+		worker.start();
+		TokenStore store = new TokenStore("set x to 0\n\nforever\n\tchange x by 1");
+
+		// Edits made faster than the debounce time are parsed once, from the newest text
+		List <String> versions = new ArrayList <String> ();
+		for (int edit = 1 ; edit <= 20 ; edit++) {
+			store.replace(3, 1, "\tchange x by " + edit);
+			versions.add(store.getText());
+			worker.submit(store, edit == 1);
+		}
+		Parsed parsed = handed.poll(10, TimeUnit.SECONDS);
+		assertNotNull(parsed);
+		assertTrue(parsed.onEventThread);
+		assertEquals(new Parser().parse(versions.get(19)).toString(), parsed.program.toString());
+
+		// The restart asked for by the first edit was not lost, and nothing else was handed over
+		assertFalse(parsed.reloaded);
+		assertNull(handed.poll(200, TimeUnit.MILLISECONDS));
+
+		// A later edit carries on from the running program
+		store.replace(0, 1, "set x to 1");
+		worker.submit(store, false);
+		parsed = handed.poll(10, TimeUnit.SECONDS);
+		assertNotNull(parsed);
+		assertTrue(parsed.reloaded);
+		assertEquals(new Parser().parse(store.getText()).toString(), parsed.program.toString());
+	}
+
+	@Test
+	public void testSnapshot() throws InterruptedException {
+		worker.start();
+		TokenStore store = new TokenStore("set x to 0");
+		worker.submit(store, true);
+
+		// Changing the store after it was submitted does not change the text that is parsed
+		String submitted = store.getText();
+		store.replace(0, 1, "set y to 1", "set z to 2");
+		Parsed parsed = handed.poll(10, TimeUnit.SECONDS);
+		assertNotNull(parsed);
+		assertEquals(new Parser().parse(submitted).toString(), parsed.program.toString());
+	}
+
+	@Test
+	public void testEditWhileRunning() throws Exception {
+		run = true;
+		worker.start();
+		TokenStore store = new TokenStore(BRANCHING);
+		worker.submit(store, true);
+		assertNotNull(handed.poll(10, TimeUnit.SECONDS));
+
+		// Lines added and removed before the if block move it into every next program, and the
+		// program that is running while the text is parsed still takes the else if branch
+		for (int edit = 0 ; edit < 20 ; edit++) {
+			if (edit % 2 == 0)
+				store.replace(0, 0, "set c to " + edit);
+			else
+				store.replace(0, 1);
+			worker.submit(store, false);
+			Parsed parsed = handed.poll(10, TimeUnit.SECONDS);
+			assertNotNull(parsed);
+			assertTrue(parsed.reloaded);
+		}
+		SwingUtilities.invokeAndWait(this::pause);
+		assertEquals(0, wrong);
+	}
+}
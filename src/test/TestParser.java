@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 
 import expression.*;
+import instruction.Block;
 import parser.Parser;
 
 public class TestParser {
@@ -15,8 +16,18 @@ public class TestParser {
 		parser.reset("1 + 1");
 		
 		Expression e = parser.parseExpression();
-		assertEquals(e, "(1.0+1.0)");
+		assertEquals("(1.0+1.0)", e.toString());
 		System.out.println(e);
 	}
 
+	@Test(timeout = 1000)
+	public void testTrailingWhitespace() {
+		// A list followed by anything other than a comma used to keep the parser looking forever
+		Block block = new Parser().parse("set x to 1, 2\t\nset y to 3\t\n");
+		block.execute(null, block);
+		block.execute(null, block);
+		assertEquals("1.0, 2.0", block.getList("x").toString());
+		assertEquals(3, block.get("y"), 0);
+	}
+
 }
@@ -0,0 +1,86 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import expression.Operator;
+import instruction.Block;
+import machine.Lowering;
+import machine.Machine;
+import parser.Parser;
+import profiler.ProfiledCondition;
+import profiler.Profiler;
+
+public class TestProfiler {
+
+	// Enough frames for every condition in a loop to be reordered at least once
+	private static final int FRAMES = 3000;
+
+	private static final String CHAIN =
+			"set x to 0\n" +
+			"set y to 5\n" +
+			"set total to 0\n" +
+			"forever\n" +
+			"\tchange x by 1\n" +
+			"\tif distance from x, y to 300, 400 > 10 and y > 0 and x < 0\n" +
+			"\t\tchange total by 1\n" +
+			"\telse if x > 100 or y > 0\n" +
+			"\t\tchange total by 2\n";
+
+	@Test
+	public void testExamples() {
+		for (String example : Examples.DETERMINISTIC)
+			compare(example, Examples.read(example));
+	}
+
+	@Test
+	public void testChain() {
+		Profiler profiler = compare("CHAIN", CHAIN);
+		List <ProfiledCondition> conditions = profiler.getConditions();
+		assertEquals(4, conditions.size());
+
+		// The comparison of x always decides the "and" chain, so it is moved to the front
+		ProfiledCondition and = conditions.get(0);
+		assertEquals(Operator.And, and.getChainOperator());
+		assertTrue(and.isReorderable());
+		assertEquals(3, and.getOperands().length);
+		assertEquals("(x<0.0)", and.getOperands()[0].toString());
+		assertEquals(FRAMES - 3, and.getCount());
+		assertEquals(0, and.getTaken());
+
+		// The else-if branch is taken in every frame that evaluates it
+		ProfiledCondition elseIf = null;
+		for (ProfiledCondition condition : conditions)
+			if (condition.isElseIf())
+				elseIf = condition;
+		assertNotNull(elseIf);
+		assertEquals(FRAMES - 3, elseIf.getTaken());
+		assertTrue(profiler.dump().contains("else if"));
+	}
+
+	@Test
+	public void testRandom() {
+		Profiler profiler = new Profiler();
+		profiler.profile(new Parser().parse("set x to 0\nforever\n\tif random number > 0.5 and x < 0\n\t\tchange x by 1\n"));
+		ProfiledCondition and = profiler.getConditions().get(0);
+		assertEquals(Operator.And, and.getChainOperator());
+		assertFalse(and.isReorderable());
+	}
+
+	/**
+	 * Runs the given program with the tree walking interpreter, and profiled with the machine,
+	 * and asserts that every variable has the same value after each frame.
+	 */
+	private Profiler compare(String name, String program) {
+		Block interpreted = Examples.initialize(new Parser().parse(program));
+		Block profiled = new Parser().parse(program);
+		Profiler profiler = new Profiler();
+		profiler.profile(profiled);
+		Machine machine = Lowering.lower(Examples.initialize(profiled));
+		Examples.compare(name, FRAMES, interpreted, profiled, machine::run);
+		return profiler;
+	}
+}
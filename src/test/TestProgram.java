@@ -0,0 +1,129 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import instruction.Block;
+import instruction.ExecutionContext;
+import instruction.Program;
+import instruction.SymbolTable;
+import machine.Lowering;
+import machine.Machine;
+import parser.Parser;
+
+public class TestProgram {
+
+	private static final int FRAMES = 200;
+
+	// Branches, loops, lists and functions all keep state while they run
+	private static final String PROGRAM =
+			"set x to 0\n" +
+			"set y to 0\n" +
+			"set total to 0\n" +
+			"set numbers to 1, 2, 3\n" +
+			"to add with n\n" +
+			"\tchange total by n\n" +
+			"repeat 3\n" +
+			"\tchange y by 1\n" +
+			"forever\n" +
+			"\tchange x by 1\n" +
+			"\tif x > 100\n" +
+			"\t\tset x to 0\n" +
+			"\telse if x > 50\n" +
+			"\t\tchange y by 2\n" +
+			"\telse\n" +
+			"\t\tchange y by 1\n" +
+			"\tappend x to numbers\n" +
+			"\tdo add with x\n";
+
+	@Test
+	public void testRuns() {
+		Program program = new Program(new Parser().parse(PROGRAM));
+		ExecutionContext first = program.start();
+		run(first, FRAMES / 2);
+
+		// A second run starts from the beginning while the first one is half way through
+		ExecutionContext second = program.start();
+		for (int frame = 0 ; frame < FRAMES / 2 ; frame++) {
+			first.execute(null, first);
+			second.execute(null, second);
+		}
+		run(second, FRAMES / 2);
+
+		Block expected = new Parser().parse(PROGRAM);
+		run(expected, FRAMES);
+		assertSame(expected, first, FRAMES);
+		assertSame(expected, second, FRAMES);
+
+		// Running the program never changed a variable of the parsed program
+		SymbolTable table = program.getBlock().getSymbolTable();
+		SymbolTable parsed = new Parser().parse(PROGRAM).getSymbolTable();
+		for (String name : new String[] { "x", "y", "total", "numbers" }) {
+			assertEquals(name, parsed.getType(parsed.find(name)), table.getType(table.find(name)));
+			assertEquals(name, parsed.get(parsed.find(name)), table.get(table.find(name)), 0);
+		}
+	}
+
+	@Test
+	public void testMachine() {
+		Program program = new Program(new Parser().parse(PROGRAM));
+		Machine lowered = Lowering.lower(program.getBlock());
+
+		Block expected = new Parser().parse(PROGRAM);
+		run(expected, FRAMES);
+		for (int i = 0 ; i < 2 ; i++) {
+			ExecutionContext context = program.start();
+			Machine machine = lowered.start(context);
+			for (int frame = 0 ; frame < FRAMES ; frame++)
+				machine.run(null);
+			assertSame(expected, context, FRAMES);
+		}
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		Program program = new Program(new Parser().parse(PROGRAM));
+		Block expected = new Parser().parse(PROGRAM);
+		run(expected, FRAMES);
+
+		// Every thread runs the same program, drawing on its own image
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List <Future <ExecutionContext>> runs = new ArrayList <Future <ExecutionContext>> ();
+		for (int i = 0 ; i < 8 ; i++) {
+			runs.add(pool.submit((Callable <ExecutionContext>) () -> {
+				ExecutionContext context = program.start();
+				Graphics graphics = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB).getGraphics();
+				for (int frame = 0 ; frame < FRAMES ; frame++)
+					context.execute(graphics, context);
+				graphics.dispose();
+				return context;
+			}));
+		}
+		for (Future <ExecutionContext> run : runs)
+			assertSame(expected, run.get(), FRAMES);
+		pool.shutdown();
+	}
+
+	private void run(Block block, int frames) {
+		for (int frame = 0 ; frame < frames ; frame++)
+			block.execute(null, block);
+	}
+
+	private void assertSame(Block expected, Block actual, int frames) {
+		String message = "after " + frames + " frames";
+		assertEquals(message, expected.get("x"), actual.get("x"), 0);
+		assertEquals(message, expected.get("y"), actual.get("y"), 0);
+		assertEquals(message, expected.get("total"), actual.get("total"), 0);
+		assertEquals(message, expected.getList("numbers").toString(), actual.getList("numbers").toString());
+	}
+}
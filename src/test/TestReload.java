@@ -0,0 +1,216 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import expression.Expression;
+import instruction.Block;
+import instruction.ExecutionContext;
+import instruction.Program;
+import instruction.Rewriter;
+import machine.Lowering;
+import machine.Machine;
+import parser.Parser;
+import parser.TokenStore;
+
+public class TestReload {
+
+	private static final String COUNTER =
+			"set x to 0\n" +
+			"set y to 0\n" +
+			"\n" +
+			"forever\n" +
+			"\tchange x by 1\n" +
+			"\tchange y by 2\n";
+
+	private Graphics graphics = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB).getGraphics();
+
+	@Test
+	public void testSameAsParse() {
+		// Random edits of whole lines, including ones that declare variables or continue if blocks
+		String[] extra = { "set zz to 1", "increment zz", "\tchange zz by 2", "else", "otherwise",
+				"\t\tset zz to zz + 1", "if zz > 2", "to go with zz", "\tdo go with 3", "forever", "" };
+		Random random = new Random(1);
+		for (String example : Examples.ALL) {
+			TokenStore store = new TokenStore(Examples.read(example));
+			List <String> pieces = new ArrayList <String> (Arrays.asList(store.getText().split("\n")));
+			pieces.addAll(Arrays.asList(extra));
+			Parser parser = new Parser();
+			for (int edit = 0 ; edit < 200 ; edit++) {
+				Block reparsed = parser.reparse(store);
+				Block parsed = new Parser().parse(store);
+				assertEquals(example, parsed.toString(), reparsed.toString());
+				assertEquals(example, lines(parsed), lines(reparsed));
+
+				int line = random.nextInt(store.getLineCount());
+				String piece = pieces.get(random.nextInt(pieces.size()));
+				switch (random.nextInt(3)) {
+				case 0:		store.replace(line, 1); break;
+				case 1:		store.replace(line, 0, piece); break;
+				default:	store.replace(line, 1, piece); break;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testReparsedLines() {
+		TokenStore store = new TokenStore(Examples.read("Bouncing_Ball"));
+		Parser parser = new Parser();
+		Block first = parser.reparse(store);
+		assertEquals(store.getLineCount(), parser.getReparsedLines());
+
+		// Changing a line in the loop only parses the loop again, and the lines before it are kept
+		store.replace(11, 1, "\tchange y by dy * 2");
+		Block second = parser.reparse(store);
+		assertEquals(store.getLineCount() - 6, parser.getReparsedLines());
+		assertSame(first.get(0), second.get(0));
+		assertSame(second.get(0), parser.getSuccessor(first.get(0)));
+		assertNotSame(first.get(5), second.get(5));
+		assertSame(second.get(5), parser.getSuccessor(first.get(5)));
+
+		// Lines added before a kept part move its instructions
+		store.replace(0, 0, "// bouncing", "");
+		Block third = parser.reparse(store);
+		assertEquals(2, parser.getReparsedLines());
+		assertSame(second.get(5), third.get(5));
+		assertEquals(8, third.get(5).getLine());
+	}
+
+	@Test
+	public void testCancelled() {
+		TokenStore store = new TokenStore(Examples.read("Bouncing_Ball"));
+		Parser parser = new Parser();
+		Block first = parser.reparse(store);
+
+		// A cancelled reparse leaves the parser as it was, so the next one still follows the first
+		store.replace(0, 0, "// bouncing", "");
+		store.replace(13, 1, "\tchange y by dy * 2");
+		assertNull(parser.reparse(store, () -> true));
+		Block second = parser.reparse(store);
+		assertEquals(new Parser().parse(store).toString(), second.toString());
+		assertSame(first.get(0), second.get(0));
+		assertEquals(2, second.get(0).getLine());
+		assertSame(second.get(5), parser.getSuccessor(first.get(5)));
+	}
+
+	@Test
+	public void testDiscarded() {
+		TokenStore store = new TokenStore(Examples.read("Bouncing_Ball"));
+		Parser parser = new Parser();
+		Block first = parser.reparse(store);
+
+		// A program that is never run is discarded, so the next reparse still follows the first
+		store.replace(0, 0, "// bouncing", "");
+		assertNotNull(parser.reparse(store));
+		parser.discard();
+		assertNull(parser.getSuccessor(first.get(0)));
+		store.replace(13, 1, "\tchange y by dy * 2");
+		Block third = parser.reparse(store);
+		assertEquals(new Parser().parse(store).toString(), third.toString());
+		assertEquals(lines(new Parser().parse(store)), lines(third));
+		assertSame(first.get(0), third.get(0));
+		assertSame(third.get(5), parser.getSuccessor(first.get(5)));
+
+		// Only the last reparse is discarded, however often
+		parser.discard();
+		parser.discard();
+		Block fourth = parser.reparse(store);
+		assertSame(fourth.get(5), parser.getSuccessor(first.get(5)));
+		assertNull(parser.getSuccessor(third.get(5)));
+	}
+
+	@Test
+	public void testVariablesKept() {
+		TokenStore store = new TokenStore(COUNTER);
+		Parser parser = new Parser();
+		Machine running = start(parser.reparse(store));
+		run(running, 11);
+		assertEquals(9, running.getBlock().get("x"), 0);
+
+		// The loop keeps counting from where it was, without setting x and y to 0 again
+		store.replace(5, 1, "\tchange y by 3");
+		Machine reloaded = reload(parser.reparse(store), running, parser);
+		assertEquals(2, reloaded.getRootPosition());
+		run(reloaded, 10);
+		assertEquals(19, reloaded.getBlock().get("x"), 0);
+		assertEquals(18 + 30, reloaded.getBlock().get("y"), 0);
+	}
+
+	@Test
+	public void testSetupChanged() {
+		TokenStore store = new TokenStore(COUNTER);
+		Parser parser = new Parser();
+		Machine running = start(parser.reparse(store));
+		run(running, 1);
+		assertEquals(1, running.getRootPosition());
+
+		// The running instruction changed, so the run carries on after the one before it
+		store.replace(1, 1, "set y to 100");
+		Machine reloaded = reload(parser.reparse(store), running, parser);
+		assertEquals(1, reloaded.getRootPosition());
+		run(reloaded, 2);
+		assertEquals(102, reloaded.getBlock().get("y"), 0);
+	}
+
+	@Test
+	public void testFunctionsDeclared() {
+		String text = "set x to 0\nto step\n\tchange x by 1\n\nforever\n\tdo step\n";
+		TokenStore store = new TokenStore(text);
+		Parser parser = new Parser();
+		Machine running = start(parser.reparse(store));
+		run(running, 5);
+		assertEquals(3, running.getBlock().get("x"), 0);
+
+		// The function is changed, and defined again even though its instruction is skipped
+		store.replace(2, 1, "\tchange x by 10");
+		Machine reloaded = reload(parser.reparse(store), running, parser);
+		assertEquals(2, reloaded.getRootPosition());
+		run(reloaded, 2);
+		assertEquals(23, reloaded.getBlock().get("x"), 0);
+	}
+
+	private Machine start(Block block) {
+		Program program = new Program(block);
+		Machine lowered = Lowering.lower(program.getBlock());
+		ExecutionContext context = program.start();
+		return lowered.start(context);
+	}
+
+	private Machine reload(Block block, Machine previous, Parser parser) {
+		Machine machine = start(block);
+		machine.resume(previous, parser::getSuccessor);
+		return machine;
+	}
+
+	private void run(Machine machine, int frames) {
+		for (int frame = 0 ; frame < frames ; frame++)
+			machine.run(graphics);
+	}
+
+	/**
+	 * Returns the line of every instruction of the program, nested ones first.
+	 */
+	private List <Integer> lines(Block block) {
+		List <Integer> lines = new ArrayList <Integer> ();
+		block.rewrite(new Rewriter() {
+			public Expression rewrite(Expression expression) {
+				return expression;
+			}
+
+			public void rewrite(Block nested) {
+				for (int i = 0 ; i < nested.length() ; i++)
+					lines.add(nested.get(i).getLine());
+			}
+		});
+		return lines;
+	}
+}
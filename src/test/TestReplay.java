@@ -0,0 +1,105 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import batch.BatchRunner;
+import instruction.Block;
+import instruction.ExecutionContext;
+import instruction.Output;
+import instruction.Program;
+import machine.Lowering;
+import machine.Machine;
+import parser.Parser;
+import replay.InputLog;
+import replay.InputRecorder;
+import view.FrameBuffer;
+import view.Simulation;
+
+public class TestReplay {
+
+	@Test
+	public void testLog() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		InputRecorder recorder = new InputRecorder(bytes, 42, 600, 500);
+		recorder.input("mousex", 250);
+		recorder.frame(20000000);
+		recorder.frame(21000000);
+		recorder.input("mousex", -3);
+		recorder.input("up pressed", 1);
+		recorder.frame(19000000);
+		recorder.input("up pressed", 0);
+		recorder.close();
+
+		InputLog log = InputLog.read(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(42, log.getSeed());
+		assertEquals(600, log.getWidth());
+		assertEquals(500, log.getHeight());
+		assertEquals(3, log.getFrames());
+		assertEquals(21000000, log.getFrameTime(1));
+
+		// Inputs are assigned before the frame that follows them, and inputs after the last frame never are
+		Block block = new Block();
+		log.apply(0, block);
+		assertEquals(250, block.get("mousex"), 0);
+		log.apply(1, block);
+		assertEquals(250, block.get("mousex"), 0);
+		log.apply(2, block);
+		assertEquals(-3, block.get("mousex"), 0);
+		assertEquals(1, block.get("up pressed"), 0);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotALog() throws IOException {
+		InputLog.read(new ByteArrayInputStream("set x to 1\n".getBytes()));
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		String text = "set t to 0\n" +
+				"forever\n" +
+				"\tchange t by delta time\n" +
+				"\tprint mouse x + random number * 1000 + t\n";
+		Program program = new Program(new Parser().parse(text));
+		Machine lowered = Lowering.lower(program.getBlock());
+
+		// Run the program in a window of 100 by 100, recording input that arrives at any time
+		StringBuilder printed = new StringBuilder();
+		ExecutionContext block = program.start();
+		block.setConsole(new Output() {
+			public void print(String line) {
+				printed.append(line).append('\n');
+			}
+			public void error(String message) {}
+		});
+		block.assign("width", 100);
+		block.assign("height", 100 - 50);
+		block.getRandom().setSeed(7);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Simulation simulation = new Simulation(block, lowered.start(block),
+				new FrameBuffer(100, 100), 200, 5000000);
+		simulation.record(new InputRecorder(bytes, 7, 100, 100));
+		simulation.start();
+		for (int i = 1 ; i <= 5 ; i++) {
+			Thread.sleep(23);
+			simulation.post("mousex", i * 10);
+		}
+		Thread.sleep(23);
+		simulation.finish();
+
+		// The replay prints exactly the same thing, however fast it runs
+		InputLog log = InputLog.read(new ByteArrayInputStream(bytes.toByteArray()));
+		assertTrue(log.getFrames() > 10);
+		BatchRunner runner = new BatchRunner();
+		runner.setInput(log);
+		BatchRunner.Result result = runner.run("replay", program);
+		assertNull(result.getError());
+		assertEquals(log.getFrames(), result.getFramesRun());
+		assertEquals(printed.toString(), result.getOutput());
+	}
+}
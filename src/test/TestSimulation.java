@@ -0,0 +1,97 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import instruction.Block;
+import machine.Lowering;
+import parser.Parser;
+import view.FrameBuffer;
+import view.Simulation;
+
+public class TestSimulation {
+
+	@Test
+	public void testFrameBuffer() {
+		FrameBuffer frames = new FrameBuffer(10, 10);
+		BufferedImage blank = frames.front();
+		assertEquals(Color.WHITE.getRGB(), blank.getRGB(5, 5));
+		
+		// A frame is only visible once it is published
+		Graphics graphics = frames.begin();
+		graphics.setColor(Color.RED);
+		graphics.fillRect(0, 0, 5, 5);
+		graphics.dispose();
+		assertSame(blank, frames.front());
+		frames.publish();
+		BufferedImage first = frames.front();
+		assertNotSame(blank, first);
+		assertEquals(Color.RED.getRGB(), first.getRGB(1, 1));
+		assertSame(first, frames.front());
+		
+		// The next frame is drawn on top of the last one, in a different image
+		graphics = frames.begin();
+		graphics.setColor(Color.BLUE);
+		graphics.fillRect(5, 5, 5, 5);
+		graphics.dispose();
+		frames.publish();
+		BufferedImage second = frames.front();
+		assertNotSame(first, second);
+		assertEquals(Color.RED.getRGB(), second.getRGB(1, 1));
+		assertEquals(Color.BLUE.getRGB(), second.getRGB(8, 8));
+		
+		// Frames that are never painted are skipped
+		for (int frame = 0 ; frame < 4 ; frame++) {
+			frames.begin().dispose();
+			frames.publish();
+		}
+		assertNotSame(second, frames.front());
+	}
+	
+	@Test
+	public void testSimulation() throws InterruptedException {
+		Block block = new Parser().parse("set x to 0\nset t to 0\nforever\n\tchange x by 1\n\tchange t by delta time\n");
+		block.assign("keypressed", 0);
+		block.reset();
+		
+		// A clock that only moves while the simulation waits for the next frame, and stops it
+		// after 40 frames
+		FrameBuffer frames = new FrameBuffer(10, 10);
+		Simulation simulation = new Simulation(block, Lowering.lower(block), frames, 200, 5000000);
+		double[] seen = new double[2];
+		simulation.setClock(new Simulation.Clock() {
+			private long time = 0;
+			private int frames = 0;
+
+			public long nanoTime() {
+				return time;
+			}
+
+			public void sleep(long nanoseconds) throws InterruptedException {
+				time += nanoseconds;
+				if (++frames == 20)
+					simulation.post(() -> {
+						seen[0] = block.get("x");
+						block.assign("keypressed", 1);
+					});
+				if (frames == 40)
+					throw new InterruptedException();
+			}
+		});
+		simulation.start();
+		simulation.join(10000);
+		assertFalse(simulation.isAlive());
+		
+		// Input is applied between frames, every frame runs the loop once, and delta time adds
+		// up to the time that has passed
+		assertEquals(1, block.get("keypressed"), 0);
+		assertEquals(18, seen[0], 0);
+		assertEquals(38, block.get("x"), 0);
+		assertEquals(38 * 0.005, block.get("t"), 1e-12);
+	}
+}
@@ -0,0 +1,209 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import instruction.Block;
+import instruction.ExecutionContext;
+import instruction.Instruction;
+import instruction.Program;
+import instruction.TimerWheel;
+import machine.Lowering;
+import machine.Machine;
+import parser.Parser;
+
+public class TestTimer {
+
+	private static final String PROGRAM =
+			"set x to 0\n" +
+			"set n to 0\n" +
+			"set m to 0\n" +
+			"every 0.1 seconds\n" +
+			"\tchange n by 1\n" +
+			"after 1 second\n" +
+			"\tset m to x\n" +
+			"wait 0.5 seconds\n" +
+			"forever\n" +
+			"\tchange x by 1\n" +
+			"\twait 0.2 seconds\n";
+
+	// Waits in the middle of a nested block and of a function
+	private static final String NESTED =
+			"set x to 0\n" +
+			"set y to 0\n" +
+			"to step with amount\n" +
+			"\tchange y by amount\n" +
+			"\twait 0.1 seconds\n" +
+			"\tchange y by amount\n" +
+			"forever\n" +
+			"\tif x < 100\n" +
+			"\t\tchange x by 1\n" +
+			"\t\twait 0.2 seconds\n" +
+			"\t\tchange x by 1\n" +
+			"\tdo step with 5\n";
+
+	@Test
+	public void testDeadlines() {
+		// Deadlines on both sides of the boundaries between the levels of the wheel
+		long[] delays = { 1, 7, 63, 64, 65, 100, 4095, 4096, 4097, 262143, 262144, 300000, 16777215, 16777216, 20000000 };
+		TimerWheel timers = new TimerWheel();
+		Block root = new Block();
+		ArrayList <Long> fired = new ArrayList <Long> ();
+		long[] expected = new long[delays.length];
+		for (int i = 0 ; i < delays.length ; i++) {
+			timers.schedule(record(timers, fired), delays[i] / 1000.0, false);
+			expected[i] = (delays[i] + 6) / 7 * 7;
+		}
+		assertEquals(delays.length, timers.size());
+		
+		// Each timer runs in the first step at or after its deadline
+		while (fired.size() < delays.length && timers.now() < 30000000) {
+			timers.advance(7);
+			timers.run(null, root);
+		}
+		assertEquals(delays.length, fired.size());
+		for (int i = 0 ; i < delays.length ; i++)
+			assertEquals(expected[i], (long) fired.get(i));
+		assertEquals(0, timers.size());
+	}
+	
+	@Test
+	public void testRepeat() {
+		TimerWheel timers = new TimerWheel();
+		Block root = new Block();
+		ArrayList <Long> fired = new ArrayList <Long> ();
+		TimerWheel.Timer timer = timers.schedule(record(timers, fired), 0.05, true);
+		for (int frame = 0 ; frame < 50 ; frame++) {
+			timers.advance(20);
+			timers.run(null, root);
+		}
+		assertEquals(20, fired.size());
+		assertTrue(timer.isActive(timers));
+		
+		timers.clear();
+		assertFalse(timer.isActive(timers));
+		timers.advance(1000);
+		timers.run(null, root);
+		assertEquals(20, fired.size());
+	}
+	
+	@Test
+	public void testThousands() {
+		TimerWheel timers = new TimerWheel();
+		Block root = new Block();
+		ArrayList <Long> fired = new ArrayList <Long> ();
+		Random random = new Random(42);
+		int count = 10000;
+		long[] deadlines = new long[count];
+		for (int i = 0 ; i < count ; i++) {
+			deadlines[i] = 1 + random.nextInt(600000);
+			timers.schedule(record(timers, fired), deadlines[i] / 1000.0, false);
+		}
+		while (timers.size() > 0) {
+			timers.advance(20);
+			timers.run(null, root);
+		}
+		
+		// Every timer ran once, in the frame its deadline fell into
+		assertEquals(count, fired.size());
+		long[] sorted = deadlines.clone();
+		java.util.Arrays.sort(sorted);
+		for (int i = 0 ; i < count ; i++)
+			assertEquals((sorted[i] + 19) / 20 * 20, (long) fired.get(i));
+	}
+	
+	@Test
+	public void testProgram() {
+		Block interpreted = new Parser().parse(PROGRAM);
+		Block lowered = new Parser().parse(PROGRAM);
+		Machine machine = Lowering.lower(lowered);
+		interpreted.reset();
+		
+		// Two seconds at 50 frames per second
+		for (int frame = 0 ; frame < 100 ; frame++) {
+			interpreted.getTimers().advance(20);
+			interpreted.execute(null, interpreted);
+			lowered.getTimers().advance(20);
+			machine.run(null);
+			assertEquals("x in frame " + frame, interpreted.get("x"), lowered.get("x"), 0);
+			assertEquals("n in frame " + frame, interpreted.get("n"), lowered.get("n"), 0);
+		}
+		
+		// The root block takes one instruction per frame, so the timers start in the fourth and
+		// fifth frame, and the loop starts half a second after the sixth
+		assertEquals(19, lowered.get("n"), 0);
+		assertEquals(7, lowered.get("x"), 0);
+		assertEquals(3, lowered.get("m"), 0);
+	}
+	
+	@Test
+	public void testRuns() {
+		// Two runs of the same program, a frame of each in turn, each schedule their own timer
+		String text = "set n to 0\nforever\n\tevery 0.1 seconds\n\t\tchange n by 1\n";
+		Program program = new Program(new Parser().parse(text));
+		ExecutionContext first = program.start();
+		ExecutionContext second = program.start();
+		Block alone = new Parser().parse(text);
+		alone.reset();
+		for (int frame = 0 ; frame < 100 ; frame++) {
+			for (Block block : new Block[] { first, second, alone }) {
+				block.getTimers().advance(20);
+				block.execute(null, block);
+			}
+		}
+		assertEquals(19, alone.get("n"), 0);
+		assertEquals(alone.get("n"), first.get("n"), 0);
+		assertEquals(alone.get("n"), second.get("n"), 0);
+	}
+	
+	@Test
+	public void testNested() {
+		Block interpreted = new Parser().parse(NESTED);
+		Block lowered = new Parser().parse(NESTED);
+		Machine machine = Lowering.lower(lowered);
+		interpreted.reset();
+		
+		int stopped = 0;
+		for (int frame = 0 ; frame < 100 ; frame++) {
+			interpreted.getTimers().advance(20);
+			interpreted.execute(null, interpreted);
+			lowered.getTimers().advance(20);
+			machine.run(null);
+			assertEquals("x in frame " + frame, interpreted.get("x"), lowered.get("x"), 0);
+			assertEquals("y in frame " + frame, interpreted.get("y"), lowered.get("y"), 0);
+			
+			// The program stops in the middle of the if block or the function
+			if (interpreted.getControlStack().depth() > 0)
+				stopped++;
+		}
+		assertTrue(stopped > 50);
+		
+		// Each pass of the loop waits three tenths of a second
+		assertEquals(13, lowered.get("x"), 0);
+		assertEquals(60, lowered.get("y"), 0);
+	}
+	
+	/**
+	 * Returns a block that records the time of the wheel each time it runs.
+	 */
+	private Block record(TimerWheel timers, ArrayList <Long> fired) {
+		Block block = new Block();
+		block.add(new Instruction() {
+			public void execute(Graphics graphics, Block block) {
+				fired.add(timers.now());
+			}
+			public String toString() {
+				return "";
+			}
+			public boolean equals(Instruction instruction, Block block) {
+				return false;
+			}
+		});
+		return block;
+	}
+}
@@ -0,0 +1,106 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+
+import org.junit.Test;
+
+import parser.Lexer;
+import parser.Parser;
+import parser.TokenStore;
+import view.DocumentTokens;
+
+public class TestTokenStore {
+
+	@Test
+	public void testExamples() {
+		for (String example : Examples.ALL) {
+			String text = Examples.read(example);
+			TokenStore store = new TokenStore(text);
+			assertArrayEquals(example, new Lexer().lex(text), store.getTokens());
+			assertArrayEquals(example, store.getTokens(), store.getStream().toArray());
+			assertEquals(text, store.getText());
+			assertEquals(text.length(), store.getLength());
+			assertEquals(new Parser().parse(text).toString(), new Parser().parse(store).toString());
+		}
+	}
+
+	@Test
+	public void testComments() {
+		String text = "// a comment\nset x to 1 // another\nset y to x / 2\n";
+		assertArrayEquals(new Lexer().lex(text), new TokenStore(text).getTokens());
+	}
+
+	@Test
+	public void testLineTokens() {
+		TokenStore store = new TokenStore("\tset x to \"a b\" + 1\n");
+		int length = 0;
+		for (String token : store.getLineTokens(0))
+			length += token.length();
+		assertEquals(store.getLine(0).length(), length);
+		assertEquals(2, store.getLineCount());
+	}
+
+	@Test
+	public void testEdits() {
+		String text = Examples.read("Flappy_Bird");
+		TokenStore store = new TokenStore(text);
+		int lines = store.getLineCount();
+		long lexed = store.getLexedLines();
+
+		// Changing a line only lexes that line
+		store.replace(3, 1, "set speed to 12");
+		assertEquals(lexed + 1, store.getLexedLines());
+		assertEquals(lines, store.getLineCount());
+
+		// Splitting a line in two and joining two lines
+		store.replace(5, 1, "set a to 1", "set b to 2");
+		store.replace(7, 2, store.getLine(7) + store.getLine(8));
+		assertEquals(lexed + 4, store.getLexedLines());
+
+		String edited = store.getText();
+		assertArrayEquals(new Lexer().lex(edited), store.getTokens());
+		assertArrayEquals(new TokenStore(edited).getTokens(), store.getTokens());
+
+		// Removing every line leaves one empty line
+		store.replace(0, store.getLineCount());
+		assertEquals(1, store.getLineCount());
+		assertEquals("", store.getText());
+	}
+
+	@Test
+	public void testDocument() throws BadLocationException {
+		DefaultStyledDocument document = new DefaultStyledDocument();
+		document.insertString(0, Examples.read("Mini_Golf"), null);
+		DocumentTokens tokens = new DocumentTokens(document);
+		assertNull(tokens.takeDamaged());
+
+		// Typing within a line only damages that line
+		int offset = document.getDefaultRootElement().getElement(4).getStartOffset();
+		document.insertString(offset, "x", null);
+		assertArrayEquals(new int[] { 4, 4 }, tokens.takeDamaged());
+
+		// Random edits, some of them across lines, keep the tokens the same as lexing the text again
+		String[] pieces = { "a", " ", "\n", "\t", "set y to 2\n", "// note", "\"s", "\n\n" };
+		Random random = new Random(1);
+		for (int edit = 0 ; edit < 500 ; edit++) {
+			int position = random.nextInt(document.getLength() + 1);
+			if (random.nextBoolean() && position < document.getLength())
+				document.remove(position, Math.min(random.nextInt(12) + 1, document.getLength() - position));
+			else
+				document.insertString(position, pieces[random.nextInt(pieces.length)], null);
+			String text = document.getText(0, document.getLength());
+			assertEquals(text, tokens.getTokens().getText());
+			assertArrayEquals(new TokenStore(text).getTokens(), tokens.getTokens().getTokens());
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfBounds() {
+		new TokenStore("a\nb").replace(1, 2, "c");
+	}
+}
@@ -5,15 +5,22 @@ import java.awt.Color;
 import java.awt.Font;
 
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
 
-public class Console extends JFrame {
+import instruction.Output;
+
+public class Console extends JFrame implements Output {
 
 	private Pseudocode pseudocode;
 	private JTextPane area;
 	
+	// A line below the printed text showing how long frames take, only shown once there are stats
+	private JLabel stats;
+	
 	private static Color background = new Color(20, 20, 20);
 	private static Color foreground = new Color(250, 250, 250);
 
@@ -37,7 +44,13 @@ public class Console extends JFrame {
 		JScrollPane pane = new JScrollPane(areaPanel);
 		add(pane);
 		
-		
+		stats = new JLabel(" ");
+		stats.setFont(new Font(Editor.FONT, 0, Editor.FONT_SIZE - 2));
+		stats.setOpaque(true);
+		stats.setBackground(background);
+		stats.setForeground(Color.GRAY);
+		stats.setVisible(false);
+		add(stats, BorderLayout.SOUTH);
 	}
 
 	public void reset() {
@@ -45,6 +58,12 @@ public class Console extends JFrame {
 	}
 	
 	public void print(String text) {
+		// Programs print from the simulation thread, so the text is added on the event thread
+		if (! SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(() -> print(text));
+			return;
+		}
+		
 		if (area.getText().equals(""))
 			area.setText("  " + text);
 		else
@@ -54,6 +73,18 @@ public class Console extends JFrame {
 			setVisible(true);
 	}
 	
+	/**
+	 * Shows the given line of stats below the printed text, without opening the console.
+	 */
+	public void showStats(String line) {
+		if (! SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(() -> showStats(line));
+			return;
+		}
+		stats.setText("  " + line);
+		stats.setVisible(true);
+	}
+	
 	public void error(String message) {
 		//TODO: special highlighting color
 		print(message);
@@ -0,0 +1,108 @@
+package view;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+import parser.TokenStore;
+
+/**
+ * Keeps a TokenStore up to date with a Swing document. Every edit of the document tells the
+ * store which lines it replaced, so only those lines are lexed again, and remembers which lines
+ * have changed since they were last highlighted.
+ * 
+ * @license MIT
+ */
+public class DocumentTokens implements DocumentListener {
+
+	private Document document;
+	private TokenStore tokens;
+
+	// The first and last line changed since the damage was last taken, or -1
+	private int damagedFirst = -1;
+	private int damagedLast = -1;
+
+	/**
+	 * Lexes the given document, and follows every later edit of it.
+	 */
+	public DocumentTokens(Document document) {
+		this.document = document;
+		tokens = new TokenStore();
+		try {
+			tokens.setText(document.getText(0, document.getLength()));
+		} catch (BadLocationException e) {}
+		document.addDocumentListener(this);
+	}
+
+	/**
+	 * Returns the tokens of the document.
+	 */
+	public TokenStore getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Returns the first and last line changed since the last call, or null if none were.
+	 */
+	public int[] takeDamaged() {
+		if (damagedFirst < 0)
+			return null;
+		int[] damaged = { damagedFirst, Math.min(damagedLast, tokens.getLineCount() - 1) };
+		damagedFirst = damagedLast = -1;
+		return damaged;
+	}
+
+	public void insertUpdate(DocumentEvent e) {
+		changed(e);
+	}
+
+	public void removeUpdate(DocumentEvent e) {
+		changed(e);
+	}
+
+	public void changedUpdate(DocumentEvent e) {}
+
+	/**
+	 * Lexes the lines of an edit again. The edit starts in a line that it changes, and an edit that
+	 * adds or removes newlines splits that line into several or joins the lines after it into
+	 * it. The number of lines it added or removed is the difference between the lines the
+	 * document has now and the lines the store still has.
+	 */
+	private void changed(DocumentEvent e) {
+		Element root = document.getDefaultRootElement();
+		int first = root.getElementIndex(e.getOffset());
+		int difference = root.getElementCount() - tokens.getLineCount();
+		int removed = 1 + Math.max(-difference, 0);
+		int added = 1 + Math.max(difference, 0);
+
+		String[] lines = new String[added];
+		for (int i = 0 ; i < added ; i++) {
+			Element line = root.getElement(first + i);
+			lines[i] = text(line.getStartOffset(), line.getEndOffset());
+		}
+		tokens.replace(first, removed, lines);
+
+		// Lines after the edit move along with it
+		if (damagedFirst < 0)
+			damagedFirst = damagedLast = first;
+		else if (damagedLast >= first)
+			damagedLast += added - removed;
+		damagedFirst = Math.min(damagedFirst, first);
+		damagedLast = Math.max(damagedLast, first + added - 1);
+	}
+
+	/**
+	 * Returns the text of the document between the given offsets, without a newline at its end.
+	 */
+	private String text(int start, int end) {
+		try {
+			end = Math.min(end, document.getLength());
+			String text = document.getText(start, end - start);
+			return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+		} catch (BadLocationException e) {
+			return "";
+		}
+	}
+}
@@ -15,6 +15,7 @@ import javax.swing.JTextPane;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Document;
+import javax.swing.text.Element;
 import javax.swing.text.Highlighter;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
@@ -22,7 +23,7 @@ import javax.swing.text.StyledDocument;
 
 import expression.Constant;
 import expression.RGB;
-import parser.Lexer;
+import parser.TokenStore;
 
 /**
  * 
@@ -53,7 +54,16 @@ public class Editor extends JPanel implements KeyListener {
 	private static final Color string = RGB.fromHex("#FFC107");
 	private static final Color comment = RGB.fromHex("#26A65B");
 	
-	private static Lexer lexer;
+	// Colors behind lines of increasing heat, from lines that take some of the time of the program
+	// to the line that takes the most
+	private static final Color[] heat = { RGB.fromHex("#FFF9C4"), RGB.fromHex("#FFE082"),
+		RGB.fromHex("#FFB74D"), RGB.fromHex("#FF8A65"), RGB.fromHex("#E57373") };
+	
+	// The highlights currently showing the heat of each line
+	private ArrayList<Object> heatHighlights = new ArrayList<Object>();
+	
+	// The tokens of every line of the text, which are lexed again only when the line changes
+	private DocumentTokens source;
 	
 	//The undo text storage array list
 	private static ArrayList<String> undoText = new ArrayList<String>();
@@ -79,6 +89,7 @@ public class Editor extends JPanel implements KeyListener {
 		areaPanel.add(area);
 		JScrollPane pane = new JScrollPane(areaPanel);
 		area.addKeyListener(this);
+		source = new DocumentTokens(area.getDocument());
 		add(pane);
 	}
 	
@@ -92,18 +103,39 @@ public class Editor extends JPanel implements KeyListener {
 	}
 	
 	public void format() {
+		source.takeDamaged();
+		format(0, getTokens().getLineCount() - 1);
+	}
+	
+	/**
+	 * Formats the lines changed since the text was last formatted.
+	 */
+	private void formatDamaged() {
+		int[] damaged = source.takeDamaged();
+		if (damaged != null)
+			format(damaged[0], damaged[1]);
+	}
+	
+	/**
+	 * Formats the given lines, using the tokens already lexed for each of them.
+	 */
+	private void format(int first, int last) {
 		StyledDocument document = area.getStyledDocument();
-		document.setCharacterAttributes(0, area.getText().length(), area.getStyle("base"), true);
-		
-		// Position in the formatted document
-		int position = 0;
-		// Get each line of text in the textarea
-		String[] lines = area.getText().split("\n");
+		Element root = document.getDefaultRootElement();
+		last = Math.min(last, root.getElementCount() - 1);
+		if (first > last)
+			return;
+		int start = root.getElement(first).getStartOffset();
+		int end = Math.min(root.getElement(last).getEndOffset(), document.getLength());
+		document.setCharacterAttributes(start, end - start, area.getStyle("base"), true);
 		
 		// Go to every line
-		for (String line : lines) {
-			// Split the line into tokens
-			String[] tokens = lexer.lex(line, true, false);
+		for (int line = first ; line <= last ; line++) {
+			// Position in the formatted document
+			int position = root.getElement(line).getStartOffset();
+			
+			// The tokens of the line, with every delimiter
+			String[] tokens = getTokens().getLineTokens(line);
 			boolean firstToken = true;
 			boolean secondToken = false;
 			boolean comment = false;
@@ -169,18 +201,21 @@ public class Editor extends JPanel implements KeyListener {
 				else if (secondToken && ! token.matches("\\s+"))
 					secondToken = false;
 			}
-			// Account for the newline character
-			position++;
 		}
 	}
 	
+	/**
+	 * Returns the tokens of the text in the editor.
+	 */
+	public TokenStore getTokens() {
+		return source.getTokens();
+	}
+	
 	/**
 	 * Initializes the styles used by the editor to format text.
 	 * @see NXTalkFormatter
 	 */
 	private void initializeFormatting() {
-		lexer = new Lexer();
-		
 		addStyle("base", foreground, false, false);
 		addStyle("keyword", keyword, true, false);
 		addStyle("attribute", attribute, false, false);
@@ -252,15 +287,17 @@ public class Editor extends JPanel implements KeyListener {
 				}
 				
 				if (indent.length() > 0) {
-					area.setText(text.substring(0, caret) + indent + text.substring(caret));
+					try {
+						area.getDocument().insertString(caret, indent, null);
+					} catch (BadLocationException exception) {}
 					area.setCaretPosition(caret + indent.length());
 				}
 			}
 		}
 		else {
-			pseudocode.update(area.getText());
+			pseudocode.update(getTokens());
 		}
-		format();
+		formatDamaged();
 		
 		if(e.getKeyCode()==KeyEvent.VK_SPACE||e.getKeyCode()==KeyEvent.VK_ENTER){
 			//log all the text in the editor to a new instance in the array list undoText
@@ -296,6 +333,30 @@ public class Editor extends JPanel implements KeyListener {
 		undoText.add(input);
 	}
 	
+	/**
+	 * Colors the background of each line by its heat, leaving lines with less than a twentieth of
+	 * the heat of the hottest line uncolored.
+	 * @param lines the heat of each line, from 0 to 1
+	 */
+	public void showHeat(double[] lines) {
+		Highlighter highlighter = area.getHighlighter();
+		for (Object highlight : heatHighlights)
+			highlighter.removeHighlight(highlight);
+		heatHighlights.clear();
+		
+		Element root = area.getDocument().getDefaultRootElement();
+		for (int line = 0 ; line < lines.length && line < root.getElementCount() ; line++) {
+			if (lines[line] < 0.05)
+				continue;
+			Element element = root.getElement(line);
+			Color color = heat[Math.min((int) (lines[line] * heat.length), heat.length - 1)];
+			try {
+				heatHighlights.add(highlighter.addHighlight(element.getStartOffset(), element.getEndOffset(),
+						new DefaultHighlighter.DefaultHighlightPainter(color)));
+			} catch (BadLocationException e) {}
+		}
+	}
+	
 	public Highlighter getHighlighter(){
 		return area.getHighlighter();
 	}
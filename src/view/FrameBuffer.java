@@ -0,0 +1,89 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A FrameBuffer passes finished frames from the simulation thread to the event thread without
+ * locking. It holds three images: the simulation draws into the back image, the event thread
+ * paints the front image, and the middle image holds the latest finished frame. Publishing a
+ * frame swaps the back and middle images, and taking the latest frame swaps the middle and
+ * front images, so neither thread ever waits for the other or sees a frame being drawn.
+ * 
+ * @license MIT
+ */
+public class FrameBuffer {
+
+	// The state packs the index of the back image in bits 0-1, the middle image in bits 2-3,
+	// the front image in bits 4-5, and whether the middle image is a frame that the event
+	// thread has not taken yet in bit 6.
+	private static final int BACK = 0;
+	private static final int MIDDLE = 2;
+	private static final int FRONT = 4;
+	private static final int FRESH = 1 << 6;
+
+	private final BufferedImage[] images = new BufferedImage[3];
+	private final AtomicInteger state = new AtomicInteger((0 << BACK) | (1 << MIDDLE) | (2 << FRONT));
+
+	// The last frame published by the simulation thread, which the next frame is drawn over
+	private BufferedImage published;
+
+	/**
+	 * Creates a frame buffer of white images of the given size.
+	 */
+	public FrameBuffer(int width, int height) {
+		for (int i = 0 ; i < images.length ; i++) {
+			images[i] = new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_RGB);
+			Graphics graphics = images[i].getGraphics();
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, width, height);
+			graphics.dispose();
+		}
+		published = images[1];
+	}
+
+	/**
+	 * Returns the graphics of the back image with the last published frame drawn on it, so that
+	 * the next frame is drawn on top of the previous one. Only called by the simulation thread.
+	 */
+	public Graphics begin() {
+		BufferedImage back = images[index(state.get(), BACK)];
+		Graphics graphics = back.getGraphics();
+		graphics.drawImage(published, 0, 0, null);
+		return graphics;
+	}
+
+	/**
+	 * Makes the back image the latest frame. Only called by the simulation thread.
+	 */
+	public void publish() {
+		int current, next;
+		do {
+			current = state.get();
+			next = (index(current, MIDDLE) << BACK) | (index(current, BACK) << MIDDLE) | 
+				   (index(current, FRONT) << FRONT) | FRESH;
+		} while (! state.compareAndSet(current, next));
+		published = images[index(next, MIDDLE)];
+	}
+
+	/**
+	 * Returns the latest published frame. Only called by the event thread.
+	 */
+	public BufferedImage front() {
+		int current = state.get();
+		while ((current & FRESH) != 0) {
+			int next = (index(current, BACK) << BACK) | (index(current, FRONT) << MIDDLE) | 
+					   (index(current, MIDDLE) << FRONT);
+			if (state.compareAndSet(current, next))
+				return images[index(next, FRONT)];
+			current = state.get();
+		}
+		return images[index(current, FRONT)];
+	}
+
+	private static int index(int state, int shift) {
+		return (state >> shift) & 3;
+	}
+}
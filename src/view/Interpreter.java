@@ -7,18 +7,31 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.awt.image.BufferedImage;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.function.UnaryOperator;
 
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 import mesh.Server;
 import mesh.Client;
-import expression.RGB;
+import compiler.Compiler;
+import machine.Lowering;
+import machine.Machine;
+import metrics.FrameMetrics;
+import profiler.HeatProfiler;
+import profiler.Profiler;
+import replay.InputRecorder;
 import expression.Terminal;
 import instruction.Block;
+import instruction.ControlStack;
+import instruction.ExecutionContext;
+import instruction.Instruction;
+import instruction.Program;
+import instruction.SymbolTable;
 
 /**
  * An Interpreter is a JPanel that draws the output of a Block object. It also controls a Console object
@@ -35,25 +48,68 @@ public class Interpreter extends JPanel implements MouseListener, MouseMotionLis
 	// Reference to the parent frame.
 	private Pseudocode pseudocode;
 	
-	// The underlying algorithm being run by this output view.
-	private Block block;
+	// The program being run by this output view, the same program lowered, and the current run
+	// of the program and the machine running it
+	private Program program;
+	private Machine lowered;
+	private ExecutionContext block;
+	private Machine machine;
 	private Console console;
 	
-	// Flag for resetting the output view.
-	private boolean firstReset = true;
-	private boolean reset = true;
+	// The thread running the program, and the frames it has drawn
+	private Simulation simulation;
+	private FrameBuffer frames;
+
+	// Repaint the window, and show the stats and heat of the program while the window is open
+	private Timer repaint;
+	private javax.swing.Timer statsTimer;
+	private javax.swing.Timer heatTimer;
+
+	// True while the running program is stopped for the parser
+	private boolean paused = false;
+	
 	private boolean alwaysRepaint = true;
 	private boolean printBlock = false;
 
-	// BufferedImages for double buffering output
-	private BufferedImage front;
-	private BufferedImage back;
-	private boolean frontBuffer = true;
+	// Compiles programs to bytecode before running them, enabled with -Dpseudocode.compile=true
+	private boolean compile = Boolean.getBoolean("pseudocode.compile");
+	
+	// Profiles the conditions of programs, enabled with -Dpseudocode.profile=true. The profile of
+	// a program is printed when the next program is interpreted.
+	private boolean profile = Boolean.getBoolean("pseudocode.profile");
+	private Profiler profiler;
+
+	// Profiles the time spent on each line of programs, enabled with -Dpseudocode.heat=true. The
+	// editor shows the hottest lines while the program runs, and the profile is printed when the
+	// next program is interpreted.
+	private boolean heat = Boolean.getBoolean("pseudocode.heat");
+	private HeatProfiler heatProfiler;
+
+	// The number of frames the program runs per second, set with -Dpseudocode.rate
+	private int rate = Integer.getInteger("pseudocode.rate", 50);
+
+	// The longest time in milliseconds a single frame spends running the program, set with
+	// -Dpseudocode.budget. A frame that takes longer is shown as far as it got and continues
+	// in the next frame.
+	private long budget = Long.getLong("pseudocode.budget", 10) * 1000000;
+
+	// The largest number of blocks and function calls a program may be in the middle of, set
+	// with -Dpseudocode.depth
+	private int depth = Integer.getInteger("pseudocode.depth", ControlStack.DEFAULT_LIMIT);
+
+	// The file the input of each run is recorded to, set with -Dpseudocode.record. Only the
+	// latest run is kept, and can be replayed with batch.BatchRunner -input.
+	private String record = System.getProperty("pseudocode.record");
 
-	// Static values for storing the mouse and keyboard inputs
-	public static Terminal mouseClicked = new Terminal();
-	public static Terminal mouseX = new Terminal();
-	public static Terminal mouseY = new Terminal();
+	// Times the frames of this window, which can be watched over JMX, and shows them in the
+	// console once a second if started with -Dpseudocode.stats=true
+	private FrameMetrics metrics = new FrameMetrics();
+	private boolean stats = Boolean.getBoolean("pseudocode.stats");
+
+	// The mouse input of this window, given to each program it runs
+	private Terminal mouseClicked = new Terminal();
+	private Terminal mouseX = new Terminal();
+	private Terminal mouseY = new Terminal();
 
 	// References to threads for master-slave network.
 	private static Server server;
@@ -73,14 +129,29 @@ public class Interpreter extends JPanel implements MouseListener, MouseMotionLis
 		setSize(pseudocode.getWidth() / 2, pseudocode.getHeight());
 
 		// Create a timer that continuously repaints the window
-		Timer t = new Timer();
+		repaint = new Timer();
 		// Schedule repaints at a fixed rate.
-		t.scheduleAtFixedRate(new TimerTask() {
+		repaint.scheduleAtFixedRate(new TimerTask() {
 			public void run() {
 				repaint();
 			}
 		}, 0, 20);
 
+		metrics.register();
+		if (stats) {
+			statsTimer = new javax.swing.Timer(1000, e -> console.showStats(metrics.getSummary()));
+			statsTimer.start();
+		}
+
+		// Show the heat of each line in the editor twice a second
+		if (heat) {
+			heatTimer = new javax.swing.Timer(500, e -> {
+				if (heatProfiler != null)
+					pseudocode.showHeat(heatProfiler.getHeat());
+			});
+			heatTimer.start();
+		}
+
 		// Add mouse and key listeners
 		addMouseListener(this);
 		addMouseMotionListener(this);
@@ -90,78 +161,172 @@ public class Interpreter extends JPanel implements MouseListener, MouseMotionLis
 		setVisible(true);
 	}
 
-	public void setSize(int width, int height) {
-		super.setSize(width, height);
-		
-		// Initialize the graphics buffers.
-		front = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-		back =  new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-	}
-
 	/**
-	 * Resets the buffers and double buffering.
+	 * Paints the latest frame finished by the program.
 	 */
-	public void reset(Graphics g) {
-		// Reset the graphics buffers to white
-		front.getGraphics().setColor(Color.WHITE);
-		front.getGraphics().fillRect(0, 0, getWidth(), getHeight());
-		back.getGraphics().setColor(Color.WHITE);
-		back.getGraphics().fillRect(0, 0, getWidth(), getHeight());
-		
-		frontBuffer = true;
-		g.drawImage(front, 0, 0, null);
-	}
-
 	public void paint(Graphics g) {
-		if (firstReset) {
-			firstReset = false;
+		if (frames != null) {
+			long start = System.nanoTime();
+			g.drawImage(frames.front(), 0, 0, null);
+			metrics.paint(System.nanoTime() - start);
+		}
+		else {
 			g.setColor(Color.WHITE);
 			g.fillRect(0, 0, getWidth(), getHeight());
 		}
-		if (reset) {
-			reset = false;
-			reset(g);
-		}
-		if (block != null) {
-			// Get references to current buffer to draw on, and static buffer with previously drawn frame.
-			BufferedImage currentBuffer = (frontBuffer) ? back : front;
-			BufferedImage staticBuffer = (frontBuffer) ? front : back;
-			
-			currentBuffer.getGraphics().drawImage(staticBuffer, 0, 0, null);
+	}
 
-			block.execute(currentBuffer.getGraphics(), block);
-			g.drawImage(currentBuffer, 0, 0, null);
+	/**
+	 * Starts a new run of the given program. A program is profiled, compiled and lowered the first
+	 * time it is run, and running it again, such as when the window is resized, only starts a
+	 * new run of the program that was already prepared.
+	 */
+	public void interpret(Program program) {
+		run(program, null);
+	}
 
-			frontBuffer = ! frontBuffer;			
-		}
+	/**
+	 * Runs a changed version of the program that is running, carrying on with the variables of
+	 * the running program and at the matching instruction of its root block, wherever the
+	 * changes leave one. A recorded run starts again from the beginning, so that the recording
+	 * can be replayed.
+	 * @param program - the changed program
+	 * @param successor - returns the root instruction of the changed program that takes the place
+	 *        of a root instruction of the running program, or null if none does
+	 */
+	public void reload(Program program, UnaryOperator <Instruction> successor) {
+		run(program, (record == null) ? successor : null);
 	}
 
-	public void interpret(Block block) {
-		// Initialize color palette.
-		RGB.initialize();
-		block.setConsole(console);
+	/**
+	 * Stops the running program and everything else this view runs, and removes its metrics
+	 * from JMX. Called once the window of this view is closed.
+	 */
+	public void close() {
+		if (simulation != null)
+			simulation.finish();
+		if (heatProfiler != null)
+			heatProfiler.stop();
+		repaint.cancel();
+		if (statsTimer != null)
+			statsTimer.stop();
+		if (heatTimer != null)
+			heatTimer.stop();
+		metrics.unregister();
+		console.dispose();
+	}
+
+	/**
+	 * Stops the running program until the next one is run, so that its instructions can be
+	 * moved into the next program.
+	 */
+	public void pause() {
+		paused = true;
+		if (simulation != null)
+			simulation.finish();
+	}
+
+	/**
+	 * Starts a run of the given program, carrying on from the current run if a successor is given.
+	 */
+	private void run(Program program, UnaryOperator <Instruction> successor) {
 		console.reset();
 
-		// Cancel repaint for equivalent program
-		if (! alwaysRepaint && this.block != null && this.block.equals(block))
+		// Cancel repaint for equivalent program, unless the running one was paused
+		if (! paused && ! alwaysRepaint && this.program != null && this.program.getBlock().equals(program.getBlock()))
 			return;
+		paused = false;
+		
+		// Stop the previous run before the next one starts
+		if (simulation != null)
+			simulation.finish();
+		Machine previous = (successor != null && program != this.program) ? machine : null;
+
+		if (program != this.program) {
+			Block block = program.getBlock();
+			
+			// Print the profile of the previous program and profile the conditions of this one.
+			if (profiler != null)
+				System.out.print(profiler.dump());
+			if (profile) {
+				profiler = new Profiler();
+				profiler.profile(block);
+			}
+			if (heatProfiler != null) {
+				heatProfiler.stop();
+				System.out.print(heatProfiler.dump());
+				heatProfiler = null;
+			}
+			if (heat)
+				heatProfiler = new HeatProfiler(pseudocode.getText());
+
+			// Compile the arithmetic of the program, leaving anything else to be interpreted.
+			if (compile)
+				new Compiler(block.getSymbolTable()).compile(block);
+
+			// Returns true if the block should be print out.
+			if (printBlock) {
+				print(block);
+			}
+			
+			this.lowered = Lowering.lower(block, heat);
+			this.program = program;
+		}
 
-		// Assign the width and height values to the block.
+		// Start running the program from a blank frame, with the size and input of this window.
+		// A changed program carries on from the previous run first.
+		ExecutionContext block = program.start();
+		Machine machine = lowered.start(block);
+		block.setConsole(console);
+		if (previous != null)
+			machine.resume(previous, successor);
 		block.assign("width", new Terminal(getWidth()));
 		block.assign("height", new Terminal(getHeight() - 50));
 		block.assign("mousex", mouseX);
 		block.assign("mousey", mouseY);
 		block.assign("mouseclicked", mouseClicked);
+		block.assign("deltatime", new Terminal(1.0 / rate));
+		block.getControlStack().setLimit(depth);
+
+		// Every run picks its own seed, so that a recorded run picks the same random numbers again
+		long seed = System.nanoTime();
+		block.getRandom().setSeed(seed);
 
-		// Returns true if the block should be print out.
-		if (printBlock) {
-			print(block);
+		if (heatProfiler != null) {
+			heatProfiler.profile(block);
+			heatProfiler.start();
 		}
 
-		// Set the reset flag for the next repaint.
-		block.reset();
+		this.machine = machine;
 		this.block = block;
-		reset = true;
+		this.frames = new FrameBuffer(getWidth(), getHeight());
+		this.simulation = new Simulation(block, machine, frames, rate, budget);
+		simulation.measure(metrics);
+		if (record != null)
+			record(seed);
+		simulation.start();
+	}
+	
+	/**
+	 * Returns the metrics of the frames of this window.
+	 */
+	public FrameMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Records the input of the run that is about to start, beginning with the state of the mouse.
+	 */
+	private void record(long seed) {
+		try {
+			simulation.record(new InputRecorder(new FileOutputStream(record), seed, getWidth(), getHeight()));
+		} catch (IOException e) {
+			console.error("Cannot record to " + record + ": " + e.getMessage());
+			return;
+		}
+		simulation.post("mousex", (int) mouseX.getValue());
+		simulation.post("mousey", (int) mouseY.getValue());
+		simulation.post("mouseclicked", (int) mouseClicked.getValue());
 	}
 	
 	public void startMesh() {
@@ -204,11 +369,14 @@ public class Interpreter extends JPanel implements MouseListener, MouseMotionLis
 	
 	private void print(Block block) {
 		System.out.println("public class Pseudocode {");
-		for (String symbol : block.getSymbolTable().keySet()) {
+		SymbolTable table = block.getSymbolTable();
+		for (int slot = 0 ; slot < table.size() ; slot++) {
+			if (table.getName(slot) == null)
+				continue;
 			System.out.print("static double ");
-			System.out.print(symbol);
+			System.out.print(table.getName(slot));
 			System.out.print(" = ");
-			System.out.print(block.get(symbol));
+			System.out.print(table.get(slot));
 			System.out.print(";\n");
 		}
 		System.out.print("public static void main(String[] args) ");
@@ -219,25 +387,21 @@ public class Interpreter extends JPanel implements MouseListener, MouseMotionLis
 	public void mouseMoved(MouseEvent e) {
 		mouseX.setValue(e.getX());
 		mouseY.setValue(e.getY());
-		if (block != null) {
-			block.assign("mousex", mouseX);
-			block.assign("mousey", mouseY);
-		}
+		assign("mousex", e.getX());
+		assign("mousey", e.getY());
 	}
 
 
 	@Override
 	public void mousePressed(MouseEvent e) {
 		mouseClicked.setValue(1);
-		if (block != null)
-			block.assign("mouseclicked", mouseClicked);
+		assign("mouseclicked", 1);
 	}
 
 	@Override
 	public void mouseReleased(MouseEvent e) {
 		mouseClicked.setValue(0);
-		if (block != null)
-			block.assign("mouseclicked", mouseClicked);
+		assign("mouseclicked", 0);
 	}
 
 	public void mouseClicked(MouseEvent e) {
@@ -252,32 +416,38 @@ public class Interpreter extends JPanel implements MouseListener, MouseMotionLis
 	@Override
 	public void keyPressed(KeyEvent e) {
 		if (assignKey(e.getKeyCode(), 1)) return;
-		if (block != null)
-			block.assign(e.getKeyChar() + " pressed", 1);
+		assign(e.getKeyChar() + " pressed", 1);
 	}
 
 	@Override
 	public void keyReleased(KeyEvent e) {
 		if (assignKey(e.getKeyCode(), 0)) return;
 		
-		if (block != null)
-			block.assign(e.getKeyChar() + " pressed", 0);
+		assign(e.getKeyChar() + " pressed", 0);
 	}
 	
 	private boolean assignKey(int keyEvent, int value) {
 		if (keyEvent == KeyEvent.VK_UP)
-			block.assign("up pressed", value);
+			assign("up pressed", value);
 		else if (keyEvent == KeyEvent.VK_DOWN)
-			block.assign("down pressed", value);
+			assign("down pressed", value);
 		else if (keyEvent == KeyEvent.VK_LEFT)
-			block.assign("left pressed", value);
+			assign("left pressed", value);
 		else if (keyEvent == KeyEvent.VK_RIGHT)
-			block.assign("right pressed", value);
+			assign("right pressed", value);
 		else if (keyEvent == KeyEvent.VK_SPACE)
-			block.assign("space pressed", value);
+			assign("space pressed", value);
 		else
 			return false;
 		
 		return true;
 	}
+	
+	/**
+	 * Assigns a value to a variable of the running program before its next frame.
+	 */
+	private void assign(String variable, int value) {
+		if (simulation != null)
+			simulation.post(variable, value);
+	}
 }
@@ -0,0 +1,166 @@
+package view;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.UnaryOperator;
+
+import javax.swing.SwingUtilities;
+
+import instruction.Block;
+import instruction.Instruction;
+import instruction.Program;
+import parser.Parser;
+import parser.TokenStore;
+
+/**
+ * A ParseWorker parses the text of the editor on its own thread, so that typing never waits
+ * for the parser. Each edit submits a snapshot of the editor's tokens, and the worker parses
+ * once no edit has been submitted for a short time. An edit submitted while a parse is running
+ * cancels it, so only the newest text is ever parsed to the end.
+ *
+ * A finished program is handed to its target on the event thread, and only if no newer text
+ * was submitted in the meantime. The worker waits for the target to return before it parses
+ * again, because starting a program changes the symbol table that the next parse shares.
+ *
+ * The parser moves the unchanged instructions of the running program into the next one, so the
+ * target pauses the running program before every parse, and the program does not run again
+ * until one is handed over. A program that is not handed over is discarded by the parser, so
+ * the next parse carries on from the program that was paused.
+ *
+ * @license MIT
+ */
+public class ParseWorker extends Thread {
+
+	/**
+	 * Receives every program the worker finishes, on the event thread.
+	 */
+	public interface Target {
+		/**
+		 * Called before the text is parsed, to stop the running program until the next program
+		 * is handed over.
+		 */
+		void pause();
+
+		/**
+		 * Called with a program parsed from the newest text.
+		 * @param program - the program
+		 * @param successor - maps the instructions of the previous program to the ones that
+		 * 		replace them, or null if the program should be started from the beginning
+		 * @param time - the time the program took to parse, in nanoseconds
+		 */
+		void parsed(Program program, UnaryOperator <Instruction> successor, long time);
+	}
+
+	private Parser parser = new Parser();
+	private Target target;
+
+	// The time in nanoseconds the text has to stay unchanged before it is parsed
+	private long debounce;
+
+	// The newest text that has not been parsed yet, or null, and the time it was submitted
+	private TokenStore pending;
+	private long submitted;
+
+	// True if the next program should start from the beginning instead of carrying on
+	private boolean restart = false;
+
+	// Counts the texts submitted, so that a parse can tell that a newer text is waiting
+	private volatile long generation = 0;
+
+	/**
+	 * Creates a worker that hands the programs it parses to the given target.
+	 * @param target - the target
+	 * @param debounce - the time in milliseconds the text has to stay unchanged before it is parsed
+	 */
+	public ParseWorker(Target target, long debounce) {
+		super("Parser");
+		setDaemon(true);
+		this.target = target;
+		this.debounce = debounce * 1000000;
+	}
+
+	/**
+	 * Submits the current text of the given tokens to be parsed, cancelling the parse of any
+	 * earlier text. The tokens are copied, so they may change as soon as this returns.
+	 * @param tokens - the tokens of the text
+	 * @param restart - true if the program should start from the beginning, rather than carry
+	 * 		on with the variables of the running program
+	 */
+	public synchronized void submit(TokenStore tokens, boolean restart) {
+		pending = tokens.snapshot();
+		submitted = System.nanoTime();
+		this.restart |= restart;
+		generation++;
+		notifyAll();
+	}
+
+	public void run() {
+		try {
+			while (true) {
+				TokenStore tokens;
+				long current;
+				boolean restart;
+				synchronized (this) {
+					// Wait for a text, and then until no newer text has come for the debounce time
+					while (pending == null)
+						wait();
+					long wait;
+					while ((wait = submitted + debounce - System.nanoTime()) > 0)
+						wait(wait / 1000000, (int) (wait % 1000000));
+					tokens = pending;
+					current = generation;
+					restart = this.restart;
+					pending = null;
+					this.restart = false;
+				}
+
+				pause();
+				long start = System.nanoTime();
+				Block block = parser.reparse(tokens, () -> generation != current);
+				long time = System.nanoTime() - start;
+				boolean handed = block != null && hand(new Program(block), current, restart, time);
+				if (block != null && ! handed)
+					parser.discard();
+
+				// A text that was not handed over is replaced by a newer one, which has to restart
+				// the program in its place
+				if (! handed && restart) {
+					synchronized (this) {
+						this.restart = true;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// The worker is stopped
+		}
+	}
+
+	/**
+	 * Pauses the running program on the event thread, and waits until it has stopped.
+	 */
+	private void pause() throws InterruptedException {
+		try {
+			SwingUtilities.invokeAndWait(target::pause);
+		} catch (InvocationTargetException e) {
+			e.getCause().printStackTrace();
+		}
+	}
+
+	/**
+	 * Hands a program to the target on the event thread if no newer text was submitted after it,
+	 * and returns true if it was handed over.
+	 */
+	private boolean hand(Program program, long current, boolean restart, long time) throws InterruptedException {
+		boolean[] handed = { false };
+		try {
+			SwingUtilities.invokeAndWait(() -> {
+				if (generation == current) {
+					handed[0] = true;
+					target.parsed(program, restart ? null : parser::getSuccessor, time);
+				}
+			});
+		} catch (InvocationTargetException e) {
+			e.getCause().printStackTrace();
+		}
+		return handed[0];
+	}
+}
@@ -3,15 +3,20 @@ package view;
 import java.awt.GridLayout;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.util.ArrayList;
+import java.util.function.UnaryOperator;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.UIManager;
 import javax.swing.text.Highlighter;
 
-import instruction.Block;
+import instruction.Instruction;
+import instruction.Program;
 import parser.Parser;
+import parser.TokenStore;
 
 /**
  * 
@@ -37,9 +42,14 @@ public class Pseudocode extends JFrame {
 	Editor editor;
 	Interpreter interpreter;
 	
-	// Parser
+	// Parser of whole texts, the worker that parses the editor as it changes, and the program
+	// last parsed from the editor
 	Parser parser;
-	Block parsed;
+	ParseWorker worker;
+	Program parsed;
+
+	// The time in milliseconds the editor has to stay unchanged before its text is parsed
+	private long debounce = Long.getLong("pseudocode.debounce", 30);
 	
 	/**
 	 * Constructs this pseudocode editor.
@@ -62,13 +72,31 @@ public class Pseudocode extends JFrame {
 		editor = new Editor(this);
 		interpreter = new Interpreter(this);
 		parser = new Parser();
+		worker = new ParseWorker(new ParseWorker.Target() {
+			public void pause() {
+				interpreter.pause();
+			}
+
+			public void parsed(Program program, UnaryOperator <Instruction> successor, long time) {
+				Pseudocode.this.parsed(program, successor, time);
+			}
+		}, debounce);
+		worker.start();
 		
+		// A window closed while others stay open stops everything it started
+		addWindowListener(new WindowAdapter() {
+			public void windowClosed(WindowEvent e) {
+				worker.interrupt();
+				interpreter.close();
+			}
+		});
+
 		this.addComponentListener(new ComponentListener() {
 
 			public void componentResized(ComponentEvent e) {
 				interpreter.setSize(getWidth() / 2, getHeight());
 				if (parsed != null) {
-					interpreter.interpret(parsed);
+					worker.submit(editor.getTokens(), true);
 				}
 			}
 			
@@ -93,17 +121,42 @@ public class Pseudocode extends JFrame {
 	 * @param text  the text to update the editor with
 	 */
 	public void update(String text) {
-		parsed = parser.parse(text);
+		long start = System.nanoTime();
+		parsed = new Program(parser.parse(text));
+		interpreter.getMetrics().parse(System.nanoTime() - start);
 		interpreter.interpret(parsed);
 	}
 	
+	/**
+	 * Called whenever the text in the editor is updated, with the tokens the editor keeps of it.
+	 * The text is parsed by the worker, and only the changed parts of the program are parsed
+	 * again. The running program then carries on with its variables where it was.
+	 * @param tokens  the tokens of the text in the editor
+	 */
+	public void update(TokenStore tokens) {
+		worker.submit(tokens, false);
+	}
+	
 	/**
 	 * Called whenever the text in the editor needs to be updated
 	 * @param text the text to update the editor with
 	 */
 	public void updateText(String text) {
 		editor.updateText(text);
-		update(text);
+		worker.submit(editor.getTokens(), true);
+	}
+	
+	/**
+	 * Called by the worker on the event thread with the program parsed from the newest text,
+	 * which is started again from the beginning if there is no successor for its instructions.
+	 */
+	private void parsed(Program program, UnaryOperator <Instruction> successor, long time) {
+		interpreter.getMetrics().parse(time);
+		parsed = program;
+		if (successor != null)
+			interpreter.reload(program, successor);
+		else
+			interpreter.interpret(program);
 	}
 	
 	/**
@@ -137,6 +190,14 @@ public class Pseudocode extends JFrame {
 		editor.addUndoText(input);
 	}
 	
+	/**
+	 * Shows the heat of each line of the program in the editor.
+	 * @param heat the heat of each line, from 0 to 1
+	 */
+	public void showHeat(double[] heat) {
+		editor.showHeat(heat);
+	}
+	
 	public Highlighter getHighlighter(){
 		return editor.getHighlighter();
 	}
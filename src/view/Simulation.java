@@ -0,0 +1,257 @@
+package view;
+
+import java.awt.Graphics;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import instruction.Block;
+import instruction.SymbolTable;
+import instruction.TimerWheel;
+import machine.Machine;
+import metrics.FrameEvent;
+import metrics.FrameMetrics;
+import replay.InputRecorder;
+
+/**
+ * A Simulation runs a program on its own thread at a fixed number of frames per second, and
+ * publishes each frame to a FrameBuffer for the Interpreter to paint. The speed of a program
+ * therefore no longer depends on how quickly or how often Swing repaints.
+ *
+ * Input from the event thread is queued and applied between frames, so the program is only
+ * ever changed by the simulation thread. Before every frame the "delta time" variable is set
+ * to the number of seconds since the previous frame started, and the program's clock is moved
+ * forward by the same time.
+ *
+ * A simulation can record its input and the time of each frame, so that the run can be replayed
+ * without a window by the BatchRunner. A frame that runs out of time budget continues in the
+ * next frame, which a replay runs as a single frame.
+ *
+ * The time is read from the system clock, unless the simulation is given a clock of its own.
+ *
+ * @license MIT
+ */
+public class Simulation extends Thread {
+
+	// The number of opcodes run between checks of the time budget
+	private static final int SLICE = 4096;
+
+	/**
+	 * The time a simulation runs by.
+	 */
+	public interface Clock {
+		/**
+		 * Returns the current time in nanoseconds, from any fixed point in time.
+		 */
+		long nanoTime();
+
+		/**
+		 * Waits for the given number of nanoseconds.
+		 */
+		void sleep(long nanoseconds) throws InterruptedException;
+	}
+
+	// The clock of the computer
+	private static final Clock SYSTEM = new Clock() {
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		public void sleep(long nanoseconds) throws InterruptedException {
+			Thread.sleep(nanoseconds / 1000000, (int) (nanoseconds % 1000000));
+		}
+	};
+
+	private Block block;
+	private Machine machine;
+	private FrameBuffer frames;
+
+	// The time between the start of two frames, and the longest time a frame runs before the
+	// part drawn so far is published and the rest continues in the next frame, in nanoseconds
+	private long period;
+	private long budget;
+
+	// Changes to the program's variables made by input events, waiting for the next frame
+	private ConcurrentLinkedQueue <Runnable> input = new ConcurrentLinkedQueue <Runnable> ();
+
+	// Records the input and frames of the program, or null
+	private InputRecorder recorder;
+
+	// Times each frame, or null
+	private FrameMetrics metrics;
+
+	private Clock clock = SYSTEM;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Creates a simulation of the given program.
+	 * @param block - the program
+	 * @param machine - the lowered program
+	 * @param frames - the buffer that finished frames are published to
+	 * @param rate - the number of frames per second
+	 * @param budget - the longest time in nanoseconds a single frame runs the program for
+	 */
+	public Simulation(Block block, Machine machine, FrameBuffer frames, int rate, long budget) {
+		super("Simulation");
+		setDaemon(true);
+		this.block = block;
+		this.machine = machine;
+		this.frames = frames;
+		this.period = 1000000000L / Math.max(rate, 1);
+		this.budget = budget;
+	}
+
+	/**
+	 * Queues a change to the program that will be made before the next frame.
+	 */
+	public void post(Runnable event) {
+		input.add(event);
+	}
+
+	/**
+	 * Queues a value that will be assigned to a variable of the program before the next frame,
+	 * recording it if the simulation is recorded.
+	 */
+	public void post(String variable, int value) {
+		input.add(() -> {
+			block.assign(variable, value);
+			if (recorder != null) {
+				try {
+					recorder.input(variable, value);
+				} catch (IOException e) {
+					stopRecording(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Records every input posted by name and the time of every frame, from the first frame on.
+	 * Must be called before the simulation starts. The recorder is closed when it finishes.
+	 */
+	public void record(InputRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Runs the simulation by the given clock instead of the system clock. Must be called before
+	 * the simulation starts.
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Records the time each frame runs the program for, the bytes it allocates, and the frames
+	 * that are dropped. Must be called before the simulation starts.
+	 */
+	public void measure(FrameMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Stops the simulation and waits for the current frame to finish.
+	 */
+	public void finish() {
+		running = false;
+		interrupt();
+		try {
+			join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void run() {
+		SymbolTable table = block.getSymbolTable();
+		TimerWheel timers = block.getTimers();
+		int deltaTime = table.resolve("deltatime");
+		Graphics graphics = frames.begin();
+
+		// Nanoseconds that have passed but are not yet part of the program's clock
+		long elapsed = 0;
+
+		long previous = clock.nanoTime() - period;
+		long next = clock.nanoTime();
+		while (running) {
+			long start = clock.nanoTime();
+			Runnable event;
+			while ((event = input.poll()) != null)
+				event.run();
+			if (recorder != null) {
+				try {
+					recorder.frame(start - previous);
+				} catch (IOException e) {
+					stopRecording(e);
+				}
+			}
+			table.set(deltaTime, (start - previous) / 1e9);
+			elapsed += start - previous;
+			timers.advance(elapsed / 1000000);
+			elapsed %= 1000000;
+			previous = start;
+
+			// Run the program until the frame is finished or the time budget is used up
+			long deadline = start + budget;
+			long began = clock.nanoTime();
+			long allocated = (metrics != null) ? FrameMetrics.allocated() : -1;
+			long opcodes = machine.getCount(), draws = block.getDrawCount();
+			FrameEvent frame = new FrameEvent();
+			frame.begin();
+			boolean finished;
+			while (! (finished = machine.run(graphics, SLICE)) && clock.nanoTime() < deadline);
+			frame.end();
+			if (frame.shouldCommit()) {
+				frame.opcodes = machine.getCount() - opcodes;
+				frame.draws = block.getDrawCount() - draws;
+				frame.finished = finished;
+				frame.commit();
+			}
+			if (metrics != null)
+				metrics.frame(clock.nanoTime() - began, (allocated >= 0) ? FrameMetrics.allocated() - allocated : -1);
+			if (block.getProfile() != null)
+				block.getProfile().leave();
+			graphics.dispose();
+			frames.publish();
+			graphics = frames.begin();
+
+			// Wait for the start of the next frame, without trying to catch up on frames that
+			// were missed because the program was too slow
+			next += period;
+			long wait = next - clock.nanoTime();
+			if (wait < 0) {
+				// Every whole period the frame ran over is a frame that never happens
+				if (metrics != null)
+					metrics.drop(-wait / period);
+				next = clock.nanoTime();
+			}
+			else {
+				try {
+					clock.sleep(wait);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+		}
+		graphics.dispose();
+		if (recorder != null) {
+			try {
+				recorder.close();
+			} catch (IOException e) {
+				stopRecording(e);
+			}
+		}
+	}
+
+	/**
+	 * Gives up on a recording that cannot be written, leaving the program running.
+	 */
+	private void stopRecording(IOException e) {
+		System.err.println("Recording stopped: " + e.getMessage());
+		InputRecorder recorder = this.recorder;
+		this.recorder = null;
+		try {
+			recorder.close();
+		} catch (IOException closing) {}
+	}
+}